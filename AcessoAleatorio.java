@@ -0,0 +1,207 @@
+package huffman;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/*
+Descompressão de um trecho [inicio, inicio + quantidade) do original, sem descomprimir o
+arquivo inteiro (modo 'd' com --inicio/--quantidade, ou Huffman.descomprimirTrecho).
+
+- Versão 2 armazenada (sem compressão): o trecho é copiado direto do arquivo.
+- Versão 2 com índice de sincronia (--indice na compressão): a decodificação começa no
+  ponto de sincronia anterior ao trecho, então custa no máximo um intervalo a mais do que
+  o próprio trecho. Sem índice (ou com fluxos intercalados), começa no início dos dados.
+- Versão 3 (em blocos): só os blocos que contêm o trecho são lidos e descomprimidos.
+- Versão 4 (fluxo): os quadros anteriores ao trecho são decodificados e descartados.
+- Versão 1 (legada): não há índice; a decodificação começa no início dos dados e o que vem
+  antes do trecho é descartado, como na versão 4.
+Nos outros formatos (adaptativo e pacote) a leitura de um trecho não é suportada.
+O trecho é limitado ao tamanho do original.
+ */
+class AcessoAleatorio {
+
+    /*
+    Descomprime o trecho para 'saida'. Retorna o número de bytes escritos.
+     */
+    static long descomprimirTrecho(FileChannel entrada, long inicio, long quantidade, WritableByteChannel saida,
+                                   Dicionario dicionario) throws IOException {
+        if (inicio < 0 || quantidade < 0) {
+            throw new IllegalArgumentException("O início e a quantidade do trecho não podem ser negativos.");
+        }
+        ByteBuffer cabecalho = IndiceDeBlocos.lerCompletamente(entrada, 0,
+                (int) Math.min(entrada.size(), FormatoHuff.TAMANHO_MAGICA + CabecalhoDeBloco.TAMANHO_MAXIMO));
+        int versao = FormatoHuff.detectarVersao(cabecalho);
+        long fim = inicio + Math.min(quantidade, Long.MAX_VALUE - inicio);
+        switch (versao) {
+            case FormatoHuff.VERSAO_CANONICA:
+                return trechoDeFluxoUnico(entrada, cabecalho, inicio, fim, saida, dicionario);
+            case FormatoHuff.VERSAO_BLOCOS:
+                return trechoDeBlocos(entrada, cabecalho, inicio, fim, saida, dicionario);
+            case FormatoHuff.VERSAO_FLUXO:
+                return trechoDeFluxo(entrada, inicio, fim, saida, dicionario);
+            case FormatoHuff.VERSAO_LEGADA:
+                return trechoLegado(entrada, inicio, fim, saida);
+            default:
+                throw new IOException("A leitura de um trecho não é suportada em arquivos da versão " + versao + ".");
+        }
+    }
+
+    /*
+    Versão 2: a partir do ponto de sincronia anterior ao trecho (ou do início dos dados).
+     */
+    private static long trechoDeFluxoUnico(FileChannel entrada, ByteBuffer cabecalho, long inicio, long fim,
+                                           WritableByteChannel saida, Dicionario dicionario) throws IOException {
+        // 1. Cabeçalho do bloco e índice de sincronia, se houver.
+        cabecalho.position(FormatoHuff.TAMANHO_MAGICA);
+        CabecalhoDeBloco bloco = CabecalhoDeBloco.ler(cabecalho);
+        long inicioDados = cabecalho.position();
+        long fimDados = inicioDados + bloco.tamanhoDados;
+        if (fimDados > entrada.size()) {
+            throw new IOException("Arquivo comprimido truncado: faltam dados comprimidos.");
+        }
+        fim = Math.min(fim, bloco.tamanhoOriginal);
+        if (inicio >= fim) {
+            return 0;
+        }
+        if (bloco.tipo == CabecalhoDeBloco.TIPO_ARMAZENADO) {
+            long copiados = 0;
+            while (inicio + copiados < fim) {
+                copiados += entrada.transferTo(inicioDados + inicio + copiados, fim - inicio - copiados, saida);
+            }
+            return copiados;
+        }
+        DecodificadorDeTabela decodificador = CodificadorDeBloco.decodificadorPara(bloco, null, dicionario);
+        if (bloco.tipo == CabecalhoDeBloco.TIPO_INTERCALADO) {
+            LeitorDeBits[] leitores = FluxosIntercalados.leitoresDeArquivo(entrada, inicioDados, bloco.tamanhosFluxos);
+            return copiar(leitores, decodificador, 0, inicio, fim, saida);
+        }
+        IndiceDeSincronia indice = IndiceDeSincronia.ler(entrada, fimDados, bloco.tamanhoOriginal, 8 * bloco.tamanhoDados);
+
+        // 2. Leitor posicionado no bit do ponto de sincronia.
+        int ponto = indice == null ? 0 : (int) Math.min(inicio / indice.intervalo, indice.quantidade);
+        long bit = indice == null ? 0 : indice.bitDoPonto(ponto);
+        long posicaoOriginal = indice == null ? 0 : ponto * indice.intervalo;
+        LeitorDeBits leitor = new LeitorDeBits(new JanelasMapeadas.Leitor(entrada, inicioDados + bit / 8, fimDados),
+                ByteBuffer.allocate(LeitorDeBits.TAMANHO_BUFFER).flip());
+        if (bit % 8 != 0) {
+            leitor.lerBits((int) (bit % 8));
+        }
+        return copiar(new LeitorDeBits[] { leitor }, decodificador, posicaoOriginal, inicio, fim, saida);
+    }
+
+    /*
+    Versão 1: refaz a árvore das frequências do cabeçalho e decodifica desde o início dos dados.
+     */
+    private static long trechoLegado(FileChannel entrada, long inicio, long fim, WritableByteChannel saida) throws IOException {
+        if (entrada.size() < FormatoHuff.TAMANHO_CABECALHO_LEGADO) {
+            throw new IOException("Cabeçalho incompleto.");
+        }
+        // 1. Frequências e número original de caracteres, como em Main.descomprimirFluxoUnico.
+        ByteBuffer cabecalho = IndiceDeBlocos.lerCompletamente(entrada, 0, FormatoHuff.TAMANHO_CABECALHO_LEGADO);
+        long[] frequencias = new long[256];
+        for (int i = 0; i < 256; i++) {
+            frequencias[i] = cabecalho.getInt();
+        }
+        fim = Math.min(fim, cabecalho.getLong());
+        if (inicio >= fim) {
+            return 0;
+        }
+        DecodificadorDeTabela decodificador = Main.criarDecodificadorLegado(Main.reconstruirArvoreDeHuffman(frequencias));
+
+        // 2. Decodifica a partir do primeiro bit dos dados, descartando o que vem antes do trecho.
+        LeitorDeBits leitor = new LeitorDeBits(new JanelasMapeadas.Leitor(entrada, FormatoHuff.TAMANHO_CABECALHO_LEGADO, entrada.size()),
+                ByteBuffer.allocate(LeitorDeBits.TAMANHO_BUFFER).flip());
+        return copiar(new LeitorDeBits[] { leitor }, decodificador, 0, inicio, fim, saida);
+    }
+
+    /*
+    Decodifica de 'posicaoOriginal' até 'fim', descartando o que vem antes de 'inicio'.
+    Com vários leitores (fluxos intercalados), 'posicaoOriginal' precisa ser 0.
+     */
+    private static long copiar(LeitorDeBits[] leitores, DecodificadorDeTabela decodificador, long posicaoOriginal,
+                               long inicio, long fim, WritableByteChannel saida) throws IOException {
+        byte[] pedaco = new byte[EscritorDeBits.TAMANHO_BUFFER - EscritorDeBits.TAMANHO_BUFFER % leitores.length];
+        long escritos = 0;
+        while (posicaoOriginal < fim) {
+            int n = (int) Math.min(pedaco.length, fim - posicaoOriginal);
+            if (leitores.length == 1) {
+                decodificador.decodificar(leitores[0], pedaco, 0, n);
+            } else {
+                decodificador.decodificarIntercalado(leitores, pedaco, 0, n);
+            }
+            int descartados = (int) Math.max(0, Math.min(n, inicio - posicaoOriginal));
+            escritos += escrever(saida, ByteBuffer.wrap(pedaco, descartados, n - descartados));
+            posicaoOriginal += n;
+        }
+        return escritos;
+    }
+
+    /*
+    Versão 3: só os blocos que contêm o trecho, achados no índice por busca binária.
+     */
+    private static long trechoDeBlocos(FileChannel entrada, ByteBuffer cabecalho, long inicio, long fim,
+                                       WritableByteChannel saida, Dicionario dicionario) throws IOException {
+        cabecalho.position(FormatoHuff.TAMANHO_MAGICA);
+        FormatoHuff.lerVarLong(cabecalho);
+        IndiceDeBlocos indice = IndiceDeBlocos.ler(entrada, cabecalho.position());
+        fim = Math.min(fim, indice.tamanhoOriginalTotal());
+        int bloco = Arrays.binarySearch(indice.posicoesOriginais, 0, indice.quantidade, inicio);
+        if (bloco < 0) {
+            bloco = -bloco - 2;
+        }
+        long escritos = 0;
+        for (; bloco >= 0 && bloco < indice.quantidade && indice.posicoesOriginais[bloco] < fim; bloco++) {
+            long posicao = indice.posicoesOriginais[bloco];
+            ByteBuffer comprimido = IndiceDeBlocos.lerCompletamente(entrada, indice.posicoes[bloco], (int) indice.tamanhosComprimidos[bloco]);
+            byte[] original = new byte[(int) indice.tamanhosOriginais[bloco]];
+            CodificadorDeBloco.descomprimir(comprimido, original, 0, null, dicionario);
+            int de = (int) Math.max(0, inicio - posicao);
+            int ate = (int) Math.min(original.length, fim - posicao);
+            if (de < ate) {
+                escritos += escrever(saida, ByteBuffer.wrap(original, de, ate - de));
+            }
+        }
+        return escritos;
+    }
+
+    /*
+    Versão 4: os quadros não têm índice, então o que vem antes do trecho é decodificado e descartado.
+     */
+    private static long trechoDeFluxo(FileChannel entrada, long inicio, long fim, WritableByteChannel saida,
+                                      Dicionario dicionario) throws IOException {
+        entrada.position(0);
+        InputStream fluxo = new HuffmanInputStream(new BufferedInputStream(Channels.newInputStream(entrada), LeitorDeBits.TAMANHO_BUFFER), dicionario);
+        long pulados = 0;
+        while (pulados < inicio) {
+            long n = fluxo.skip(inicio - pulados);
+            if (n <= 0) {
+                return 0;
+            }
+            pulados += n;
+        }
+        byte[] pedaco = new byte[EscritorDeBits.TAMANHO_BUFFER];
+        long escritos = 0;
+        while (escritos < fim - inicio) {
+            int n = fluxo.read(pedaco, 0, (int) Math.min(pedaco.length, fim - inicio - escritos));
+            if (n < 0) {
+                break;
+            }
+            escritos += escrever(saida, ByteBuffer.wrap(pedaco, 0, n));
+        }
+        return escritos;
+    }
+
+    private static int escrever(WritableByteChannel saida, ByteBuffer buffer) throws IOException {
+        int quantidade = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            saida.write(buffer);
+        }
+        return quantidade;
+    }
+}
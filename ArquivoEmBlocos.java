@@ -0,0 +1,282 @@
+package huffman;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+Compressão e descompressão em blocos, em paralelo (formato versão 3).
+O arquivo original é dividido em blocos de tamanho fixo (ex: 1 MB). Cada bloco é
+comprimido de forma independente (CodificadorDeBloco) em uma thread do ForkJoinPool,
+e os blocos prontos são gravados em ordem. No fim do arquivo vai um índice
+(IndiceDeBlocos) com o tamanho de cada bloco, para que a descompressão também
+possa distribuir os blocos entre os núcleos.
+
+    'H' 'U' 'F' 0x03
+    tamanho nominal do bloco  : varint
+    blocos                    : cabeçalho do bloco + dados, um após o outro
+    índice + rodapé           : ver IndiceDeBlocos
+
+Novos dados podem ser acrescentados a um arquivo existente (acrescentar) sem tocar em nenhum
+byte que já está nele: os novos blocos vêm depois do rodapé antigo, seguidos do índice
+completo, com segmentos (ver IndiceDeBlocos). Até o novo rodapé chegar ao disco, o antigo
+continua valendo.
+ */
+class ArquivoEmBlocos {
+
+    /*
+    Comprime 'origem' em 'destino' usando blocos de configuracao.tamanhoBloco bytes.
+    Retorna o índice dos blocos gravados (útil para o resumo da compressão).
+     */
+    static IndiceDeBlocos comprimir(Path origem, Path destino, Configuracao configuracao) throws IOException {
+        return comprimir(origem, destino, configuracao.tamanhoBloco, configuracao);
+    }
+
+    private static IndiceDeBlocos comprimir(Path origem, Path destino, int tamanhoBloco, Configuracao configuracao) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(configuracao.paralelismo);
+        try (FileChannel entrada = FileChannel.open(origem, StandardOpenOption.READ);
+             FileChannel saida = FileChannel.open(destino, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            // 1. Cabeçalho do arquivo.
+            ByteBuffer cabecalho = ByteBuffer.allocate(16);
+            FormatoHuff.escreverMagica(cabecalho, FormatoHuff.VERSAO_BLOCOS);
+            FormatoHuff.escreverVarLong(cabecalho, tamanhoBloco);
+            cabecalho.flip();
+            escreverTudo(saida, cabecalho);
+
+            // 2. Blocos.
+            IndiceDeBlocos indice = new IndiceDeBlocos(saida.position());
+            long posicaoSaida = comprimirBlocos(pool, entrada, saida, tamanhoBloco, indice, configuracao);
+
+            // 3. Índice e rodapé.
+            indice.escrever(saida, posicaoSaida);
+            return indice;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+    Acrescenta 'origem' ao arquivo em blocos 'destino', como novos blocos depois dos que ele já
+    tem, sem ler nem regravar esses blocos: o custo só depende do tamanho de 'origem'. Os novos
+    blocos têm configuracao.tamanhoBloco bytes ou, sem ele, o tamanho nominal do arquivo.
+    Se 'destino' não existe (ou está vazio), ele é criado como em comprimir.
+    Os bytes existentes não são alterados: em caso de erro o arquivo é truncado de volta ao
+    tamanho anterior, e se o processo morrer no meio, a leitura volta ao rodapé antigo.
+    Retorna o índice de todos os blocos, antigos e novos.
+     */
+    static IndiceDeBlocos acrescentar(Path origem, Path destino, Configuracao configuracao) throws IOException {
+        if (!Files.exists(destino) || Files.size(destino) == 0) {
+            return comprimir(origem, destino, configuracao.tamanhoBloco > 0 ? configuracao.tamanhoBloco : Configuracao.TAMANHO_BLOCO_PADRAO,
+                    configuracao);
+        }
+        ForkJoinPool pool = new ForkJoinPool(configuracao.paralelismo);
+        try (FileChannel entrada = FileChannel.open(origem, StandardOpenOption.READ);
+             FileChannel saida = FileChannel.open(destino, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            // 1. Cabeçalho e índice do arquivo existente; os novos blocos começam depois do rodapé.
+            ByteBuffer cabecalho = IndiceDeBlocos.lerCompletamente(saida, 0,
+                    (int) Math.min(saida.size(), FormatoHuff.TAMANHO_MAGICA + 10));
+            if (FormatoHuff.detectarVersao(cabecalho) != FormatoHuff.VERSAO_BLOCOS) {
+                throw new IOException("Só arquivos em blocos (versão 3) aceitam novos dados: comprima o arquivo com --bloco.");
+            }
+            long tamanhoNominal;
+            try {
+                cabecalho.position(FormatoHuff.TAMANHO_MAGICA);
+                tamanhoNominal = FormatoHuff.lerVarLong(cabecalho);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Cabeçalho do arquivo em blocos incompleto.");
+            }
+            if (tamanhoNominal < 1 || tamanhoNominal > Configuracao.TAMANHO_BLOCO_MAXIMO) {
+                throw new IOException("Tamanho de bloco inválido no cabeçalho: " + tamanhoNominal);
+            }
+            long inicioDosBlocos = cabecalho.position();
+            IndiceDeBlocos indice = IndiceDeBlocos.ler(saida, inicioDosBlocos);
+            long fimAnterior = indice.fimDoRodape; // Antes do fim do arquivo se um acréscimo anterior foi interrompido.
+            int quantidadeAnterior = indice.quantidade;
+
+            // 2. Novos blocos depois do rodapé antigo. Eles vão para o disco antes do novo
+            //    índice, para que um rodapé gravado nunca aponte para blocos que se perderam.
+            // 3. Índice completo e novo rodapé, também forçados para o disco.
+            //    Se algo falhar, o arquivo volta ao tamanho anterior.
+            int tamanhoBloco = configuracao.tamanhoBloco > 0 ? configuracao.tamanhoBloco : (int) tamanhoNominal;
+            try {
+                saida.position(fimAnterior);
+                long posicaoSaida = comprimirBlocos(pool, entrada, saida, tamanhoBloco, indice, configuracao);
+                if (indice.quantidade == quantidadeAnterior) {
+                    // Origem vazia: não há segmento novo, o índice antigo continua valendo.
+                    saida.truncate(fimAnterior);
+                    return indice;
+                }
+                saida.force(false);
+                saida.truncate(indice.escrever(saida, posicaoSaida));
+                saida.force(true);
+            } catch (IOException | RuntimeException e) {
+                saida.truncate(fimAnterior);
+                throw e;
+            }
+            return indice;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+    Comprime 'entrada' em blocos de 'tamanhoBloco' bytes, gravados em sequência a partir da
+    posição atual de 'saida' e registrados no 'indice'. Mantém no máximo 2 blocos por thread
+    em andamento, para limitar a memória, e grava cada bloco assim que ele e todos os
+    anteriores estiverem prontos. Retorna a posição da saída depois do último bloco.
+     */
+    private static long comprimirBlocos(ForkJoinPool pool, FileChannel entrada, FileChannel saida, long tamanhoBloco,
+                                        IndiceDeBlocos indice, Configuracao configuracao) throws IOException {
+        long tamanhoTotal = entrada.size();
+        int maximoEmAndamento = 2 * configuracao.paralelismo;
+        ArrayDeque<ForkJoinTask<ByteBuffer>> emAndamento = new ArrayDeque<>();
+        ArrayDeque<Integer> tamanhosOriginais = new ArrayDeque<>();
+        long proximaPosicao = 0;
+        long posicaoSaida = saida.position();
+
+        while (proximaPosicao < tamanhoTotal || !emAndamento.isEmpty()) {
+            while (proximaPosicao < tamanhoTotal && emAndamento.size() < maximoEmAndamento) {
+                long inicio = proximaPosicao;
+                int quantidade = (int) Math.min(tamanhoBloco, tamanhoTotal - inicio);
+                emAndamento.add(pool.submit(() -> comprimirBloco(entrada, inicio, quantidade, configuracao)));
+                tamanhosOriginais.add(quantidade);
+                proximaPosicao += quantidade;
+            }
+            ByteBuffer bloco = juntar(emAndamento.poll());
+            int tamanhoComprimido = bloco.remaining();
+            escreverTudo(saida, bloco);
+            indice.adicionar(posicaoSaida, tamanhoComprimido, tamanhosOriginais.poll());
+            posicaoSaida += tamanhoComprimido;
+        }
+        return posicaoSaida;
+    }
+
+    /*
+    Descomprime um arquivo em blocos. Cada bloco é lido, decodificado e gravado na sua
+    posição do arquivo de saída por uma thread do pool, sem depender dos outros blocos.
+     */
+    static void descomprimir(FileChannel entrada, FileChannel saida, int paralelismo) throws IOException {
+        descomprimir(entrada, saida, paralelismo, null);
+    }
+
+    /*
+    Igual ao método acima; os blocos TIPO_DICIONARIO são decodificados com 'dicionario'.
+     */
+    static void descomprimir(FileChannel entrada, FileChannel saida, int paralelismo, Dicionario dicionario) throws IOException {
+        // 1. Cabeçalho do arquivo (tamanho nominal do bloco) e índice do fim do arquivo.
+        long inicioCabecalho = FormatoHuff.TAMANHO_MAGICA;
+        ByteBuffer cabecalho = IndiceDeBlocos.lerCompletamente(entrada, inicioCabecalho, (int) Math.max(0, Math.min(10, entrada.size() - inicioCabecalho)));
+        try {
+            FormatoHuff.lerVarLong(cabecalho);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Cabeçalho do arquivo em blocos incompleto.");
+        }
+        long inicioDosBlocos = inicioCabecalho + cabecalho.position();
+        IndiceDeBlocos indice = IndiceDeBlocos.ler(entrada, inicioDosBlocos);
+
+        // 2. Um ForkJoinTask por bloco; as escritas posicionais no canal de saída são independentes.
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            List<ForkJoinTask<Void>> tarefas = new ArrayList<>();
+            for (int i = 0; i < indice.quantidade; i++) {
+                int bloco = i;
+                tarefas.add(pool.submit(() -> {
+                    descomprimirBloco(entrada, saida, indice, bloco, dicionario);
+                    return null;
+                }));
+            }
+            for (ForkJoinTask<Void> tarefa : tarefas) {
+                juntar(tarefa);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+    Lê um bloco do arquivo original e o comprime (executado em uma thread do pool).
+     */
+    private static ByteBuffer comprimirBloco(FileChannel entrada, long inicio, int quantidade, Configuracao configuracao) {
+        try {
+            ByteBuffer dados = IndiceDeBlocos.lerCompletamente(entrada, inicio, quantidade);
+            if (configuracao.dicionario != null) {
+                return CodificadorDeBloco.comprimirComDicionario(dados.array(), 0, quantidade, configuracao.dicionario, configuracao.economiaMinima);
+            }
+            if (configuracao.transformacoes != null) {
+                return CodificadorDeBloco.comprimirTransformado(dados.array(), 0, quantidade, configuracao.transformacoes,
+                        configuracao.comprimentoMaximo, configuracao.fluxos, configuracao.contexto, configuracao.economiaMinima);
+            }
+            if (configuracao.contexto) {
+                return CodificadorDeBloco.comprimirComContexto(dados.array(), 0, quantidade, configuracao.comprimentoMaximo, configuracao.economiaMinima);
+            }
+            return CodificadorDeBloco.comprimir(dados.array(), 0, quantidade, configuracao.comprimentoMaximo, configuracao.fluxos,
+                    configuracao.economiaMinima);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    Lê, descomprime e grava um bloco (executado em uma thread do pool).
+     */
+    private static void descomprimirBloco(FileChannel entrada, FileChannel saida, IndiceDeBlocos indice, int bloco, Dicionario dicionario) {
+        try {
+            ByteBuffer comprimido = IndiceDeBlocos.lerCompletamente(entrada, indice.posicoes[bloco], (int) indice.tamanhosComprimidos[bloco]);
+            byte[] original = new byte[(int) indice.tamanhosOriginais[bloco]];
+            CabecalhoDeBloco cabecalho = CodificadorDeBloco.descomprimir(comprimido, original, 0, null, dicionario);
+            if (cabecalho.tamanhoOriginal != original.length) {
+                throw new IOException("O bloco " + bloco + " não corresponde ao índice.");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(original);
+            long posicao = indice.posicoesOriginais[bloco];
+            while (buffer.hasRemaining()) {
+                posicao += saida.write(buffer, posicao);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    Espera o fim de uma tarefa e devolve o seu resultado, convertendo de volta
+    para IOException os erros de entrada/saída ocorridos dentro da tarefa.
+     */
+    static <T> T juntar(ForkJoinTask<T> tarefa) throws IOException {
+        try {
+            return tarefa.join();
+        } catch (RuntimeException e) {
+            throw comoIOException(e);
+        }
+    }
+
+    /*
+    Retorna a IOException que causou o erro de uma tarefa ou, se não houver, relança o erro.
+     */
+    static IOException comoIOException(RuntimeException e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof UncheckedIOException) {
+                return ((UncheckedIOException) causa).getCause();
+            }
+        }
+        throw e;
+    }
+
+    private static void escreverTudo(FileChannel saida, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            saida.write(buffer);
+        }
+    }
+}
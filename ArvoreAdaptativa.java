@@ -0,0 +1,196 @@
+package huffman;
+
+import java.io.IOException;
+
+/*
+Árvore de Huffman adaptativa (algoritmo FGK: Faller, Gallager e Knuth).
+Compressor e descompressor começam com a mesma árvore, formada só pelo nó NYT
+("not yet transmitted"), e a atualizam do mesmo jeito depois de cada caractere.
+Assim nenhuma tabela é transmitida e os dados podem ser comprimidos em uma única
+passada, sem conhecer o histograma de antemão.
+
+- Caractere já visto: o seu código é o caminho da raiz até a sua folha.
+- Caractere novo: código do NYT seguido do caractere em BITS_SIMBOLO bits; o NYT se
+  divide em um novo NYT e na folha do caractere.
+- FIM (256) é enviado como um caractere novo e marca o fim dos dados.
+
+Os nós ficam em vetores, numerados de forma que os pesos nunca diminuem com o número
+(propriedade dos irmãos) e a raiz tem o maior número. Ao incrementar um nó, ele é
+trocado antes com o nó de maior número do seu bloco (mesmo peso), o que mantém a
+propriedade. Como os pesos estão em ordem, esse nó é achado por busca binária.
+ */
+class ArvoreAdaptativa {
+    static final int FIM = 256;
+    static final int BITS_SIMBOLO = 9;
+
+    // 256 caracteres + NYT = 257 folhas (FIM nunca ganha folha), 2 * 257 - 1 nós.
+    private static final int NOS = 2 * 257 - 1;
+    private static final int RAIZ = NOS - 1;
+
+    private final long[] peso = new long[NOS];
+    private final int[] pai = new int[NOS];
+    private final int[] esquerda = new int[NOS];   // -1 nas folhas.
+    private final int[] direita = new int[NOS];
+    private final int[] simbolo = new int[NOS];    // Caractere das folhas (-1 no NYT).
+    private final int[] folha = new int[256];      // Nó de cada caractere, ou -1 se ainda não apareceu.
+    private final int[] caminho = new int[NOS];    // Bits do caminho até uma folha (usado ao codificar).
+    private int nyt;
+
+    ArvoreAdaptativa() {
+        java.util.Arrays.fill(folha, -1);
+        iniciarFolha(RAIZ, -1, -1);
+        nyt = RAIZ;
+    }
+
+    /*
+    Escreve o código do caractere 's' (ou de FIM) e atualiza a árvore.
+     */
+    void codificar(int s, EscritorDeBits escritor) throws IOException {
+        int no = s == FIM ? -1 : folha[s];
+        if (no < 0) {
+            escreverCaminho(nyt, escritor);
+            escritor.escrever(s, BITS_SIMBOLO);
+        } else {
+            escreverCaminho(no, escritor);
+        }
+        if (s != FIM) {
+            atualizar(s);
+        }
+    }
+
+    /*
+    Lê um código, atualiza a árvore e retorna o caractere (ou FIM).
+     */
+    int decodificar(LeitorDeBits leitor) throws IOException {
+        int no = RAIZ;
+        while (esquerda[no] >= 0) {
+            no = leitor.lerBits(1) == 0 ? esquerda[no] : direita[no];
+        }
+        int s = no == nyt ? leitor.lerBits(BITS_SIMBOLO) : simbolo[no];
+        if (leitor.leuAlemDoFim()) {
+            throw new IOException("Dados adaptativos truncados: falta o fim dos dados.");
+        }
+        if (s == FIM) {
+            return s;
+        }
+        if (s > FIM || (no == nyt && folha[s] >= 0)) {
+            throw new IOException("Dados adaptativos corrompidos.");
+        }
+        atualizar(s);
+        return s;
+    }
+
+    /*
+    Escreve o caminho da raiz até 'no' (0 = esquerda, 1 = direita).
+    O caminho é montado de baixo para cima e escrito de cima para baixo, em pedaços de
+    até 32 bits, porque a árvore adaptativa pode ter mais de 64 níveis.
+     */
+    private void escreverCaminho(int no, EscritorDeBits escritor) throws IOException {
+        int n = 0;
+        while (no != RAIZ) {
+            int p = pai[no];
+            caminho[n++] = direita[p] == no ? 1 : 0;
+            no = p;
+        }
+        long codigo = 0;
+        int bits = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            codigo = (codigo << 1) | caminho[i];
+            if (++bits == 32) {
+                escritor.escrever(codigo, bits);
+                codigo = 0;
+                bits = 0;
+            }
+        }
+        if (bits > 0) {
+            escritor.escrever(codigo, bits);
+        }
+    }
+
+    /*
+    Atualização do FGK depois de transmitir 's'.
+     */
+    private void atualizar(int s) {
+        int q = folha[s];
+        if (q < 0) {
+            // 1. Caractere novo: o NYT vira um nó interno, com um novo NYT à esquerda
+            //    e a folha de 's' à direita (os dois com peso zero).
+            int antigo = nyt;
+            int novaFolha = antigo - 1;
+            int novoNyt = antigo - 2;
+            esquerda[antigo] = novoNyt;
+            direita[antigo] = novaFolha;
+            iniciarFolha(novaFolha, antigo, s);
+            iniciarFolha(novoNyt, antigo, -1);
+            folha[s] = novaFolha;
+            nyt = novoNyt;
+            q = novaFolha;
+        }
+        // 2. Sobe até a raiz: cada nó troca de lugar com o líder do seu bloco
+        //    (exceto quando o líder é o próprio pai) e tem o peso incrementado.
+        while (q >= 0) {
+            int lider = liderDoBloco(q);
+            if (lider != q && lider != pai[q]) {
+                trocar(q, lider);
+                q = lider;
+            }
+            peso[q]++;
+            q = pai[q];
+        }
+    }
+
+    /*
+    Maior número de nó com o mesmo peso de 'q' (busca binária em [q, RAIZ]).
+     */
+    private int liderDoBloco(int q) {
+        long p = peso[q];
+        int inicio = q;
+        int fim = RAIZ;
+        while (inicio < fim) {
+            int meio = (inicio + fim + 1) >>> 1;
+            if (peso[meio] == p) {
+                inicio = meio;
+            } else {
+                fim = meio - 1;
+            }
+        }
+        return inicio;
+    }
+
+    /*
+    Troca as subárvores das posições 'a' e 'b' (que têm o mesmo peso).
+    Os pais continuam nas suas posições; o que muda é quem está pendurado em cada uma.
+     */
+    private void trocar(int a, int b) {
+        int t = esquerda[a];
+        esquerda[a] = esquerda[b];
+        esquerda[b] = t;
+        t = direita[a];
+        direita[a] = direita[b];
+        direita[b] = t;
+        t = simbolo[a];
+        simbolo[a] = simbolo[b];
+        simbolo[b] = t;
+        ajustarFilhos(a);
+        ajustarFilhos(b);
+    }
+
+    private void ajustarFilhos(int no) {
+        if (esquerda[no] >= 0) {
+            pai[esquerda[no]] = no;
+            pai[direita[no]] = no;
+        } else if (simbolo[no] >= 0) {
+            folha[simbolo[no]] = no;
+        } else {
+            nyt = no;
+        }
+    }
+
+    private void iniciarFolha(int no, int p, int s) {
+        peso[no] = 0;
+        pai[no] = p;
+        esquerda[no] = -1;
+        direita[no] = -1;
+        simbolo[no] = s;
+    }
+}
@@ -0,0 +1,278 @@
+package huffman;
+
+import java.util.Arrays;
+
+/*
+Árvore de Huffman guardada em vetores de tipos primitivos, sem um objeto No por nó.
+Os nós ficam em ordem de largura (breadth-first): a raiz é o nó 0, depois os seus dois
+filhos, depois os netos, e assim por diante. Os filhos do nó i estão em filhos[2*i]
+(esquerda, bit 0) e filhos[2*i + 1] (direita, bit 1); nas folhas os dois valem 0 e
+simbolos[i] é o caractere (nos nós internos, -1). Como todo pai vem antes dos filhos,
+profundidades e códigos são calculados com uma única passada do início para o fim, e
+quem desce pela árvore percorre os vetores quase sempre para a frente.
+
+Há três construtores; os dois primeiros montam exatamente a mesma árvore:
+- construirComHeap: o algoritmo clássico, com o MinHeapPrimitivo (O(n log n));
+- construirComDuasFilas: ordena as folhas uma vez e depois junta os nós em O(n),
+  usando uma fila de folhas ordenadas e uma fila de nós internos (que já nascem em ordem
+  de peso, porque cada pai pesa pelo menos o mesmo que o pai criado antes dele);
+- construirLegado: a árvore do arquivo legado (v1). Aquele cabeçalho só guarda as
+  frequências, então o descompressor refaz a árvore com o mesmo desempate do MinHeap de
+  objetos No usado pelo compressor antigo (ver MinHeapPrimitivo).
+Nos dois primeiros, empates de peso são decididos pelo identificador de criação: folhas
+antes de nós internos, folhas pelo caractere e nós internos pela ordem de criação.
+ */
+class ArvoreCompacta {
+    // Pesos acima deste valor não cabem na chave de ordenação (peso << 8 | folha).
+    private static final long PESO_MAXIMO_ORDENACAO = (1L << 55) - 1;
+
+    final int quantidadeFolhas;
+    final long[] pesos;    // Peso (frequência) de cada nó.
+    final int[] filhos;    // Filhos de cada nó: esquerda em 2*i, direita em 2*i + 1.
+    final int[] simbolos;  // Caractere de cada folha; -1 nos nós internos.
+
+    /*
+    Monta a árvore em ordem de largura a partir dos vetores da construção, em que as folhas
+    são os identificadores 0 .. n-1 e os nós internos vêm depois, na ordem em que foram
+    criados (a raiz é o último).
+     */
+    private ArvoreCompacta(Construcao construcao) {
+        int n = construcao.quantidadeFolhas;
+        int total = construcao.pesos.length;
+        this.quantidadeFolhas = n;
+        this.pesos = new long[total];
+        this.filhos = new int[2 * total];
+        this.simbolos = new int[total];
+        if (total == 0) {
+            return;
+        }
+        // A fila é o próprio vetor de saída: 'ordem' guarda o identificador de construção
+        // de cada posição, e os filhos de cada nó entram no fim dela.
+        int[] ordem = new int[total];
+        ordem[0] = total - 1;
+        int fim = 1;
+        for (int i = 0; i < total; i++) {
+            int id = ordem[i];
+            pesos[i] = construcao.pesos[id];
+            if (id < n) {
+                simbolos[i] = construcao.simbolos[id];
+            } else {
+                simbolos[i] = -1;
+                filhos[2 * i] = fim;
+                ordem[fim++] = construcao.esquerda[id - n];
+                filhos[2 * i + 1] = fim;
+                ordem[fim++] = construcao.direita[id - n];
+            }
+        }
+    }
+
+    /*
+    Vetores usados durante a construção: folhas 0 .. quantidadeFolhas-1, na ordem dos
+    caracteres presentes (menor caractere primeiro); nós internos quantidadeFolhas ..
+    2*quantidadeFolhas-2, na ordem em que foram criados. Um nó interno sempre tem
+    identificador maior que os seus filhos, e a raiz é o último nó.
+     */
+    private static final class Construcao {
+        final int quantidadeFolhas;
+        final int[] simbolos;
+        final long[] pesos;
+        final int[] esquerda;  // Filhos de cada nó interno, na posição (id - quantidadeFolhas).
+        final int[] direita;
+
+        Construcao(long[] frequencias) {
+            int n = 0;
+            for (int i = 0; i < 256; i++) {
+                if (frequencias[i] > 0) n++;
+            }
+            this.quantidadeFolhas = n;
+            this.simbolos = new int[n];
+            this.pesos = new long[Math.max(2 * n - 1, 0)];
+            this.esquerda = new int[Math.max(n - 1, 0)];
+            this.direita = new int[Math.max(n - 1, 0)];
+            int k = 0;
+            for (int i = 0; i < 256; i++) {
+                if (frequencias[i] > 0) {
+                    simbolos[k] = i;
+                    pesos[k] = frequencias[i];
+                    k++;
+                }
+            }
+        }
+
+        /*
+        Cria o nó interno 'pai' com os filhos 'a' (esquerda) e 'b' (direita).
+         */
+        void juntar(int pai, int a, int b) {
+            pesos[pai] = pesos[a] + pesos[b];
+            esquerda[pai - quantidadeFolhas] = a;
+            direita[pai - quantidadeFolhas] = b;
+        }
+
+        /*
+        Junta os nós com um heap: retira os dois mais leves, junta-os sob um novo pai e
+        devolve o pai ao heap, até sobrar um único nó.
+         */
+        ArvoreCompacta juntarComHeap(MinHeapPrimitivo heap) {
+            int n = quantidadeFolhas;
+            for (int id = 0; id < n; id++) {
+                heap.add(pesos[id], id);
+            }
+            for (int pai = n; heap.size() > 1; pai++) {
+                int a = heap.poll();
+                int b = heap.poll();
+                juntar(pai, a, b);
+                heap.add(pesos[pai], pai);
+            }
+            return new ArvoreCompacta(this);
+        }
+    }
+
+    /*
+    Retorna o índice da raiz, ou -1 se a árvore está vazia (nenhum caractere).
+     */
+    int raiz() {
+        return pesos.length == 0 ? -1 : 0;
+    }
+
+    /*
+    Indica se o nó 'no' é uma folha.
+     */
+    boolean folha(int no) {
+        return simbolos[no] >= 0;
+    }
+
+    /*
+    Constrói a árvore com o MinHeapPrimitivo (desempate pelo identificador).
+     */
+    static ArvoreCompacta construirComHeap(long[] frequencias) {
+        Construcao construcao = new Construcao(frequencias);
+        return construcao.juntarComHeap(new MinHeapPrimitivo(Math.max(construcao.quantidadeFolhas, 1), true));
+    }
+
+    /*
+    Constrói a árvore do formato legado, com o desempate do MinHeap original (só pelo peso,
+    e empates decididos pela posição no heap).
+     */
+    static ArvoreCompacta construirLegado(long[] frequencias) {
+        Construcao construcao = new Construcao(frequencias);
+        return construcao.juntarComHeap(new MinHeapPrimitivo(Math.max(construcao.quantidadeFolhas, 1), false));
+    }
+
+    /*
+    Constrói a árvore com duas filas, sem heap.
+    1. Ordena as folhas por (peso, identificador) com um único Arrays.sort de chaves long.
+    2. A cada passo o nó mais leve é o primeiro de uma das duas filas; no empate a folha
+       vence, pois tem identificador menor que qualquer nó interno.
+     */
+    static ArvoreCompacta construirComDuasFilas(long[] frequencias) {
+        Construcao arvore = new Construcao(frequencias);
+        int n = arvore.quantidadeFolhas;
+        if (n < 2) {
+            return new ArvoreCompacta(arvore);
+        }
+        long[] pesos = arvore.pesos;
+
+        // 1. Ordenação das folhas. A chave junta peso e identificador; se algum peso for
+        //    grande demais para ela, o heap (que produz a mesma árvore) é usado.
+        long[] chaves = new long[n];
+        for (int id = 0; id < n; id++) {
+            if (pesos[id] > PESO_MAXIMO_ORDENACAO) {
+                return construirComHeap(frequencias);
+            }
+            chaves[id] = (pesos[id] << 8) | id;
+        }
+        Arrays.sort(chaves);
+        int[] folhas = new int[n];
+        for (int i = 0; i < n; i++) {
+            folhas[i] = (int) (chaves[i] & 0xFF);
+        }
+
+        // 2. Junção. 'proximaFolha' e 'proximoInterno' são as cabeças das duas filas;
+        //    a fila de internos vai de 'proximoInterno' até o último pai criado.
+        int proximaFolha = 0;
+        int proximoInterno = n;
+        for (int pai = n; pai < 2 * n - 1; pai++) {
+            int a = (proximaFolha < n && (proximoInterno == pai || pesos[folhas[proximaFolha]] <= pesos[proximoInterno]))
+                    ? folhas[proximaFolha++] : proximoInterno++;
+            int b = (proximaFolha < n && (proximoInterno == pai || pesos[folhas[proximaFolha]] <= pesos[proximoInterno]))
+                    ? folhas[proximaFolha++] : proximoInterno++;
+            arvore.juntar(pai, a, b);
+        }
+        return new ArvoreCompacta(arvore);
+    }
+
+    /*
+    Calcula o comprimento do código (a profundidade da folha) de cada caractere.
+    Em ordem de largura os pais vêm antes dos filhos, então basta uma passada do início
+    para o fim, sem recursão. Um único caractere recebe um código de 1 bit.
+     */
+    int[] comprimentos() {
+        int[] comprimentos = new int[256];
+        if (quantidadeFolhas == 1) {
+            comprimentos[simbolos[0]] = 1;
+        }
+        if (quantidadeFolhas < 2) {
+            return comprimentos;
+        }
+        int[] profundidade = new int[pesos.length];
+        for (int no = 0; no < pesos.length; no++) {
+            if (folha(no)) {
+                comprimentos[simbolos[no]] = profundidade[no];
+            } else {
+                profundidade[filhos[2 * no]] = profundidade[no] + 1;
+                profundidade[filhos[2 * no + 1]] = profundidade[no] + 1;
+            }
+        }
+        return comprimentos;
+    }
+
+    /*
+    Gera a tabela de códigos pelos caminhos da árvore (0 para a esquerda, 1 para a direita),
+    como inteiros: o código de cada filho é o do pai deslocado de um bit, mais o bit do lado.
+    É a tabela do formato legado, em que os códigos são os da própria árvore (e não os
+    canônicos). Árvores vazias ou de uma folha só não têm códigos.
+     */
+    TabelaDeCodigos codigos() {
+        TabelaDeCodigos tabela = new TabelaDeCodigos();
+        if (quantidadeFolhas < 2) {
+            return tabela;
+        }
+        long[] codigo = new long[pesos.length];
+        int[] profundidade = new int[pesos.length];
+        for (int no = 0; no < pesos.length; no++) {
+            if (folha(no)) {
+                if (profundidade[no] > TabelaDeCodigos.COMPRIMENTO_MAXIMO) {
+                    throw new IllegalArgumentException("Código de Huffman muito longo para o caractere " + simbolos[no] + ": "
+                            + profundidade[no] + " bits");
+                }
+                tabela.codigos[simbolos[no]] = codigo[no];
+                tabela.comprimentos[simbolos[no]] = profundidade[no];
+            } else {
+                for (int lado = 0; lado < 2; lado++) {
+                    int filho = filhos[2 * no + lado];
+                    codigo[filho] = (codigo[no] << 1) | lado;
+                    profundidade[filho] = profundidade[no] + 1;
+                }
+            }
+        }
+        return tabela;
+    }
+
+    /*
+    Converte para a representação com objetos No (usada só na impressão da árvore e na
+    depuração). Os nós são criados do fim para o início, para que os filhos já existam.
+    Retorna null se a árvore está vazia.
+     */
+    No paraNo() {
+        if (pesos.length == 0) {
+            return null;
+        }
+        No[] nos = new No[pesos.length];
+        for (int no = pesos.length - 1; no >= 0; no--) {
+            nos[no] = folha(no)
+                    ? new No((char) simbolos[no], pesos[no])
+                    : new No(nos[filhos[2 * no]], nos[filhos[2 * no + 1]]);
+        }
+        return nos[0];
+    }
+}
@@ -0,0 +1,242 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/*
+Cabeçalho de um bloco de dados comprimidos.
+Um bloco é autodescritivo: traz o seu tipo, o tamanho original, a tabela de
+comprimentos dos códigos canônicos e o tamanho, em bytes, dos dados que o seguem.
+
+    tipo             : 1 byte (TIPO_HUFFMAN, TIPO_INTERCALADO, TIPO_TABELA_COMPARTILHADA,
+                       TIPO_DICIONARIO, TIPO_CONTEXTO, TIPO_ARMAZENADO ou TIPO_TRANSFORMADO)
+    tamanhoOriginal  : varint
+    comprimentos     : tabela compacta (FormatoHuff.escreverComprimentos); não existe no
+                       TIPO_TABELA_COMPARTILHADA, que usa a tabela do pacote (ver Pacote),
+                       nem no TIPO_DICIONARIO, que no lugar dela traz o id do dicionário
+                       (int, ver Dicionario), nem no TIPO_CONTEXTO, que no lugar dela traz
+                       uma tabela por contexto (ver ModeloDeContexto), nem no TIPO_ARMAZENADO,
+                       nem no TIPO_TRANSFORMADO, que no lugar dela traz as etapas
+    tamanhoDados     : varint, bytes de dados comprimidos logo após o cabeçalho
+No TIPO_ARMAZENADO os dados são o próprio original, sem compressão (tamanhoDados é igual
+a tamanhoOriginal): é o bloco dos dados incompressíveis (ver CodificadorDeBloco).
+No TIPO_TRANSFORMADO (ver Transformacoes) os dados são um bloco completo, de outro tipo,
+com os bytes depois das etapas; as etapas vêm no lugar da tabela:
+    quantidade       : 1 byte, número de etapas (1 a Transformacoes.ETAPAS_MAXIMO)
+    etapas           : 1 byte por etapa, na ordem em que foram aplicadas; depois de cada
+                       BWT, o seu índice primário (varint)
+Só no TIPO_INTERCALADO (ver FluxosIntercalados):
+    quantidade       : 1 byte, número de fluxos de bits (2 a FLUXOS_MAXIMO)
+    tamanhosFluxos   : varint por fluxo; os fluxos vêm um após o outro nos dados
+                       e a soma dos seus tamanhos é tamanhoDados.
+ */
+class CabecalhoDeBloco {
+    static final int TIPO_HUFFMAN = 0;
+    static final int TIPO_INTERCALADO = 1;
+    static final int TIPO_TABELA_COMPARTILHADA = 2;
+    static final int TIPO_DICIONARIO = 3;
+    static final int TIPO_CONTEXTO = 4;
+    static final int TIPO_ARMAZENADO = 5;
+    static final int TIPO_TRANSFORMADO = 6;
+
+    static final int FLUXOS_MAXIMO = 16;
+
+    // Maior tamanho possível do cabeçalho: tipo + 2 varints + tabela densa + fluxos intercalados.
+    static final int TAMANHO_MAXIMO = 1 + 10 + 2 + 128 + 10 + 1 + 10 * FLUXOS_MAXIMO;
+    // Maior tamanho possível com as tabelas por contexto.
+    static final int TAMANHO_MAXIMO_CONTEXTO = TAMANHO_MAXIMO + ModeloDeContexto.TAMANHO_MAXIMO;
+
+    int tipo;
+    long tamanhoOriginal;
+    int[] comprimentos;    // null no TIPO_TABELA_COMPARTILHADA, no TIPO_DICIONARIO, no TIPO_CONTEXTO, no TIPO_ARMAZENADO e no TIPO_TRANSFORMADO.
+    int idDicionario;      // Só no TIPO_DICIONARIO.
+    ModeloDeContexto modelo; // Só no TIPO_CONTEXTO.
+    long tamanhoDados;
+    long[] tamanhosFluxos; // null no TIPO_HUFFMAN.
+    int[] etapas;          // Só no TIPO_TRANSFORMADO: as etapas e o parâmetro de cada uma
+    long[] parametros;     // (o índice primário nas BWT, 0 nas outras).
+
+    CabecalhoDeBloco(int tipo, long tamanhoOriginal, int[] comprimentos, long tamanhoDados) {
+        this.tipo = tipo;
+        this.tamanhoOriginal = tamanhoOriginal;
+        this.comprimentos = comprimentos;
+        this.tamanhoDados = tamanhoDados;
+    }
+
+    /*
+    Cabeçalho de um bloco com vários fluxos intercalados (TIPO_INTERCALADO).
+     */
+    CabecalhoDeBloco(long tamanhoOriginal, int[] comprimentos, long[] tamanhosFluxos) {
+        this(TIPO_INTERCALADO, tamanhoOriginal, comprimentos, somar(tamanhosFluxos));
+        this.tamanhosFluxos = tamanhosFluxos;
+    }
+
+    /*
+    Cabeçalho de um bloco comprimido com um dicionário (TIPO_DICIONARIO).
+     */
+    static CabecalhoDeBloco comDicionario(long tamanhoOriginal, int idDicionario, long tamanhoDados) {
+        CabecalhoDeBloco cabecalho = new CabecalhoDeBloco(TIPO_DICIONARIO, tamanhoOriginal, null, tamanhoDados);
+        cabecalho.idDicionario = idDicionario;
+        return cabecalho;
+    }
+
+    /*
+    Cabeçalho de um bloco com uma tabela por contexto (TIPO_CONTEXTO).
+     */
+    static CabecalhoDeBloco comContexto(long tamanhoOriginal, ModeloDeContexto modelo, long tamanhoDados) {
+        CabecalhoDeBloco cabecalho = new CabecalhoDeBloco(TIPO_CONTEXTO, tamanhoOriginal, null, tamanhoDados);
+        cabecalho.modelo = modelo;
+        return cabecalho;
+    }
+
+    /*
+    Cabeçalho de um bloco armazenado sem compressão (TIPO_ARMAZENADO).
+     */
+    static CabecalhoDeBloco armazenado(long tamanhoOriginal) {
+        return new CabecalhoDeBloco(TIPO_ARMAZENADO, tamanhoOriginal, null, tamanhoOriginal);
+    }
+
+    /*
+    Cabeçalho de um bloco cujos dados são outro bloco, com os bytes transformados (TIPO_TRANSFORMADO).
+     */
+    static CabecalhoDeBloco transformado(long tamanhoOriginal, int[] etapas, long[] parametros, long tamanhoDados) {
+        CabecalhoDeBloco cabecalho = new CabecalhoDeBloco(TIPO_TRANSFORMADO, tamanhoOriginal, null, tamanhoDados);
+        cabecalho.etapas = etapas;
+        cabecalho.parametros = parametros;
+        return cabecalho;
+    }
+
+    /*
+    Tamanho que o cabeçalho de um bloco armazenado de 'tamanhoOriginal' bytes ocupa.
+     */
+    static int tamanhoArmazenado(long tamanhoOriginal) {
+        return 1 + 2 * FormatoHuff.tamanhoVarLong(tamanhoOriginal);
+    }
+
+    /*
+    Maior tamanho que este cabeçalho pode ocupar, para reservar o buffer de saída.
+     */
+    int tamanhoMaximo() {
+        return tipo == TIPO_CONTEXTO ? TAMANHO_MAXIMO_CONTEXTO : TAMANHO_MAXIMO;
+    }
+
+    /*
+    Número de fluxos de bits dos dados (1 no TIPO_HUFFMAN).
+     */
+    int quantidadeFluxos() {
+        return tamanhosFluxos == null ? 1 : tamanhosFluxos.length;
+    }
+
+    /*
+    Escreve o cabeçalho no buffer.
+     */
+    void escrever(ByteBuffer buffer) {
+        escrever(buffer, FormatoHuff.tamanhoVarLong(tamanhoDados));
+    }
+
+    /*
+    Igual ao método acima, com o tamanho dos dados ocupando 'larguraTamanhoDados' bytes (ver
+    FormatoHuff.escreverVarLong): um cabeçalho gravado com o maior tamanho possível pode ser
+    regravado no mesmo espaço quando o tamanho real for conhecido.
+     */
+    void escrever(ByteBuffer buffer, int larguraTamanhoDados) {
+        buffer.put((byte) tipo);
+        FormatoHuff.escreverVarLong(buffer, tamanhoOriginal);
+        if (tipo == TIPO_DICIONARIO) {
+            buffer.putInt(idDicionario);
+        } else if (tipo == TIPO_CONTEXTO) {
+            modelo.escrever(buffer);
+        } else if (tipo == TIPO_TRANSFORMADO) {
+            buffer.put((byte) etapas.length);
+            for (int i = 0; i < etapas.length; i++) {
+                buffer.put((byte) etapas[i]);
+                if (etapas[i] == Transformacoes.BWT) {
+                    FormatoHuff.escreverVarLong(buffer, parametros[i]);
+                }
+            }
+        } else if (tipo != TIPO_TABELA_COMPARTILHADA && tipo != TIPO_ARMAZENADO) {
+            FormatoHuff.escreverComprimentos(buffer, comprimentos);
+        }
+        FormatoHuff.escreverVarLong(buffer, tamanhoDados, Math.max(larguraTamanhoDados, FormatoHuff.tamanhoVarLong(tamanhoDados)));
+        if (tipo == TIPO_INTERCALADO) {
+            buffer.put((byte) tamanhosFluxos.length);
+            for (long tamanho : tamanhosFluxos) {
+                FormatoHuff.escreverVarLong(buffer, tamanho);
+            }
+        }
+    }
+
+    /*
+    Lê um cabeçalho do buffer, validando os campos.
+     */
+    static CabecalhoDeBloco ler(ByteBuffer buffer) throws IOException {
+        try {
+            int tipo = buffer.get() & 0xFF;
+            if (tipo > TIPO_TRANSFORMADO) {
+                throw new IOException("Tipo de bloco desconhecido: " + tipo);
+            }
+            long tamanhoOriginal = FormatoHuff.lerVarLong(buffer);
+            int idDicionario = tipo == TIPO_DICIONARIO ? buffer.getInt() : 0;
+            ModeloDeContexto modelo = tipo == TIPO_CONTEXTO ? ModeloDeContexto.ler(buffer) : null;
+            int[] etapas = null;
+            long[] parametros = null;
+            if (tipo == TIPO_TRANSFORMADO) {
+                int quantidade = buffer.get() & 0xFF;
+                if (quantidade < 1 || quantidade > Transformacoes.ETAPAS_MAXIMO) {
+                    throw new IOException("Número de transformações inválido no cabeçalho do bloco: " + quantidade);
+                }
+                etapas = new int[quantidade];
+                parametros = new long[quantidade];
+                for (int i = 0; i < quantidade; i++) {
+                    etapas[i] = buffer.get() & 0xFF;
+                    if (!Transformacoes.valida(etapas[i])) {
+                        throw new IOException("Transformação desconhecida no cabeçalho do bloco: " + etapas[i]);
+                    }
+                    parametros[i] = etapas[i] == Transformacoes.BWT ? FormatoHuff.lerVarLong(buffer) : 0;
+                }
+            }
+            int[] comprimentos = tipo == TIPO_TABELA_COMPARTILHADA || tipo == TIPO_DICIONARIO || tipo == TIPO_CONTEXTO
+                    || tipo == TIPO_ARMAZENADO || tipo == TIPO_TRANSFORMADO ? null : FormatoHuff.lerComprimentos(buffer);
+            long tamanhoDados = FormatoHuff.lerVarLong(buffer);
+            if (tamanhoOriginal < 0 || tamanhoDados < 0) {
+                throw new IOException("Tamanhos inválidos no cabeçalho do bloco.");
+            }
+            if (tipo == TIPO_ARMAZENADO && tamanhoDados != tamanhoOriginal) {
+                throw new IOException("Bloco armazenado com tamanho dos dados diferente do original.");
+            }
+            CabecalhoDeBloco cabecalho = new CabecalhoDeBloco(tipo, tamanhoOriginal, comprimentos, tamanhoDados);
+            cabecalho.idDicionario = idDicionario;
+            cabecalho.modelo = modelo;
+            cabecalho.etapas = etapas;
+            cabecalho.parametros = parametros;
+            if (tipo == TIPO_INTERCALADO) {
+                int quantidade = buffer.get() & 0xFF;
+                if (quantidade < 2 || quantidade > FLUXOS_MAXIMO) {
+                    throw new IOException("Número de fluxos inválido no cabeçalho do bloco: " + quantidade);
+                }
+                cabecalho.tamanhosFluxos = new long[quantidade];
+                for (int i = 0; i < quantidade; i++) {
+                    cabecalho.tamanhosFluxos[i] = FormatoHuff.lerVarLong(buffer);
+                    if (cabecalho.tamanhosFluxos[i] < 0) {
+                        throw new IOException("Tamanhos inválidos no cabeçalho do bloco.");
+                    }
+                }
+                if (somar(cabecalho.tamanhosFluxos) != tamanhoDados) {
+                    throw new IOException("Os tamanhos dos fluxos não somam o tamanho dos dados do bloco.");
+                }
+            }
+            return cabecalho;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Cabeçalho do bloco incompleto.");
+        }
+    }
+
+    private static long somar(long[] valores) {
+        long soma = 0;
+        for (long v : valores) {
+            soma += v;
+        }
+        return soma;
+    }
+}
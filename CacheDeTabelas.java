@@ -0,0 +1,136 @@
+package huffman;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+Cache LRU de tabelas de códigos, para não refazer a árvore (nem as tabelas de decodificação)
+quando o mesmo histograma, ou um quase igual, aparece de novo, como em muitas mensagens curtas
+parecidas.
+
+- Compressão: a chave é o histograma. Em blocos de até LIMITE_APROXIMADO bytes ele é antes
+  arredondado: as frequências são levadas a um total fixo e só os seus 3 bits mais
+  significativos são mantidos (os bytes presentes continuam os mesmos). A árvore é sempre
+  montada a partir do histograma arredondado, então histogramas quase iguais têm a mesma
+  chave e o resultado não depende do que já estava no cache. Blocos maiores usam o
+  histograma exato, em que a árvore custa pouco perto da codificação.
+- Descompressão: a chave são os comprimentos dos códigos; o valor é o DecodificadorDeTabela.
+
+Os caches são compartilhados pelas threads (acesso sincronizado) e guardam até CAPACIDADE
+entradas cada; as tabelas guardadas não são alteradas por quem as usa.
+ */
+class CacheDeTabelas {
+    static final int CAPACIDADE = 256;
+    static final int LIMITE_APROXIMADO = 64 * 1024;
+    // Total a que as frequências são levadas antes do arredondamento.
+    private static final long TOTAL_NORMALIZADO = 4096;
+    private static final int BITS_SIGNIFICATIVOS = 3;
+
+    private static final Map<Chave, TabelaDeCodigos> tabelas = criarLru();
+    private static final Map<Chave, DecodificadorDeTabela> decodificadores = criarLru();
+
+    /*
+    Retorna a tabela de códigos canônicos para as frequências de um bloco.
+     */
+    static TabelaDeCodigos tabelaPara(long[] frequencias, int comprimentoMaximo) {
+        long total = 0;
+        for (long f : frequencias) {
+            total += f;
+        }
+        long[] base = total <= LIMITE_APROXIMADO ? arredondar(frequencias, total) : frequencias;
+        Chave chave = new Chave(base, comprimentoMaximo);
+        synchronized (tabelas) {
+            TabelaDeCodigos tabela = tabelas.get(chave);
+            if (tabela != null) {
+                return tabela;
+            }
+        }
+        // A árvore é montada fora do bloco sincronizado: duas threads com o mesmo histograma
+        // podem montá-la ao mesmo tempo, mas o resultado é o mesmo.
+        TabelaDeCodigos tabela = CodigosCanonicos.gerarCodigos(CodigosCanonicos.calcularComprimentos(base, comprimentoMaximo));
+        synchronized (tabelas) {
+            tabelas.put(chave, tabela);
+        }
+        return tabela;
+    }
+
+    /*
+    Retorna o decodificador para os comprimentos de código de um bloco.
+     */
+    static DecodificadorDeTabela decodificadorPara(int[] comprimentos) {
+        long[] valores = new long[comprimentos.length];
+        for (int i = 0; i < comprimentos.length; i++) {
+            valores[i] = comprimentos[i];
+        }
+        Chave chave = new Chave(valores, 0);
+        synchronized (decodificadores) {
+            DecodificadorDeTabela decodificador = decodificadores.get(chave);
+            if (decodificador != null) {
+                return decodificador;
+            }
+        }
+        DecodificadorDeTabela decodificador = new DecodificadorDeTabela(CodigosCanonicos.gerarCodigos(comprimentos));
+        synchronized (decodificadores) {
+            decodificadores.put(chave, decodificador);
+        }
+        return decodificador;
+    }
+
+    /*
+    Histograma arredondado: total normalizado e só os bits mais significativos de cada frequência.
+    Um byte presente nunca fica com frequência zero.
+     */
+    static long[] arredondar(long[] frequencias, long total) {
+        long[] arredondado = new long[frequencias.length];
+        for (int i = 0; i < frequencias.length; i++) {
+            if (frequencias[i] == 0) {
+                continue;
+            }
+            long n = Math.max(1, (frequencias[i] * TOTAL_NORMALIZADO + total / 2) / total);
+            int descartados = Math.max(0, 64 - Long.numberOfLeadingZeros(n) - BITS_SIGNIFICATIVOS);
+            arredondado[i] = (n >>> descartados) << descartados;
+        }
+        return arredondado;
+    }
+
+    private static <V> Map<Chave, V> criarLru() {
+        return new LinkedHashMap<Chave, V>(CAPACIDADE, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Chave, V> maisAntiga) {
+                return size() > CAPACIDADE;
+            }
+        };
+    }
+
+    /*
+    Chave de um histograma (ou de uma tabela de comprimentos), comparada pelo conteúdo.
+     */
+    private static final class Chave {
+        private final long[] valores;
+        private final int extra;
+        private final int hash;
+
+        Chave(long[] valores, int extra) {
+            this.valores = valores;
+            this.extra = extra;
+            this.hash = 31 * Arrays.hashCode(valores) + extra;
+        }
+
+        @Override
+        public boolean equals(Object outro) {
+            if (!(outro instanceof Chave)) {
+                return false;
+            }
+            Chave chave = (Chave) outro;
+            return hash == chave.hash && extra == chave.extra && Arrays.equals(valores, chave.valores);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package huffman;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/*
+Leitura e escrita de arquivos com AsynchronousFileChannel (--assincrono), para que o disco
+trabalhe enquanto a CPU codifica ou decodifica, e vice-versa.
+
+Cada canal tem um anel de BUFFERS buffers de TAMANHO_BUFFER bytes, reciclados:
+- Leitor: as leituras dos próximos trechos do arquivo são pedidas de antemão, uma por buffer.
+  Quando o consumidor esvazia um buffer, ele volta para o fim do anel com o pedido do trecho
+  seguinte. Só espera quem pede um trecho que ainda não chegou do disco.
+- Escritor: os bytes escritos são copiados para o buffer atual; quando ele enche, a escrita é
+  pedida na sua posição do arquivo e o produtor continua no próximo buffer livre. Com todos os
+  buffers em escrita, o produtor espera o primeiro voltar (o anel é limitado).
+Os dois são canais comuns (ReadableByteChannel e WritableByteChannel), então entram no lugar
+do FileChannel no LeitorDeBits e no EscritorDeBits sem mudar a codificação.
+ */
+class CanaisAssincronos {
+    static final int TAMANHO_BUFFER = 1024 * 1024;
+    static final int BUFFERS = 4;
+
+    /*
+    Espera o resultado de uma operação, devolvendo a IOException que ela lançou.
+     */
+    private static int aguardar(Future<Integer> resultado) throws IOException {
+        try {
+            return resultado.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Leitura interrompida.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /*
+    Canal de leitura do trecho [inicio, fim) de um arquivo, com leitura antecipada.
+     */
+    static class Leitor implements ReadableByteChannel {
+        private final AsynchronousFileChannel canal;
+        private final long fim;
+        private final ArrayDeque<Pedido> anel = new ArrayDeque<>(BUFFERS);
+        private long proximaPosicao;  // Início do próximo trecho a ser pedido.
+        private ByteBuffer atual;     // Buffer sendo consumido (null antes do primeiro).
+
+        // Leitura pedida de um trecho do arquivo para um buffer do anel.
+        private static final class Pedido {
+            final ByteBuffer buffer;
+            final long posicao;
+            final Future<Integer> resultado;
+
+            Pedido(ByteBuffer buffer, long posicao, Future<Integer> resultado) {
+                this.buffer = buffer;
+                this.posicao = posicao;
+                this.resultado = resultado;
+            }
+        }
+
+        /*
+        Abre o arquivo e já pede a leitura dos primeiros trechos a partir de 'inicio'.
+        Com 'fim' negativo, lê até o fim do arquivo.
+         */
+        Leitor(Path caminho, long inicio, long fim) throws IOException {
+            this.canal = AsynchronousFileChannel.open(caminho, StandardOpenOption.READ);
+            this.fim = fim < 0 ? canal.size() : Math.min(fim, canal.size());
+            this.proximaPosicao = inicio;
+            for (int i = 0; i < BUFFERS && proximaPosicao < this.fim; i++) {
+                pedir(ByteBuffer.allocateDirect(TAMANHO_BUFFER));
+            }
+        }
+
+        /*
+        Pede a leitura do próximo trecho no 'buffer', se ainda houver o que ler.
+         */
+        private void pedir(ByteBuffer buffer) {
+            if (proximaPosicao >= fim) {
+                return;
+            }
+            buffer.clear().limit((int) Math.min(buffer.capacity(), fim - proximaPosicao));
+            anel.add(new Pedido(buffer, proximaPosicao, canal.read(buffer, proximaPosicao)));
+            proximaPosicao += buffer.limit();
+        }
+
+        /*
+        Espera o trecho do pedido. Uma leitura curta é completada aqui mesmo; se o arquivo
+        acabar antes (ele diminuiu depois de aberto), a leitura termina ali.
+         */
+        private ByteBuffer receber(Pedido pedido) throws IOException {
+            int lidos = aguardar(pedido.resultado);
+            while (lidos >= 0 && pedido.buffer.hasRemaining()) {
+                lidos = aguardar(canal.read(pedido.buffer, pedido.posicao + pedido.buffer.position()));
+            }
+            return pedido.buffer.flip();
+        }
+
+        @Override
+        public int read(ByteBuffer destino) throws IOException {
+            while (atual == null || !atual.hasRemaining()) {
+                if (atual != null) {
+                    pedir(atual);
+                }
+                Pedido pedido = anel.poll();
+                if (pedido == null) {
+                    atual = null;
+                    return -1;
+                }
+                atual = receber(pedido);
+                if (!atual.hasRemaining()) {
+                    anel.clear();
+                    return -1;
+                }
+            }
+            int n = Math.min(destino.remaining(), atual.remaining());
+            destino.put(atual.slice(atual.position(), n));
+            atual.position(atual.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        /*
+        Fecha o arquivo; leituras ainda pendentes são canceladas pelo próprio canal.
+         */
+        @Override
+        public void close() throws IOException {
+            anel.clear();
+            canal.close();
+        }
+    }
+
+    /*
+    Canal de escrita em um arquivo a partir de 'inicio', com escritas em segundo plano.
+    Os erros de uma escrita aparecem na próxima chamada a write ou no close, que só retorna
+    depois que todos os buffers foram gravados.
+     */
+    static class Escritor implements WritableByteChannel {
+        private final AsynchronousFileChannel canal;
+        private final ArrayBlockingQueue<ByteBuffer> livres = new ArrayBlockingQueue<>(BUFFERS);
+        private long posicao;
+        private ByteBuffer atual;
+        private volatile Throwable erro;
+        private boolean aberto = true;
+
+        /*
+        Abre (ou cria) o arquivo para escrita. Com 'truncar', o conteúdo anterior é descartado.
+         */
+        Escritor(Path caminho, long inicio, boolean truncar) throws IOException {
+            this.canal = truncar
+                    ? AsynchronousFileChannel.open(caminho, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                    : AsynchronousFileChannel.open(caminho, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            this.posicao = inicio;
+            for (int i = 0; i < BUFFERS; i++) {
+                livres.add(ByteBuffer.allocateDirect(TAMANHO_BUFFER));
+            }
+        }
+
+        // Escrita de um buffer cheio, que o devolve aos livres quando termina.
+        private final class Escrita implements CompletionHandler<Integer, Void> {
+            private final ByteBuffer buffer;
+            private final long posicao;
+
+            Escrita(ByteBuffer buffer, long posicao) {
+                this.buffer = buffer;
+                this.posicao = posicao;
+            }
+
+            void iniciar() {
+                canal.write(buffer, posicao + buffer.position(), null, this);
+            }
+
+            @Override
+            public void completed(Integer escritos, Void anexo) {
+                if (buffer.hasRemaining()) {
+                    iniciar();
+                } else {
+                    livres.add(buffer.clear());
+                }
+            }
+
+            @Override
+            public void failed(Throwable excecao, Void anexo) {
+                erro = excecao;
+                livres.add(buffer.clear());
+            }
+        }
+
+        private void verificarErro() throws IOException {
+            Throwable e = erro;
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e != null) {
+                throw new IOException(e);
+            }
+        }
+
+        /*
+        Próximo buffer livre, esperando uma escrita terminar se todos estiverem em uso.
+         */
+        private ByteBuffer proximoLivre() throws IOException {
+            try {
+                return livres.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Escrita interrompida.");
+            }
+        }
+
+        /*
+        Pede a escrita do buffer atual na sua posição do arquivo.
+         */
+        private void enviar() {
+            atual.flip();
+            Escrita escrita = new Escrita(atual, posicao);
+            posicao += atual.remaining();
+            atual = null;
+            escrita.iniciar();
+        }
+
+        @Override
+        public int write(ByteBuffer origem) throws IOException {
+            verificarErro();
+            int escritos = origem.remaining();
+            while (origem.hasRemaining()) {
+                if (atual == null) {
+                    atual = proximoLivre();
+                }
+                int n = Math.min(origem.remaining(), atual.remaining());
+                atual.put(origem.slice(origem.position(), n));
+                origem.position(origem.position() + n);
+                if (!atual.hasRemaining()) {
+                    enviar();
+                }
+            }
+            return escritos;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return aberto;
+        }
+
+        /*
+        Envia o que falta, espera todas as escritas (todos os buffers de volta) e fecha o arquivo.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!aberto) {
+                return;
+            }
+            aberto = false;
+            try {
+                if (atual != null && atual.position() > 0) {
+                    enviar();
+                } else if (atual != null) {
+                    livres.add(atual);
+                    atual = null;
+                }
+                for (int i = 0; i < BUFFERS; i++) {
+                    proximoLivre();
+                }
+            } finally {
+                canal.close();
+            }
+            verificarErro();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/*
+Cliente do Servidor.
+- --servidor[=endereço] em qualquer modo: o comando é enviado a um servidor já no ar, em vez
+  de ser executado nesta JVM, e a resposta é mostrada como se ele tivesse rodado aqui. Com "-"
+  no lugar de um dos arquivos, é o cliente que lê a entrada e grava o resultado, e os dados
+  vão e voltam pelo socket (ver o protocolo em Servidor).
+- Modo 'r' (lote): cada linha de um arquivo de comandos (ou da entrada padrão) é um comando,
+  como na linha de comando, e todos vão pela mesma conexão. Um script que comprime muitos
+  arquivos inicia uma JVM só, em vez de uma por arquivo.
+Os caminhos dos arquivos vão como absolutos, já que o servidor pode estar em outro diretório.
+ */
+class Cliente {
+    // Opções cujo valor é o caminho de um arquivo.
+    private static final Set<String> OPCOES_DE_CAMINHO = Set.of("dicionario", "metricas");
+
+    /*
+    Envia o comando de 'args' ao servidor em 'endereco'. Retorna true se ele foi concluído.
+     */
+    static boolean executar(String endereco, String[] args) {
+        List<String> arquivos = new ArrayList<>();
+        List<String> argumentos = argumentosDoPedido(args, arquivos);
+        boolean comDados = arquivos.size() == 2 && arquivos.contains("-");
+        // Com os dados na saída padrão, as mensagens vão para a saída de erro, como sem servidor.
+        PrintStream mensagens = comDados && arquivos.get(1).equals("-") ? System.err : System.out;
+
+        try {
+            // 1. A entrada é lida antes de conectar: num pipe de dois clientes, o segundo só
+            //    abre a conexão quando o primeiro já terminou de escrever.
+            byte[] dados = null;
+            if (comDados) {
+                dados = arquivos.get(0).equals("-") ? System.in.readAllBytes() : Files.readAllBytes(Paths.get(arquivos.get(0)));
+                argumentos.add("--tamanho=" + dados.length);
+                argumentos.add("-");
+                argumentos.add("-");
+            } else {
+                for (String arquivo : arquivos) {
+                    argumentos.add(Paths.get(arquivo).toAbsolutePath().toString());
+                }
+            }
+
+            // 2. Pedido e resposta.
+            try (SocketChannel conexao = SocketChannel.open(Servidor.endereco(endereco))) {
+                return enviar(Channels.newOutputStream(conexao), respostas(conexao), argumentos, dados, comDados ? arquivos.get(1) : null, mensagens);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao usar o servidor em " + endereco + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /*
+    Modo 'r': envia cada linha do arquivo de comandos (o primeiro posicional, ou "-" para a
+    entrada padrão) como um pedido. Os argumentos de uma linha são separados por tabulação,
+    se houver alguma, ou por espaços; linhas vazias e começadas por '#' são ignoradas.
+    Retorna true se todos os comandos foram concluídos.
+     */
+    static boolean executarLote(String endereco, Opcoes opcoes) {
+        if (opcoes.posicionais.size() != 1) {
+            System.err.println("Uso: java -jar huffman.jar r [--servidor=<socket>] <arquivo de comandos ou ->");
+            return false;
+        }
+        try {
+            opcoes.verificar(Set.of("servidor"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+        String origem = opcoes.posicionais.get(0);
+        int total = 0;
+        int falhas = 0;
+        try (BufferedReader comandos = new BufferedReader(origem.equals("-")
+                     ? new InputStreamReader(System.in, StandardCharsets.UTF_8) : Files.newBufferedReader(Paths.get(origem)));
+             SocketChannel conexao = SocketChannel.open(Servidor.endereco(endereco))) {
+            OutputStream pedidos = Channels.newOutputStream(conexao);
+            InputStream respostas = respostas(conexao);
+            String linha;
+            while ((linha = comandos.readLine()) != null) {
+                linha = linha.strip();
+                if (linha.isEmpty() || linha.startsWith("#")) {
+                    continue;
+                }
+                total++;
+                List<String> arquivos = new ArrayList<>();
+                List<String> argumentos = argumentosDoPedido(linha.split(linha.indexOf('\t') >= 0 ? "\t" : "\\s+"), arquivos);
+                if (arquivos.contains("-")) {
+                    System.err.println("No lote, os comandos não podem usar a entrada ou a saída padrão: " + linha);
+                    falhas++;
+                    continue;
+                }
+                for (String arquivo : arquivos) {
+                    argumentos.add(Paths.get(arquivo).toAbsolutePath().toString());
+                }
+                if (!enviar(pedidos, respostas, argumentos, null, null, System.out)) {
+                    falhas++;
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao usar o servidor em " + endereco + ": " + e.getMessage());
+            return false;
+        }
+        if (falhas > 0) {
+            System.err.println(falhas + " de " + total + " comandos não foram concluídos.");
+        }
+        return falhas == 0;
+    }
+
+    /*
+    O modo e as opções de 'args' (sem --servidor); os arquivos vão para 'arquivos'.
+    Os valores das opções que são caminhos (--dicionario, --metricas) vão como absolutos, como os
+    arquivos, e --diretorio-do-cliente diz ao servidor de onde partem os caminhos relativos que
+    ele ainda encontrar (os de uma lista de arquivos do modo 'p').
+     */
+    private static List<String> argumentosDoPedido(String[] args, List<String> arquivos) {
+        List<String> argumentos = new ArrayList<>();
+        argumentos.add(args.length > 0 ? args[0] : "");
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--servidor") || arg.startsWith("--servidor=")) {
+                continue;
+            }
+            if (arg.startsWith("--") && arg.length() > 2) {
+                argumentos.add(comCaminhoAbsoluto(arg));
+            } else {
+                arquivos.add(arg);
+            }
+        }
+        argumentos.add("--" + Configuracao.DIRETORIO_DO_CLIENTE + "=" + Paths.get("").toAbsolutePath());
+        return argumentos;
+    }
+
+    /*
+    Torna absoluto o valor de uma opção de caminho ("-", a saída padrão, fica como está).
+     */
+    private static String comCaminhoAbsoluto(String arg) {
+        int igual = arg.indexOf('=');
+        if (igual < 0) {
+            return arg;
+        }
+        String nome = arg.substring(2, igual);
+        String valor = arg.substring(igual + 1);
+        if (!OPCOES_DE_CAMINHO.contains(nome) || valor.isEmpty() || valor.equals("-")) {
+            return arg;
+        }
+        return "--" + nome + "=" + Paths.get(valor).toAbsolutePath();
+    }
+
+    /*
+    Leitor das respostas de uma conexão. O servidor só responde depois de cada pedido, então o
+    mesmo leitor (e o seu buffer) serve para todos os pedidos da conexão.
+     */
+    private static InputStream respostas(SocketChannel conexao) {
+        return new BufferedInputStream(Channels.newInputStream(conexao), LeitorDeBits.TAMANHO_BUFFER);
+    }
+
+    /*
+    Envia um pedido e mostra a resposta: as mensagens do comando e, se 'caminhoSaida' não
+    for null, o resultado dos 'dados', gravado nele (ou na saída padrão, com "-").
+    Retorna true se o comando foi concluído.
+     */
+    private static boolean enviar(OutputStream pedido, InputStream resposta, List<String> argumentos, byte[] dados, String caminhoSaida,
+                                  PrintStream mensagens) throws IOException {
+        // 1. Pedido: a linha de argumentos e os dados, se houver.
+        pedido.write((String.join("\t", argumentos) + "\n").getBytes(StandardCharsets.UTF_8));
+        if (dados != null) {
+            pedido.write(dados);
+        }
+        pedido.flush();
+
+        // 2. Resposta: as mensagens do comando, o status e o resultado.
+        String linha;
+        while ((linha = Servidor.lerLinha(resposta)) != null) {
+            if (linha.startsWith("o ")) {
+                mensagens.println(linha.substring(2));
+            } else if (linha.startsWith("e ")) {
+                System.err.println(linha.substring(2));
+            } else if (linha.startsWith("fim ")) {
+                String[] campos = linha.split(" ");
+                boolean concluido = Integer.parseInt(campos[1]) == 0;
+                long tamanho = Long.parseLong(campos[2]);
+                if (concluido && caminhoSaida != null) {
+                    gravarResultado(resposta, tamanho, caminhoSaida);
+                }
+                return concluido;
+            }
+        }
+        throw new IOException("o servidor fechou a conexão sem responder.");
+    }
+
+    /*
+    Copia os 'tamanho' bytes do resultado para a saída padrão ou para o arquivo de saída.
+     */
+    private static void gravarResultado(InputStream resposta, long tamanho, String caminhoSaida) throws IOException {
+        OutputStream destino = caminhoSaida.equals("-") ? System.out : Files.newOutputStream(Paths.get(caminhoSaida));
+        try {
+            byte[] pedaco = new byte[LeitorDeBits.TAMANHO_BUFFER];
+            long restantes = tamanho;
+            while (restantes > 0) {
+                int n = resposta.read(pedaco, 0, (int) Math.min(pedaco.length, restantes));
+                if (n < 0) {
+                    throw new IOException("resultado incompleto.");
+                }
+                destino.write(pedaco, 0, n);
+                restantes -= n;
+            }
+            destino.flush();
+        } finally {
+            if (destino != System.out) {
+                destino.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package huffman;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/*
+Compressão e descompressão em uma única passada, com a ArvoreAdaptativa (formato versão 5):
+    'H' 'U' 'F' 0x05 + códigos adaptativos, terminados pelo código de FIM.
+A entrada é lida uma só vez, sem histograma e sem cabeçalho de códigos, e a memória é
+constante: serve para pipes e sockets, em que não dá para ler os dados duas vezes.
+Para não reter a saída, sempre que a entrada fica sem dados disponíveis os bytes já
+completos são enviados ao destino (a latência não depende do tamanho da entrada).
+ */
+class CodificadorAdaptativo {
+    private static final int TAMANHO_PEDACO = 64 * 1024;
+    // Maior código possível: caminho de até 256 níveis + caractere novo.
+    private static final int MAIOR_CODIGO = 256 + ArvoreAdaptativa.BITS_SIMBOLO;
+
+    private long bytesOriginais;
+    private long bytesComprimidos;
+
+    /*
+    Comprime toda a 'entrada' para a 'saida'. Nenhum dos dois é fechado.
+     */
+    void comprimir(InputStream entrada, OutputStream saida) throws IOException {
+        ArvoreAdaptativa arvore = new ArvoreAdaptativa();
+        ByteBuffer magica = ByteBuffer.allocate(FormatoHuff.TAMANHO_MAGICA);
+        FormatoHuff.escreverMagica(magica, FormatoHuff.VERSAO_ADAPTATIVA);
+        EscritorDeBits escritor = new EscritorDeBits(Channels.newChannel(saida));
+        escritor.escreverBytes(magica.array(), 0, magica.position());
+
+        byte[] pedaco = new byte[TAMANHO_PEDACO];
+        int lidos;
+        while ((lidos = entrada.read(pedaco)) >= 0) {
+            for (int i = 0; i < lidos; i++) {
+                arvore.codificar(pedaco[i] & 0xFF, escritor);
+            }
+            bytesOriginais += lidos;
+            if (entrada.available() == 0) {
+                // A entrada vai esperar por mais dados: entrega o que já está pronto.
+                escritor.descarregarBytesCompletos();
+                saida.flush();
+            }
+        }
+        arvore.codificar(ArvoreAdaptativa.FIM, escritor);
+        escritor.close();
+        saida.flush();
+        bytesComprimidos = FormatoHuff.TAMANHO_MAGICA + (escritor.getBitsEscritos() + 7) / 8;
+    }
+
+    /*
+    Descomprime da 'entrada' (que começa no número mágico) para a 'saida', até o código de FIM.
+    Nenhum dos dois é fechado.
+     */
+    void descomprimir(InputStream entrada, OutputStream saida) throws IOException {
+        byte[] magica = entrada.readNBytes(FormatoHuff.TAMANHO_MAGICA);
+        if (magica.length < FormatoHuff.TAMANHO_MAGICA || FormatoHuff.detectarVersao(ByteBuffer.wrap(magica)) != FormatoHuff.VERSAO_ADAPTATIVA) {
+            throw new IOException("A entrada não está no formato adaptativo (versão " + FormatoHuff.VERSAO_ADAPTATIVA + ").");
+        }
+        ArvoreAdaptativa arvore = new ArvoreAdaptativa();
+        LeitorDeBits leitor = new LeitorDeBits(Channels.newChannel(entrada), ByteBuffer.allocate(LeitorDeBits.TAMANHO_BUFFER).flip());
+        byte[] pedaco = new byte[TAMANHO_PEDACO];
+        int preenchidos = 0;
+        while (true) {
+            // Antes de um código que talvez precise esperar pela entrada, entrega o que já foi decodificado.
+            if (preenchidos > 0 && leitor.bitsSemBloquear() < MAIOR_CODIGO && entrada.available() == 0) {
+                saida.write(pedaco, 0, preenchidos);
+                saida.flush();
+                bytesOriginais += preenchidos;
+                preenchidos = 0;
+            }
+            int s = arvore.decodificar(leitor);
+            if (s == ArvoreAdaptativa.FIM) {
+                break;
+            }
+            pedaco[preenchidos++] = (byte) s;
+            if (preenchidos == pedaco.length) {
+                saida.write(pedaco, 0, preenchidos);
+                bytesOriginais += preenchidos;
+                preenchidos = 0;
+            }
+        }
+        saida.write(pedaco, 0, preenchidos);
+        saida.flush();
+        bytesOriginais += preenchidos;
+    }
+
+    /*
+    Número de bytes sem compressão (lidos na compressão, escritos na descompressão).
+     */
+    long getBytesOriginais() {
+        return bytesOriginais;
+    }
+
+    /*
+    Número de bytes comprimidos escritos (só na compressão).
+     */
+    long getBytesComprimidos() {
+        return bytesComprimidos;
+    }
+}
@@ -0,0 +1,381 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+Comprime e descomprime um bloco inteiro que está em memória.
+Cada bloco tem o seu próprio histograma, a sua própria árvore (uma ArvoreCompacta,
+sem objetos por nó) e a sua própria tabela de códigos canônicos,
+por isso blocos diferentes podem ser processados em paralelo. As tabelas vêm do
+CacheDeTabelas, que evita montar de novo a árvore de histogramas já vistos.
+
+Dados incompressíveis (já comprimidos, cifrados) são armazenados como estão, em um bloco
+TIPO_ARMAZENADO, quando a compressão economizaria menos do que 'economiaMinima' por cento
+do bloco (--economia-minima). A entropia do histograma decide isso antes de montar a árvore
+nos casos claros; nos outros vale o tamanho exato do bloco, calculado antes de codificar.
+
+Com transformações (--transformacoes, ver Transformacoes), o bloco é comprimido depois das
+etapas e embrulhado em um bloco TIPO_TRANSFORMADO, que a descompressão desfaz sozinha.
+ */
+class CodificadorDeBloco {
+
+    /*
+    Comprime 'quantidade' bytes de 'dados' a partir de 'inicio'.
+    Retorna um buffer (pronto para leitura) com o cabeçalho do bloco seguido dos dados comprimidos.
+     */
+    static ByteBuffer comprimir(byte[] dados, int inicio, int quantidade, int comprimentoMaximo) throws IOException {
+        return comprimir(dados, inicio, quantidade, comprimentoMaximo, 1);
+    }
+
+    /*
+    Igual ao método acima; com 'fluxos' > 1 os códigos são distribuídos em vários fluxos de
+    bits intercalados (bloco TIPO_INTERCALADO, ver FluxosIntercalados), que decodificam mais rápido.
+     */
+    static ByteBuffer comprimir(byte[] dados, int inicio, int quantidade, int comprimentoMaximo, int fluxos) throws IOException {
+        return comprimir(dados, inicio, quantidade, comprimentoMaximo, fluxos, Configuracao.ECONOMIA_MINIMA_PADRAO);
+    }
+
+    /*
+    Igual ao método acima; se a compressão não economizar 'economiaMinima' por cento do
+    bloco, ele é armazenado sem compressão (TIPO_ARMAZENADO).
+     */
+    static ByteBuffer comprimir(byte[] dados, int inicio, int quantidade, int comprimentoMaximo, int fluxos, int economiaMinima) throws IOException {
+        // 1. Histograma do bloco. Se nem a entropia economiza o suficiente, nenhuma árvore
+        //    economizaria: o bloco é armazenado sem montá-la.
+        long[] frequencias = Histograma.contar(dados, inicio, inicio + quantidade);
+        long tamanhoUtil = tamanhoUtil(quantidade, economiaMinima);
+        if (tamanhoMinimo(frequencias, quantidade) > tamanhoUtil) {
+            return armazenar(dados, inicio, quantidade);
+        }
+
+        // 2. Comprimentos e códigos canônicos (do cache, se o histograma já foi visto).
+        TabelaDeCodigos tabela = CacheDeTabelas.tabelaPara(frequencias, comprimentoMaximo);
+        int[] comprimentos = tabela.comprimentos;
+        long tamanhoDados = (tabela.bitsCodificados(frequencias) + 7) / 8;
+        CabecalhoDeBloco cabecalho = new CabecalhoDeBloco(CabecalhoDeBloco.TIPO_HUFFMAN, quantidade, comprimentos, tamanhoDados);
+
+        // 3. Tamanho exato (com fluxos intercalados, o de um fluxo só, quase igual): se não
+        //    economiza o suficiente, o bloco também é armazenado, sem ser codificado.
+        if (tamanhoDoBloco(cabecalho) > tamanhoUtil) {
+            return armazenar(dados, inicio, quantidade);
+        }
+        if (fluxos > 1) {
+            return comprimirIntercalado(ByteBuffer.wrap(dados, inicio, quantidade), comprimentos, tabela, fluxos);
+        }
+
+        // 4. Cabeçalho + dados, escritos direto em um buffer do tamanho exato.
+        return escreverBloco(cabecalho, dados, inicio, tabela);
+    }
+
+    /*
+    Comprime com uma tabela de códigos já pronta, a tabela compartilhada de um Pacote, que
+    precisa ter um código para cada byte presente em 'dados' (ver tamanhoComTabela).
+    O cabeçalho do bloco (TIPO_TABELA_COMPARTILHADA) não traz a tabela.
+     */
+    static ByteBuffer comprimirComTabela(byte[] dados, int inicio, int quantidade, TabelaDeCodigos tabela, long[] frequencias) throws IOException {
+        long tamanhoDados = (tabela.bitsCodificados(frequencias) + 7) / 8;
+        return escreverBloco(new CabecalhoDeBloco(CabecalhoDeBloco.TIPO_TABELA_COMPARTILHADA, quantidade, null, tamanhoDados), dados, inicio, tabela);
+    }
+
+    /*
+    Comprime com uma tabela por contexto de ordem 1 (bloco TIPO_CONTEXTO, ver ModeloDeContexto).
+    Se as tabelas por contexto não compensarem o seu espaço no cabeçalho, o bloco é
+    comprimido normalmente, com uma tabela só.
+     */
+    static ByteBuffer comprimirComContexto(byte[] dados, int inicio, int quantidade, int comprimentoMaximo) throws IOException {
+        return comprimirComContexto(dados, inicio, quantidade, comprimentoMaximo, Configuracao.ECONOMIA_MINIMA_PADRAO);
+    }
+
+    /*
+    Igual ao método acima; se nem um nem outro economizar 'economiaMinima' por cento do
+    bloco, ele é armazenado sem compressão.
+     */
+    static ByteBuffer comprimirComContexto(byte[] dados, int inicio, int quantidade, int comprimentoMaximo, int economiaMinima) throws IOException {
+        // 1. Modelo e tamanho dos dados com ele.
+        long[] bits = new long[1];
+        ModeloDeContexto modelo = ModeloDeContexto.construir(dados, inicio, quantidade, comprimentoMaximo, bits);
+        long tamanhoDados = (bits[0] + 7) / 8;
+        CabecalhoDeBloco cabecalho = CabecalhoDeBloco.comContexto(quantidade, modelo, tamanhoDados);
+        ByteBuffer saida = ByteBuffer.allocate(cabecalho.tamanhoMaximo() + (int) tamanhoDados);
+        cabecalho.escrever(saida);
+
+        // 2. Compara com o tamanho do bloco de uma tabela só, calculado pelo histograma.
+        long[] frequencias = Histograma.contar(dados, inicio, inicio + quantidade);
+        TabelaDeCodigos tabela = CacheDeTabelas.tabelaPara(frequencias, comprimentoMaximo);
+        long tamanhoDadosSimples = (tabela.bitsCodificados(frequencias) + 7) / 8;
+        CabecalhoDeBloco simples = new CabecalhoDeBloco(CabecalhoDeBloco.TIPO_HUFFMAN, quantidade, tabela.comprimentos, tamanhoDadosSimples);
+        long tamanhoSimples = tamanhoDoBloco(simples);
+        if (Math.min(tamanhoSimples, saida.position() + tamanhoDados) > tamanhoUtil(quantidade, economiaMinima)) {
+            return armazenar(dados, inicio, quantidade);
+        }
+        if (tamanhoSimples <= saida.position() + tamanhoDados) {
+            return escreverBloco(simples, dados, inicio, tabela);
+        }
+
+        // 3. Códigos: a tabela muda a cada caractere, pelo caractere anterior (sem alocar nada no laço).
+        long[][] codigos = new long[ModeloDeContexto.CONTEXTOS][];
+        int[][] comprimentos = new int[ModeloDeContexto.CONTEXTOS][];
+        for (int contexto = 0; contexto < ModeloDeContexto.CONTEXTOS; contexto++) {
+            TabelaDeCodigos doContexto = modelo.tabelas[modelo.tabelaDoContexto[contexto]];
+            codigos[contexto] = doContexto.codigos;
+            comprimentos[contexto] = doContexto.comprimentos;
+        }
+        int anterior = 0;
+        try (EscritorDeBits escritor = new EscritorDeBits(saida)) {
+            for (int i = inicio, fim = inicio + quantidade; i < fim; i++) {
+                int simbolo = dados[i] & 0xFF;
+                escritor.escrever(codigos[anterior][simbolo], comprimentos[anterior][simbolo]);
+                anterior = simbolo;
+            }
+        }
+        return saida.flip();
+    }
+
+    /*
+    Aplica as 'etapas' (ver Transformacoes) e comprime o resultado: com tabelas por contexto,
+    se 'contexto', ou com 'fluxos' fluxos. O bloco transformado só é usado se ficar menor do
+    que o bloco de uma tabela só sem transformação (calculado pelo histograma); senão, ou se
+    os bytes transformados forem incompressíveis, o bloco é comprimido sem as etapas.
+     */
+    static ByteBuffer comprimirTransformado(byte[] dados, int inicio, int quantidade, int[] etapas, int comprimentoMaximo, int fluxos,
+                                            boolean contexto, int economiaMinima) throws IOException {
+        // 1. Etapas, nos buffers da thread, e o bloco interno com os bytes transformados.
+        Transformacoes transformacoes = Transformacoes.daThread();
+        long[] parametros = new long[etapas.length];
+        int tamanho = transformacoes.aplicar(etapas, dados, inicio, quantidade, parametros);
+        byte[] transformado = transformacoes.resultado();
+        ByteBuffer interno = contexto
+                ? comprimirComContexto(transformado, 0, tamanho, comprimentoMaximo, 0)
+                : comprimir(transformado, 0, tamanho, comprimentoMaximo, fluxos, 0);
+        CabecalhoDeBloco cabecalho = CabecalhoDeBloco.transformado(quantidade, etapas, parametros, interno.remaining());
+
+        // 2. Compara com o bloco sem as etapas.
+        long[] frequencias = Histograma.contar(dados, inicio, inicio + quantidade);
+        TabelaDeCodigos tabela = CacheDeTabelas.tabelaPara(frequencias, comprimentoMaximo);
+        long tamanhoSimples = tamanhoDoBloco(new CabecalhoDeBloco(CabecalhoDeBloco.TIPO_HUFFMAN, quantidade, tabela.comprimentos,
+                (tabela.bitsCodificados(frequencias) + 7) / 8));
+        long tamanhoTransformado = tamanhoDoBloco(cabecalho);
+        if (interno.get(interno.position()) == CabecalhoDeBloco.TIPO_ARMAZENADO || tamanhoTransformado >= tamanhoSimples
+                || tamanhoTransformado > tamanhoUtil(quantidade, economiaMinima)) {
+            return contexto
+                    ? comprimirComContexto(dados, inicio, quantidade, comprimentoMaximo, economiaMinima)
+                    : comprimir(dados, inicio, quantidade, comprimentoMaximo, fluxos, economiaMinima);
+        }
+
+        // 3. Cabeçalho com as etapas + o bloco interno.
+        ByteBuffer saida = ByteBuffer.allocate((int) tamanhoTransformado);
+        cabecalho.escrever(saida);
+        return saida.put(interno).flip();
+    }
+
+    /*
+    Comprime com a tabela de um dicionário (bloco TIPO_DICIONARIO): sem histograma para a
+    árvore, sem árvore e sem tabela no cabeçalho. O dicionário tem código para todos os bytes.
+     */
+    static ByteBuffer comprimirComDicionario(byte[] dados, int inicio, int quantidade, Dicionario dicionario) throws IOException {
+        return comprimirComDicionario(dados, inicio, quantidade, dicionario, Configuracao.ECONOMIA_MINIMA_PADRAO);
+    }
+
+    /*
+    Igual ao método acima; se a tabela do dicionário não economizar 'economiaMinima' por cento
+    do bloco (dados muito diferentes das amostras), ele é armazenado sem compressão.
+     */
+    static ByteBuffer comprimirComDicionario(byte[] dados, int inicio, int quantidade, Dicionario dicionario, int economiaMinima) throws IOException {
+        long[] frequencias = Histograma.contar(dados, inicio, inicio + quantidade);
+        long tamanhoDados = (dicionario.tabela.bitsCodificados(frequencias) + 7) / 8;
+        CabecalhoDeBloco cabecalho = CabecalhoDeBloco.comDicionario(quantidade, dicionario.id, tamanhoDados);
+        if (tamanhoDoBloco(cabecalho) > tamanhoUtil(quantidade, economiaMinima)) {
+            return armazenar(dados, inicio, quantidade);
+        }
+        return escreverBloco(cabecalho, dados, inicio, dicionario.tabela);
+    }
+
+    /*
+    Bloco armazenado (TIPO_ARMAZENADO): um cabeçalho de poucos bytes e o original como está.
+     */
+    static ByteBuffer armazenar(byte[] dados, int inicio, int quantidade) {
+        ByteBuffer saida = ByteBuffer.allocate(CabecalhoDeBloco.tamanhoArmazenado(quantidade) + quantidade);
+        CabecalhoDeBloco.armazenado(quantidade).escrever(saida);
+        return saida.put(dados, inicio, quantidade).flip();
+    }
+
+    /*
+    Maior tamanho (cabeçalho + dados) com que um bloco de 'quantidade' bytes ainda economiza
+    'economiaMinima' por cento; acima dele, o bloco é armazenado.
+     */
+    static long tamanhoUtil(long quantidade, int economiaMinima) {
+        return quantidade - quantidade / 100 * economiaMinima - quantidade % 100 * economiaMinima / 100;
+    }
+
+    /*
+    Limite inferior, em bytes, para os dados codificados com qualquer tabela de Huffman:
+    a entropia do histograma, calculada sem montar a árvore.
+     */
+    static long tamanhoMinimo(long[] frequencias, long quantidade) {
+        return (long) (quantidade * Histograma.entropia(frequencias) / 8);
+    }
+
+    /*
+    Tamanho total (cabeçalho + dados) do bloco descrito por 'cabecalho'.
+     */
+    static long tamanhoDoBloco(CabecalhoDeBloco cabecalho) {
+        ByteBuffer rascunho = ByteBuffer.allocate(cabecalho.tamanhoMaximo());
+        cabecalho.escrever(rascunho);
+        return rascunho.position() + cabecalho.tamanhoDados;
+    }
+
+    /*
+    Escolhe o decodificador de um bloco pelo seu tipo: a tabela do próprio bloco (do
+    CacheDeTabelas), a tabela compartilhada do pacote ou a do dicionário, conferindo o id.
+    'compartilhado' e 'dicionario' podem ser null quando não existem.
+     */
+    static DecodificadorDeTabela decodificadorPara(CabecalhoDeBloco cabecalho, DecodificadorDeTabela compartilhado, Dicionario dicionario) throws IOException {
+        switch (cabecalho.tipo) {
+            case CabecalhoDeBloco.TIPO_TABELA_COMPARTILHADA:
+                if (compartilhado == null) {
+                    throw new IOException("O bloco usa uma tabela compartilhada, que só existe dentro de um pacote.");
+                }
+                return compartilhado;
+            case CabecalhoDeBloco.TIPO_DICIONARIO:
+                if (dicionario == null) {
+                    throw new IOException("O bloco foi comprimido com um dicionário: informe-o com --dicionario=arquivo.");
+                }
+                if (dicionario.id != cabecalho.idDicionario) {
+                    throw new IOException(String.format("O bloco foi comprimido com outro dicionário (id %08x, informado %08x).",
+                            cabecalho.idDicionario, dicionario.id));
+                }
+                return dicionario.decodificador;
+            case CabecalhoDeBloco.TIPO_CONTEXTO:
+                throw new IOException("O bloco usa tabelas por contexto, que não podem ser lidas neste formato.");
+            case CabecalhoDeBloco.TIPO_ARMAZENADO:
+                throw new IOException("O bloco está armazenado sem compressão e não tem tabela de códigos.");
+            case CabecalhoDeBloco.TIPO_TRANSFORMADO:
+                throw new IOException("O bloco tem transformações, que não podem ser lidas neste formato.");
+            default:
+                return CacheDeTabelas.decodificadorPara(cabecalho.comprimentos);
+        }
+    }
+
+    /*
+    Tamanho (cabeçalho + dados) do bloco que comprimirComTabela geraria para as 'frequencias',
+    ou -1 se a tabela não tem código para algum dos bytes.
+     */
+    static long tamanhoComTabela(long[] frequencias, TabelaDeCodigos tabela) {
+        for (int i = 0; i < 256; i++) {
+            if (frequencias[i] > 0 && tabela.comprimentos[i] == 0) {
+                return -1;
+            }
+        }
+        long quantidade = 0;
+        for (long f : frequencias) {
+            quantidade += f;
+        }
+        long tamanhoDados = (tabela.bitsCodificados(frequencias) + 7) / 8;
+        return 1 + FormatoHuff.tamanhoVarLong(quantidade) + FormatoHuff.tamanhoVarLong(tamanhoDados) + tamanhoDados;
+    }
+
+    /*
+    Escreve o cabeçalho e os códigos de 'cabecalho.tamanhoOriginal' bytes de 'dados' em um
+    buffer do tamanho exato.
+     */
+    private static ByteBuffer escreverBloco(CabecalhoDeBloco cabecalho, byte[] dados, int inicio, TabelaDeCodigos tabela) throws IOException {
+        ByteBuffer saida = ByteBuffer.allocate(cabecalho.tamanhoMaximo() + (int) cabecalho.tamanhoDados);
+        cabecalho.escrever(saida);
+        long[] codigos = tabela.codigos;
+        int[] comprimentos = tabela.comprimentos;
+        int fim = inicio + (int) cabecalho.tamanhoOriginal;
+        try (EscritorDeBits escritor = new EscritorDeBits(saida)) {
+            for (int i = inicio; i < fim; i++) {
+                int simbolo = dados[i] & 0xFF;
+                escritor.escrever(codigos[simbolo], comprimentos[simbolo]);
+            }
+        }
+        return saida.flip();
+    }
+
+    /*
+    Cabeçalho + 'fluxos' fluxos intercalados, cada um escrito na sua fatia do buffer de saída.
+     */
+    private static ByteBuffer comprimirIntercalado(ByteBuffer dados, int[] comprimentos, TabelaDeCodigos tabela, int fluxos) throws IOException {
+        ByteBuffer[] janelas = { dados };
+        long[] tamanhosFluxos = FluxosIntercalados.tamanhosDosFluxos(janelas, comprimentos, fluxos);
+        CabecalhoDeBloco cabecalho = new CabecalhoDeBloco(dados.remaining(), comprimentos, tamanhosFluxos);
+        ByteBuffer saida = ByteBuffer.allocate(CabecalhoDeBloco.TAMANHO_MAXIMO + (int) cabecalho.tamanhoDados);
+        cabecalho.escrever(saida);
+        EscritorDeBits[] escritores = new EscritorDeBits[fluxos];
+        int posicao = saida.position();
+        for (int i = 0; i < fluxos; i++) {
+            escritores[i] = new EscritorDeBits(saida.slice(posicao, (int) tamanhosFluxos[i]));
+            posicao += (int) tamanhosFluxos[i];
+        }
+        FluxosIntercalados.codificar(janelas, tabela, escritores);
+        for (EscritorDeBits escritor : escritores) {
+            escritor.close();
+        }
+        return saida.position(posicao).flip();
+    }
+
+    /*
+    Descomprime o bloco que começa na posição atual de 'origem' para 'destino', a partir de 'inicio'.
+    Ao final, 'origem' fica posicionado logo após o bloco. Retorna o cabeçalho lido.
+     */
+    static CabecalhoDeBloco descomprimir(ByteBuffer origem, byte[] destino, int inicio) throws IOException {
+        return descomprimir(origem, destino, inicio, null, null);
+    }
+
+    /*
+    Igual ao método acima; os blocos TIPO_TABELA_COMPARTILHADA são decodificados com
+    'compartilhado' (o decodificador da tabela do pacote) e os TIPO_DICIONARIO com 'dicionario'.
+    Os TIPO_ARMAZENADO são só copiados, e os TIPO_TRANSFORMADO têm as etapas desfeitas.
+     */
+    static CabecalhoDeBloco descomprimir(ByteBuffer origem, byte[] destino, int inicio, DecodificadorDeTabela compartilhado,
+                                         Dicionario dicionario) throws IOException {
+        CabecalhoDeBloco cabecalho = CabecalhoDeBloco.ler(origem);
+        DecodificadorDeTabela decodificador = cabecalho.tipo == CabecalhoDeBloco.TIPO_CONTEXTO || cabecalho.tipo == CabecalhoDeBloco.TIPO_ARMAZENADO
+                || cabecalho.tipo == CabecalhoDeBloco.TIPO_TRANSFORMADO ? null : decodificadorPara(cabecalho, compartilhado, dicionario);
+        if (cabecalho.tamanhoOriginal > destino.length - inicio) {
+            throw new IOException("O bloco declara mais bytes do que o esperado: " + cabecalho.tamanhoOriginal);
+        }
+        if (cabecalho.tamanhoDados > origem.remaining()) {
+            throw new IOException("Bloco truncado: faltam dados comprimidos.");
+        }
+        ByteBuffer dados = origem.slice();
+        dados.limit((int) cabecalho.tamanhoDados);
+        origem.position(origem.position() + (int) cabecalho.tamanhoDados);
+
+        if (cabecalho.tipo == CabecalhoDeBloco.TIPO_ARMAZENADO) {
+            dados.get(destino, inicio, (int) cabecalho.tamanhoOriginal);
+        } else if (cabecalho.tipo == CabecalhoDeBloco.TIPO_TRANSFORMADO) {
+            desfazerTransformacoes(cabecalho, dados, destino, inicio, compartilhado, dicionario);
+        } else if (cabecalho.tipo == CabecalhoDeBloco.TIPO_CONTEXTO) {
+            DecodificadorDeTabela.decodificarComContexto(cabecalho.modelo.decodificadores(), new LeitorDeBits(dados),
+                    destino, inicio, (int) cabecalho.tamanhoOriginal);
+        } else if (cabecalho.tipo == CabecalhoDeBloco.TIPO_INTERCALADO) {
+            LeitorDeBits[] leitores = FluxosIntercalados.leitoresEmMemoria(dados, cabecalho.tamanhosFluxos);
+            decodificador.decodificarIntercalado(leitores, destino, inicio, (int) cabecalho.tamanhoOriginal);
+        } else {
+            decodificador.decodificar(new LeitorDeBits(dados), destino, inicio, (int) cabecalho.tamanhoOriginal);
+        }
+        return cabecalho;
+    }
+
+    /*
+    Bloco TIPO_TRANSFORMADO: descomprime o bloco interno (os bytes transformados) para um
+    buffer da thread e desfaz as etapas, gravando o original em 'destino'.
+     */
+    private static void desfazerTransformacoes(CabecalhoDeBloco cabecalho, ByteBuffer dados, byte[] destino, int inicio,
+                                               DecodificadorDeTabela compartilhado, Dicionario dicionario) throws IOException {
+        CabecalhoDeBloco interno = CabecalhoDeBloco.ler(dados.duplicate());
+        if (interno.tipo == CabecalhoDeBloco.TIPO_TRANSFORMADO) {
+            throw new IOException("Bloco transformado dentro de outro bloco transformado.");
+        }
+        if (interno.tamanhoOriginal > Transformacoes.tamanhoMaximo(cabecalho.etapas, cabecalho.tamanhoOriginal)) {
+            throw new IOException("O bloco transformado declara mais bytes do que as transformações produzem: " + interno.tamanhoOriginal);
+        }
+        Transformacoes transformacoes = Transformacoes.daThread();
+        int tamanho = (int) interno.tamanhoOriginal;
+        descomprimir(dados, transformacoes.entrada(tamanho), 0, compartilhado, dicionario);
+        transformacoes.desfazer(cabecalho.etapas, cabecalho.parametros, tamanho, destino, inicio, (int) cabecalho.tamanhoOriginal);
+    }
+}
@@ -0,0 +1,133 @@
+package huffman;
+
+import java.util.Arrays;
+
+/*
+Geração de códigos de Huffman canônicos.
+Um código canônico depende apenas do comprimento do código de cada caractere:
+os códigos são atribuídos em ordem crescente de (comprimento, caractere).
+Por isso basta gravar os comprimentos no cabeçalho do arquivo, e o descompressor
+reconstrói exatamente os mesmos códigos sem precisar refazer a árvore.
+ */
+class CodigosCanonicos {
+    // Maior comprimento permitido por padrão. Com 15 bits cada comprimento cabe em 4 bits
+    // no cabeçalho e as tabelas de decodificação continuam pequenas.
+    static final int COMPRIMENTO_MAXIMO_PADRAO = 15;
+    static final int COMPRIMENTO_MAXIMO_SUPORTADO = 15;
+
+    /*
+    Calcula o comprimento do código de cada caractere a partir das frequências.
+    A árvore é montada pelo construtor de duas filas (ver ArvoreCompacta).
+     */
+    static int[] calcularComprimentos(long[] frequencias, int comprimentoMaximo) {
+        return calcularComprimentos(ArvoreCompacta.construirComDuasFilas(frequencias), frequencias, comprimentoMaximo);
+    }
+
+    /*
+    Calcula o comprimento do código de cada caractere a partir de uma árvore já montada:
+    usa as profundidades das folhas e, se alguma passar de 'comprimentoMaximo', ajusta os
+    comprimentos para respeitar o limite.
+     */
+    static int[] calcularComprimentos(ArvoreCompacta arvore, long[] frequencias, int comprimentoMaximo) {
+        if (comprimentoMaximo < 1 || comprimentoMaximo > COMPRIMENTO_MAXIMO_SUPORTADO) {
+            throw new IllegalArgumentException("O comprimento máximo do código deve estar entre 1 e " + COMPRIMENTO_MAXIMO_SUPORTADO + ".");
+        }
+        // Arquivo vazio: nenhum código. Um único caractere: código de 1 bit.
+        int[] comprimentos = arvore.comprimentos();
+        if (arvore.quantidadeFolhas > 1) {
+            limitarComprimentos(comprimentos, frequencias, comprimentoMaximo);
+        }
+        return comprimentos;
+    }
+
+    /*
+    Garante que nenhum código passe de 'limite' bits, mantendo o código completo
+    (a desigualdade de Kraft continua valendo com igualdade).
+    Usa o ajuste clássico sobre a contagem de códigos por comprimento (o mesmo do JPEG):
+    duas folhas irmãs do nível mais profundo sobem um nível e, para compensar, uma folha
+    mais rasa desce um nível, virando pai de uma delas. Depois, os comprimentos são
+    redistribuídos: os caracteres mais frequentes recebem os códigos mais curtos.
+     */
+    static void limitarComprimentos(int[] comprimentos, long[] frequencias, int limite) {
+        int maior = 0;
+        int quantidade = 0;
+        for (int c : comprimentos) {
+            maior = Math.max(maior, c);
+            if (c > 0) quantidade++;
+        }
+        if (maior <= limite) {
+            return;
+        }
+        // O limite não pode ser menor que o necessário para dar um código a cada caractere
+        // (ex: 256 caracteres distintos exigem pelo menos 8 bits); nesse caso ele é elevado.
+        limite = Math.max(limite, 32 - Integer.numberOfLeadingZeros(quantidade - 1));
+
+        int[] contagem = new int[maior + 1];
+        for (int c : comprimentos) {
+            if (c > 0) contagem[c]++;
+        }
+        for (int i = maior; i > limite; i--) {
+            while (contagem[i] > 0) {
+                int j = i - 2;
+                while (contagem[j] == 0) {
+                    j--;
+                }
+                contagem[i] -= 2;     // Duas folhas irmãs saem do nível i...
+                contagem[i - 1] += 1; // ...e o pai delas vira folha no nível i-1.
+                contagem[j + 1] += 2; // Uma folha do nível j vira pai de duas folhas no nível j+1.
+                contagem[j] -= 1;
+            }
+        }
+
+        // Redistribui: ordena os caracteres por frequência decrescente (empate: menor caractere primeiro)
+        // e entrega os comprimentos do menor para o maior.
+        Integer[] simbolos = new Integer[quantidade];
+        int k = 0;
+        for (int s = 0; s < 256; s++) {
+            if (comprimentos[s] > 0) simbolos[k++] = s;
+        }
+        Arrays.sort(simbolos, (a, b) -> frequencias[a] != frequencias[b] ? Long.compare(frequencias[b], frequencias[a]) : Integer.compare(a, b));
+        int comprimento = 1;
+        for (int s : simbolos) {
+            while (contagem[comprimento] == 0) {
+                comprimento++;
+            }
+            comprimentos[s] = comprimento;
+            contagem[comprimento]--;
+        }
+    }
+
+    /*
+    Atribui os códigos canônicos a partir dos comprimentos.
+    O primeiro código de cada comprimento é (último código do comprimento anterior + 1)
+    deslocado para a esquerda; dentro do mesmo comprimento os códigos seguem a ordem dos caracteres.
+     */
+    static TabelaDeCodigos gerarCodigos(int[] comprimentos) {
+        TabelaDeCodigos tabela = new TabelaDeCodigos();
+        int[] contagem = new int[COMPRIMENTO_MAXIMO_SUPORTADO + 2];
+        for (int c : comprimentos) {
+            if (c < 0 || c > COMPRIMENTO_MAXIMO_SUPORTADO) {
+                throw new IllegalArgumentException("Comprimento de código inválido: " + c);
+            }
+            if (c > 0) contagem[c]++;
+        }
+        long[] proximoCodigo = new long[COMPRIMENTO_MAXIMO_SUPORTADO + 2];
+        long codigo = 0;
+        for (int c = 1; c <= COMPRIMENTO_MAXIMO_SUPORTADO; c++) {
+            codigo = (codigo + contagem[c - 1]) << 1;
+            proximoCodigo[c] = codigo;
+        }
+        for (int s = 0; s < 256; s++) {
+            int c = comprimentos[s];
+            if (c > 0) {
+                long valor = proximoCodigo[c]++;
+                if (valor >>> c != 0) {
+                    throw new IllegalArgumentException("Os comprimentos de código não formam um código de prefixo válido.");
+                }
+                tabela.codigos[s] = valor;
+                tabela.comprimentos[s] = c;
+            }
+        }
+        return tabela;
+    }
+}
@@ -0,0 +1,184 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+/*
+Parâmetros de compressão que podem ser ajustados pela linha de comando.
+Os valores padrão correspondem ao comportamento do modo 'c' sem opções.
+ */
+class Configuracao {
+    static final int TAMANHO_BLOCO_PADRAO = 1024 * 1024;
+    static final int TAMANHO_BLOCO_MAXIMO = 1 << 30;
+    static final long LIMITE_TABELA_COMPARTILHADA_PADRAO = 64 * 1024;
+    static final int ECONOMIA_MINIMA_PADRAO = 1;
+
+    // Diretório de trabalho do Cliente, enviado com cada pedido ao Servidor.
+    static final String DIRETORIO_DO_CLIENTE = "diretorio-do-cliente";
+    // Opções aceitas pelos modos c, a, p, t e d ("tamanho" e DIRETORIO_DO_CLIENTE só chegam nos
+    // pedidos ao Servidor).
+    static final Set<String> OPCOES = Set.of("max-bits", "bloco", "threads", "mapeado", "fluxos", "contexto",
+            "transformacoes", "assincrono", "limite-es", "tabela-compartilhada", "economia-minima", "indice",
+            "inicio", "quantidade", "dicionario", "amostra", "acrescentar", "verbosidade", "metricas", "tamanho",
+            DIRETORIO_DO_CLIENTE);
+
+    // Níveis de verbosidade (--verbosidade).
+    // SILENCIOSO: só erros. RESUMO: resumo final e tempo. DEPURACAO: todas as ETAPAS, com
+    // tabela de frequências, heap, árvore e tabela de códigos (o comportamento original).
+    static final int SILENCIOSO = 0;
+    static final int RESUMO = 1;
+    static final int DEPURACAO = 2;
+
+    // Maior comprimento de código canônico (--max-bits).
+    int comprimentoMaximo = CodigosCanonicos.COMPRIMENTO_MAXIMO_PADRAO;
+    // Tamanho de cada bloco no modo em blocos (--bloco). Zero desliga o modo em blocos.
+    int tamanhoBloco = 0;
+    // Número de threads do ForkJoinPool no modo em blocos (--threads).
+    int paralelismo = Runtime.getRuntime().availableProcessors();
+    // Modo para arquivos grandes (--mapeado): a saída também é gravada por janelas mapeadas em memória.
+    // É ativado automaticamente para arquivos de mais de 2 GB.
+    boolean modoMapeado = false;
+    // E/S assíncrona (--assincrono, ver CanaisAssincronos): nos arquivos de fluxo único, a leitura
+    // e a escrita acontecem em segundo plano, enquanto a CPU codifica ou decodifica.
+    boolean assincrono = false;
+    // Compressão por amostra (--amostra[=1], ver Main.comprimeArquivoPorAmostra): as frequências
+    // vêm de uma amostra deste tanto por cento do arquivo, que é lido uma vez só. Zero desliga.
+    int amostra = 0;
+    // Acréscimo (--acrescentar, ver ArquivoEmBlocos.acrescentar): o original vira novos blocos
+    // no fim de um arquivo em blocos já existente (ou de um novo), sem regravar os anteriores.
+    boolean acrescentar = false;
+    // Número de fluxos de bits intercalados por bloco (--fluxos). Com 1, o bloco tem um único
+    // fluxo (o formato de sempre); com mais, a decodificação avança os fluxos em paralelo.
+    int fluxos = 1;
+    // Modo pacote: número máximo de arquivos sendo lidos ao mesmo tempo (--limite-es).
+    int limiteEs = 16;
+    // Modo pacote: arquivos de até este tamanho podem usar a tabela de códigos compartilhada
+    // (--tabela-compartilhada[=64K]). Zero desliga a tabela compartilhada.
+    long limiteTabelaCompartilhada = 0;
+    // Modelo de ordem 1 (--contexto, ver ModeloDeContexto): uma tabela de códigos por caractere
+    // anterior. Só existe no modo em blocos, que é ativado com blocos de TAMANHO_BLOCO_PADRAO.
+    boolean contexto = false;
+    // Transformações aplicadas a cada bloco antes do Huffman (--transformacoes[=rle,bwt,mtf],
+    // ver Transformacoes). Só existem no modo em blocos, como o --contexto. null desliga.
+    int[] transformacoes = null;
+    // Economia mínima, em por cento, para que um bloco (ou um arquivo de fluxo único) seja
+    // comprimido (--economia-minima); abaixo dela ele é armazenado sem compressão.
+    int economiaMinima = ECONOMIA_MINIMA_PADRAO;
+    // Índice de sincronia (--indice[=64K], ver IndiceDeSincronia): um ponto a cada tantos bytes
+    // do original, nos arquivos de fluxo único. Zero desliga o índice.
+    long intervaloIndice = 0;
+    // Modo 'd' com --inicio e/ou --quantidade: só o trecho [inicioTrecho, inicioTrecho +
+    // quantidadeTrecho) do original é descomprimido (ver AcessoAleatorio).
+    boolean trecho = false;
+    long inicioTrecho = 0;
+    long quantidadeTrecho = Long.MAX_VALUE;
+    // Dicionário treinado (--dicionario, ver Dicionario): os blocos usam a tabela dele, sem
+    // árvore nem tabela próprias. Precisa ser informado também para descomprimir. null desliga.
+    Dicionario dicionario = null;
+    // Quanto é escrito no console.
+    int verbosidade = DEPURACAO;
+    // Arquivo onde gravar as métricas em JSON (--metricas); "-" é a saída padrão e null desliga.
+    String arquivoMetricas = null;
+    // Base dos caminhos relativos de uma lista de arquivos (modo 'p'): o diretório de trabalho,
+    // ou o do Cliente nos pedidos ao Servidor.
+    Path diretorioBase = Path.of("");
+
+    /*
+    Monta a configuração a partir das opções da linha de comando, validando os valores.
+     */
+    static Configuracao deOpcoes(Opcoes opcoes) {
+        opcoes.verificar(OPCOES);
+        Configuracao configuracao = new Configuracao();
+        configuracao.comprimentoMaximo = opcoes.inteiro("max-bits", configuracao.comprimentoMaximo);
+        if (configuracao.comprimentoMaximo < 1 || configuracao.comprimentoMaximo > CodigosCanonicos.COMPRIMENTO_MAXIMO_SUPORTADO) {
+            throw new IllegalArgumentException("--max-bits deve estar entre 1 e " + CodigosCanonicos.COMPRIMENTO_MAXIMO_SUPORTADO + ".");
+        }
+        if (opcoes.tem("bloco")) {
+            long tamanho = opcoes.tamanho("bloco", TAMANHO_BLOCO_PADRAO);
+            if (tamanho < 1 || tamanho > TAMANHO_BLOCO_MAXIMO) {
+                throw new IllegalArgumentException("--bloco deve estar entre 1 byte e 1G.");
+            }
+            configuracao.tamanhoBloco = (int) tamanho;
+        }
+        configuracao.paralelismo = opcoes.inteiro("threads", configuracao.paralelismo);
+        if (configuracao.paralelismo < 1) {
+            throw new IllegalArgumentException("--threads deve ser pelo menos 1.");
+        }
+        configuracao.modoMapeado = opcoes.tem("mapeado");
+        configuracao.fluxos = opcoes.inteiro("fluxos", opcoes.tem("fluxos") ? FluxosIntercalados.FLUXOS_PADRAO : 1);
+        if (configuracao.fluxos < 1 || configuracao.fluxos > CabecalhoDeBloco.FLUXOS_MAXIMO) {
+            throw new IllegalArgumentException("--fluxos deve estar entre 1 e " + CabecalhoDeBloco.FLUXOS_MAXIMO + ".");
+        }
+        configuracao.contexto = opcoes.tem("contexto");
+        if (opcoes.tem("transformacoes")) {
+            configuracao.transformacoes = Transformacoes.ler(opcoes.texto("transformacoes", Transformacoes.NOMES_PADRAO));
+        }
+        if ((configuracao.contexto || configuracao.transformacoes != null) && configuracao.tamanhoBloco == 0) {
+            configuracao.tamanhoBloco = TAMANHO_BLOCO_PADRAO;
+        }
+        configuracao.assincrono = opcoes.tem("assincrono");
+        if (configuracao.assincrono && (configuracao.modoMapeado || configuracao.fluxos > 1 || configuracao.tamanhoBloco > 0)) {
+            throw new IllegalArgumentException("--assincrono vale para o fluxo único: não pode ser usado com --mapeado, --fluxos nem no modo em blocos.");
+        }
+        configuracao.limiteEs = opcoes.inteiro("limite-es", configuracao.limiteEs);
+        if (configuracao.limiteEs < 1) {
+            throw new IllegalArgumentException("--limite-es deve ser pelo menos 1.");
+        }
+        if (opcoes.tem("tabela-compartilhada")) {
+            configuracao.limiteTabelaCompartilhada = opcoes.tamanho("tabela-compartilhada", LIMITE_TABELA_COMPARTILHADA_PADRAO);
+            if (configuracao.limiteTabelaCompartilhada < 1) {
+                throw new IllegalArgumentException("--tabela-compartilhada deve ser pelo menos 1 byte.");
+            }
+        }
+        configuracao.economiaMinima = opcoes.inteiro("economia-minima", configuracao.economiaMinima);
+        if (configuracao.economiaMinima < 0 || configuracao.economiaMinima > 100) {
+            throw new IllegalArgumentException("--economia-minima deve estar entre 0 e 100 (por cento).");
+        }
+        if (opcoes.tem("indice")) {
+            configuracao.intervaloIndice = opcoes.tamanho("indice", IndiceDeSincronia.INTERVALO_PADRAO);
+            if (configuracao.intervaloIndice < 1) {
+                throw new IllegalArgumentException("--indice deve ser pelo menos 1 byte.");
+            }
+        }
+        configuracao.trecho = opcoes.tem("inicio") || opcoes.tem("quantidade");
+        configuracao.inicioTrecho = opcoes.tamanho("inicio", 0);
+        configuracao.quantidadeTrecho = opcoes.tamanho("quantidade", Long.MAX_VALUE);
+        if (configuracao.inicioTrecho < 0 || configuracao.quantidadeTrecho < 0) {
+            throw new IllegalArgumentException("--inicio e --quantidade não podem ser negativos.");
+        }
+        String arquivoDicionario = opcoes.texto("dicionario", null);
+        if (arquivoDicionario != null) {
+            try {
+                configuracao.dicionario = Dicionario.ler(Path.of(arquivoDicionario));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("--dicionario: " + e.getMessage());
+            }
+            if (configuracao.transformacoes != null) {
+                throw new IllegalArgumentException("--transformacoes não pode ser usado com --dicionario, que foi treinado com os bytes originais.");
+            }
+        }
+        configuracao.amostra = opcoes.inteiro("amostra", opcoes.tem("amostra") ? 1 : 0);
+        if (opcoes.tem("amostra") && (configuracao.amostra < 1 || configuracao.amostra > 100)) {
+            throw new IllegalArgumentException("--amostra deve estar entre 1 e 100 (por cento).");
+        }
+        if (configuracao.amostra > 0 && (configuracao.modoMapeado || configuracao.fluxos > 1 || configuracao.tamanhoBloco > 0
+                || configuracao.dicionario != null)) {
+            throw new IllegalArgumentException("--amostra vale para o fluxo único: não pode ser usado com --mapeado, --fluxos, --dicionario nem no modo em blocos.");
+        }
+        configuracao.acrescentar = opcoes.tem("acrescentar");
+        if (configuracao.acrescentar && (configuracao.amostra > 0 || configuracao.assincrono || configuracao.intervaloIndice > 0)) {
+            throw new IllegalArgumentException("--acrescentar grava blocos (versão 3): não pode ser usado com --amostra, --assincrono nem --indice.");
+        }
+        String verbosidade = opcoes.texto("verbosidade", "depuracao");
+        switch (verbosidade) {
+            case "silencioso": configuracao.verbosidade = SILENCIOSO; break;
+            case "resumo": configuracao.verbosidade = RESUMO; break;
+            case "depuracao": configuracao.verbosidade = DEPURACAO; break;
+            default: throw new IllegalArgumentException("--verbosidade deve ser silencioso, resumo ou depuracao.");
+        }
+        configuracao.arquivoMetricas = opcoes.texto("metricas", null);
+        configuracao.diretorioBase = Path.of(opcoes.texto(DIRETORIO_DO_CLIENTE, ""));
+        return configuracao;
+    }
+}
@@ -0,0 +1,257 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+Descompressão paralela de um fluxo único de bits (arquivo legado e versão 2 sem fluxos
+intercalados), que não tem fronteiras de bloco: ninguém sabe onde começa o código do
+caractere de número i sem decodificar todos os anteriores.
+
+A saída é a autossincronização dos códigos de Huffman. Os dados são divididos em trechos de
+TAMANHO_TRECHO bytes comprimidos e cada trecho é decodificado por uma thread do pool a partir
+do seu primeiro bit, como se ali começasse um código ("especulação"). Quase sempre isso é
+falso, e os primeiros caracteres saem errados; mas o fim de um código errado cai, depois de
+poucos códigos, no fim de um código verdadeiro, e dali em diante as duas decodificações são
+iguais. Cada trecho guarda o bit de início dos seus primeiros FRONTEIRAS códigos.
+
+A costura é feita em ordem, enquanto os trechos seguintes ainda são decodificados:
+1. O trecho anterior diz onde começa, de verdade, o primeiro código deste trecho.
+2. A partir daí, decodifica de verdade (em sequência) até cair em uma das fronteiras
+   guardadas: são só os poucos códigos da sobreposição.
+3. Os caracteres especulados a partir dessa fronteira estão certos e são aproveitados; o
+   trecho seguinte começa onde a especulação deste terminou.
+Se não houver encontro nas fronteiras guardadas, o trecho inteiro é decodificado em
+sequência. Bits inválidos ou dados truncados fazem a especulação apenas parar; o erro só
+aparece (com as mesmas mensagens do DecodificadorDeTabela) se a decodificação verdadeira
+passar por eles. A saída é, byte a byte, a mesma da decodificação sequencial.
+ */
+class DecodificacaoEspeculativa {
+    static final int TAMANHO_TRECHO = 1024 * 1024;
+    static final int FRONTEIRAS = 4096;
+
+    /*
+    Indica se vale decodificar em paralelo: é preciso ter mais de uma thread, códigos de
+    verdade (não o caractere único) e pelo menos dois trechos de dados.
+     */
+    static boolean vale(DecodificadorDeTabela decodificador, long tamanhoDados, int paralelismo) {
+        return paralelismo > 1 && decodificador.temCodigos() && tamanhoDados >= 2L * TAMANHO_TRECHO;
+    }
+
+    /*
+    Resultado da especulação de um trecho: os caracteres decodificados a partir de 'inicio',
+    o bit de início de cada um dos primeiros (até FRONTEIRAS) e o bit onde parou.
+     */
+    private static final class Trecho {
+        final long inicio;
+        final long limite;       // Início do trecho seguinte: a especulação para no primeiro código que começa nele ou depois.
+        final long[] fronteiras = new long[FRONTEIRAS];
+        int quantidadeFronteiras;
+        byte[] caracteres;
+        int quantidade;
+        long fim;                // Bit depois do último código especulado.
+
+        Trecho(long inicio, long limite) {
+            this.inicio = inicio;
+            this.limite = limite;
+        }
+    }
+
+    /*
+    Decodifica 'quantidade' caracteres dos dados [inicioDados, fimDados) de 'entrada' e os
+    grava em 'saida', com 'paralelismo' threads.
+     */
+    static void decodificar(DecodificadorDeTabela decodificador, FileChannel entrada, long inicioDados, long fimDados,
+                            long quantidade, WritableByteChannel saida, int paralelismo) throws IOException {
+        long totalBits = 8 * (fimDados - inicioDados);
+        long bitsPorTrecho = 8L * TAMANHO_TRECHO;
+        // Até 2 trechos por thread em andamento, para limitar a memória (como em ArquivoEmBlocos).
+        int maximoEmAndamento = 2 * paralelismo;
+        ArrayDeque<ForkJoinTask<Trecho>> emAndamento = new ArrayDeque<>();
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            Costura costura = new Costura(decodificador, entrada, inicioDados, fimDados, quantidade, saida);
+            long proximoBit = 0;
+            while (proximoBit < totalBits || !emAndamento.isEmpty()) {
+                while (proximoBit < totalBits && emAndamento.size() < maximoEmAndamento) {
+                    long inicio = proximoBit;
+                    long limite = Math.min(totalBits, inicio + bitsPorTrecho);
+                    emAndamento.add(pool.submit(() -> especular(decodificador, entrada, inicioDados, fimDados, inicio, limite, quantidade)));
+                    proximoBit = limite;
+                }
+                Trecho trecho = ArquivoEmBlocos.juntar(emAndamento.poll());
+                if (costura.terminou()) {
+                    // Os caracteres acabaram antes dos dados (padding): o resto é descartado.
+                    for (ForkJoinTask<Trecho> tarefa : emAndamento) {
+                        tarefa.cancel(true);
+                    }
+                    emAndamento.clear();
+                    break;
+                }
+                costura.costurar(trecho);
+            }
+            // Se ainda faltam caracteres, os dados acabaram antes: a decodificação verdadeira
+            // continua e acusa o arquivo truncado.
+            costura.decodificarAte(Long.MAX_VALUE, null);
+            costura.esvaziar();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+    Especula um trecho: decodifica a partir do bit 'inicio' até o primeiro código que começa
+    em 'limite' ou depois (no máximo 'maximo' caracteres). Para antes em bits inválidos ou em
+    um código que passa do fim dos dados.
+     */
+    private static Trecho especular(DecodificadorDeTabela decodificador, FileChannel entrada, long inicioDados, long fimDados,
+                                    long inicio, long limite, long maximo) throws IOException {
+        Trecho trecho = new Trecho(inicio, limite);
+        long totalBits = 8 * (fimDados - inicioDados);
+        LeitorDeBits leitor = leitorNoBit(entrada, inicioDados, fimDados, inicio);
+        // Estimativa inicial de 2 caracteres por byte comprimido; o vetor cresce se precisar.
+        byte[] caracteres = new byte[(int) Math.min(maximo, (limite - inicio) / 4 + 16)];
+        int n = 0;
+        long bit = inicio;
+        while (bit < limite && n < maximo) {
+            int resultado = decodificador.decodificarComTamanho(leitor);
+            int bits = resultado & 0xFF;
+            if (resultado == 0 || bit + bits > totalBits) {
+                break;
+            }
+            if (n < FRONTEIRAS) {
+                trecho.fronteiras[n] = bit;
+            }
+            if (n == caracteres.length) {
+                caracteres = Arrays.copyOf(caracteres, (int) Math.min(maximo, Math.min(2L * n, Integer.MAX_VALUE - 8)));
+            }
+            caracteres[n++] = (byte) (resultado >>> 8);
+            bit += bits;
+        }
+        trecho.quantidadeFronteiras = Math.min(n, FRONTEIRAS);
+        trecho.caracteres = caracteres;
+        trecho.quantidade = n;
+        trecho.fim = bit;
+        return trecho;
+    }
+
+    /*
+    Leitor de bits posicionado no bit 'bit' dos dados (contado a partir de 'inicioDados').
+     */
+    private static LeitorDeBits leitorNoBit(FileChannel entrada, long inicioDados, long fimDados, long bit) throws IOException {
+        LeitorDeBits leitor = new LeitorDeBits(new JanelasMapeadas.Leitor(entrada, inicioDados + bit / 8, fimDados),
+                ByteBuffer.allocate(LeitorDeBits.TAMANHO_BUFFER).flip());
+        if (bit % 8 != 0) {
+            leitor.lerBits((int) (bit % 8));
+        }
+        return leitor;
+    }
+
+    /*
+    Estado da decodificação verdadeira: o bit onde começa o próximo código e quantos
+    caracteres já foram produzidos. Os caracteres da sobreposição (decodificados aqui, em
+    sequência) passam por um buffer antes de irem para a saída.
+     */
+    private static final class Costura {
+        private final DecodificadorDeTabela decodificador;
+        private final FileChannel entrada;
+        private final long inicioDados;
+        private final long fimDados;
+        private final long totalBits;
+        private final long quantidade;
+        private final WritableByteChannel saida;
+        private final ByteBuffer buffer = ByteBuffer.allocate(EscritorDeBits.TAMANHO_BUFFER);
+        private LeitorDeBits leitor;  // Posicionado em 'bit'; null depois de um salto.
+        private long bit;
+        private long produzidos;
+
+        Costura(DecodificadorDeTabela decodificador, FileChannel entrada, long inicioDados, long fimDados,
+                long quantidade, WritableByteChannel saida) {
+            this.decodificador = decodificador;
+            this.entrada = entrada;
+            this.inicioDados = inicioDados;
+            this.fimDados = fimDados;
+            this.totalBits = 8 * (fimDados - inicioDados);
+            this.quantidade = quantidade;
+            this.saida = saida;
+        }
+
+        boolean terminou() {
+            return produzidos >= quantidade;
+        }
+
+        /*
+        Junta um trecho especulado à saída (passos 2 e 3 da descrição da classe).
+         */
+        void costurar(Trecho trecho) throws IOException {
+            int encontro = decodificarAte(trecho.limite, trecho);
+            if (encontro < 0) {
+                return;
+            }
+            // Daqui em diante a especulação é a decodificação verdadeira.
+            int n = (int) Math.min(trecho.quantidade - encontro, quantidade - produzidos);
+            esvaziar();
+            escrever(ByteBuffer.wrap(trecho.caracteres, encontro, n));
+            produzidos += n;
+            bit = trecho.fim;
+            leitor = null;
+        }
+
+        /*
+        Decodifica em sequência até o próximo código começar em 'limite' ou depois, ou até
+        cair em uma fronteira do 'trecho' (se houver). Retorna o índice da fronteira
+        encontrada, ou -1 se chegou ao limite (ou ao fim dos caracteres) sem encontro.
+         */
+        int decodificarAte(long limite, Trecho trecho) throws IOException {
+            int j = 0;
+            while (produzidos < quantidade && bit < limite) {
+                if (trecho != null) {
+                    while (j < trecho.quantidadeFronteiras && trecho.fronteiras[j] < bit) {
+                        j++;
+                    }
+                    if (j < trecho.quantidadeFronteiras && trecho.fronteiras[j] == bit) {
+                        return j;
+                    }
+                }
+                if (leitor == null) {
+                    leitor = leitorNoBit(entrada, inicioDados, fimDados, bit);
+                }
+                int resultado = decodificador.decodificarComTamanho(leitor);
+                if (resultado == 0) {
+                    throw new IOException("Sequência de bits inválida nos dados comprimidos.");
+                }
+                bit += resultado & 0xFF;
+                if (bit > totalBits) {
+                    throw new IOException("Arquivo comprimido truncado: faltam bits para decodificar todos os caracteres.");
+                }
+                if (!buffer.hasRemaining()) {
+                    esvaziar();
+                }
+                buffer.put((byte) (resultado >>> 8));
+                produzidos++;
+            }
+            return -1;
+        }
+
+        /*
+        Grava na saída os caracteres que estão no buffer.
+         */
+        void esvaziar() throws IOException {
+            buffer.flip();
+            escrever(buffer);
+            buffer.clear();
+        }
+
+        private void escrever(ByteBuffer dados) throws IOException {
+            while (dados.hasRemaining()) {
+                saida.write(dados);
+            }
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/*
+Decodificador de Huffman baseado em tabelas de consulta.
+Em vez de descer na árvore um bit por vez, espia os próximos BITS_TABELA bits e
+consulta uma tabela pré-calculada que diz, de uma só vez, qual caractere começa
+ali e quantos bits o seu código ocupa.
+Códigos maiores do que a largura da tabela apontam para uma tabela de segundo
+nível (e, se preciso, de níveis seguintes), indexada pelos bits restantes.
+
+Cada entrada da tabela é um int:
+- Folha:     (caractere << 8) | bitsUsados            (bit 31 = 0, bitsUsados >= 1)
+- Subtabela: 0x80000000 | (inicio << 4) | largura     (bit 31 = 1)
+Uma entrada igual a zero corresponde a uma sequência de bits que não é código de nenhum caractere.
+ */
+class DecodificadorDeTabela {
+    // Largura da tabela principal: 2^11 entradas (8 KB) cabem folgadamente no cache L1.
+    static final int BITS_TABELA = 11;
+
+    private static final int SUBTABELA = 0x80000000;
+
+    // Bits que a janela do LeitorDeBits sempre tem depois de recarregada (ver LeitorDeBits.janela).
+    private static final int BITS_JANELA = 56;
+
+    private int[] entradas = new int[1 << BITS_TABELA];
+    private int ocupadas;
+    private final int larguraRaiz;
+    private final int simboloUnico; // >= 0 quando só existe um caractere e o seu código é vazio.
+    // Quantos códigos (do maior comprimento) cabem em uma janela: com códigos de até 15 bits
+    // são pelo menos 3, e com códigos curtos (ex: texto, até 11 bits) são 5.
+    private final int simbolosPorJanela;
+    private final int maiorComprimento;
+
+    /*
+    Monta as tabelas de consulta a partir da tabela de códigos (valor + comprimento).
+     */
+    DecodificadorDeTabela(TabelaDeCodigos tabela) {
+        int[] simbolos = new int[256];
+        int quantidade = 0;
+        int maiorComprimento = 1;
+        for (int i = 0; i < 256; i++) {
+            if (tabela.comprimentos[i] > 0) {
+                simbolos[quantidade++] = i;
+                maiorComprimento = Math.max(maiorComprimento, tabela.comprimentos[i]);
+            }
+        }
+        this.simbolosPorJanela = Math.max(1, BITS_JANELA / maiorComprimento);
+        this.maiorComprimento = maiorComprimento;
+        this.simboloUnico = -1;
+        this.larguraRaiz = quantidade == 0 ? 0 : construir(tabela, Arrays.copyOf(simbolos, quantidade), 0, -1);
+    }
+
+    /*
+    Cria um decodificador para uma árvore formada por uma única folha (ex: arquivo "aaaa").
+    Nesse caso o código do caractere é vazio e a decodificação apenas o repete.
+     */
+    DecodificadorDeTabela(int simboloUnico) {
+        this.simboloUnico = simboloUnico;
+        this.larguraRaiz = 0;
+        this.simbolosPorJanela = 1;
+        this.maiorComprimento = 0;
+    }
+
+    /*
+    Decodifica 'quantidade' caracteres lidos do leitor e os escreve diretamente no canal de saída,
+    passando por um buffer de bytes reaproveitado.
+     */
+    void decodificar(LeitorDeBits leitor, long quantidade, WritableByteChannel saida) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(EscritorDeBits.TAMANHO_BUFFER);
+        byte[] bytes = buffer.array();
+        while (quantidade > 0) {
+            int n = (int) Math.min(quantidade, bytes.length);
+            decodificar(leitor, bytes, 0, n);
+            buffer.limit(n).position(0);
+            while (buffer.hasRemaining()) {
+                saida.write(buffer);
+            }
+            buffer.clear();
+            quantidade -= n;
+        }
+    }
+
+    /*
+    Decodifica 'quantidade' caracteres para o vetor 'destino', a partir da posição 'inicio'.
+     */
+    void decodificar(LeitorDeBits leitor, byte[] destino, int inicio, int quantidade) throws IOException {
+        int fim = inicio + quantidade;
+        if (simboloUnico >= 0) {
+            Arrays.fill(destino, inicio, fim, (byte) simboloUnico);
+            return;
+        }
+        if (quantidade > 0 && larguraRaiz == 0) {
+            throw new IOException("Dados comprimidos presentes, mas a tabela de códigos está vazia.");
+        }
+        int[] tabela = entradas;
+        int largura = larguraRaiz;
+        for (int i = inicio; i < fim; i++) {
+            int entrada = tabela[leitor.espiar(largura)];
+            // Códigos maiores do que a tabela principal: desce para as subtabelas.
+            while (entrada < 0) {
+                leitor.consumir(largura);
+                int base = (entrada >>> 4) & 0x07FFFFFF;
+                int larguraSub = entrada & 0xF;
+                entrada = tabela[base + leitor.espiar(larguraSub)];
+                largura = larguraSub;
+            }
+            int bitsUsados = entrada & 0xFF;
+            if (bitsUsados == 0) {
+                throw new IOException("Sequência de bits inválida nos dados comprimidos.");
+            }
+            leitor.consumir(bitsUsados);
+            destino[i] = (byte) (entrada >>> 8);
+            largura = larguraRaiz;
+        }
+        if (leitor.leuAlemDoFim()) {
+            throw new IOException("Arquivo comprimido truncado: faltam bits para decodificar todos os caracteres.");
+        }
+    }
+
+    /*
+    Decodifica 'quantidade' caracteres de um bloco com uma tabela por contexto (ver
+    ModeloDeContexto): o decodificador de cada caractere é o do caractere anterior
+    ('porContexto', com 256 posições; o primeiro caractere usa o contexto 0).
+     */
+    static void decodificarComContexto(DecodificadorDeTabela[] porContexto, LeitorDeBits leitor, byte[] destino, int inicio, int quantidade) throws IOException {
+        int anterior = 0;
+        for (int i = inicio, fim = inicio + quantidade; i < fim; i++) {
+            DecodificadorDeTabela decodificador = porContexto[anterior];
+            if (decodificador.larguraRaiz == 0) {
+                throw new IOException("Dados comprimidos presentes, mas a tabela do contexto " + anterior + " está vazia.");
+            }
+            anterior = decodificador.decodificarUm(leitor, decodificador.entradas);
+            destino[i] = (byte) anterior;
+        }
+        if (leitor.leuAlemDoFim()) {
+            throw new IOException("Arquivo comprimido truncado: faltam bits para decodificar todos os caracteres.");
+        }
+    }
+
+    /*
+    Igual a decodificar(LeitorDeBits, long, WritableByteChannel), para dados em vários fluxos
+    intercalados (ver FluxosIntercalados): o caractere de número i vem do fluxo i % leitores.length.
+     */
+    void decodificarIntercalado(LeitorDeBits[] leitores, long quantidade, WritableByteChannel saida) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(EscritorDeBits.TAMANHO_BUFFER);
+        byte[] bytes = buffer.array();
+        // Cada pedaço é múltiplo do número de fluxos, para que o rodízio recomece sempre no fluxo 0.
+        int pedaco = bytes.length - bytes.length % leitores.length;
+        while (quantidade > 0) {
+            int n = (int) Math.min(quantidade, pedaco);
+            decodificarIntercalado(leitores, bytes, 0, n);
+            buffer.limit(n).position(0);
+            while (buffer.hasRemaining()) {
+                saida.write(buffer);
+            }
+            buffer.clear();
+            quantidade -= n;
+        }
+    }
+
+    /*
+    Decodifica 'quantidade' caracteres de fluxos intercalados para 'destino', a partir de 'inicio'.
+    A cada volta do laço principal, cada fluxo decodifica um caractere. As consultas de fluxos
+    diferentes não dependem umas das outras, então o processador pode sobrepô-las, em vez de
+    esperar cada código terminar para saber onde começa o próximo.
+     */
+    void decodificarIntercalado(LeitorDeBits[] leitores, byte[] destino, int inicio, int quantidade) throws IOException {
+        int fluxos = leitores.length;
+        int fim = inicio + quantidade;
+        if (simboloUnico >= 0) {
+            Arrays.fill(destino, inicio, fim, (byte) simboloUnico);
+            return;
+        }
+        if (quantidade > 0 && larguraRaiz == 0) {
+            throw new IOException("Dados comprimidos presentes, mas a tabela de códigos está vazia.");
+        }
+        int[] tabela = entradas;
+        int simbolosPorJanela = this.simbolosPorJanela;
+        int lote = fluxos * simbolosPorJanela;
+        int fimDosLotes = inicio + quantidade / lote * lote;
+        int completas = inicio + quantidade / fluxos * fluxos;
+        int i = inicio;
+        // 1. Lotes de simbolosPorJanela voltas: os fluxos são decodificados de 4 em 4,
+        //    com as janelas em variáveis locais; os que sobram, um de cada vez.
+        for (; i < fimDosLotes; i += lote) {
+            int f = 0;
+            for (; f + 4 <= fluxos; f += 4) {
+                decodificarQuatro(leitores, f, fluxos, destino, i + f);
+            }
+            for (; f < fluxos; f++) {
+                for (int r = 0; r < simbolosPorJanela; r++) {
+                    destino[i + r * fluxos + f] = (byte) decodificarUm(leitores[f], tabela);
+                }
+            }
+        }
+        // 2. Voltas completas restantes: um caractere de cada fluxo.
+        for (; i < completas; i += fluxos) {
+            for (int f = 0; f < fluxos; f++) {
+                destino[i + f] = (byte) decodificarUm(leitores[f], tabela);
+            }
+        }
+        // 3. Os últimos caracteres (menos de uma volta) vêm dos primeiros fluxos.
+        for (int f = 0; i < fim; i++, f++) {
+            destino[i] = (byte) decodificarUm(leitores[f], tabela);
+        }
+        for (LeitorDeBits leitor : leitores) {
+            if (leitor.leuAlemDoFim()) {
+                throw new IOException("Arquivo comprimido truncado: faltam bits para decodificar todos os caracteres.");
+            }
+        }
+    }
+
+    /*
+    Decodifica simbolosPorJanela caracteres de cada um dos fluxos 'primeiro' a 'primeiro' + 3.
+    O caractere da volta r do fluxo 'primeiro' + k vai para destino[posicao + r * fluxos + k].
+    As quatro janelas ficam em variáveis locais (registradores) e as quatro consultas de cada
+    volta são independentes entre si; os leitores só são atualizados no final.
+     */
+    private void decodificarQuatro(LeitorDeBits[] leitores, int primeiro, int fluxos, byte[] destino, int posicao) throws IOException {
+        int[] tabela = entradas;
+        LeitorDeBits l0 = leitores[primeiro];
+        LeitorDeBits l1 = leitores[primeiro + 1];
+        LeitorDeBits l2 = leitores[primeiro + 2];
+        LeitorDeBits l3 = leitores[primeiro + 3];
+        long j0 = l0.janela();
+        long j1 = l1.janela();
+        long j2 = l2.janela();
+        long j3 = l3.janela();
+        int u0 = 0;
+        int u1 = 0;
+        int u2 = 0;
+        int u3 = 0;
+        for (int r = 0, voltas = simbolosPorJanela; r < voltas; r++, posicao += fluxos) {
+            int e0 = consultar(tabela, j0);
+            int e1 = consultar(tabela, j1);
+            int e2 = consultar(tabela, j2);
+            int e3 = consultar(tabela, j3);
+            if (e0 == 0 || e1 == 0 || e2 == 0 || e3 == 0) {
+                throw new IOException("Sequência de bits inválida nos dados comprimidos.");
+            }
+            destino[posicao] = (byte) (e0 >>> 8);
+            destino[posicao + 1] = (byte) (e1 >>> 8);
+            destino[posicao + 2] = (byte) (e2 >>> 8);
+            destino[posicao + 3] = (byte) (e3 >>> 8);
+            j0 <<= e0 & 0xFF;
+            j1 <<= e1 & 0xFF;
+            j2 <<= e2 & 0xFF;
+            j3 <<= e3 & 0xFF;
+            u0 += e0 & 0xFF;
+            u1 += e1 & 0xFF;
+            u2 += e2 & 0xFF;
+            u3 += e3 & 0xFF;
+        }
+        l0.consumir(u0);
+        l1.consumir(u1);
+        l2.consumir(u2);
+        l3.consumir(u3);
+    }
+
+    /*
+    Consulta as tabelas com os bits de 'janela' (alinhados à esquerda), descendo às
+    subtabelas se preciso. Retorna (caractere << 8) | bits do código, ou 0 se os bits
+    não formam código de nenhum caractere.
+     */
+    private int consultar(int[] tabela, long janela) {
+        int largura = larguraRaiz;
+        int entrada = tabela[(int) (janela >>> (64 - largura))];
+        int usados = 0;
+        while (entrada < 0) {
+            usados += largura;
+            janela <<= largura;
+            largura = entrada & 0xF;
+            entrada = tabela[((entrada >>> 4) & 0x07FFFFFF) + (int) (janela >>> (64 - largura))];
+        }
+        return (entrada & 0xFF) == 0 ? 0 : entrada + usados;
+    }
+
+    /*
+    Decodifica um caractere do leitor (o mesmo passo do laço de decodificar).
+     */
+    private int decodificarUm(LeitorDeBits leitor, int[] tabela) throws IOException {
+        int largura = larguraRaiz;
+        int entrada = tabela[leitor.espiar(largura)];
+        while (entrada < 0) {
+            leitor.consumir(largura);
+            int base = (entrada >>> 4) & 0x07FFFFFF;
+            largura = entrada & 0xF;
+            entrada = tabela[base + leitor.espiar(largura)];
+        }
+        int bitsUsados = entrada & 0xFF;
+        if (bitsUsados == 0) {
+            throw new IOException("Sequência de bits inválida nos dados comprimidos.");
+        }
+        leitor.consumir(bitsUsados);
+        return entrada >>> 8;
+    }
+
+    /*
+    Decodifica um caractere do leitor como decodificarUm, mas sem lançar exceção para bits
+    inválidos, e diz quantos bits o código ocupou: retorna (caractere << 8) | bits do código,
+    ou 0 se os bits não formam código de nenhum caractere (nem há tabela).
+    Usado pela DecodificacaoEspeculativa, que precisa saber onde cada código começa.
+     */
+    int decodificarComTamanho(LeitorDeBits leitor) throws IOException {
+        if (larguraRaiz == 0) {
+            return 0;
+        }
+        if (maiorComprimento <= BITS_JANELA) {
+            // Caso comum: todo código cabe na janela; uma consulta, sem espiar nível por nível.
+            int resultado = consultar(entradas, leitor.janela(maiorComprimento));
+            leitor.consumir(resultado & 0xFF);
+            return resultado;
+        }
+        int[] tabela = entradas;
+        int largura = larguraRaiz;
+        int usados = 0;
+        int entrada = tabela[leitor.espiar(largura)];
+        while (entrada < 0) {
+            leitor.consumir(largura);
+            usados += largura;
+            int base = (entrada >>> 4) & 0x07FFFFFF;
+            largura = entrada & 0xF;
+            entrada = tabela[base + leitor.espiar(largura)];
+        }
+        int bitsUsados = entrada & 0xFF;
+        if (bitsUsados == 0) {
+            return 0;
+        }
+        leitor.consumir(bitsUsados);
+        return (entrada & ~0xFF) | (usados + bitsUsados);
+    }
+
+    /*
+    Indica se há uma tabela de códigos (falso no decodificador de caractere único e no vazio).
+     */
+    boolean temCodigos() {
+        return larguraRaiz > 0;
+    }
+
+    /*
+    Constrói recursivamente a tabela para os 'simbolos' cujos primeiros 'consumidos' bits
+    já foram lidos. Retorna a largura da tabela criada; a posição de início é gravada
+    na entrada 'entradaPai' da tabela anterior (ou a tabela é a raiz, quando entradaPai = -1).
+     */
+    private int construir(TabelaDeCodigos tabela, int[] simbolos, int consumidos, int entradaPai) {
+        int maiorComprimento = 0;
+        for (int s : simbolos) {
+            maiorComprimento = Math.max(maiorComprimento, tabela.comprimentos[s]);
+        }
+        int largura = Math.min(BITS_TABELA, maiorComprimento - consumidos);
+        int inicio = alocar(1 << largura);
+        if (entradaPai >= 0) {
+            entradas[entradaPai] = SUBTABELA | (inicio << 4) | largura;
+        }
+
+        // 1. Códigos que terminam dentro desta tabela: preenchem todas as entradas
+        //    que começam com os seus bits restantes (os bits seguintes são "don't care").
+        // 2. Códigos mais longos: são agrupados pelo prefixo de 'largura' bits e vão para uma subtabela.
+        int[][] grupos = new int[1 << largura][];
+        int[] tamanhosGrupos = new int[1 << largura];
+        for (int s : simbolos) {
+            int restante = tabela.comprimentos[s] - consumidos;
+            long codigo = tabela.codigos[s] & ((1L << restante) - 1);
+            if (restante <= largura) {
+                int base = (int) (codigo << (largura - restante));
+                int repeticoes = 1 << (largura - restante);
+                Arrays.fill(entradas, inicio + base, inicio + base + repeticoes, (s << 8) | restante);
+            } else {
+                int prefixo = (int) (codigo >>> (restante - largura));
+                if (grupos[prefixo] == null) {
+                    grupos[prefixo] = new int[simbolos.length];
+                }
+                grupos[prefixo][tamanhosGrupos[prefixo]++] = s;
+            }
+        }
+        for (int prefixo = 0; prefixo < grupos.length; prefixo++) {
+            if (grupos[prefixo] != null) {
+                construir(tabela, Arrays.copyOf(grupos[prefixo], tamanhosGrupos[prefixo]), consumidos + largura, inicio + prefixo);
+            }
+        }
+        return largura;
+    }
+
+    /*
+    Reserva 'tamanho' entradas contíguas no vetor de tabelas, aumentando-o se necessário.
+     */
+    private int alocar(int tamanho) {
+        int inicio = ocupadas;
+        if (ocupadas + tamanho > entradas.length) {
+            entradas = Arrays.copyOf(entradas, Math.max(entradas.length * 2, ocupadas + tamanho));
+        }
+        ocupadas += tamanho;
+        return inicio;
+    }
+}
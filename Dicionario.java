@@ -0,0 +1,130 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+Dicionário: uma tabela de códigos estática, treinada com um corpus de amostra e gravada em
+um arquivo próprio. Os blocos comprimidos com ela (TIPO_DICIONARIO) não calculam árvore e
+não gravam a tabela, só o id do dicionário; quem descomprime precisa do mesmo arquivo
+(--dicionario). Serve para mensagens curtas, em que a árvore e a tabela de cada mensagem
+custariam mais do que os próprios dados.
+
+    'H' 'U' 'D' 0x01
+    id           : int, CRC32 dos comprimentos (identifica o dicionário nos blocos)
+    comprimentos : tabela compacta (FormatoHuff.escreverComprimentos)
+
+O treino soma 1 à frequência de cada byte, então todos os 256 têm código e qualquer
+dado pode ser comprimido, mesmo com bytes que não apareciam nas amostras.
+ */
+public final class Dicionario {
+    private static final byte[] MAGICA = { 'H', 'U', 'D', 1 };
+
+    final int id;
+    final TabelaDeCodigos tabela;
+    final DecodificadorDeTabela decodificador;
+
+    private Dicionario(int[] comprimentos) {
+        this.id = calcularId(comprimentos);
+        this.tabela = CodigosCanonicos.gerarCodigos(comprimentos);
+        this.decodificador = new DecodificadorDeTabela(tabela);
+    }
+
+    /*
+    Treina um dicionário com todos os bytes dos arquivos de amostra.
+     */
+    public static Dicionario treinar(List<Path> amostras) throws IOException {
+        return treinar(amostras, CodigosCanonicos.COMPRIMENTO_MAXIMO_PADRAO);
+    }
+
+    /*
+    Igual ao método acima, com códigos de até 'comprimentoMaximo' bits (pelo menos 8,
+    para que caibam os 256 códigos).
+     */
+    static Dicionario treinar(List<Path> amostras, int comprimentoMaximo) throws IOException {
+        if (comprimentoMaximo < 8) {
+            throw new IllegalArgumentException("Um dicionário precisa de códigos de até pelo menos 8 bits.");
+        }
+        long[] frequencias = new long[256];
+        for (Path amostra : amostras) {
+            try (FileChannel canal = FileChannel.open(amostra, StandardOpenOption.READ)) {
+                for (ByteBuffer janela : JanelasMapeadas.mapearParaLeitura(canal, 0, canal.size())) {
+                    long[] parcial = Histograma.contar(janela);
+                    for (int i = 0; i < 256; i++) {
+                        frequencias[i] += parcial[i];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < 256; i++) {
+            frequencias[i]++;
+        }
+        return new Dicionario(CodigosCanonicos.calcularComprimentos(frequencias, comprimentoMaximo));
+    }
+
+    /*
+    Lê um dicionário gravado por gravar().
+     */
+    public static Dicionario ler(Path caminho) throws IOException {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(caminho));
+        } catch (NoSuchFileException e) {
+            throw new IOException("Dicionário não encontrado: " + caminho);
+        }
+        try {
+            for (byte b : MAGICA) {
+                if (buffer.get() != b) {
+                    throw new IOException("O arquivo não é um dicionário: " + caminho);
+                }
+            }
+            int id = buffer.getInt();
+            int[] comprimentos = FormatoHuff.lerComprimentos(buffer);
+            for (int comprimento : comprimentos) {
+                if (comprimento == 0) {
+                    throw new IOException("Dicionário inválido: algum byte não tem código.");
+                }
+            }
+            if (calcularId(comprimentos) != id) {
+                throw new IOException("Dicionário corrompido: o id não confere com a tabela.");
+            }
+            return new Dicionario(comprimentos);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Dicionário incompleto: " + caminho);
+        }
+    }
+
+    /*
+    Grava o dicionário em um arquivo.
+     */
+    public void gravar(Path caminho) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAGICA.length + Integer.BYTES + 2 + 128);
+        buffer.put(MAGICA).putInt(id);
+        FormatoHuff.escreverComprimentos(buffer, tabela.comprimentos);
+        Files.write(caminho, Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    /*
+    Identificador do dicionário, gravado nos blocos comprimidos com ele.
+     */
+    public int getId() {
+        return id;
+    }
+
+    private static int calcularId(int[] comprimentos) {
+        CRC32 crc = new CRC32();
+        for (int comprimento : comprimentos) {
+            crc.update(comprimento);
+        }
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,135 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/*
+Diretório central de um pacote (versão 6).
+Fica no fim do arquivo e guarda, para cada entrada (um arquivo original), o nome,
+a posição e o tamanho dos seus blocos no pacote e o tamanho original. Com ele
+qualquer entrada pode ser extraída sem ler as outras.
+
+    quantidade de entradas       : varint
+    para cada entrada            : nome (varint com o tamanho + UTF-8), posição (varint),
+                                   tamanhoComprimido (varint), tamanhoOriginal (varint)
+    rodapé (12 bytes fixos)      : posição do diretório (long) + 'H' 'U' 'F' 'P'
+ */
+class DiretorioDoPacote {
+    static final byte[] MAGICA_RODAPE = { 'H', 'U', 'F', 'P' };
+    static final int TAMANHO_RODAPE = Long.BYTES + 4;
+
+    final int quantidade;
+    final String[] nomes;
+    final long[] posicoes;             // Início dos blocos da entrada no pacote.
+    final long[] tamanhosComprimidos;
+    final long[] tamanhosOriginais;
+
+    /*
+    Cria um diretório com 'quantidade' entradas, a serem preenchidas (em qualquer ordem)
+    com definir().
+     */
+    DiretorioDoPacote(int quantidade) {
+        this.quantidade = quantidade;
+        this.nomes = new String[quantidade];
+        this.posicoes = new long[quantidade];
+        this.tamanhosComprimidos = new long[quantidade];
+        this.tamanhosOriginais = new long[quantidade];
+    }
+
+    void definir(int entrada, String nome, long posicao, long tamanhoComprimido, long tamanhoOriginal) {
+        nomes[entrada] = nome;
+        posicoes[entrada] = posicao;
+        tamanhosComprimidos[entrada] = tamanhoComprimido;
+        tamanhosOriginais[entrada] = tamanhoOriginal;
+    }
+
+    /*
+    Soma dos tamanhos originais de todas as entradas.
+     */
+    long tamanhoOriginalTotal() {
+        long total = 0;
+        for (long tamanho : tamanhosOriginais) {
+            total += tamanho;
+        }
+        return total;
+    }
+
+    /*
+    Escreve o diretório e o rodapé na posição 'posicaoDiretorio' do canal.
+     */
+    void escrever(FileChannel canal, long posicaoDiretorio) throws IOException {
+        byte[][] nomesUtf8 = new byte[quantidade][];
+        int tamanho = 10 + TAMANHO_RODAPE;
+        for (int i = 0; i < quantidade; i++) {
+            nomesUtf8[i] = nomes[i].getBytes(StandardCharsets.UTF_8);
+            tamanho += nomesUtf8[i].length + 40;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(tamanho);
+        FormatoHuff.escreverVarLong(buffer, quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            FormatoHuff.escreverVarLong(buffer, nomesUtf8[i].length);
+            buffer.put(nomesUtf8[i]);
+            FormatoHuff.escreverVarLong(buffer, posicoes[i]);
+            FormatoHuff.escreverVarLong(buffer, tamanhosComprimidos[i]);
+            FormatoHuff.escreverVarLong(buffer, tamanhosOriginais[i]);
+        }
+        buffer.putLong(posicaoDiretorio).put(MAGICA_RODAPE).flip();
+        long posicao = posicaoDiretorio;
+        while (buffer.hasRemaining()) {
+            posicao += canal.write(buffer, posicao);
+        }
+    }
+
+    /*
+    Lê o diretório a partir do rodapé no fim do arquivo. As entradas começam logo
+    após o cabeçalho do pacote, em 'inicioDasEntradas', e terminam no diretório.
+     */
+    static DiretorioDoPacote ler(FileChannel canal, long inicioDasEntradas) throws IOException {
+        long tamanhoArquivo = canal.size();
+        if (tamanhoArquivo < inicioDasEntradas + TAMANHO_RODAPE) {
+            throw new IOException("Pacote sem rodapé.");
+        }
+        ByteBuffer rodape = IndiceDeBlocos.lerCompletamente(canal, tamanhoArquivo - TAMANHO_RODAPE, TAMANHO_RODAPE);
+        long posicaoDiretorio = rodape.getLong();
+        for (byte b : MAGICA_RODAPE) {
+            if (rodape.get() != b) {
+                throw new IOException("Rodapé do pacote inválido.");
+            }
+        }
+        if (posicaoDiretorio < inicioDasEntradas || posicaoDiretorio > tamanhoArquivo - TAMANHO_RODAPE) {
+            throw new IOException("Posição do diretório inválida: " + posicaoDiretorio);
+        }
+
+        ByteBuffer buffer = IndiceDeBlocos.lerCompletamente(canal, posicaoDiretorio, (int) (tamanhoArquivo - TAMANHO_RODAPE - posicaoDiretorio));
+        try {
+            long quantidade = FormatoHuff.lerVarLong(buffer);
+            // Cada entrada ocupa pelo menos 4 bytes: um diretório menor do que isso está corrompido.
+            if (quantidade < 0 || quantidade > buffer.remaining() / 4) {
+                throw new IOException("Número de entradas inválido no diretório: " + quantidade);
+            }
+            DiretorioDoPacote diretorio = new DiretorioDoPacote((int) quantidade);
+            for (int i = 0; i < diretorio.quantidade; i++) {
+                long tamanhoNome = FormatoHuff.lerVarLong(buffer);
+                if (tamanhoNome < 1 || tamanhoNome > buffer.remaining()) {
+                    throw new IOException("Nome de entrada inválido no diretório.");
+                }
+                byte[] nome = new byte[(int) tamanhoNome];
+                buffer.get(nome);
+                long posicao = FormatoHuff.lerVarLong(buffer);
+                long tamanhoComprimido = FormatoHuff.lerVarLong(buffer);
+                long tamanhoOriginal = FormatoHuff.lerVarLong(buffer);
+                if (posicao < inicioDasEntradas || tamanhoComprimido < 0 || tamanhoOriginal < 0
+                        || tamanhoComprimido > posicaoDiretorio - posicao) {
+                    throw new IOException("A entrada " + i + " do diretório aponta para fora do pacote.");
+                }
+                diretorio.definir(i, new String(nome, StandardCharsets.UTF_8), posicao, tamanhoComprimido, tamanhoOriginal);
+            }
+            return diretorio;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Diretório do pacote incompleto.");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/*
+Escreve uma sequência de bits em um canal, empacotando-os em bytes.
+Os bits são acumulados em um long de 64 bits (o "acumulador"); quando ele enche,
+os 8 bytes são copiados de uma vez para um buffer, que é descarregado no canal
+apenas quando fica cheio. Assim a memória usada é constante, independentemente
+do tamanho do arquivo, e não há conversão de Strings por byte escrito.
+A ordem dos bits é a mesma do formato original: o primeiro bit do código vai
+para o bit mais significativo do byte.
+ */
+class EscritorDeBits implements AutoCloseable {
+    static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final WritableByteChannel canal; // null quando os bytes vão direto para um buffer de destino.
+    private final ByteBuffer buffer;
+    private long acumulador;      // Os últimos 'bitsPendentes' bits ainda não enviados ao buffer.
+    private int bitsPendentes;    // Sempre entre 0 e 63.
+    private long bitsEscritos;
+
+    /*
+    Cria um escritor que descarrega no canal informado.
+     */
+    EscritorDeBits(WritableByteChannel canal) {
+        this.canal = canal;
+        this.buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+    }
+
+    /*
+    Cria um escritor que grava diretamente no buffer informado, sem canal.
+    O buffer precisa ter espaço para todos os bytes (o tamanho é conhecido pelo histograma).
+     */
+    EscritorDeBits(ByteBuffer destino) {
+        this.canal = null;
+        this.buffer = destino;
+    }
+
+    /*
+    Escreve os 'comprimento' bits menos significativos de 'codigo' (no máximo 63).
+    Os bits acima do comprimento devem ser zero.
+     */
+    void escrever(long codigo, int comprimento) throws IOException {
+        int livres = 64 - bitsPendentes;
+        if (comprimento < livres) {
+            // Caso comum: o código cabe inteiro no acumulador.
+            acumulador = (acumulador << comprimento) | codigo;
+            bitsPendentes += comprimento;
+        } else {
+            // O acumulador enche: completa-o com a parte alta do código,
+            // envia os 8 bytes e guarda a parte baixa que sobrou.
+            int resto = comprimento - livres;
+            long cheio = (acumulador << livres) | (codigo >>> resto);
+            if (buffer.remaining() < Long.BYTES) {
+                descarregar();
+            }
+            buffer.putLong(cheio);
+            acumulador = codigo;
+            bitsPendentes = resto;
+        }
+        bitsEscritos += comprimento;
+    }
+
+    /*
+    Escreve bytes inteiros diretamente (usado para cabeçalhos).
+    Só pode ser chamado quando não há bits pendentes, isto é, em uma fronteira de byte.
+     */
+    void escreverBytes(byte[] dados, int inicio, int quantidade) throws IOException {
+        if (bitsPendentes % 8 != 0) {
+            throw new IllegalStateException("Escrita de bytes fora de uma fronteira de byte.");
+        }
+        alinharAoByte();
+        while (quantidade > 0) {
+            if (!buffer.hasRemaining()) {
+                descarregar();
+            }
+            int n = Math.min(quantidade, buffer.remaining());
+            buffer.put(dados, inicio, n);
+            inicio += n;
+            quantidade -= n;
+        }
+    }
+
+    /*
+    Retorna quantos bits de código foram escritos até agora (sem contar padding).
+     */
+    long getBitsEscritos() {
+        return bitsEscritos;
+    }
+
+    /*
+    Completa o último byte com zeros à direita (padding) e envia para o buffer
+    os bytes que ainda estavam no acumulador.
+     */
+    void alinharAoByte() throws IOException {
+        if (bitsPendentes == 0) {
+            return;
+        }
+        long alinhado = acumulador << (64 - bitsPendentes);
+        int bytes = (bitsPendentes + 7) / 8;
+        if (buffer.remaining() < bytes) {
+            descarregar();
+        }
+        for (int i = 0; i < bytes; i++) {
+            buffer.put((byte) (alinhado >>> (56 - 8 * i)));
+        }
+        acumulador = 0;
+        bitsPendentes = 0;
+    }
+
+    /*
+    Envia ao canal os bytes já completos, inclusive os que estão no acumulador, sem padding:
+    os bits de um byte incompleto continuam pendentes. Usado quando a saída precisa chegar
+    logo ao destino (ex: compressão adaptativa em um pipe) sem encerrar o fluxo de bits.
+     */
+    void descarregarBytesCompletos() throws IOException {
+        int bytes = bitsPendentes / 8;
+        if (buffer.remaining() < bytes) {
+            descarregar();
+        }
+        for (int i = 1; i <= bytes; i++) {
+            buffer.put((byte) (acumulador >>> (bitsPendentes - 8 * i)));
+        }
+        bitsPendentes -= 8 * bytes;
+        acumulador &= (1L << bitsPendentes) - 1;
+        descarregar();
+    }
+
+    /*
+    Envia ao canal tudo o que está no buffer.
+     */
+    private void descarregar() throws IOException {
+        if (canal == null) {
+            return; // Escrevendo direto no buffer de destino: não há para onde descarregar.
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /*
+    Faz o padding final e descarrega o buffer. Não fecha o canal, que pertence
+    a quem criou o escritor.
+     */
+    @Override
+    public void close() throws IOException {
+        alinharAoByte();
+        descarregar();
+    }
+}
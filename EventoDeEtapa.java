@@ -0,0 +1,29 @@
+package huffman;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+Evento do JDK Flight Recorder emitido ao redor de cada etapa da compressão e da descompressão
+(ver Metricas). Com a gravação ligada, por exemplo
+    java -XX:StartFlightRecording=filename=huffman.jfr -jar huffman.jar c entrada saida
+as etapas aparecem na linha do tempo do JDK Mission Control (ou em 'jfr print --events huffman.Etapa').
+Com a gravação desligada o evento não custa praticamente nada.
+ */
+@Name("huffman.Etapa")
+@Label("Etapa do Huffman")
+@Category("Huffman")
+@Description("Uma etapa da compressão ou da descompressão de um arquivo.")
+class EventoDeEtapa extends Event {
+    @Label("Modo")
+    String modo;
+
+    @Label("Etapa")
+    String etapa;
+
+    @Label("Arquivo")
+    String arquivo;
+}
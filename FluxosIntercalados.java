@@ -0,0 +1,115 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+Codificação em vários fluxos de bits intercalados (bloco TIPO_INTERCALADO).
+Em um único fluxo, a posição de cada código depende do comprimento de todos os
+anteriores: a decodificação é uma cadeia de dependências, um código de cada vez.
+Aqui o caractere de número i vai para o fluxo i % n; os n fluxos usam a mesma tabela
+de códigos, mas cada um tem o seu próprio leitor de bits. O decodificador avança os n
+fluxos no mesmo laço (DecodificadorDeTabela.decodificarIntercalado) e, como as cadeias
+são independentes, o processador executa as consultas dos n fluxos ao mesmo tempo.
+
+Os fluxos são gravados um após o outro, cada um completado com zeros até o fim do
+seu último byte; o cabeçalho do bloco traz o tamanho de cada fluxo.
+ */
+class FluxosIntercalados {
+    static final int FLUXOS_PADRAO = 4;
+
+    /*
+    Calcula o tamanho, em bytes, de cada um dos 'fluxos' fluxos, sem codificar nada:
+    soma o comprimento do código de cada caractere no fluxo a que ele pertence.
+     */
+    static long[] tamanhosDosFluxos(ByteBuffer[] janelas, int[] comprimentos, int fluxos) {
+        long[] bits = new long[fluxos];
+        byte[] pedaco = new byte[EscritorDeBits.TAMANHO_BUFFER];
+        int fluxo = 0;
+        for (ByteBuffer janela : janelas) {
+            ByteBuffer entrada = janela.slice();
+            while (entrada.hasRemaining()) {
+                int lidos = Math.min(pedaco.length, entrada.remaining());
+                entrada.get(pedaco, 0, lidos);
+                for (int i = 0; i < lidos; i++) {
+                    bits[fluxo] += comprimentos[pedaco[i] & 0xFF];
+                    if (++fluxo == fluxos) {
+                        fluxo = 0;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < fluxos; i++) {
+            bits[i] = (bits[i] + 7) / 8;
+        }
+        return bits;
+    }
+
+    /*
+    Codifica os bytes das janelas distribuindo os códigos entre os escritores, em rodízio.
+    Os escritores não são fechados (o padding de cada fluxo é feito por quem os criou).
+     */
+    static void codificar(ByteBuffer[] janelas, TabelaDeCodigos tabela, EscritorDeBits[] escritores) throws IOException {
+        long[] codigos = tabela.codigos;
+        int[] comprimentos = tabela.comprimentos;
+        byte[] pedaco = new byte[EscritorDeBits.TAMANHO_BUFFER];
+        int fluxo = 0;
+        for (ByteBuffer janela : janelas) {
+            ByteBuffer entrada = janela.slice();
+            while (entrada.hasRemaining()) {
+                int lidos = Math.min(pedaco.length, entrada.remaining());
+                entrada.get(pedaco, 0, lidos);
+                for (int i = 0; i < lidos; i++) {
+                    int simbolo = pedaco[i] & 0xFF;
+                    escritores[fluxo].escrever(codigos[simbolo], comprimentos[simbolo]);
+                    if (++fluxo == escritores.length) {
+                        fluxo = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+    Cria um escritor para cada fluxo de um arquivo, a partir da posição 'inicio' do canal.
+    Como o tamanho de cada fluxo é conhecido, cada um é gravado direto na sua região do
+    arquivo, por janelas mapeadas, e todos são escritos na mesma passada pelo original.
+     */
+    static EscritorDeBits[] escritoresDeArquivo(FileChannel canal, long inicio, long[] tamanhosFluxos) {
+        EscritorDeBits[] escritores = new EscritorDeBits[tamanhosFluxos.length];
+        long posicao = inicio;
+        for (int i = 0; i < escritores.length; i++) {
+            escritores[i] = new EscritorDeBits(new JanelasMapeadas.Escritor(canal, posicao, tamanhosFluxos[i]));
+            posicao += tamanhosFluxos[i];
+        }
+        return escritores;
+    }
+
+    /*
+    Cria um leitor para cada fluxo de um arquivo, a partir da posição 'inicio' do canal.
+     */
+    static LeitorDeBits[] leitoresDeArquivo(FileChannel canal, long inicio, long[] tamanhosFluxos) {
+        LeitorDeBits[] leitores = new LeitorDeBits[tamanhosFluxos.length];
+        long posicao = inicio;
+        for (int i = 0; i < leitores.length; i++) {
+            leitores[i] = new LeitorDeBits(new JanelasMapeadas.Leitor(canal, posicao, posicao + tamanhosFluxos[i]),
+                    ByteBuffer.allocate(LeitorDeBits.TAMANHO_BUFFER).flip());
+            posicao += tamanhosFluxos[i];
+        }
+        return leitores;
+    }
+
+    /*
+    Cria um leitor para cada fluxo de dados que já estão em memória, a partir da posição atual de 'dados'.
+     */
+    static LeitorDeBits[] leitoresEmMemoria(ByteBuffer dados, long[] tamanhosFluxos) {
+        LeitorDeBits[] leitores = new LeitorDeBits[tamanhosFluxos.length];
+        int posicao = dados.position();
+        for (int i = 0; i < leitores.length; i++) {
+            leitores[i] = new LeitorDeBits(dados.slice(posicao, (int) tamanhosFluxos[i]));
+            posicao += (int) tamanhosFluxos[i];
+        }
+        return leitores;
+    }
+}
@@ -0,0 +1,201 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/*
+Constantes e rotinas de leitura/escrita do formato de arquivo .huff.
+
+Versão 1 (legada, sem número mágico):
+    256 x int (frequências) + long (número de caracteres) + bits.
+Versão 2 (canônica):
+    'H' 'U' 'F' 0x02 + um bloco (ver CabecalhoDeBloco) + bits.
+Versão 3 (em blocos):
+    'H' 'U' 'F' 0x03 + vários blocos independentes + índice (ver ArquivoEmBlocos).
+Versão 4 (fluxo):
+    'H' 'U' 'F' 0x04 + quadros + varint 0. Cada quadro é o seu tamanho em varint seguido
+    de um bloco (ver HuffmanOutputStream). Pode ser escrito e lido sequencialmente, sem
+    conhecer o tamanho total e sem voltar atrás.
+Versão 5 (adaptativa):
+    'H' 'U' 'F' 0x05 + códigos da árvore adaptativa, até o código de FIM (ver CodificadorAdaptativo).
+Versão 6 (pacote):
+    'H' 'U' 'F' 0x06 + tabela compartilhada + blocos de vários arquivos + diretório (ver Pacote).
+
+A versão é detectada pelos 4 primeiros bytes. Um arquivo legado só seria confundido
+com as versões 2 a 6 se o seu primeiro int (a frequência do byte 0) fosse exatamente
+0x48554602 a 0x48554606, ou seja, mais de 1,2 bilhão de bytes zero.
+ */
+class FormatoHuff {
+    static final byte[] MAGICA = { 'H', 'U', 'F' };
+    static final int VERSAO_LEGADA = 1;
+    static final int VERSAO_CANONICA = 2;
+    static final int VERSAO_BLOCOS = 3;
+    static final int VERSAO_FLUXO = 4;
+    static final int VERSAO_ADAPTATIVA = 5;
+    static final int VERSAO_PACOTE = 6;
+
+    static final int TAMANHO_MAGICA = 4;
+
+    static final int TAMANHO_CABECALHO_LEGADO = 256 * Integer.BYTES + Long.BYTES;
+
+    /*
+    Identifica a versão do arquivo olhando os primeiros bytes do buffer (sem consumi-los).
+     */
+    static int detectarVersao(ByteBuffer buffer) {
+        int p = buffer.position();
+        if (buffer.remaining() >= 4
+                && buffer.get(p) == MAGICA[0] && buffer.get(p + 1) == MAGICA[1] && buffer.get(p + 2) == MAGICA[2]
+                && buffer.get(p + 3) >= VERSAO_CANONICA && buffer.get(p + 3) <= VERSAO_PACOTE) {
+            return buffer.get(p + 3);
+        }
+        return VERSAO_LEGADA;
+    }
+
+    /*
+    Escreve o número mágico seguido da versão.
+     */
+    static void escreverMagica(ByteBuffer buffer, int versao) {
+        buffer.put(MAGICA).put((byte) versao);
+    }
+
+    /*
+    Lê mais bytes do canal até encher o buffer ou chegar ao fim do arquivo.
+    O buffer entra e sai em modo de leitura, preservando os bytes ainda não consumidos.
+     */
+    static void preencher(ReadableByteChannel canal, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining() && canal.read(buffer) >= 0) {
+            // Continua lendo até encher o buffer ou o canal acabar.
+        }
+        buffer.flip();
+    }
+
+    /*
+    Escreve um inteiro não negativo com 7 bits por byte (o bit mais alto indica que há continuação).
+    Valores pequenos, que são a maioria nos cabeçalhos, ocupam um único byte.
+     */
+    static void escreverVarLong(ByteBuffer buffer, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            buffer.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+    }
+
+    /*
+    Igual ao método acima, mas ocupando sempre 'largura' bytes (pelo menos tamanhoVarLong(valor)):
+    os bytes a mais são continuações com 7 bits zero, que lerVarLong lê como o mesmo valor.
+    Assim o espaço de um tamanho ainda desconhecido pode ser reservado e regravado depois.
+     */
+    static void escreverVarLong(ByteBuffer buffer, long valor, int largura) {
+        for (int i = 1; i < largura; i++) {
+            buffer.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+    }
+
+    /*
+    Número de bytes que escreverVarLong usa para 'valor'.
+     */
+    static int tamanhoVarLong(long valor) {
+        int bytes = 1;
+        while ((valor >>>= 7) != 0) {
+            bytes++;
+        }
+        return bytes;
+    }
+
+    /*
+    Lê um inteiro escrito por escreverVarLong.
+     */
+    static long lerVarLong(ByteBuffer buffer) throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            int b = buffer.get() & 0xFF;
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Inteiro variável mal formado no cabeçalho.");
+    }
+
+    /*
+    Escreve a tabela de comprimentos de código de forma compacta.
+    Primeiro vai a quantidade 'n' de caracteres presentes. Depois:
+    - poucos caracteres (n <= 85): a lista dos caracteres (1 byte cada) seguida
+      dos seus comprimentos, dois por byte (4 bits cada);
+    - muitos caracteres: os 256 comprimentos, dois por byte (128 bytes).
+    O descompressor escolhe a mesma forma só olhando 'n'.
+     */
+    static void escreverComprimentos(ByteBuffer buffer, int[] comprimentos) {
+        int n = 0;
+        for (int c : comprimentos) {
+            if (c > 0) n++;
+        }
+        escreverVarLong(buffer, n);
+        if (usaListaEsparsa(n)) {
+            int[] presentes = new int[n];
+            int k = 0;
+            for (int s = 0; s < 256; s++) {
+                if (comprimentos[s] > 0) {
+                    buffer.put((byte) s);
+                    presentes[k++] = comprimentos[s];
+                }
+            }
+            escreverNibbles(buffer, presentes, n);
+        } else if (n > 0) {
+            escreverNibbles(buffer, comprimentos, 256);
+        }
+    }
+
+    /*
+    Lê a tabela de comprimentos escrita por escreverComprimentos.
+     */
+    static int[] lerComprimentos(ByteBuffer buffer) throws IOException {
+        int[] comprimentos = new int[256];
+        long n = lerVarLong(buffer);
+        if (n < 0 || n > 256) {
+            throw new IOException("Quantidade de caracteres inválida no cabeçalho: " + n);
+        }
+        if (usaListaEsparsa((int) n)) {
+            int[] simbolos = new int[(int) n];
+            for (int i = 0; i < n; i++) {
+                simbolos[i] = buffer.get() & 0xFF;
+            }
+            int[] presentes = lerNibbles(buffer, (int) n);
+            for (int i = 0; i < n; i++) {
+                comprimentos[simbolos[i]] = presentes[i];
+            }
+        } else if (n > 0) {
+            comprimentos = lerNibbles(buffer, 256);
+        }
+        return comprimentos;
+    }
+
+    private static boolean usaListaEsparsa(int n) {
+        return n + (n + 1) / 2 < 128;
+    }
+
+    private static void escreverNibbles(ByteBuffer buffer, int[] valores, int quantidade) {
+        for (int i = 0; i < quantidade; i += 2) {
+            int alto = valores[i];
+            int baixo = i + 1 < quantidade ? valores[i + 1] : 0;
+            buffer.put((byte) ((alto << 4) | baixo));
+        }
+    }
+
+    private static int[] lerNibbles(ByteBuffer buffer, int quantidade) {
+        int[] valores = new int[quantidade];
+        for (int i = 0; i < quantidade; i += 2) {
+            int b = buffer.get() & 0xFF;
+            valores[i] = b >>> 4;
+            if (i + 1 < quantidade) {
+                valores[i + 1] = b & 0xF;
+            }
+        }
+        return valores;
+    }
+}
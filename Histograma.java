@@ -0,0 +1,208 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+Contagem da frequência de cada byte (0-255).
+A contagem usa 4 sub-tabelas ("listras") que se alternam a cada byte: em trechos
+com o mesmo byte repetido, incrementos seguidos caem em contadores diferentes e
+não precisam esperar a escrita do incremento anterior (o que acontece com uma
+única tabela). No fim as sub-tabelas são somadas.
+Entradas grandes são divididas em pedaços contados em paralelo no ForkJoinPool,
+cada pedaço com os seus próprios contadores long[256], somados ao final.
+ */
+class Histograma {
+    // Abaixo deste tamanho a contagem em paralelo não compensa o custo de dividir a tarefa.
+    static final int LIMIAR_PARALELO = 1 << 20;
+    private static final int LISTRAS = 4;
+    private static final int TAMANHO_PEDACO = 64 * 1024;
+    // Amostragem (--amostra): a amostra nunca é menor que AMOSTRA_MINIMA bytes (arquivos até
+    // esse tamanho são contados inteiros) e é lida em pedaços de TAMANHO_PEDACO bytes.
+    static final long AMOSTRA_MINIMA = 1 << 20;
+
+    /*
+    Conta as frequências de todos os bytes restantes de 'dados' (sem alterar a sua posição),
+    usando até 'paralelismo' threads.
+     */
+    static long[] calcular(ByteBuffer dados, int paralelismo) {
+        ByteBuffer visao = dados.slice();
+        if (paralelismo <= 1 || visao.remaining() < LIMIAR_PARALELO) {
+            return contar(visao);
+        }
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            int limiar = Math.max(LIMIAR_PARALELO, visao.remaining() / (paralelismo * 4));
+            return pool.invoke(new Tarefa(visao, limiar));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /*
+    Conta as frequências dos bytes de 'dados', de 'inicio' (inclusive) até 'fim' (exclusive).
+     */
+    static long[] contar(byte[] dados, int inicio, int fim) {
+        long[] listras = new long[LISTRAS * 256];
+        contarListrado(dados, inicio, fim, listras);
+        return somarListras(listras);
+    }
+
+    /*
+    Conta as frequências de um buffer (de heap ou mapeado em memória), copiando-o
+    em pedaços para um vetor local, o que é mais rápido do que ler byte a byte do buffer.
+     */
+    static long[] contar(ByteBuffer dados) {
+        long[] listras = new long[LISTRAS * 256];
+        ByteBuffer visao = dados.slice();
+        if (visao.hasArray()) {
+            int inicio = visao.arrayOffset();
+            contarListrado(visao.array(), inicio, inicio + visao.remaining(), listras);
+        } else {
+            byte[] pedaco = new byte[Math.min(TAMANHO_PEDACO, visao.remaining())];
+            while (visao.hasRemaining()) {
+                int n = Math.min(pedaco.length, visao.remaining());
+                visao.get(pedaco, 0, n);
+                contarListrado(pedaco, 0, n, listras);
+            }
+        }
+        return somarListras(listras);
+    }
+
+    /*
+    Soma às 'frequencias' as dos bytes de 'dados', de 'inicio' (inclusive) até 'fim' (exclusive).
+     */
+    static void acumular(long[] frequencias, byte[] dados, int inicio, int fim) {
+        long[] parcial = contar(dados, inicio, fim);
+        for (int i = 0; i < 256; i++) {
+            frequencias[i] += parcial[i];
+        }
+    }
+
+    /*
+    Conta as frequências de uma amostra de 'porcento' por cento do arquivo (pelo menos
+    AMOSTRA_MINIMA bytes): pedaços de TAMANHO_PEDACO bytes igualmente espaçados do início ao
+    fim. Pedaços inteiros em passos fixos são lidos pelo disco muito mais depressa do que bytes
+    sorteados, e o espaçamento regular cobre todas as regiões do arquivo. Se a amostra for o
+    arquivo todo, as frequências são as exatas; Histograma.total diz quantos bytes foram contados.
+     */
+    static long[] amostrar(FileChannel canal, int porcento) throws IOException {
+        long tamanho = canal.size();
+        long alvo = Math.max(AMOSTRA_MINIMA, tamanho / 100 * porcento + tamanho % 100 * porcento / 100);
+        long pedacos = (Math.min(alvo, tamanho) + TAMANHO_PEDACO - 1) / TAMANHO_PEDACO;
+        long passo = pedacos == 0 ? TAMANHO_PEDACO : Math.max(TAMANHO_PEDACO, tamanho / pedacos);
+        long[] frequencias = new long[256];
+        ByteBuffer pedaco = ByteBuffer.allocate(TAMANHO_PEDACO);
+        for (long i = 0; i < pedacos; i++) {
+            long posicao = i * passo;
+            pedaco.clear().limit((int) Math.min(TAMANHO_PEDACO, tamanho - posicao));
+            while (pedaco.hasRemaining() && canal.read(pedaco, posicao + pedaco.position()) >= 0) {
+                // Continua lendo até completar o pedaço.
+            }
+            acumular(frequencias, pedaco.array(), 0, pedaco.position());
+        }
+        return frequencias;
+    }
+
+    /*
+    Dá frequência 1 aos bytes que não apareceram (na amostra), para que todos recebam um
+    código: um byte que só aparece fora da amostra custa um código longo, mas é codificável.
+     */
+    static void aplicarPiso(long[] frequencias) {
+        for (int i = 0; i < 256; i++) {
+            if (frequencias[i] == 0) {
+                frequencias[i] = 1;
+            }
+        }
+    }
+
+    /*
+    Número de bytes contados nas frequências.
+     */
+    static long total(long[] frequencias) {
+        long total = 0;
+        for (long f : frequencias) {
+            total += f;
+        }
+        return total;
+    }
+
+    /*
+    Entropia de Shannon das frequências, em bits por byte. Nenhum código de prefixo (logo,
+    nenhuma tabela de Huffman) gasta em média menos do que isso por byte.
+     */
+    static double entropia(long[] frequencias) {
+        long total = total(frequencias);
+        double bits = 0;
+        for (long f : frequencias) {
+            if (f > 0) {
+                double p = (double) f / total;
+                bits -= p * Math.log(p);
+            }
+        }
+        return bits / Math.log(2);
+    }
+
+    /*
+    Laço principal: 4 bytes por iteração, cada um na sua sub-tabela.
+     */
+    private static void contarListrado(byte[] dados, int inicio, int fim, long[] listras) {
+        int i = inicio;
+        for (; i + 3 < fim; i += 4) {
+            listras[dados[i] & 0xFF]++;
+            listras[256 + (dados[i + 1] & 0xFF)]++;
+            listras[512 + (dados[i + 2] & 0xFF)]++;
+            listras[768 + (dados[i + 3] & 0xFF)]++;
+        }
+        for (; i < fim; i++) {
+            listras[dados[i] & 0xFF]++;
+        }
+    }
+
+    private static long[] somarListras(long[] listras) {
+        long[] frequencias = new long[256];
+        for (int listra = 0; listra < LISTRAS; listra++) {
+            for (int i = 0; i < 256; i++) {
+                frequencias[i] += listras[listra * 256 + i];
+            }
+        }
+        return frequencias;
+    }
+
+    /*
+    Divide o buffer ao meio até os pedaços ficarem menores que o limiar,
+    conta cada pedaço e soma os resultados.
+     */
+    private static class Tarefa extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer dados;
+        private final int limiar;
+
+        Tarefa(ByteBuffer dados, int limiar) {
+            this.dados = dados;
+            this.limiar = limiar;
+        }
+
+        @Override
+        protected long[] compute() {
+            int tamanho = dados.remaining();
+            if (tamanho <= limiar) {
+                return contar(dados);
+            }
+            int meio = tamanho / 2;
+            Tarefa esquerda = new Tarefa(dados.slice(0, meio), limiar);
+            Tarefa direita = new Tarefa(dados.slice(meio, tamanho - meio), limiar);
+            esquerda.fork();
+            long[] resultado = direita.compute();
+            long[] parcial = esquerda.join();
+            for (int i = 0; i < 256; i++) {
+                resultado[i] += parcial[i];
+            }
+            return resultado;
+        }
+    }
+}
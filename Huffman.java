@@ -0,0 +1,101 @@
+package huffman;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+Compressão e descompressão em memória, com ByteBuffer.
+O resultado usa o mesmo formato de fluxo (versão 4) de HuffmanOutputStream, então o que é
+comprimido aqui pode ser lido por HuffmanInputStream (e pelo modo 'd'), e vice-versa.
+Para muitas mensagens curtas, os métodos com um Dicionario evitam a árvore e a tabela de
+cada mensagem (o mesmo dicionário é necessário para descomprimir).
+ */
+public final class Huffman {
+    private static final int TAMANHO_PEDACO = 64 * 1024;
+
+    private Huffman() {
+    }
+
+    /*
+    Comprime todos os bytes restantes de 'dados', que fica com a posição no limite.
+    Retorna um buffer (pronto para leitura) com os dados comprimidos.
+     */
+    public static ByteBuffer comprimir(ByteBuffer dados) {
+        return comprimir(dados, null);
+    }
+
+    /*
+    Igual ao método acima, com a tabela de códigos de um dicionário (que pode ser null).
+     */
+    public static ByteBuffer comprimir(ByteBuffer dados, Dicionario dicionario) {
+        int tamanhoBloco = Math.max(1, Math.min(dados.remaining(), Configuracao.TAMANHO_BLOCO_PADRAO));
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(dados.remaining() / 2 + 64);
+        try (HuffmanOutputStream comprimido = new HuffmanOutputStream(saida, tamanhoBloco, CodigosCanonicos.COMPRIMENTO_MAXIMO_PADRAO, dicionario)) {
+            if (dados.hasArray()) {
+                comprimido.write(dados.array(), dados.arrayOffset() + dados.position(), dados.remaining());
+                dados.position(dados.limit());
+            } else {
+                byte[] pedaco = new byte[Math.min(TAMANHO_PEDACO, dados.remaining())];
+                while (dados.hasRemaining()) {
+                    int n = Math.min(pedaco.length, dados.remaining());
+                    dados.get(pedaco, 0, n);
+                    comprimido.write(pedaco, 0, n);
+                }
+            }
+        } catch (IOException e) {
+            // ByteArrayOutputStream não lança IOException.
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(saida.toByteArray());
+    }
+
+    /*
+    Descomprime só 'quantidade' bytes do original, a partir de 'inicio', de um arquivo
+    comprimido (versões 2, 3 e 4; ver AcessoAleatorio). Com um índice de sincronia (--indice)
+    ou em blocos, a decodificação começa perto do trecho, e não no início do arquivo.
+    'dicionario' pode ser null. O resultado é menor se o trecho passar do fim do original.
+     */
+    public static ByteBuffer descomprimirTrecho(Path arquivo, long inicio, int quantidade, Dicionario dicionario) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(quantidade);
+        try (FileChannel entrada = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            AcessoAleatorio.descomprimirTrecho(entrada, inicio, quantidade, Channels.newChannel(saida), dicionario);
+        }
+        return ByteBuffer.wrap(saida.toByteArray());
+    }
+
+    /*
+    Descomprime os bytes restantes de 'comprimido' (um fluxo completo, até o quadro de fim).
+    Ao final, a posição de 'comprimido' fica logo após o fluxo.
+    Lança IOException se os dados estiverem truncados ou corrompidos.
+     */
+    public static ByteBuffer descomprimir(ByteBuffer comprimido) throws IOException {
+        return descomprimir(comprimido, null);
+    }
+
+    /*
+    Igual ao método acima, para dados comprimidos com um dicionário (que pode ser null).
+     */
+    public static ByteBuffer descomprimir(ByteBuffer comprimido, Dicionario dicionario) throws IOException {
+        InputStream entrada;
+        if (comprimido.hasArray()) {
+            entrada = new ByteArrayInputStream(comprimido.array(), comprimido.arrayOffset() + comprimido.position(), comprimido.remaining());
+        } else {
+            byte[] copia = new byte[comprimido.remaining()];
+            comprimido.duplicate().get(copia);
+            entrada = new ByteArrayInputStream(copia);
+        }
+        try (HuffmanInputStream descomprimido = new HuffmanInputStream(entrada, dicionario)) {
+            byte[] resultado = descomprimido.readAllBytes();
+            comprimido.position(comprimido.position() + (int) descomprimido.getBytesComprimidos());
+            return ByteBuffer.wrap(resultado);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/*
+InputStream que descomprime um fluxo escrito por HuffmanOutputStream (formato versão 4).
+Os quadros são lidos e descomprimidos um de cada vez, à medida que os bytes são pedidos,
+então a memória usada é a de um bloco, qualquer que seja o volume de dados.
+Depois do quadro de fim, read() retorna -1; os bytes seguintes da entrada não são lidos.
+ */
+public class HuffmanInputStream extends InputStream {
+    // Maior quadro aceito: um bloco do tamanho máximo com todos os códigos de 15 bits, mais o
+    // cabeçalho e o padding de cada fluxo.
+    private static final long TAMANHO_MAXIMO_QUADRO = CabecalhoDeBloco.TAMANHO_MAXIMO_CONTEXTO
+            + (long) Configuracao.TAMANHO_BLOCO_MAXIMO * CodigosCanonicos.COMPRIMENTO_MAXIMO_SUPORTADO / 8 + CabecalhoDeBloco.FLUXOS_MAXIMO;
+
+    private final InputStream entrada;
+    private final Dicionario dicionario;
+    private byte[] quadro = new byte[0];
+    private byte[] bloco = new byte[0];
+    private int posicao;
+    private int limite;
+    private boolean fim;
+    private long bytesComprimidos;
+    private long bytesOriginais;
+
+    /*
+    Cria o fluxo e lê o número mágico, que precisa ser o do formato de fluxo.
+     */
+    public HuffmanInputStream(InputStream entrada) throws IOException {
+        this(entrada, null);
+    }
+
+    /*
+    Igual ao construtor acima, para fluxos comprimidos com um dicionário (que pode ser null).
+     */
+    public HuffmanInputStream(InputStream entrada, Dicionario dicionario) throws IOException {
+        this.entrada = entrada;
+        this.dicionario = dicionario;
+        byte[] magica = lerCompletamente(FormatoHuff.TAMANHO_MAGICA);
+        if (FormatoHuff.detectarVersao(ByteBuffer.wrap(magica)) != FormatoHuff.VERSAO_FLUXO) {
+            throw new IOException("A entrada não é um fluxo .huff (versão " + FormatoHuff.VERSAO_FLUXO + ").");
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (posicao == limite && !proximoBloco()) {
+            return -1;
+        }
+        return bloco[posicao++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] destino, int inicio, int quantidade) throws IOException {
+        java.util.Objects.checkFromIndexSize(inicio, quantidade, destino.length);
+        if (quantidade == 0) {
+            return 0;
+        }
+        if (posicao == limite && !proximoBloco()) {
+            return -1;
+        }
+        int n = Math.min(quantidade, limite - posicao);
+        System.arraycopy(bloco, posicao, destino, inicio, n);
+        posicao += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limite - posicao;
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+    }
+
+    /*
+    Número de bytes comprimidos lidos da entrada até agora.
+     */
+    public long getBytesComprimidos() {
+        return bytesComprimidos;
+    }
+
+    /*
+    Número de bytes descomprimidos produzidos até agora.
+     */
+    public long getBytesOriginais() {
+        return bytesOriginais;
+    }
+
+    /*
+    Lê e descomprime o próximo quadro. Retorna false no fim do fluxo.
+     */
+    private boolean proximoBloco() throws IOException {
+        while (!fim) {
+            // 1. Tamanho do quadro (zero marca o fim).
+            long tamanho = lerVarLong();
+            if (tamanho == 0) {
+                fim = true;
+                return false;
+            }
+            if (tamanho > TAMANHO_MAXIMO_QUADRO) {
+                throw new IOException("Quadro com tamanho inválido: " + tamanho);
+            }
+
+            // 2. Quadro inteiro em memória; o cabeçalho diz o tamanho do bloco descomprimido.
+            if (quadro.length < tamanho) {
+                quadro = new byte[(int) tamanho];
+            }
+            lerCompletamente(quadro, (int) tamanho);
+            ByteBuffer dados = ByteBuffer.wrap(quadro, 0, (int) tamanho);
+            CabecalhoDeBloco cabecalho = CabecalhoDeBloco.ler(dados.duplicate());
+            if (cabecalho.tamanhoOriginal > Configuracao.TAMANHO_BLOCO_MAXIMO) {
+                throw new IOException("O bloco declara mais bytes do que o permitido: " + cabecalho.tamanhoOriginal);
+            }
+            if (bloco.length < cabecalho.tamanhoOriginal) {
+                bloco = new byte[(int) cabecalho.tamanhoOriginal];
+            }
+
+            // 3. Descompressão do bloco.
+            CodificadorDeBloco.descomprimir(dados, bloco, 0, null, dicionario);
+            posicao = 0;
+            limite = (int) cabecalho.tamanhoOriginal;
+            bytesOriginais += limite;
+            if (limite > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long lerVarLong() throws IOException {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            int b = entrada.read();
+            if (b < 0) {
+                throw new EOFException("Fluxo comprimido truncado: falta o fim do fluxo.");
+            }
+            bytesComprimidos++;
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Inteiro variável mal formado no fluxo.");
+    }
+
+    private byte[] lerCompletamente(int quantidade) throws IOException {
+        byte[] dados = new byte[quantidade];
+        lerCompletamente(dados, quantidade);
+        return dados;
+    }
+
+    private void lerCompletamente(byte[] destino, int quantidade) throws IOException {
+        int lidos = entrada.readNBytes(destino, 0, quantidade);
+        bytesComprimidos += lidos;
+        if (lidos < quantidade) {
+            throw new EOFException("Fluxo comprimido truncado.");
+        }
+    }
+}
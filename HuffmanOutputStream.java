@@ -0,0 +1,168 @@
+package huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/*
+OutputStream que comprime com Huffman tudo o que recebe, no formato de fluxo (versão 4).
+Os bytes são acumulados em um bloco de tamanho fixo; quando o bloco enche (ou em flush())
+ele é comprimido com o seu próprio histograma e códigos canônicos (ver CodificadorDeBloco)
+e escrito como um quadro:
+    varint (tamanho do quadro) + cabeçalho do bloco + dados comprimidos.
+O fim do fluxo é um quadro de tamanho zero, escrito por finish() ou close().
+A memória usada é a de um bloco, qualquer que seja o volume de dados.
+
+Exemplo:
+    try (OutputStream saida = new HuffmanOutputStream(new FileOutputStream("log.huff"))) {
+        saida.write(registro);
+    }
+ */
+public class HuffmanOutputStream extends OutputStream {
+    private final OutputStream saida;
+    private final byte[] bloco;
+    private final int comprimentoMaximo;
+    private final Dicionario dicionario;
+    private int preenchidos;
+    private boolean terminado;
+    private long bytesOriginais;
+    private long bytesComprimidos;
+
+    /*
+    Cria o fluxo com blocos de Configuracao.TAMANHO_BLOCO_PADRAO (1 MB) e o comprimento
+    máximo de código padrão. O número mágico é escrito imediatamente.
+     */
+    public HuffmanOutputStream(OutputStream saida) throws IOException {
+        this(saida, Configuracao.TAMANHO_BLOCO_PADRAO, CodigosCanonicos.COMPRIMENTO_MAXIMO_PADRAO);
+    }
+
+    /*
+    Cria o fluxo com blocos de 'tamanhoBloco' bytes e códigos de até 'comprimentoMaximo' bits.
+     */
+    public HuffmanOutputStream(OutputStream saida, int tamanhoBloco, int comprimentoMaximo) throws IOException {
+        this(saida, tamanhoBloco, comprimentoMaximo, null);
+    }
+
+    /*
+    Igual ao construtor acima; com um 'dicionario' (que pode ser null) todos os blocos usam a
+    tabela dele, e quem lê o fluxo precisa do mesmo dicionário (ver HuffmanInputStream).
+     */
+    public HuffmanOutputStream(OutputStream saida, int tamanhoBloco, int comprimentoMaximo, Dicionario dicionario) throws IOException {
+        if (tamanhoBloco < 1 || tamanhoBloco > Configuracao.TAMANHO_BLOCO_MAXIMO) {
+            throw new IllegalArgumentException("O tamanho do bloco deve estar entre 1 byte e 1G.");
+        }
+        if (comprimentoMaximo < 1 || comprimentoMaximo > CodigosCanonicos.COMPRIMENTO_MAXIMO_SUPORTADO) {
+            throw new IllegalArgumentException("O comprimento máximo do código deve estar entre 1 e " + CodigosCanonicos.COMPRIMENTO_MAXIMO_SUPORTADO + ".");
+        }
+        this.saida = saida;
+        this.bloco = new byte[tamanhoBloco];
+        this.comprimentoMaximo = comprimentoMaximo;
+        this.dicionario = dicionario;
+        ByteBuffer magica = ByteBuffer.allocate(FormatoHuff.TAMANHO_MAGICA);
+        FormatoHuff.escreverMagica(magica, FormatoHuff.VERSAO_FLUXO);
+        escrever(magica.array(), 0, magica.position());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        verificarAberto();
+        bloco[preenchidos++] = (byte) b;
+        bytesOriginais++;
+        if (preenchidos == bloco.length) {
+            comprimirBloco();
+        }
+    }
+
+    @Override
+    public void write(byte[] dados, int inicio, int quantidade) throws IOException {
+        verificarAberto();
+        java.util.Objects.checkFromIndexSize(inicio, quantidade, dados.length);
+        while (quantidade > 0) {
+            int n = Math.min(quantidade, bloco.length - preenchidos);
+            System.arraycopy(dados, inicio, bloco, preenchidos, n);
+            preenchidos += n;
+            bytesOriginais += n;
+            inicio += n;
+            quantidade -= n;
+            if (preenchidos == bloco.length) {
+                comprimirBloco();
+            }
+        }
+    }
+
+    /*
+    Comprime o bloco parcial (se houver) e descarrega a saída, para que tudo o que foi escrito
+    até aqui possa ser lido do outro lado. Cada flush() encerra um bloco, então flushes muito
+    frequentes geram blocos pequenos, com cabeçalhos proporcionalmente maiores.
+     */
+    @Override
+    public void flush() throws IOException {
+        verificarAberto();
+        comprimirBloco();
+        saida.flush();
+    }
+
+    /*
+    Comprime o que falta e escreve o fim do fluxo, sem fechar a saída.
+     */
+    public void finish() throws IOException {
+        if (terminado) {
+            return;
+        }
+        comprimirBloco();
+        escrever(new byte[] { 0 }, 0, 1); // Quadro de tamanho zero: fim do fluxo.
+        terminado = true;
+        saida.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            saida.close();
+        }
+    }
+
+    /*
+    Número de bytes recebidos (sem compressão).
+     */
+    public long getBytesOriginais() {
+        return bytesOriginais;
+    }
+
+    /*
+    Número de bytes escritos na saída, incluindo número mágico e quadros.
+     */
+    public long getBytesComprimidos() {
+        return bytesComprimidos;
+    }
+
+    /*
+    Comprime o bloco atual e o escreve como um quadro.
+     */
+    private void comprimirBloco() throws IOException {
+        if (preenchidos == 0) {
+            return;
+        }
+        ByteBuffer comprimido = dicionario != null
+                ? CodificadorDeBloco.comprimirComDicionario(bloco, 0, preenchidos, dicionario)
+                : CodificadorDeBloco.comprimir(bloco, 0, preenchidos, comprimentoMaximo);
+        ByteBuffer tamanho = ByteBuffer.allocate(10);
+        FormatoHuff.escreverVarLong(tamanho, comprimido.remaining());
+        escrever(tamanho.array(), 0, tamanho.position());
+        escrever(comprimido.array(), comprimido.arrayOffset() + comprimido.position(), comprimido.remaining());
+        preenchidos = 0;
+    }
+
+    private void escrever(byte[] dados, int inicio, int quantidade) throws IOException {
+        saida.write(dados, inicio, quantidade);
+        bytesComprimidos += quantidade;
+    }
+
+    private void verificarAberto() throws IOException {
+        if (terminado) {
+            throw new IOException("O fluxo comprimido já foi encerrado.");
+        }
+    }
+}
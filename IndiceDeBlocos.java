@@ -0,0 +1,246 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+Índice (diretório central) de um arquivo em blocos (versão 3).
+Fica no fim do arquivo e guarda, para cada bloco, o tamanho comprimido e o tamanho original.
+As posições de cada bloco, no arquivo comprimido e no arquivo original, são obtidas
+somando os tamanhos, o que permite ler e descomprimir qualquer bloco de forma independente.
+
+    quantidade de blocos         : varint
+    para cada bloco              : tamanhoComprimido (varint), tamanhoOriginal (varint)
+    rodapé (12 bytes fixos)      : posição do índice (long) + 'H' 'U' 'F' 'I'
+
+Um arquivo que recebeu acréscimos (ver ArquivoEmBlocos.acrescentar) tem os blocos em
+segmentos: os de cada acréscimo vêm depois do índice e do rodapé anteriores, que continuam
+no meio do arquivo. O índice completo diz onde começa cada segmento:
+    quantidade de segmentos      : varint
+    para cada segmento           : posição do primeiro bloco (varint), quantidade de blocos
+                                   (varint) e os blocos, como acima
+    rodapé (12 bytes fixos)      : posição do índice (long) + 'H' 'U' 'F' 'G'
+Se o rodapé do fim do arquivo não é válido (um acréscimo interrompido deixou blocos sem
+índice depois do rodapé anterior), a leitura volta ao último rodapé válido.
+ */
+class IndiceDeBlocos {
+    static final byte[] MAGICA_RODAPE = { 'H', 'U', 'F', 'I' };
+    static final byte[] MAGICA_RODAPE_SEGMENTOS = { 'H', 'U', 'F', 'G' };
+    static final int TAMANHO_RODAPE = Long.BYTES + 4;
+    // Ao procurar um rodapé anterior, índices maiores do que isto (milhões de blocos) são
+    // tomados como falsos, para não alocar um buffer enorme a partir de bytes quaisquer.
+    private static final int TAMANHO_MAXIMO_RECUPERACAO = 1 << 26;
+    private static final int PEDACO_RECUPERACAO = 64 * 1024;
+
+    int quantidade;
+    long[] posicoes = new long[16];           // Início de cada bloco no arquivo comprimido.
+    long[] tamanhosComprimidos = new long[16];
+    long[] posicoesOriginais = new long[16];  // Início de cada bloco no arquivo original.
+    long[] tamanhosOriginais = new long[16];
+    final long inicioDosBlocos; // Onde começa o primeiro bloco (logo após o cabeçalho do arquivo).
+    long fimDoRodape;  // Posição logo depois do rodapé lido: o fim do arquivo, ou do último acréscimo completo.
+
+    IndiceDeBlocos(long inicioDosBlocos) {
+        this.inicioDosBlocos = inicioDosBlocos;
+    }
+
+    /*
+    Registra um bloco que começa em 'posicao' no arquivo comprimido.
+     */
+    void adicionar(long posicao, long tamanhoComprimido, long tamanhoOriginal) {
+        if (quantidade == posicoes.length) {
+            int novo = quantidade * 2;
+            posicoes = Arrays.copyOf(posicoes, novo);
+            tamanhosComprimidos = Arrays.copyOf(tamanhosComprimidos, novo);
+            posicoesOriginais = Arrays.copyOf(posicoesOriginais, novo);
+            tamanhosOriginais = Arrays.copyOf(tamanhosOriginais, novo);
+        }
+        posicoes[quantidade] = posicao;
+        tamanhosComprimidos[quantidade] = tamanhoComprimido;
+        posicoesOriginais[quantidade] = tamanhoOriginalTotal();
+        tamanhosOriginais[quantidade] = tamanhoOriginal;
+        quantidade++;
+    }
+
+    /*
+    Soma dos tamanhos originais de todos os blocos.
+     */
+    long tamanhoOriginalTotal() {
+        return quantidade == 0 ? 0 : posicoesOriginais[quantidade - 1] + tamanhosOriginais[quantidade - 1];
+    }
+
+    /*
+    Indica se o bloco 'i' começa um segmento: é o primeiro ou não vem logo depois do anterior.
+     */
+    private boolean comecaSegmento(int i) {
+        return i == 0 || posicoes[i] != posicoes[i - 1] + tamanhosComprimidos[i - 1];
+    }
+
+    /*
+    Indica se os blocos vêm todos um após o outro desde o início (sem acréscimos).
+     */
+    private boolean contiguo() {
+        for (int i = 0; i < quantidade; i++) {
+            if (i == 0 ? posicoes[0] != inicioDosBlocos : comecaSegmento(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    Escreve o índice e o rodapé na posição 'posicaoIndice' do canal. Blocos contíguos usam o
+    índice simples ('HUFI'); só um arquivo com acréscimos usa o índice com segmentos ('HUFG').
+    Retorna a posição logo depois do rodapé, que é o fim do arquivo.
+     */
+    long escrever(FileChannel canal, long posicaoIndice) throws IOException {
+        boolean comSegmentos = !contiguo();
+        int segmentos = 0;
+        for (int i = 0; i < quantidade; i++) {
+            if (comecaSegmento(i)) segmentos++;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(10 + segmentos * 20 + quantidade * 20 + TAMANHO_RODAPE);
+        FormatoHuff.escreverVarLong(buffer, comSegmentos ? segmentos : quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            if (comSegmentos && comecaSegmento(i)) {
+                int fim = i + 1;
+                while (fim < quantidade && !comecaSegmento(fim)) fim++;
+                FormatoHuff.escreverVarLong(buffer, posicoes[i]);
+                FormatoHuff.escreverVarLong(buffer, fim - i);
+            }
+            FormatoHuff.escreverVarLong(buffer, tamanhosComprimidos[i]);
+            FormatoHuff.escreverVarLong(buffer, tamanhosOriginais[i]);
+        }
+        buffer.putLong(posicaoIndice).put(comSegmentos ? MAGICA_RODAPE_SEGMENTOS : MAGICA_RODAPE).flip();
+        long posicao = posicaoIndice;
+        while (buffer.hasRemaining()) {
+            posicao += canal.write(buffer, posicao);
+        }
+        fimDoRodape = posicao;
+        return posicao;
+    }
+
+    /*
+    Lê o índice a partir do rodapé no fim do arquivo. Os blocos começam logo
+    após o cabeçalho do arquivo, em 'inicioDosBlocos'. Se esse rodapé não é válido,
+    procura o último rodapé válido antes dele (ver a descrição da classe).
+     */
+    static IndiceDeBlocos ler(FileChannel canal, long inicioDosBlocos) throws IOException {
+        long tamanhoArquivo = canal.size();
+        try {
+            return ler(canal, inicioDosBlocos, tamanhoArquivo, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            IndiceDeBlocos anterior = procurarRodapeAnterior(canal, inicioDosBlocos, tamanhoArquivo);
+            if (anterior == null) {
+                throw e;
+            }
+            return anterior;
+        }
+    }
+
+    /*
+    Procura, de trás para frente, a última mágica de rodapé antes de 'fim' que leve a um
+    índice válido. Retorna null se não houver nenhum.
+     */
+    private static IndiceDeBlocos procurarRodapeAnterior(FileChannel canal, long inicioDosBlocos, long fim) throws IOException {
+        int tamanhoMagica = MAGICA_RODAPE.length;
+        long menorInicio = inicioDosBlocos + Long.BYTES; // Onde começaria a mágica do menor rodapé possível.
+        // Cada pedaço repete os últimos bytes do anterior, para achar mágicas divididas entre os dois.
+        for (long fimPedaco = fim; fimPedaco - tamanhoMagica >= menorInicio; fimPedaco -= PEDACO_RECUPERACAO - tamanhoMagica) {
+            long inicioPedaco = Math.max(menorInicio, fimPedaco - PEDACO_RECUPERACAO);
+            ByteBuffer pedaco = lerCompletamente(canal, inicioPedaco, (int) (fimPedaco - inicioPedaco));
+            for (int p = pedaco.limit() - tamanhoMagica; p >= 0; p--) {
+                if (!ehMagica(pedaco, p) || inicioPedaco + p + tamanhoMagica == fim) {
+                    continue;
+                }
+                try {
+                    return ler(canal, inicioDosBlocos, inicioPedaco + p + tamanhoMagica, TAMANHO_MAXIMO_RECUPERACAO);
+                } catch (IOException e) {
+                    // Bytes de algum bloco que por acaso formam a mágica: continua procurando.
+                }
+            }
+            if (inicioPedaco == menorInicio) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static boolean ehMagica(ByteBuffer pedaco, int p) {
+        boolean simples = true;
+        boolean segmentos = true;
+        for (int i = 0; i < MAGICA_RODAPE.length; i++) {
+            simples &= pedaco.get(p + i) == MAGICA_RODAPE[i];
+            segmentos &= pedaco.get(p + i) == MAGICA_RODAPE_SEGMENTOS[i];
+        }
+        return simples || segmentos;
+    }
+
+    /*
+    Lê o índice cujo rodapé termina em 'fimDoRodape'. Índices com mais de 'tamanhoMaximo'
+    bytes são recusados.
+     */
+    private static IndiceDeBlocos ler(FileChannel canal, long inicioDosBlocos, long fimDoRodape, int tamanhoMaximo) throws IOException {
+        if (fimDoRodape < inicioDosBlocos + TAMANHO_RODAPE) {
+            throw new IOException("Arquivo em blocos sem rodapé.");
+        }
+        ByteBuffer rodape = lerCompletamente(canal, fimDoRodape - TAMANHO_RODAPE, TAMANHO_RODAPE);
+        long posicaoIndice = rodape.getLong();
+        if (!ehMagica(rodape, rodape.position())) {
+            throw new IOException("Rodapé do arquivo em blocos inválido.");
+        }
+        boolean comSegmentos = rodape.get(rodape.position() + 3) == MAGICA_RODAPE_SEGMENTOS[3];
+        if (posicaoIndice < inicioDosBlocos || posicaoIndice > fimDoRodape - TAMANHO_RODAPE
+                || fimDoRodape - TAMANHO_RODAPE - posicaoIndice > tamanhoMaximo) {
+            throw new IOException("Posição do índice inválida: " + posicaoIndice);
+        }
+
+        ByteBuffer buffer = lerCompletamente(canal, posicaoIndice, (int) (fimDoRodape - TAMANHO_RODAPE - posicaoIndice));
+        IndiceDeBlocos indice = new IndiceDeBlocos(inicioDosBlocos);
+        try {
+            long segmentos = comSegmentos ? FormatoHuff.lerVarLong(buffer) : 1;
+            long posicao = inicioDosBlocos;
+            for (long s = 0; s < segmentos; s++) {
+                long quantidade;
+                if (comSegmentos) {
+                    // Cada segmento começa depois do fim do anterior.
+                    long inicioSegmento = FormatoHuff.lerVarLong(buffer);
+                    if (inicioSegmento < posicao) {
+                        throw new IOException("Segmentos do índice fora de ordem.");
+                    }
+                    posicao = inicioSegmento;
+                }
+                quantidade = FormatoHuff.lerVarLong(buffer);
+                for (long i = 0; i < quantidade; i++) {
+                    long tamanhoComprimido = FormatoHuff.lerVarLong(buffer);
+                    long tamanhoOriginal = FormatoHuff.lerVarLong(buffer);
+                    indice.adicionar(posicao, tamanhoComprimido, tamanhoOriginal);
+                    posicao += tamanhoComprimido;
+                }
+            }
+            if (posicao != posicaoIndice || buffer.hasRemaining()) {
+                throw new IOException("O índice não corresponde aos blocos do arquivo.");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Índice do arquivo em blocos incompleto.");
+        }
+        indice.fimDoRodape = fimDoRodape;
+        return indice;
+    }
+
+    /*
+    Lê exatamente 'quantidade' bytes a partir de 'posicao'. Pode ser chamado por várias threads ao mesmo tempo.
+     */
+    static ByteBuffer lerCompletamente(FileChannel canal, long posicao, int quantidade) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(quantidade);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicao + buffer.position()) < 0) {
+                throw new IOException("Fim inesperado do arquivo na posição " + (posicao + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
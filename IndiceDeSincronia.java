@@ -0,0 +1,123 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+Índice de pontos de sincronia de um arquivo de fluxo único (versão 2), opcional (--indice).
+A cada 'intervalo' bytes do original, guarda em que bit dos dados comprimidos começa o
+código do caractere seguinte. Com ele, um trecho do meio do arquivo é decodificado a partir
+do ponto anterior ao trecho, e não desde o início (ver AcessoAleatorio).
+
+Fica logo após os dados comprimidos; quem só descomprime o arquivo inteiro para no fim dos
+dados e nem o vê, então os arquivos com índice continuam legíveis por versões anteriores.
+
+    intervalo                    : varint, em bytes do original
+    quantidade de pontos         : varint
+    para cada ponto              : diferença, em bits, para o ponto anterior (varint)
+    rodapé (12 bytes fixos)      : posição do índice (long) + 'H' 'U' 'F' 'S'
+O ponto i (a partir de 1) corresponde ao byte i * intervalo do original; o ponto 0 (bit 0)
+não é gravado.
+ */
+class IndiceDeSincronia {
+    static final byte[] MAGICA_RODAPE = { 'H', 'U', 'F', 'S' };
+    static final int TAMANHO_RODAPE = Long.BYTES + 4;
+    static final long INTERVALO_PADRAO = 64 * 1024;
+
+    final long intervalo;
+    int quantidade;
+    long[] bits = new long[16];  // Bit (a partir do início dos dados) de cada ponto.
+
+    IndiceDeSincronia(long intervalo) {
+        this.intervalo = intervalo;
+    }
+
+    /*
+    Posição, no original, do próximo ponto a ser registrado.
+     */
+    long proximoPonto() {
+        return (quantidade + 1) * intervalo;
+    }
+
+    /*
+    Registra o ponto seguinte: o código do byte proximoPonto() começa no bit 'bit'.
+     */
+    void adicionar(long bit) {
+        if (quantidade == bits.length) {
+            bits = Arrays.copyOf(bits, quantidade * 2);
+        }
+        bits[quantidade++] = bit;
+    }
+
+    /*
+    Bit em que começa o código do byte 'ponto' * intervalo (ponto 0 é o início dos dados).
+     */
+    long bitDoPonto(int ponto) {
+        return ponto == 0 ? 0 : bits[ponto - 1];
+    }
+
+    /*
+    Escreve o índice e o rodapé na posição 'posicaoIndice' do canal.
+     */
+    void escrever(FileChannel canal, long posicaoIndice) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(20 + quantidade * 10 + TAMANHO_RODAPE);
+        FormatoHuff.escreverVarLong(buffer, intervalo);
+        FormatoHuff.escreverVarLong(buffer, quantidade);
+        long anterior = 0;
+        for (int i = 0; i < quantidade; i++) {
+            FormatoHuff.escreverVarLong(buffer, bits[i] - anterior);
+            anterior = bits[i];
+        }
+        buffer.putLong(posicaoIndice).put(MAGICA_RODAPE).flip();
+        long posicao = posicaoIndice;
+        while (buffer.hasRemaining()) {
+            posicao += canal.write(buffer, posicao);
+        }
+    }
+
+    /*
+    Lê o índice de um arquivo cujos dados comprimidos terminam em 'fimDosDados'.
+    Retorna null se o arquivo não tem índice (o rodapé precisa apontar exatamente
+    para o fim dos dados).
+     */
+    static IndiceDeSincronia ler(FileChannel canal, long fimDosDados, long tamanhoOriginal, long bitsDeDados) throws IOException {
+        long tamanhoArquivo = canal.size();
+        if (tamanhoArquivo < fimDosDados + TAMANHO_RODAPE) {
+            return null;
+        }
+        ByteBuffer rodape = IndiceDeBlocos.lerCompletamente(canal, tamanhoArquivo - TAMANHO_RODAPE, TAMANHO_RODAPE);
+        long posicaoIndice = rodape.getLong();
+        for (byte b : MAGICA_RODAPE) {
+            if (rodape.get() != b) {
+                return null;
+            }
+        }
+        if (posicaoIndice != fimDosDados) {
+            return null;
+        }
+
+        ByteBuffer buffer = IndiceDeBlocos.lerCompletamente(canal, posicaoIndice, (int) (tamanhoArquivo - TAMANHO_RODAPE - posicaoIndice));
+        try {
+            long intervalo = FormatoHuff.lerVarLong(buffer);
+            long quantidade = FormatoHuff.lerVarLong(buffer);
+            if (intervalo < 1 || quantidade < 0 || quantidade > buffer.remaining() || quantidade * intervalo > tamanhoOriginal) {
+                throw new IOException("Índice de sincronia inválido.");
+            }
+            IndiceDeSincronia indice = new IndiceDeSincronia(intervalo);
+            long bit = 0;
+            for (long i = 0; i < quantidade; i++) {
+                bit += FormatoHuff.lerVarLong(buffer);
+                if (bit < 0 || bit > bitsDeDados) {
+                    throw new IOException("O índice de sincronia aponta para fora dos dados.");
+                }
+                indice.adicionar(bit);
+            }
+            return indice;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Índice de sincronia incompleto.");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/*
+Acesso a arquivos grandes por mapeamento de memória em "janelas".
+Um único MappedByteBuffer é limitado a 2 GB, por isso arquivos maiores são vistos como
+uma sequência de janelas de até TAMANHO_JANELA bytes. Os bytes mapeados ficam fora do
+heap da JVM: o sistema operacional os traz do disco (e os devolve) sob demanda, e o
+heap usado não depende do tamanho do arquivo.
+ */
+class JanelasMapeadas {
+    static final long TAMANHO_JANELA = 1L << 30;
+
+    /*
+    Mapeia para leitura o trecho [inicio, inicio + tamanho) do canal, em janelas.
+     */
+    static ByteBuffer[] mapearParaLeitura(FileChannel canal, long inicio, long tamanho) throws IOException {
+        int quantidade = (int) ((tamanho + TAMANHO_JANELA - 1) / TAMANHO_JANELA);
+        ByteBuffer[] janelas = new ByteBuffer[Math.max(quantidade, 1)];
+        if (quantidade == 0) {
+            janelas[0] = ByteBuffer.allocate(0);
+            return janelas;
+        }
+        for (int i = 0; i < quantidade; i++) {
+            long deslocamento = i * TAMANHO_JANELA;
+            long tamanhoJanela = Math.min(TAMANHO_JANELA, tamanho - deslocamento);
+            janelas[i] = canal.map(FileChannel.MapMode.READ_ONLY, inicio + deslocamento, tamanhoJanela);
+        }
+        return janelas;
+    }
+
+    /*
+    Soma o número de bytes restantes em todas as janelas.
+     */
+    static long tamanhoTotal(ByteBuffer[] janelas) {
+        long total = 0;
+        for (ByteBuffer janela : janelas) {
+            total += janela.remaining();
+        }
+        return total;
+    }
+
+    /*
+    Canal de leitura sobre janelas já mapeadas (as de mapearParaLeitura), uma depois da outra.
+    A posição das janelas não é alterada.
+     */
+    static class Sequencia implements ReadableByteChannel {
+        private final ByteBuffer[] janelas;
+        private int atual = 0;
+
+        Sequencia(ByteBuffer[] janelas) {
+            this.janelas = new ByteBuffer[janelas.length];
+            for (int i = 0; i < janelas.length; i++) {
+                this.janelas[i] = janelas[i].slice();
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer destino) {
+            while (atual < janelas.length && !janelas[atual].hasRemaining()) {
+                atual++;
+            }
+            if (atual == janelas.length) {
+                return -1;
+            }
+            ByteBuffer janela = janelas[atual];
+            int n = Math.min(destino.remaining(), janela.remaining());
+            destino.put(janela.slice(janela.position(), n));
+            janela.position(janela.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // As janelas são liberadas pelo coletor de lixo.
+        }
+    }
+
+    /*
+    Canal de leitura sobre um trecho de arquivo mapeado em janelas.
+    Cada janela só é mapeada quando a anterior termina.
+     */
+    static class Leitor implements ReadableByteChannel {
+        private final FileChannel canal;
+        private long posicao;
+        private final long fim;
+        private ByteBuffer janela = ByteBuffer.allocate(0);
+
+        Leitor(FileChannel canal, long inicio, long fim) {
+            this.canal = canal;
+            this.posicao = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        public int read(ByteBuffer destino) throws IOException {
+            if (!janela.hasRemaining()) {
+                if (posicao >= fim) {
+                    return -1;
+                }
+                long tamanhoJanela = Math.min(TAMANHO_JANELA, fim - posicao);
+                janela = canal.map(FileChannel.MapMode.READ_ONLY, posicao, tamanhoJanela);
+                posicao += tamanhoJanela;
+            }
+            int n = Math.min(destino.remaining(), janela.remaining());
+            destino.put(janela.slice(janela.position(), n));
+            janela.position(janela.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // O canal pertence a quem criou o leitor.
+        }
+    }
+
+    /*
+    Canal de escrita que grava em janelas mapeadas do arquivo de saída.
+    O tamanho final precisa ser conhecido de antemão (no formato .huff ele sempre é:
+    vem do histograma na compressão e do cabeçalho na descompressão). As janelas são
+    mapeadas uma de cada vez, à medida que as anteriores enchem.
+     */
+    static class Escritor implements WritableByteChannel {
+        private final FileChannel canal;
+        private long posicao;
+        private final long fim;
+        private ByteBuffer janela;
+
+        Escritor(FileChannel canal, long inicio, long tamanho) {
+            this.canal = canal;
+            this.posicao = inicio;
+            this.fim = inicio + tamanho;
+        }
+
+        @Override
+        public int write(ByteBuffer origem) throws IOException {
+            int escritos = 0;
+            while (origem.hasRemaining()) {
+                if (janela == null || !janela.hasRemaining()) {
+                    if (posicao >= fim) {
+                        throw new IOException("Escrita além do tamanho previsto para o arquivo de saída.");
+                    }
+                    long tamanhoJanela = Math.min(TAMANHO_JANELA, fim - posicao);
+                    janela = canal.map(FileChannel.MapMode.READ_WRITE, posicao, tamanhoJanela);
+                    posicao += tamanhoJanela;
+                }
+                int n = Math.min(origem.remaining(), janela.remaining());
+                janela.put(origem.slice(origem.position(), n));
+                origem.position(origem.position() + n);
+                escritos += n;
+            }
+            return escritos;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // O canal pertence a quem criou o escritor; as janelas são gravadas pelo sistema operacional.
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/*
+Lê uma sequência de bits a partir de bytes brutos (de um canal ou de um buffer em memória).
+Os bits são mantidos em uma "janela" de 64 bits alinhada à esquerda: o próximo bit
+a ser lido é sempre o bit mais significativo da janela. Isso permite espiar vários
+bits de uma vez (ex: 11 bits para consultar a tabela de decodificação) e depois
+consumir apenas os que foram realmente usados.
+Depois do fim dos dados a janela é completada com zeros, como o padding do formato.
+ */
+class LeitorDeBits {
+    static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final ReadableByteChannel canal; // Pode ser null quando os dados já estão todos em memória.
+    private final ByteBuffer buffer;
+    private long janela;       // Bits ainda não consumidos, alinhados à esquerda.
+    private int disponiveis;   // Quantos bits válidos há na janela (fica negativo se ler além do fim).
+    private boolean fimDoCanal;
+
+    /*
+    Cria um leitor que consome primeiro o que já está no buffer (em modo de leitura)
+    e depois continua lendo do canal, reaproveitando o mesmo buffer.
+     */
+    LeitorDeBits(ReadableByteChannel canal, ByteBuffer buffer) {
+        this.canal = canal;
+        this.buffer = buffer;
+        this.fimDoCanal = (canal == null);
+    }
+
+    /*
+    Cria um leitor sobre dados que já estão inteiros em memória.
+     */
+    LeitorDeBits(ByteBuffer dados) {
+        this(null, dados);
+    }
+
+    /*
+    Retorna os próximos 'n' bits (1 a 32) sem consumi-los.
+     */
+    int espiar(int n) throws IOException {
+        if (disponiveis < n) {
+            recarregar(n);
+        }
+        return (int) (janela >>> (64 - n));
+    }
+
+    /*
+    Completa a janela e a retorna (o próximo bit é o mais significativo). Ela tem pelo menos
+    56 bits válidos (a recarga rápida lê bytes inteiros, até 7 de uma vez, então partindo de uma
+    posição alinhada ela tem exatamente 56), exceto perto do fim dos dados, onde é completada com zeros.
+    Os bits usados devem ser descartados depois com consumir().
+     */
+    long janela() throws IOException {
+        if (disponiveis <= 56) {
+            recarregar(64);
+        }
+        return janela;
+    }
+
+    /*
+    Como janela(), mas só recarrega quando ela tem menos de 'minimo' bits válidos (até 56):
+    quem consome poucos bits por vez não precisa completá-la a cada consulta.
+     */
+    long janela(int minimo) throws IOException {
+        if (disponiveis < minimo) {
+            recarregar(64);
+        }
+        return janela;
+    }
+
+    /*
+    Descarta os próximos 'n' bits (que já devem ter sido espiados).
+     */
+    void consumir(int n) {
+        janela <<= n;
+        disponiveis -= n;
+    }
+
+    /*
+    Lê e consome os próximos 'n' bits (1 a 32).
+     */
+    int lerBits(int n) throws IOException {
+        int valor = espiar(n);
+        consumir(n);
+        return valor;
+    }
+
+    /*
+    Indica se foram consumidos mais bits do que os dados realmente continham,
+    o que significa que o arquivo comprimido está truncado ou corrompido.
+     */
+    boolean leuAlemDoFim() {
+        return disponiveis < 0;
+    }
+
+    /*
+    Retorna quantos bits podem ser lidos sem esperar pelo canal (os da janela e os do buffer).
+     */
+    long bitsSemBloquear() {
+        return Math.max(disponiveis, 0) + 8L * buffer.remaining();
+    }
+
+    /*
+    Completa a janela com o máximo de bytes possível (56 a 64 bits válidos).
+    Com o buffer vazio, só lê do canal se a janela ainda não tiver os 'minimo' bits pedidos:
+    em um pipe, ler sem precisar poderia bloquear à espera de dados que ainda não foram enviados.
+     */
+    private void recarregar(int minimo) throws IOException {
+        if (disponiveis >= 0 && buffer.remaining() >= Long.BYTES) {
+            // Caso comum: lê 8 bytes de uma vez e aproveita os que cabem na janela (até 7).
+            int bytes = (63 - disponiveis) >>> 3;
+            long proximos = buffer.getLong(buffer.position()) & ~(-1L >>> (8 * bytes));
+            janela |= proximos >>> disponiveis;
+            disponiveis += 8 * bytes;
+            buffer.position(buffer.position() + bytes);
+            return;
+        }
+        while (disponiveis <= 56) {
+            if (!buffer.hasRemaining() && (disponiveis >= minimo || !lerDoCanal())) {
+                return;
+            }
+            janela |= (long) (buffer.get() & 0xFF) << (56 - disponiveis);
+            disponiveis += 8;
+        }
+    }
+
+    /*
+    Lê mais bytes do canal para o buffer. Retorna false quando não há mais dados.
+     */
+    private boolean lerDoCanal() throws IOException {
+        if (fimDoCanal) {
+            return false;
+        }
+        buffer.compact();
+        int lidos = canal.read(buffer);
+        buffer.flip();
+        if (lidos < 0) {
+            fimDoCanal = true;
+        }
+        return buffer.hasRemaining();
+    }
+}
@@ -1,397 +1,1334 @@
-package huffman;
-
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
-public class Main {
-
-    /*
-    Ponto de entrada do programa. Responsável por validar os argumentos da linha de comando
-    e direcionar o fluxo para compressão ou descompressão.
-     */
-    public static void main(String[] args) {
-       // 1. Validação dos Argumentos: Verifica se o número de argumentos é exatamente 3.
-        if (args.length != 3) {
-            System.err.println("Uso incorreto!");
-            System.err.println("Para comprimir: java -jar huffman.jar c <arquivo_original> <arquivo_comprimido>");
-            System.err.println("Para descomprimir: java -jar huffman.jar d <arquivo_comprimido> <arquivo_restaurado>");
-            return; // Encerra o programa se o uso for incorreto.
-        }
-
-        // 2. Extração dos Argumentos: Armazena os argumentos em variáveis.
-        String modo = args[0];
-        String arquivoEntrada = args[1];
-        String arquivoSaida = args[2];
-
-        // 3. Roteamento da Execução: Decide qual método principal chamar com base no modo (c ou d).
-        if (modo.equalsIgnoreCase("c")) {
-            System.out.println("[Modo de Compressão]");
-            long tempoInicio = System.nanoTime();
-            comprimeArquivo(arquivoEntrada, arquivoSaida);
-            long tempoFim = System.nanoTime();
-            long duracaoMs = (tempoFim - tempoInicio) / 1_000_000;
-            System.out.println("--------------------------------------------------");
-            System.out.println(">> TEMPO DE EXECUÇÃO: " + duracaoMs + " ms");
-            System.out.println("--------------------------------------------------");
-
-        } else if (modo.equalsIgnoreCase("d")) {
-            System.out.println("[Modo de Descompressão ativado]");
-            long tempoInicio = System.nanoTime();
-            descomprimeArquivo(arquivoEntrada, arquivoSaida);
-            long tempoFim = System.nanoTime();
-            long duracaoMs = (tempoFim - tempoInicio) / 1_000_000;
-        } else {
-            System.err.println("Modo '" + modo + "' inválido. Use 'c' para comprimir ou 'd' para descomprimir.");
-        }
-    }
-
-    /*
-    Direciona o fluxo de compressão de um arquivo.
-    Executa todas as etapas: análise de frequência, construção da árvore,
-    geração de códigos, escrita do arquivo final e exibição do resumo.
-     */
-    public static void comprimeArquivo(String caminhoArqOriginal, String caminhoArqSaida) {
-        Path caminhoDoArquivo = Paths.get(caminhoArqOriginal);
-
-        // ETAPA 1: Análise de Frequência
-        System.out.println("--------------------------------------------------");
-        System.out.println("ETAPA 1: Tabela de Frequencia de Caracteres");
-        System.out.println("--------------------------------------------------");
-        int[] frequencias = calcularFrequenciaDeCaracteres(caminhoDoArquivo);
-        if (frequencias == null) {
-            return; // Encerra se houver erro na leitura do arquivo.
-        }
-        for (int i = 0; i < frequencias.length; i++) {
-            if (frequencias[i] > 0) {
-                System.out.printf("Caractere '%c' (ASCII: %d): %d\n", (char)i, i, frequencias[i]);
-            }
-        }
-        System.out.println("--------------------------------------------------");
-
-        // ETAPA 2: Exibição Conceitual do Min-Heap Inicial
-        // A construção real da árvore na ETAPA 3 usa o MinHeap corretamente.
-
-        System.out.println("ETAPA 2: Min-Heap Inicial (Vetor)");
-        System.out.println("--------------------------------------------------");
-        StringBuilder heapStr = new StringBuilder();
-        heapStr.append("[ ");
-        boolean first = true;
-        for (int i = 0; i < frequencias.length; i++) {
-            if (frequencias[i] > 0) {
-                if (!first) heapStr.append(", ");
-                heapStr.append(String.format("No('%c',%d)", (char)i, frequencias[i]));
-                first = false;
-            }
-        }
-        heapStr.append(" ]");
-        System.out.println(heapStr.toString());
-        System.out.println("--------------------------------------------------");
-
-        // ETAPA 3: Construção da Árvore de Huffman e Impressão
-        System.out.println("ETAPA 3: Arvore de Huffman");
-        System.out.println("--------------------------------------------------");
-        No raizDaArvore = reconstruirArvoreDeHuffman(frequencias);
-        imprimirArvoreFormatada(raizDaArvore); // Impressão visual da árvore
-        System.out.println("--------------------------------------------------");
-
-        // ETAPA 4: Geração e Exibição da Tabela de Códigos
-        System.out.println("ETAPA 4: Tabela de Codigos de Huffman");
-        System.out.println("--------------------------------------------------");
-        String[] tabelaDeCodigos = gerarTabelaDeCodigos(raizDaArvore);
-        for (int i = 0; i < tabelaDeCodigos.length; i++) {
-            if (tabelaDeCodigos[i] != null) {
-                System.out.printf("Caractere '%c': %s\n", (char)i, tabelaDeCodigos[i]);
-            }
-        }
-        System.out.println("--------------------------------------------------");
-
-        // ETAPA 5: Escrita do Arquivo e Resumo da Compressão
-
-        // Calcula o tamanho original para o resumo
-        java.io.File fileOriginal = new java.io.File(caminhoArqOriginal);
-        long tamanhoOriginalBytes = fileOriginal.length();
-        long tamanhoOriginalBits = tamanhoOriginalBytes * 8;
-
-        // Calcula o tamanho teórico dos dados comprimidos (número exato de bits)
-        StringBuilder bufferBits = new StringBuilder();
-        try {
-            byte[] todosOsBytesDoOriginal = Files.readAllBytes(Paths.get(caminhoArqOriginal));
-            for (byte b : todosOsBytesDoOriginal) {
-                bufferBits.append(tabelaDeCodigos[b & 0xFF]);
-            }
-        } catch (IOException e) {
-            System.err.println("Erro ao ler arquivo para gerar resumo: " + e.getMessage());
-        }
-        long tamanhoComprimidoBitsTeorico = bufferBits.length();
-
-        // Realiza a escrita do arquivo comprimido no disco
-        escreverArquivoComprimido(caminhoArqOriginal, caminhoArqSaida, frequencias, tabelaDeCodigos);
-
-        // Pega o tamanho real (prático) do arquivo salvo em disco
-        java.io.File fileComprimido = new java.io.File(caminhoArqSaida);
-        long tamanhoComprimidoBytes = fileComprimido.length();
-
-        // Calcula a taxa de compressão com base no tamanho teórico
-        double taxa = tamanhoOriginalBits == 0 ? 0 : 100.0 * (1.0 - ((double)tamanhoComprimidoBitsTeorico / tamanhoOriginalBits));
-
-        System.out.println("ETAPA 5: Resumo da Compressao");
-        System.out.println("--------------------------------------------------");
-        System.out.printf("Tamanho original....: %d bits (%d bytes)\n", tamanhoOriginalBits, tamanhoOriginalBytes);
-        System.out.printf("Tamanho comprimido..: %d bits (%d bytes)\n", tamanhoComprimidoBitsTeorico, tamanhoComprimidoBytes);
-        System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
-        System.out.println("--------------------------------------------------");
-    }
-    
-    
-    //Lê um arquivo, conta a frequência de cada byte (0-255) e retorna um vetor de inteiros.
-    public static int[] calcularFrequenciaDeCaracteres(Path caminhoDoArquivo) {
-        int[] frequencias = new int[256];
-        try {
-            // Lê todos os bytes do arquivo de uma vez para a memória.
-            byte[] todosOsBytes = Files.readAllBytes(caminhoDoArquivo);
-            // Itera por cada byte lido.
-            for (byte b : todosOsBytes) {
-                // A operação 'b & 0xFF' converte o byte (que em Java é assinado, -128 a 127)
-                // para um valor inteiro sem sinal (0 a 255), que pode ser usado como índice.
-                frequencias[b & 0xFF]++;
-            }
-        } catch (IOException e) {
-            System.err.println("Erro ao ler o arquivo '" + caminhoDoArquivo + "': " + e.getMessage());
-            return null; // Sinaliza o erro para o método chamador.
-        }
-        return frequencias;
-    }
-
-    /*
-    Constrói a Árvore de Huffman a partir da tabela de frequências.
-    Utiliza um MinHeap como estrutura auxiliar para garantir que os nós de menor
-    frequência sejam combinados primeiro.
-     */
-    public static No reconstruirArvoreDeHuffman(int[] frequencias) {
-        MinHeap filaPrioridade = new MinHeap();
-
-        // Passo 1: Popular o Min-Heap.
-        // Cria um nó-folha para cada caractere que aparece no texto (frequência > 0)
-        // e o insere na fila de prioridades (Min-Heap).
-        for (int i = 0; i < 256; i++) {
-            if (frequencias[i] > 0) {
-                No noFolha = new No((char) i, frequencias[i]);
-                filaPrioridade.add(noFolha);
-            }
-        }
-
-        // Passo 2: Construir a Árvore.
-        // O processo se repete enquanto houver mais de um nó na fila.
-        // A cada iteração, os dois nós de menor frequência são removidos,
-        // combinados sob um novo nó-pai, e este nó-pai é reinserido na fila.
-        while (filaPrioridade.size() > 1) {
-            No esquerda = filaPrioridade.poll(); // Remove o menor
-            No direita = filaPrioridade.poll();  // Remove o segundo menor
-            No pai = new No(esquerda, direita);
-            filaPrioridade.add(pai);
-        }
-
-        // Ao final, o único nó restante na fila é a raiz da árvore completa.
-        return filaPrioridade.poll();
-    }
-
-    /*
-    Gera a tabela de códigos de Huffman (ex: 'A' -> "01") percorrendo a árvore.
-    Este é o método de entrada que inicia o processo recursivo.
-     */
-    public static String[] gerarTabelaDeCodigos(No raizDaArvore) {
-        String[] tabela = new String[256];
-        // A chamada recursiva começa na raiz, com um caminho (código) inicial vazio.
-        gerarTabelaRecursivo(raizDaArvore, "", tabela);
-        return tabela;
-    }
-
-    /*
-    Método auxiliar recursivo que percorre a árvore para montar os códigos.
-    Adiciona 0 ao código ao descer para a esquerda e "1" ao descer para a direita.
-     */
-    private static void gerarTabelaRecursivo(No noAtual, String codigoAtual, String[] tabela) {
-        if (noAtual == null) {
-            return;
-        }
-
-        // Caso Base: Se o nó é uma folha (não tem filhos), encontramos um caractere.
-        // O código acumulado até aqui é o código de Huffman para este caractere.
-        if (noAtual.esquerda == null && noAtual.direita == null) {
-            tabela[(int) noAtual.caractere] = codigoAtual;
-            return;
-        }
-
-        // Passo Recursivo: Se não é uma folha, continua a descida.
-        // Chama para a esquerda, anexando '0' ao código.
-        gerarTabelaRecursivo(noAtual.esquerda, codigoAtual + "0", tabela);
-        // Chama para a direita, anexando '1' ao código.
-        gerarTabelaRecursivo(noAtual.direita, codigoAtual + "1", tabela);
-    }
-    
-    /*
-    Escreve o arquivo comprimido (.huff) no disco. O arquivo consiste em um cabeçalho
-    seguido pelos dados comprimidos.
-     */
-    public static void escreverArquivoComprimido( String caminhoArqOriginal, String caminhoArqSaida, int[] frequencias, String[] tabelaDeCodigos) {
-        Path caminhoSaida = Paths.get(caminhoArqSaida);
-        StringBuilder bufferBits = new StringBuilder();
-
-        // ETAPA 1: Ler o arquivo original e construir a string gigante de bits
-        try {
-            byte[] todosOsBytesDoOriginal = Files.readAllBytes(Paths.get(caminhoArqOriginal));
-            for (byte b : todosOsBytesDoOriginal) {
-                bufferBits.append(tabelaDeCodigos[b & 0xFF]);
-            }
-        } catch (IOException e) {
-            System.err.println("Erro ao ler o arquivo original para compressão: " + e.getMessage());
-            return;
-        }
-
-        // ETAPA 2: Escrever o arquivo de saída (Cabeçalho + Dados)
-        try (OutputStream fileOut = Files.newOutputStream(caminhoSaida);
-             DataOutputStream escritorDeDados = new DataOutputStream(fileOut)) {
-
-            // --- ESCREVENDO O CABEÇALHO ---
-            // O cabeçalho é essencial para que a descompressão possa reconstruir a árvore.
-            // 1. Tabela de Frequências: 256 inteiros (256 * 4 = 1024 bytes).
-            for (int freq : frequencias) {
-                escritorDeDados.writeInt(freq);
-            }
-            // 2. Número de Caracteres: 1 long (8 bytes). Essencial para saber onde parar de ler na descompressão.
-            escritorDeDados.writeLong(Files.size(Paths.get(caminhoArqOriginal)));
-
-            // --- ESCREVENDO OS DADOS COMPRIMIDOS ---
-            String stringDeBits = bufferBits.toString();
-            
-            // Percorre a string de bits em fatias de 8 para formar os bytes.
-            for (int i = 0; i < stringDeBits.length(); i += 8) {
-                String pedacoDe8Bits;
-                if (i + 8 > stringDeBits.length()) {
-                    pedacoDe8Bits = stringDeBits.substring(i);
-                    // Padding: Se o último pedaço for menor que 8, completa com '0's à direita.
-                    while (pedacoDe8Bits.length() < 8) {
-                        pedacoDe8Bits += "0";
-                    }
-                } else {
-                    pedacoDe8Bits = stringDeBits.substring(i, i + 8);
-                }
-
-                int byteVal = Integer.parseInt(pedacoDe8Bits, 2); // Converte a string "01000001" para o inteiro 65.
-                escritorDeDados.write(byteVal); // Escreve o byte no arquivo.
-            }
-            System.out.println("Arquivo comprimido com sucesso!");
-        } catch (IOException e) {
-            System.err.println("Erro ao escrever o arquivo comprimido: " + e.getMessage());
-        }
-    }
-    
-    /**
-    Orquestra o processo de descompressão de um arquivo .huff.
-     */
-    public static void descomprimeArquivo(String caminhoArqComprimido, String caminhoArqSaida) {
-        Path caminhoComprimido = Paths.get(caminhoArqComprimido);
-        No raizDaArvore = null;
-        long numCaracteresOriginais = 0;
-        StringBuilder stringDeBits = new StringBuilder();
-
-        // --- ETAPA 1: LER CABEÇALHO E RECONSTRUIR ESTRUTURAS ---
-        try (DataInputStream leitor = new DataInputStream(Files.newInputStream(caminhoComprimido))) {
-            // 1. Lê a tabela de frequências do cabeçalho.
-            int[] frequencias = new int[256];
-            for (int i = 0; i < 256; i++) {
-                frequencias[i] = leitor.readInt();
-            }
-            // 2. Lê o número original de caracteres.
-            numCaracteresOriginais = leitor.readLong();
-            
-            // 3. Com as frequências, reconstrói a mesma Árvore de Huffman da compressão.
-            raizDaArvore = reconstruirArvoreDeHuffman(frequencias);
-
-            // 4. Lê o restante do arquivo (os dados comprimidos) e converte para uma string de bits.
-            int byteLido;
-            while ((byteLido = leitor.read()) != -1) {
-                // Converte o byte em uma string binária de 8 bits, preenchendo com zeros à esquerda se necessário.
-                stringDeBits.append(String.format("%8s", Integer.toBinaryString(byteLido & 0xFF)).replace(' ', '0'));
-            }
-
-        } catch (IOException e) {
-            System.err.println("Erro ao ler o arquivo comprimido: " + e.getMessage());
-            return;
-        }
-
-        // --- ETAPA 2: DECODIFICAR OS DADOS USANDO A ÁRVORE ---
-        // Este é o "percurso guiado pelos dados".
-        StringBuilder textoDecodificado = new StringBuilder();
-        if (raizDaArvore != null) {
-            No noAtual = raizDaArvore;
-            for (char bit : stringDeBits.toString().toCharArray()) {
-                // Navega na árvore: '0' para esquerda, '1' para direita.
-                noAtual = (bit == '0') ? noAtual.esquerda : noAtual.direita;
-
-                // Se chegamos a um nó folha, decodificamos um caractere.
-                if (noAtual.esquerda == null && noAtual.direita == null) {
-                    textoDecodificado.append(noAtual.caractere);
-                    noAtual = raizDaArvore; // Volta para a raiz para o próximo caractere.
-
-                    // Condição de parada: se já decodificamos todos os caracteres, interrompemos o loop.
-                    // Isso ignora os bits de padding do final do arquivo.
-                    if (textoDecodificado.length() == numCaracteresOriginais) {
-                        break;
-                    }
-                }
-            }
-        }
-        
-        // --- ETAPA 3: ESCREVER O ARQUIVO FINAL ---
-        try {
-            Path caminhoSaida = Paths.get(caminhoArqSaida);
-            // Usa ISO_8859_1 para garantir que cada 'char' seja mapeado para um único byte.
-            Files.writeString(caminhoSaida, textoDecodificado.toString(), StandardCharsets.ISO_8859_1);
-            System.out.println("Arquivo descomprimido com sucesso para: " + caminhoArqSaida);
-        } catch (IOException e) {
-            System.err.println("Erro ao escrever o arquivo descomprimido: " + e.getMessage());
-        }
-    }
-
-    /**
-    Imprime uma representação visual da Árvore de Huffman no console.
-    Utiliza um percurso em pré-ordem para a impressão.
-     */
-    private static void imprimirArvoreFormatada(No raiz) {
-        if (raiz == null) {
-            System.out.println("Árvore está vazia ou consiste em um único nó.");
-            return;
-        }
-        imprimirArvoreFormatadaRec(raiz, "", true);
-    }
-    
-    /**
-    Método auxiliar recursivo para a impressão formatada da árvore.
-     */
-    private static void imprimirArvoreFormatadaRec(No no, String prefixo, boolean isRaiz) {
-        if (no == null) return;
-    
-        System.out.print(prefixo);
-        if(!isRaiz){
-            System.out.print("└──");
-        }
-    
-        if (no.esquerda == null && no.direita == null) {
-            // É um nó folha
-            System.out.printf(" ('%c', %d)\n", no.caractere, no.frequencia);
-        } else {
-            // É um nó interno
-            System.out.printf(" (Pai, %d)\n", no.frequencia);
-            String novoPrefixo = prefixo + (isRaiz ? "    " : "    ");
-            imprimirArvoreFormatadaRec(no.direita, novoPrefixo, false);
-            imprimirArvoreFormatadaRec(no.esquerda, novoPrefixo, false);
-        }
-    }
+package huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class Main {
+
+    /*
+    Ponto de entrada do programa. Responsável por validar os argumentos da linha de comando
+    e direcionar o fluxo para compressão ou descompressão.
+     */
+    public static void main(String[] args) {
+        Opcoes opcoes = new Opcoes(args);
+
+        // Com --servidor, o comando é executado por um servidor já no ar (modo 's'), sem iniciar
+        // e aquecer uma JVM para cada arquivo; o modo 'r' envia um lote de comandos a ele
+        // (ver Servidor e Cliente). Em todos os modos, se o comando falhar, o status de saída é 1,
+        // para scripts.
+        if (opcoes.modo.equalsIgnoreCase("r")) {
+            if (!Cliente.executarLote(opcoes.texto("servidor", Servidor.ENDERECO_PADRAO), opcoes)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (opcoes.tem("servidor")) {
+            if (!Cliente.executar(opcoes.texto("servidor", Servidor.ENDERECO_PADRAO), args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (opcoes.modo.equalsIgnoreCase("s")) {
+            // O servidor só retorna se não pôde ser iniciado (ou o socket falhou).
+            Servidor.executar(opcoes);
+            System.exit(1);
+        }
+        if (!executar(opcoes, System.out)) {
+            System.exit(1);
+        }
+    }
+
+    /*
+    Executa o comando de 'opcoes', como na linha de comando. Com "-" no lugar de um arquivo os
+    dados vêm da entrada padrão ou vão para 'saidaPadrao'. Retorna true se o comando foi concluído.
+    Também é chamado pelo Servidor, para cada pedido.
+     */
+    static boolean executar(Opcoes opcoes, OutputStream saidaPadrao) {
+       // 1. Validação dos Argumentos: Verifica se foram informados o modo e os dois arquivos.
+        if (opcoes.posicionais.size() != 2) {
+            System.err.println("Uso incorreto!");
+            System.err.println("Para comprimir: java -jar huffman.jar c [--max-bits=N] [--economia-minima=1] [--bloco=1M] [--threads=N] [--fluxos[=4]] [--contexto] [--transformacoes[=rle,bwt,mtf]] [--indice[=64K]] [--amostra[=1]] [--acrescentar] [--mapeado] [--assincrono] [--dicionario=arquivo] [opções de saída] <arquivo_original> <arquivo_comprimido>");
+            System.err.println("Para comprimir em uma passada (adaptativo): java -jar huffman.jar a [opções de saída] <arquivo_original> <arquivo_comprimido>");
+            System.err.println("Para comprimir vários arquivos em um pacote: java -jar huffman.jar p [--threads=N] [--economia-minima=1] [--limite-es=N] [--tabela-compartilhada[=64K]] [opções de saída] <diretório ou lista.txt> <pacote>");
+            System.err.println("Para treinar um dicionário com amostras: java -jar huffman.jar t [--max-bits=N] [opções de saída] <diretório ou arquivo de amostras> <dicionario>");
+            System.err.println("Para descomprimir: java -jar huffman.jar d [--threads=N] [--mapeado] [--assincrono] [--dicionario=arquivo] [opções de saída] <arquivo_comprimido ou pacote> <arquivo_restaurado ou diretório>");
+            System.err.println("Para descomprimir só um trecho: java -jar huffman.jar d --inicio=N [--quantidade=N] [--dicionario=arquivo] [opções de saída] <arquivo_comprimido> <arquivo_do_trecho ou ->");
+            System.err.println("Opções de saída: --verbosidade=silencioso|resumo|depuracao --metricas=arquivo.json (ou - para a saída padrão)");
+            System.err.println("Use - no lugar de um arquivo para ler da entrada padrão ou escrever na saída padrão (formato de fluxo).");
+            System.err.println("Para iniciar um servidor de compressão: java -jar huffman.jar s [--threads=N] [<socket>]");
+            System.err.println("Para usar o servidor em qualquer modo: acrescente --servidor[=<socket>] ao comando.");
+            System.err.println("Para enviar vários comandos ao servidor (um por linha): java -jar huffman.jar r [--servidor=<socket>] <arquivo de comandos ou ->");
+            return false; // Encerra o programa se o uso for incorreto.
+        }
+
+        // 2. Extração dos Argumentos: Armazena os argumentos em variáveis.
+        String modo = opcoes.modo;
+        String arquivoEntrada = opcoes.posicionais.get(0);
+        String arquivoSaida = opcoes.posicionais.get(1);
+        Configuracao configuracao;
+        try {
+            configuracao = Configuracao.deOpcoes(opcoes);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+
+        // 3. Roteamento da Execução: Decide qual método principal chamar com base no modo (c ou d).
+        // As métricas medem cada etapa e, com --metricas, são gravadas em JSON no final.
+        // Com "-" no lugar de um arquivo, os dados vêm da entrada padrão e/ou vão para a saída
+        // padrão, no formato de fluxo; as mensagens passam para a saída de erro, para não se
+        // misturarem aos dados.
+        boolean fluxo = arquivoEntrada.equals("-") || arquivoSaida.equals("-");
+        if (arquivoSaida.equals("-")) {
+            System.setOut(System.err);
+        }
+        boolean resumo = configuracao.verbosidade >= Configuracao.RESUMO;
+        if (configuracao.arquivoMetricas != null) {
+            Metricas.reiniciarPicoDeHeap();
+        }
+        Metricas metricas = new Metricas(modo.toLowerCase(), arquivoEntrada, arquivoSaida);
+        if (modo.equalsIgnoreCase("c")) {
+            if (resumo) System.out.println("[Modo de Compressão]");
+            if (fluxo && configuracao.acrescentar) {
+                System.err.println("--acrescentar precisa de arquivos, e não da entrada ou da saída padrão.");
+            } else if (fluxo) {
+                comprimeFluxo(arquivoEntrada, arquivoSaida, saidaPadrao, configuracao, metricas);
+            } else {
+                comprimeArquivo(arquivoEntrada, arquivoSaida, configuracao, metricas);
+            }
+
+        } else if (modo.equalsIgnoreCase("d")) {
+            if (resumo) System.out.println("[Modo de Descompressão ativado]");
+            if (configuracao.trecho) {
+                descomprimeTrecho(arquivoEntrada, arquivoSaida, saidaPadrao, configuracao, metricas);
+            } else if (fluxo) {
+                descomprimeFluxo(arquivoEntrada, arquivoSaida, saidaPadrao, configuracao, metricas);
+            } else {
+                descomprimeArquivo(arquivoEntrada, arquivoSaida, configuracao, metricas);
+            }
+        } else if (modo.equalsIgnoreCase("a")) {
+            if (resumo) System.out.println("[Modo de Compressão Adaptativa]");
+            comprimeAdaptativo(arquivoEntrada, arquivoSaida, saidaPadrao, configuracao, metricas);
+        } else if (modo.equalsIgnoreCase("p")) {
+            if (resumo) System.out.println("[Modo de Compressão em Pacote]");
+            comprimePacote(arquivoEntrada, arquivoSaida, configuracao, metricas);
+        } else if (modo.equalsIgnoreCase("t")) {
+            if (resumo) System.out.println("[Modo de Treino de Dicionário]");
+            treinaDicionario(arquivoEntrada, arquivoSaida, configuracao, metricas);
+        } else {
+            System.err.println("Modo '" + modo + "' inválido. Use 'c' para comprimir, 'a' para comprimir em uma passada, 'p' para comprimir em um pacote, 't' para treinar um dicionário, 'd' para descomprimir, 's' para iniciar um servidor ou 'r' para enviar um lote de comandos a ele.");
+            return false;
+        }
+        metricas.encerrar();
+        if (resumo) {
+            System.out.println("--------------------------------------------------");
+            System.out.println(">> TEMPO DE EXECUÇÃO: " + metricas.duracaoTotalMs() + " ms");
+            System.out.println("--------------------------------------------------");
+        }
+
+        // 4. Métricas em JSON.
+        if (configuracao.arquivoMetricas != null) {
+            try {
+                metricas.gravarJson(configuracao.arquivoMetricas);
+            } catch (IOException e) {
+                System.err.println("Erro ao gravar as métricas: " + e.getMessage());
+            }
+        }
+        return metricas.concluido;
+    }
+
+    /*
+    Direciona o fluxo de compressão de um arquivo.
+    Executa todas as etapas: análise de frequência, construção da árvore,
+    geração de códigos, escrita do arquivo final e exibição do resumo.
+     */
+    public static void comprimeArquivo(String caminhoArqOriginal, String caminhoArqSaida) {
+        comprimeArquivo(caminhoArqOriginal, caminhoArqSaida, new Configuracao());
+    }
+
+    /*
+    Igual a comprimeArquivo(String, String), com os parâmetros da configuração
+    (comprimento máximo dos códigos e, se configurado, o modo em blocos paralelos).
+     */
+    public static void comprimeArquivo(String caminhoArqOriginal, String caminhoArqSaida, Configuracao configuracao) {
+        comprimeArquivo(caminhoArqOriginal, caminhoArqSaida, configuracao, new Metricas("c", caminhoArqOriginal, caminhoArqSaida));
+    }
+
+    /*
+    Igual ao método acima, registrando o tempo de cada etapa em 'metricas'.
+    O que é exibido no console depende de configuracao.verbosidade: as ETAPAS 1 a 4
+    só aparecem no nível de depuração, e o resumo da ETAPA 5 a partir do nível de resumo.
+     */
+    static void comprimeArquivo(String caminhoArqOriginal, String caminhoArqSaida, Configuracao configuracao, Metricas metricas) {
+        if (configuracao.acrescentar) {
+            comprimeArquivoAcrescentando(caminhoArqOriginal, caminhoArqSaida, configuracao, metricas);
+            return;
+        }
+        if (configuracao.tamanhoBloco > 0) {
+            comprimeArquivoEmBlocos(caminhoArqOriginal, caminhoArqSaida, configuracao, metricas);
+            return;
+        }
+        if (configuracao.amostra > 0) {
+            comprimeArquivoPorAmostra(caminhoArqOriginal, caminhoArqSaida, configuracao, metricas);
+            return;
+        }
+        int comprimentoMaximo = configuracao.comprimentoMaximo;
+        boolean depuracao = configuracao.verbosidade >= Configuracao.DEPURACAO;
+        boolean resumo = configuracao.verbosidade >= Configuracao.RESUMO;
+
+        // O arquivo original é lido uma única vez: ele é mapeado em memória (em janelas de até
+        // 1 GB, o que permite arquivos de qualquer tamanho) e as mesmas janelas são usadas pela
+        // análise de frequência e pela escrita do arquivo comprimido.
+        // Com --assincrono ele não é mapeado: é lido duas vezes (histograma e codificação) por
+        // um CanaisAssincronos.Leitor, que traz do disco os próximos trechos enquanto os
+        // anteriores são contados ou codificados.
+        Path caminhoOriginal = Paths.get(caminhoArqOriginal);
+        ByteBuffer[] dadosOriginais = null;
+        if (!configuracao.assincrono) {
+            metricas.iniciarEtapa("leitura");
+            dadosOriginais = mapearArquivo(caminhoOriginal);
+            if (dadosOriginais == null) {
+                return; // Encerra se houver erro na leitura do arquivo.
+            }
+        }
+
+        // ETAPA 1: Análise de Frequência
+        metricas.iniciarEtapa("frequencias");
+        long[] frequencias = configuracao.assincrono
+                ? calcularFrequenciaDeCaracteres(caminhoOriginal, configuracao.paralelismo, true)
+                : calcularFrequenciaDeCaracteres(dadosOriginais, configuracao.paralelismo);
+        if (frequencias == null) {
+            return;
+        }
+        long tamanhoOriginalBytes = dadosOriginais != null ? JanelasMapeadas.tamanhoTotal(dadosOriginais) : Histograma.total(frequencias);
+        metricas.bytesOriginais = tamanhoOriginalBytes;
+        if (depuracao) {
+            System.out.println("--------------------------------------------------");
+            System.out.println("ETAPA 1: Tabela de Frequencia de Caracteres");
+            System.out.println("--------------------------------------------------");
+            for (int i = 0; i < frequencias.length; i++) {
+                if (frequencias[i] > 0) {
+                    System.out.printf("Caractere '%c' (ASCII: %d): %d\n", (char)i, i, frequencias[i]);
+                }
+            }
+            System.out.printf("Entropia: %.3f bits por caractere\n", Histograma.entropia(frequencias));
+            System.out.println("--------------------------------------------------");
+        }
+
+        // Dados incompressíveis (já comprimidos, cifrados): se nem a entropia do histograma
+        // economiza configuracao.economiaMinima por cento, nenhuma árvore economizaria, e o
+        // arquivo é armazenado sem compressão, sem passar pelas ETAPAS 2 a 4.
+        long tamanhoUtil = CodificadorDeBloco.tamanhoUtil(tamanhoOriginalBytes, configuracao.economiaMinima);
+        boolean armazenar = CodificadorDeBloco.tamanhoMinimo(frequencias, tamanhoOriginalBytes) > tamanhoUtil;
+
+        // ETAPAS 2 a 4: Árvore e Tabela de Códigos
+        // Com um dicionário a tabela já está pronta: não há heap, árvore nem tabela no arquivo.
+        TabelaDeCodigos tabelaDeCodigos = null;
+        if (armazenar) {
+            if (depuracao) {
+                System.out.println("ETAPAS 2 a 4: Dados incompressiveis, armazenados sem compressao");
+                System.out.println("--------------------------------------------------");
+            }
+        } else if (configuracao.dicionario != null) {
+            tabelaDeCodigos = configuracao.dicionario.tabela;
+            if (depuracao) {
+                System.out.printf("ETAPAS 2 a 4: Tabela do dicionario %08x\n", configuracao.dicionario.id);
+                System.out.println("--------------------------------------------------");
+            }
+        } else {
+            tabelaDeCodigos = construirTabelaDeCodigos(frequencias, comprimentoMaximo, depuracao, metricas);
+        }
+
+        // ETAPA 5: Escrita do Arquivo e Resumo da Compressão
+
+        // Calcula o tamanho original para o resumo
+        long tamanhoOriginalBits = tamanhoOriginalBytes * 8;
+
+        // Calcula o tamanho teórico dos dados comprimidos (número exato de bits)
+        // diretamente do histograma: soma de frequência x comprimento do código.
+        // Se o arquivo inteiro (cabeçalho + dados) não economizar o suficiente, ele também é
+        // armazenado, antes de codificar qualquer byte.
+        long tamanhoComprimidoBitsTeorico = tamanhoOriginalBits;
+        if (!armazenar) {
+            tamanhoComprimidoBitsTeorico = tabelaDeCodigos.bitsCodificados(frequencias);
+            long tamanhoDados = (tamanhoComprimidoBitsTeorico + 7) / 8;
+            CabecalhoDeBloco bloco = cabecalhoDoFluxoUnico(tamanhoOriginalBytes, tabelaDeCodigos.comprimentos, configuracao.dicionario, tamanhoDados);
+            armazenar = CodificadorDeBloco.tamanhoDoBloco(bloco) > tamanhoUtil;
+            if (armazenar) {
+                tamanhoComprimidoBitsTeorico = tamanhoOriginalBits;
+            }
+        }
+
+        // Realiza a escrita do arquivo comprimido no disco
+        // Arquivos de mais de 2 GB (ou com --mapeado) também têm a saída gravada por janelas mapeadas.
+        metricas.iniciarEtapa("escrita");
+        boolean saidaMapeada = configuracao.modoMapeado || tamanhoOriginalBytes > Integer.MAX_VALUE;
+        if (armazenar && dadosOriginais == null) {
+            // A cópia sem compressão não passa pela CPU: o arquivo é mapeado só para ela.
+            dadosOriginais = mapearArquivo(caminhoOriginal);
+            if (dadosOriginais == null) {
+                return;
+            }
+        }
+        boolean escrito = armazenar
+                ? escreverArquivoArmazenado(dadosOriginais, caminhoArqSaida)
+                : dadosOriginais == null
+                ? escreverArquivoComprimido(caminhoOriginal, tamanhoOriginalBytes, caminhoArqSaida, frequencias, tabelaDeCodigos,
+                        configuracao.dicionario, configuracao.intervaloIndice)
+                : escreverArquivoComprimido(dadosOriginais, caminhoArqSaida, frequencias, tabelaDeCodigos, saidaMapeada, configuracao.fluxos,
+                        configuracao.dicionario, configuracao.intervaloIndice);
+        if (!escrito) {
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.concluido = true;
+        if (!resumo) {
+            return;
+        }
+        System.out.println("Arquivo comprimido com sucesso!");
+
+        // Pega o tamanho real (prático) do arquivo salvo em disco
+        java.io.File fileComprimido = new java.io.File(caminhoArqSaida);
+        long tamanhoComprimidoBytes = fileComprimido.length();
+
+        // Calcula a taxa de compressão com base no tamanho teórico
+        double taxa = tamanhoOriginalBits == 0 ? 0 : 100.0 * (1.0 - ((double)tamanhoComprimidoBitsTeorico / tamanhoOriginalBits));
+
+        System.out.println("ETAPA 5: Resumo da Compressao");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Tamanho original....: %d bits (%d bytes)\n", tamanhoOriginalBits, tamanhoOriginalBytes);
+        System.out.printf("Tamanho comprimido..: %d bits (%d bytes)\n", tamanhoComprimidoBitsTeorico, tamanhoComprimidoBytes);
+        System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
+        if (armazenar) {
+            System.out.println("Dados incompressiveis: arquivo armazenado sem compressao");
+        }
+        System.out.println("--------------------------------------------------");
+    }
+
+
+    /*
+    Acréscimo (--acrescentar): o original é comprimido em novos blocos no fim do arquivo em
+    blocos 'caminhoArqSaida', sem descomprimir nem regravar os que já estão nele (ver
+    ArquivoEmBlocos.acrescentar). O resumo mostra o acréscimo e os totais do arquivo.
+     */
+    private static void comprimeArquivoAcrescentando(String caminhoArqOriginal, String caminhoArqSaida, Configuracao configuracao, Metricas metricas) {
+        long tamanhoAnterior = new java.io.File(caminhoArqSaida).length();
+        IndiceDeBlocos indice;
+        metricas.iniciarEtapa("blocos");
+        try {
+            indice = ArquivoEmBlocos.acrescentar(Paths.get(caminhoArqOriginal), Paths.get(caminhoArqSaida), configuracao);
+        } catch (IOException e) {
+            System.err.println("Erro ao acrescentar ao arquivo comprimido: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.bytesOriginais = new java.io.File(caminhoArqOriginal).length();
+        metricas.concluido = true;
+        if (configuracao.verbosidade < Configuracao.RESUMO) {
+            return;
+        }
+        long tamanhoOriginalBytes = indice.tamanhoOriginalTotal();
+        long tamanhoComprimidoBytes = new java.io.File(caminhoArqSaida).length();
+        double taxa = tamanhoOriginalBytes == 0 ? 0 : 100.0 * (1.0 - ((double) tamanhoComprimidoBytes / tamanhoOriginalBytes));
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Resumo do Acrescimo");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Acrescentados.......: %d bytes (o arquivo cresceu %d bytes)\n", metricas.bytesOriginais,
+                tamanhoComprimidoBytes - tamanhoAnterior);
+        System.out.printf("Blocos..............: %d no total\n", indice.quantidade);
+        System.out.printf("Tamanho original....: %d bytes\n", tamanhoOriginalBytes);
+        System.out.printf("Tamanho comprimido..: %d bytes\n", tamanhoComprimidoBytes);
+        System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
+    }
+
+    /*
+    Compressão por amostra (--amostra=P): as frequências vêm de P por cento do arquivo (ver
+    Histograma.amostrar), e não de uma passada completa antes da codificação, então o arquivo
+    é lido uma vez só. Os bytes que não aparecem na amostra recebem frequência 1, para que todos
+    tenham código. As frequências reais são contadas durante a codificação: com elas o resumo
+    mostra quanto a tabela da amostra perdeu em relação à do histograma exato, e o arquivo é
+    regravado sem compressão se a amostra tiver enganado a ponto de não economizar nada.
+     */
+    private static void comprimeArquivoPorAmostra(String caminhoArqOriginal, String caminhoArqSaida, Configuracao configuracao, Metricas metricas) {
+        boolean depuracao = configuracao.verbosidade >= Configuracao.DEPURACAO;
+        Path caminhoOriginal = Paths.get(caminhoArqOriginal);
+        long[] contagem = new long[256];
+        long tamanhoOriginalBytes;
+        long tamanhoAmostra;
+        long tamanhoUtil;
+        TabelaDeCodigos tabelaDeCodigos = null;
+        boolean armazenar;
+
+        try (FileChannel entrada = FileChannel.open(caminhoOriginal, StandardOpenOption.READ)) {
+            // ETAPA 1: Análise de Frequência da amostra
+            metricas.iniciarEtapa("amostra");
+            tamanhoOriginalBytes = entrada.size();
+            metricas.bytesOriginais = tamanhoOriginalBytes;
+            long[] frequencias = Histograma.amostrar(entrada, configuracao.amostra);
+            tamanhoAmostra = Histograma.total(frequencias);
+            tamanhoUtil = CodificadorDeBloco.tamanhoUtil(tamanhoOriginalBytes, configuracao.economiaMinima);
+            armazenar = CodificadorDeBloco.tamanhoMinimo(frequencias, tamanhoOriginalBytes) > tamanhoUtil;
+            if (tamanhoAmostra < tamanhoOriginalBytes) {
+                Histograma.aplicarPiso(frequencias);
+            }
+            if (depuracao) {
+                System.out.println("--------------------------------------------------");
+                System.out.printf("ETAPA 1: Frequencias de uma amostra de %d bytes\n", tamanhoAmostra);
+                System.out.println("--------------------------------------------------");
+                System.out.printf("Entropia: %.3f bits por caractere\n", Histograma.entropia(frequencias));
+                System.out.println("--------------------------------------------------");
+            }
+
+            // ETAPAS 2 a 4 e ETAPA 5 em uma única leitura do arquivo.
+            if (!armazenar) {
+                tabelaDeCodigos = construirTabelaDeCodigos(frequencias, configuracao.comprimentoMaximo, depuracao, metricas);
+                metricas.iniciarEtapa("escrita");
+                try (ReadableByteChannel origem = configuracao.assincrono
+                        ? new CanaisAssincronos.Leitor(caminhoOriginal, 0, tamanhoOriginalBytes)
+                        : new JanelasMapeadas.Leitor(entrada, 0, tamanhoOriginalBytes)) {
+                    if (!escreverFluxoUnico(origem, tamanhoOriginalBytes, caminhoArqSaida, null, contagem, tabelaDeCodigos, false,
+                            configuracao.assincrono, null, configuracao.intervaloIndice)) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao ler o arquivo '" + caminhoOriginal + "': " + e.getMessage());
+            return;
+        }
+
+        // Tamanho (cabeçalho + dados) com a tabela da amostra e com a tabela exata, a das
+        // frequências reais; cada um é trocado pelo do arquivo armazenado se não economizar.
+        // Se a própria amostra já indicou o armazenamento, o arquivo não foi lido e a tabela
+        // exata não é conhecida ('perda' fica -1).
+        long tamanhoComprimidoBits = tamanhoOriginalBytes * 8;
+        long perda = -1;
+        if (!armazenar) {
+            long tamanhoArmazenado = CodificadorDeBloco.tamanhoDoBloco(CabecalhoDeBloco.armazenado(tamanhoOriginalBytes));
+            tamanhoComprimidoBits = tabelaDeCodigos.bitsCodificados(contagem);
+            long tamanho = CodificadorDeBloco.tamanhoDoBloco(
+                    cabecalhoDoFluxoUnico(tamanhoOriginalBytes, tabelaDeCodigos.comprimentos, null, (tamanhoComprimidoBits + 7) / 8));
+            TabelaDeCodigos exata = CodigosCanonicos.gerarCodigos(CodigosCanonicos.calcularComprimentos(contagem, configuracao.comprimentoMaximo));
+            long tamanhoExato = CodificadorDeBloco.tamanhoDoBloco(
+                    cabecalhoDoFluxoUnico(tamanhoOriginalBytes, exata.comprimentos, null, (exata.bitsCodificados(contagem) + 7) / 8));
+            armazenar = tamanho > tamanhoUtil;
+            if (armazenar) {
+                tamanhoComprimidoBits = tamanhoOriginalBytes * 8;
+                tamanho = tamanhoArmazenado;
+            }
+            perda = Math.max(0, tamanho - (tamanhoExato > tamanhoUtil ? tamanhoArmazenado : tamanhoExato));
+        }
+        if (armazenar) {
+            ByteBuffer[] dadosOriginais = mapearArquivo(caminhoOriginal);
+            if (dadosOriginais == null || !escreverArquivoArmazenado(dadosOriginais, caminhoArqSaida)) {
+                return;
+            }
+        }
+        metricas.terminarEtapa();
+        metricas.concluido = true;
+        if (configuracao.verbosidade < Configuracao.RESUMO) {
+            return;
+        }
+        System.out.println("Arquivo comprimido com sucesso!");
+
+        long tamanhoComprimidoBytes = new java.io.File(caminhoArqSaida).length();
+        long tamanhoOriginalBits = tamanhoOriginalBytes * 8;
+        double taxa = tamanhoOriginalBits == 0 ? 0 : 100.0 * (1.0 - ((double) tamanhoComprimidoBits / tamanhoOriginalBits));
+
+        System.out.println("ETAPA 5: Resumo da Compressao");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Amostra.............: %d bytes (%.2f%% do original)\n", tamanhoAmostra,
+                tamanhoOriginalBytes == 0 ? 100.0 : 100.0 * tamanhoAmostra / tamanhoOriginalBytes);
+        System.out.printf("Tamanho original....: %d bits (%d bytes)\n", tamanhoOriginalBits, tamanhoOriginalBytes);
+        System.out.printf("Tamanho comprimido..: %d bits (%d bytes)\n", tamanhoComprimidoBits, tamanhoComprimidoBytes);
+        System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
+        if (perda >= 0) {
+            System.out.printf("Perda pela amostra..: %d bytes (%.2f pontos na taxa)\n", perda,
+                    tamanhoOriginalBytes == 0 ? 0 : 100.0 * perda / tamanhoOriginalBytes);
+        }
+        if (armazenar) {
+            System.out.println("Dados incompressiveis: arquivo armazenado sem compressao");
+        }
+        System.out.println("--------------------------------------------------");
+    }
+
+    /*
+    ETAPAS 2 a 4 da compressão de um arquivo: heap inicial, árvore e tabela de códigos
+    canônicos, exibidos no console no nível de depuração.
+     */
+    private static TabelaDeCodigos construirTabelaDeCodigos(long[] frequencias, int comprimentoMaximo, boolean depuracao, Metricas metricas) {
+        // ETAPA 2: Exibição Conceitual do Min-Heap Inicial
+        // A construção real da árvore na ETAPA 3 usa duas filas (ver ArvoreCompacta).
+
+        if (depuracao) {
+            System.out.println("ETAPA 2: Min-Heap Inicial (Vetor)");
+            System.out.println("--------------------------------------------------");
+            StringBuilder heapStr = new StringBuilder();
+            heapStr.append("[ ");
+            boolean first = true;
+            for (int i = 0; i < frequencias.length; i++) {
+                if (frequencias[i] > 0) {
+                    if (!first) heapStr.append(", ");
+                    heapStr.append(String.format("No('%c',%d)", (char)i, frequencias[i]));
+                    first = false;
+                }
+            }
+            heapStr.append(" ]");
+            System.out.println(heapStr.toString());
+            System.out.println("--------------------------------------------------");
+        }
+
+        // ETAPA 3: Construção da Árvore de Huffman e Impressão
+        metricas.iniciarEtapa("arvore");
+        ArvoreCompacta arvore = ArvoreCompacta.construirComDuasFilas(frequencias);
+        if (depuracao) {
+            System.out.println("ETAPA 3: Arvore de Huffman");
+            System.out.println("--------------------------------------------------");
+            imprimirArvoreFormatada(arvore.paraNo()); // Impressão visual da árvore
+            System.out.println("--------------------------------------------------");
+        }
+
+        // ETAPA 4: Geração e Exibição da Tabela de Códigos
+        // Os comprimentos vêm da árvore (limitados a comprimentoMaximo) e os códigos
+        // são os canônicos, que o descompressor recria só a partir dos comprimentos.
+        metricas.iniciarEtapa("codigos");
+        int[] comprimentos = CodigosCanonicos.calcularComprimentos(arvore, frequencias, comprimentoMaximo);
+        TabelaDeCodigos tabelaDeCodigos = CodigosCanonicos.gerarCodigos(comprimentos);
+        if (depuracao) {
+            System.out.println("ETAPA 4: Tabela de Codigos de Huffman");
+            System.out.println("--------------------------------------------------");
+            for (int i = 0; i < 256; i++) {
+                if (tabelaDeCodigos.comprimentos[i] > 0) {
+                    System.out.printf("Caractere '%c': %s\n", (char)i, tabelaDeCodigos.comoTexto(i));
+                }
+            }
+            System.out.println("--------------------------------------------------");
+        }
+        return tabelaDeCodigos;
+    }
+
+    /*
+    Compressão de fluxo (modo 'c' com "-" no lugar de um dos arquivos): a entrada é lida em
+    sequência e comprimida por um HuffmanOutputStream, sem conhecer o tamanho total e sem
+    guardá-la inteira em memória.
+     */
+    private static void comprimeFluxo(String caminhoEntrada, String caminhoSaida, OutputStream saidaPadrao, Configuracao configuracao, Metricas metricas) {
+        int tamanhoBloco = configuracao.tamanhoBloco > 0 ? configuracao.tamanhoBloco : Configuracao.TAMANHO_BLOCO_PADRAO;
+        metricas.iniciarEtapa("fluxo");
+        try (InputStream entrada = abrirEntrada(caminhoEntrada);
+             HuffmanOutputStream saida = new HuffmanOutputStream(abrirSaida(caminhoSaida, saidaPadrao), tamanhoBloco, configuracao.comprimentoMaximo,
+                     configuracao.dicionario)) {
+            entrada.transferTo(saida);
+            saida.finish();
+            metricas.bytesOriginais = saida.getBytesOriginais();
+            metricas.bytesLidos = saida.getBytesOriginais();
+            metricas.bytesEscritos = saida.getBytesComprimidos();
+        } catch (IOException e) {
+            System.err.println("Erro ao comprimir o fluxo: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            double taxa = metricas.bytesOriginais == 0 ? 0 : 100.0 * (1.0 - ((double) metricas.bytesEscritos / metricas.bytesOriginais));
+            System.out.println("--------------------------------------------------");
+            System.out.println("Resumo da Compressao do Fluxo");
+            System.out.println("--------------------------------------------------");
+            System.out.printf("Tamanho original....: %d bytes\n", metricas.bytesOriginais);
+            System.out.printf("Tamanho comprimido..: %d bytes\n", metricas.bytesEscritos);
+            System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
+        }
+    }
+
+    /*
+    Compressão adaptativa (modo 'a'): uma única passada pela entrada, que pode ser um
+    pipe ("-"), com memória constante (ver CodificadorAdaptativo).
+     */
+    private static void comprimeAdaptativo(String caminhoEntrada, String caminhoSaida, OutputStream saidaPadrao, Configuracao configuracao, Metricas metricas) {
+        CodificadorAdaptativo codificador = new CodificadorAdaptativo();
+        metricas.iniciarEtapa("adaptativo");
+        try (InputStream entrada = abrirEntrada(caminhoEntrada);
+             OutputStream saida = abrirSaida(caminhoSaida, saidaPadrao)) {
+            codificador.comprimir(entrada, saida);
+        } catch (IOException e) {
+            System.err.println("Erro ao comprimir: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.bytesOriginais = codificador.getBytesOriginais();
+        metricas.bytesLidos = codificador.getBytesOriginais();
+        metricas.bytesEscritos = codificador.getBytesComprimidos();
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            double taxa = metricas.bytesOriginais == 0 ? 0 : 100.0 * (1.0 - ((double) metricas.bytesEscritos / metricas.bytesOriginais));
+            System.out.println("--------------------------------------------------");
+            System.out.println("Resumo da Compressao Adaptativa");
+            System.out.println("--------------------------------------------------");
+            System.out.printf("Tamanho original....: %d bytes\n", metricas.bytesOriginais);
+            System.out.printf("Tamanho comprimido..: %d bytes\n", metricas.bytesEscritos);
+            System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
+        }
+    }
+
+    /*
+    Compressão em pacote (modo 'p'): todos os arquivos de um diretório (ou de uma lista)
+    em um único arquivo, com um diretório central no fim (ver Pacote).
+     */
+    private static void comprimePacote(String caminhoOrigem, String caminhoPacote, Configuracao configuracao, Metricas metricas) {
+        Pacote pacote = new Pacote(configuracao);
+        metricas.iniciarEtapa("pacote");
+        try {
+            pacote.comprimir(Paths.get(caminhoOrigem), Paths.get(caminhoPacote));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Erro ao criar o pacote: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        DiretorioDoPacote diretorio = pacote.getDiretorio();
+        metricas.bytesOriginais = diretorio.tamanhoOriginalTotal();
+        metricas.bytesLidos = metricas.bytesOriginais;
+        metricas.bytesEscritos = pacote.getBytesComprimidos();
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            double taxa = metricas.bytesOriginais == 0 ? 0 : 100.0 * (1.0 - ((double) metricas.bytesEscritos / metricas.bytesOriginais));
+            System.out.println("--------------------------------------------------");
+            System.out.println("Resumo do Pacote");
+            System.out.println("--------------------------------------------------");
+            System.out.printf("Arquivos............: %d\n", diretorio.quantidade);
+            System.out.printf("Tamanho original....: %d bytes\n", metricas.bytesOriginais);
+            System.out.printf("Tamanho do pacote...: %d bytes\n", metricas.bytesEscritos);
+            System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
+            if (pacote.temTabelaCompartilhada()) {
+                System.out.printf("Tabela compartilhada: usada em %d blocos\n", pacote.getBlocosComTabelaCompartilhada());
+            }
+        }
+    }
+
+    /*
+    Treino de um dicionário (modo 't'): o histograma de todas as amostras (os arquivos de um
+    diretório, ou um único arquivo) vira uma tabela de códigos estática, gravada em
+    'caminhoDicionario' para uso com --dicionario.
+     */
+    private static void treinaDicionario(String caminhoAmostras, String caminhoDicionario, Configuracao configuracao, Metricas metricas) {
+        metricas.iniciarEtapa("treino");
+        Path origem = Paths.get(caminhoAmostras);
+        List<Path> amostras;
+        Dicionario dicionario;
+        try {
+            if (Files.isDirectory(origem)) {
+                try (Stream<Path> caminhos = Files.walk(origem)) {
+                    amostras = caminhos.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+            } else {
+                amostras = List.of(origem);
+            }
+            dicionario = Dicionario.treinar(amostras, configuracao.comprimentoMaximo);
+            dicionario.gravar(Paths.get(caminhoDicionario));
+            for (Path amostra : amostras) {
+                metricas.bytesOriginais += Files.size(amostra);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao treinar o dicionário: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.bytesLidos = metricas.bytesOriginais;
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            System.out.println("--------------------------------------------------");
+            System.out.println("Resumo do Dicionario");
+            System.out.println("--------------------------------------------------");
+            System.out.printf("Amostras............: %d arquivos (%d bytes)\n", amostras.size(), metricas.bytesOriginais);
+            System.out.printf("Id do dicionario....: %08x\n", dicionario.id);
+            System.out.println("--------------------------------------------------");
+        }
+    }
+
+    /*
+    Extração de um pacote (modo 'd' com um pacote): as entradas são gravadas no diretório
+    'caminhoDestino', com os seus nomes relativos.
+     */
+    private static void descomprimePacote(String caminhoPacote, String caminhoDestino, Configuracao configuracao, Metricas metricas) {
+        metricas.iniciarEtapa("pacote");
+        try (FileChannel entrada = FileChannel.open(Paths.get(caminhoPacote), StandardOpenOption.READ)) {
+            DiretorioDoPacote diretorio = Pacote.extrair(entrada, Paths.get(caminhoDestino), configuracao.paralelismo);
+            metricas.bytesOriginais = diretorio.tamanhoOriginalTotal();
+            metricas.bytesEscritos = metricas.bytesOriginais;
+            metricas.bytesLidos = entrada.size();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Erro ao extrair o pacote: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            System.out.println("Pacote extraído com sucesso para: " + caminhoDestino);
+        }
+    }
+
+    /*
+    Descompressão de um trecho (modo 'd' com --inicio/--quantidade): só a parte pedida do
+    original é decodificada e gravada (ver AcessoAleatorio). A saída pode ser "-".
+     */
+    private static void descomprimeTrecho(String caminhoEntrada, String caminhoSaida, OutputStream saidaPadrao, Configuracao configuracao, Metricas metricas) {
+        metricas.iniciarEtapa("trecho");
+        try (FileChannel entrada = FileChannel.open(Paths.get(caminhoEntrada), StandardOpenOption.READ);
+             OutputStream saida = abrirSaida(caminhoSaida, saidaPadrao)) {
+            WritableByteChannel canalSaida = Channels.newChannel(saida);
+            metricas.bytesOriginais = AcessoAleatorio.descomprimirTrecho(entrada, configuracao.inicioTrecho, configuracao.quantidadeTrecho,
+                    canalSaida, configuracao.dicionario);
+            metricas.bytesEscritos = metricas.bytesOriginais;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao descomprimir o trecho: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            System.out.println("Trecho descomprimido com sucesso: " + metricas.bytesOriginais + " bytes a partir de " + configuracao.inicioTrecho + ".");
+        }
+    }
+
+    /*
+    Descompressão de fluxo (modo 'd' com "-" no lugar de um dos arquivos). A entrada precisa
+    estar em um formato que pode ser lido sem voltar atrás: fluxo (versão 4) ou adaptativo (versão 5).
+     */
+    private static void descomprimeFluxo(String caminhoEntrada, String caminhoSaida, OutputStream saidaPadrao, Configuracao configuracao, Metricas metricas) {
+        metricas.iniciarEtapa("fluxo");
+        try (InputStream entrada = abrirEntrada(caminhoEntrada);
+             OutputStream saida = abrirSaida(caminhoSaida, saidaPadrao)) {
+            // A versão é espiada sem consumir os bytes (o BufferedInputStream permite voltar).
+            entrada.mark(FormatoHuff.TAMANHO_MAGICA);
+            int versao = FormatoHuff.detectarVersao(ByteBuffer.wrap(entrada.readNBytes(FormatoHuff.TAMANHO_MAGICA)));
+            entrada.reset();
+            if (versao == FormatoHuff.VERSAO_ADAPTATIVA) {
+                CodificadorAdaptativo decodificador = new CodificadorAdaptativo();
+                decodificador.descomprimir(entrada, saida);
+                metricas.bytesOriginais = decodificador.getBytesOriginais();
+            } else {
+                HuffmanInputStream fluxo = new HuffmanInputStream(entrada, configuracao.dicionario);
+                fluxo.transferTo(saida);
+                metricas.bytesOriginais = fluxo.getBytesOriginais();
+                metricas.bytesLidos = fluxo.getBytesComprimidos();
+            }
+            metricas.bytesEscritos = metricas.bytesOriginais;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao descomprimir o fluxo: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            System.out.println("Fluxo descomprimido com sucesso: " + metricas.bytesOriginais + " bytes.");
+        }
+    }
+
+    // Abre um arquivo para leitura, ou a entrada padrão se o caminho for "-".
+    private static InputStream abrirEntrada(String caminho) throws IOException {
+        InputStream entrada = caminho.equals("-") ? System.in : Files.newInputStream(Paths.get(caminho));
+        return new BufferedInputStream(entrada, LeitorDeBits.TAMANHO_BUFFER);
+    }
+
+    // Abre um arquivo para escrita, ou a saída padrão se o caminho for "-".
+    private static OutputStream abrirSaida(String caminho, OutputStream saidaPadrao) throws IOException {
+        OutputStream saida = caminho.equals("-") ? saidaPadrao : Files.newOutputStream(Paths.get(caminho));
+        return new BufferedOutputStream(saida, EscritorDeBits.TAMANHO_BUFFER);
+    }
+
+    /*
+    Compressão no modo em blocos: o arquivo é dividido em blocos que são comprimidos
+    em paralelo (ver ArquivoEmBlocos). Como cada bloco tem a sua própria árvore,
+    o resumo mostra apenas os totais.
+     */
+    private static void comprimeArquivoEmBlocos(String caminhoArqOriginal, String caminhoArqSaida, Configuracao configuracao, Metricas metricas) {
+        IndiceDeBlocos indice;
+        metricas.iniciarEtapa("blocos");
+        try {
+            indice = ArquivoEmBlocos.comprimir(Paths.get(caminhoArqOriginal), Paths.get(caminhoArqSaida), configuracao);
+        } catch (IOException e) {
+            System.err.println("Erro ao comprimir em blocos: " + e.getMessage());
+            return;
+        }
+        metricas.terminarEtapa();
+        metricas.bytesOriginais = indice.tamanhoOriginalTotal();
+        metricas.concluido = true;
+        if (configuracao.verbosidade < Configuracao.RESUMO) {
+            return;
+        }
+        long tamanhoOriginalBytes = indice.tamanhoOriginalTotal();
+        long tamanhoComprimidoBytes = new java.io.File(caminhoArqSaida).length();
+        double taxa = tamanhoOriginalBytes == 0 ? 0 : 100.0 * (1.0 - ((double) tamanhoComprimidoBytes / tamanhoOriginalBytes));
+
+        System.out.println("--------------------------------------------------");
+        System.out.println("Resumo da Compressao em Blocos");
+        System.out.println("--------------------------------------------------");
+        System.out.printf("Blocos..............: %d de ate %d bytes (%d threads)\n", indice.quantidade, configuracao.tamanhoBloco, configuracao.paralelismo);
+        if (configuracao.transformacoes != null) {
+            System.out.printf("Transformacoes......: %s\n", Transformacoes.nomes(configuracao.transformacoes));
+        }
+        System.out.printf("Tamanho original....: %d bytes\n", tamanhoOriginalBytes);
+        System.out.printf("Tamanho comprimido..: %d bytes\n", tamanhoComprimidoBytes);
+        System.out.printf("Taxa de compressao..: %.2f%%\n", taxa);
+    }
+    
+    
+    //Lê um arquivo, conta a frequência de cada byte (0-255) e retorna um vetor de contadores de 64 bits.
+    public static long[] calcularFrequenciaDeCaracteres(Path caminhoDoArquivo) {
+        ByteBuffer[] dados = mapearArquivo(caminhoDoArquivo);
+        if (dados == null) {
+            return null; // Sinaliza o erro para o método chamador.
+        }
+        return calcularFrequenciaDeCaracteres(dados, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+    Conta a frequência de cada byte de um arquivo já mapeado em memória (uma ou mais janelas).
+    Arquivos grandes são divididos em pedaços contados em paralelo (ver Histograma).
+     */
+    public static long[] calcularFrequenciaDeCaracteres(ByteBuffer[] janelas, int paralelismo) {
+        long[] frequencias = new long[256];
+        for (ByteBuffer janela : janelas) {
+            long[] parcial = Histograma.calcular(janela, paralelismo);
+            for (int i = 0; i < 256; i++) {
+                frequencias[i] += parcial[i];
+            }
+        }
+        return frequencias;
+    }
+
+    /*
+    Conta a frequência de cada byte do arquivo. Com 'assincrono', ele é lido por um
+    CanaisAssincronos.Leitor, que pede os próximos trechos ao disco enquanto o atual é contado;
+    sem, é mapeado em memória, como no método acima.
+    Retorna null (após exibir o erro) se o arquivo não puder ser lido.
+     */
+    static long[] calcularFrequenciaDeCaracteres(Path caminhoDoArquivo, int paralelismo, boolean assincrono) {
+        if (!assincrono) {
+            ByteBuffer[] dados = mapearArquivo(caminhoDoArquivo);
+            return dados == null ? null : calcularFrequenciaDeCaracteres(dados, paralelismo);
+        }
+        long[] frequencias = new long[256];
+        ByteBuffer pedaco = ByteBuffer.allocate(CanaisAssincronos.TAMANHO_BUFFER);
+        try (CanaisAssincronos.Leitor leitor = new CanaisAssincronos.Leitor(caminhoDoArquivo, 0, -1)) {
+            // Cada trecho (1 MB) é contado nesta thread: dividi-lo entre threads custaria mais
+            // do que a contagem, e o disco já trabalha em paralelo com ela.
+            while (leitor.read(pedaco.clear()) >= 0) {
+                Histograma.acumular(frequencias, pedaco.array(), 0, pedaco.position());
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao ler o arquivo '" + caminhoDoArquivo + "': " + e.getMessage());
+            return null;
+        }
+        return frequencias;
+    }
+
+    /*
+    Mapeia o arquivo inteiro em memória para leitura, em janelas de até 1 GB (ver JanelasMapeadas).
+    Os bytes são trazidos do disco sob demanda pelo sistema operacional e ficam fora do heap da JVM.
+    Retorna null (após exibir o erro) se o arquivo não puder ser lido.
+     */
+    static ByteBuffer[] mapearArquivo(Path caminhoDoArquivo) {
+        try (FileChannel canal = FileChannel.open(caminhoDoArquivo, StandardOpenOption.READ)) {
+            return JanelasMapeadas.mapearParaLeitura(canal, 0, canal.size());
+        } catch (IOException e) {
+            System.err.println("Erro ao ler o arquivo '" + caminhoDoArquivo + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+    Constrói a Árvore de Huffman do formato legado a partir da tabela de frequências.
+    O descompressor a refaz a partir das frequências do cabeçalho, por isso o desempate
+    (o do MinHeap de objetos No do compressor antigo) não pode mudar; ver ArvoreCompacta.
+    Retorna uma árvore vazia se nenhum caractere apareceu.
+     */
+    public static ArvoreCompacta reconstruirArvoreDeHuffman(long[] frequencias) {
+        return ArvoreCompacta.construirLegado(frequencias);
+    }
+
+    /*
+    Gera a tabela de códigos de Huffman percorrendo a árvore (0 para a esquerda, 1 para a
+    direita). Os códigos são inteiros montados em uma passada pela árvore em ordem de
+    largura, sem recursão e sem uma String por nível.
+     */
+    public static TabelaDeCodigos gerarTabelaDeCodigos(ArvoreCompacta arvore) {
+        return arvore.codigos();
+    }
+    
+    /*
+    Escreve o arquivo comprimido (.huff) no disco. O arquivo consiste em um cabeçalho
+    seguido pelos dados comprimidos.
+    O cabeçalho guarda apenas os comprimentos dos códigos canônicos (ver FormatoHuff),
+    e não mais as 256 frequências.
+    O arquivo original é lido em pedaços por um canal e cada byte é codificado
+    pelo EscritorDeBits, que empacota os bits em um acumulador de 64 bits.
+    A memória usada não depende do tamanho do arquivo.
+     */
+    public static void escreverArquivoComprimido( String caminhoArqOriginal, String caminhoArqSaida, long[] frequencias, TabelaDeCodigos tabelaDeCodigos) {
+        ByteBuffer[] dadosOriginais = mapearArquivo(Paths.get(caminhoArqOriginal));
+        if (dadosOriginais != null && escreverArquivoComprimido(dadosOriginais, caminhoArqSaida, frequencias, tabelaDeCodigos, false)) {
+            System.out.println("Arquivo comprimido com sucesso!");
+        }
+    }
+
+    /*
+    Igual ao método acima, mas codifica bytes que já estão mapeados em memória,
+    evitando ler o arquivo original outra vez.
+    Com 'saidaMapeada', o arquivo comprimido também é gravado por janelas mapeadas
+    (o seu tamanho exato é conhecido de antemão pelo histograma).
+    Retorna false (após exibir o erro) se o arquivo não puder ser escrito.
+     */
+    public static boolean escreverArquivoComprimido(ByteBuffer[] dadosOriginais, String caminhoArqSaida, long[] frequencias, TabelaDeCodigos tabelaDeCodigos, boolean saidaMapeada) {
+        return escreverArquivoComprimido(dadosOriginais, caminhoArqSaida, frequencias, tabelaDeCodigos, saidaMapeada, 1);
+    }
+
+    /*
+    Igual ao método acima; com 'fluxos' > 1 os dados são gravados em vários fluxos de bits
+    intercalados (ver FluxosIntercalados), cada um na sua região do arquivo.
+     */
+    public static boolean escreverArquivoComprimido(ByteBuffer[] dadosOriginais, String caminhoArqSaida, long[] frequencias, TabelaDeCodigos tabelaDeCodigos, boolean saidaMapeada, int fluxos) {
+        return escreverArquivoComprimido(dadosOriginais, caminhoArqSaida, frequencias, tabelaDeCodigos, saidaMapeada, fluxos, null);
+    }
+
+    /*
+    Igual ao método acima; com um 'dicionario', 'tabelaDeCodigos' é a tabela dele e o cabeçalho
+    do bloco (TIPO_DICIONARIO) guarda só o id do dicionário. Os blocos com dicionário têm um
+    único fluxo de bits, então 'fluxos' é ignorado.
+     */
+    public static boolean escreverArquivoComprimido(ByteBuffer[] dadosOriginais, String caminhoArqSaida, long[] frequencias, TabelaDeCodigos tabelaDeCodigos,
+                                                    boolean saidaMapeada, int fluxos, Dicionario dicionario) {
+        return escreverArquivoComprimido(dadosOriginais, caminhoArqSaida, frequencias, tabelaDeCodigos, saidaMapeada, fluxos, dicionario, 0);
+    }
+
+    /*
+    Igual ao método acima; com 'intervaloIndice' > 0, grava depois dos dados um índice de
+    sincronia (ver IndiceDeSincronia) com um ponto a cada 'intervaloIndice' bytes do original,
+    para a leitura de trechos sem decodificar desde o início. Só vale para um fluxo único.
+     */
+    public static boolean escreverArquivoComprimido(ByteBuffer[] dadosOriginais, String caminhoArqSaida, long[] frequencias, TabelaDeCodigos tabelaDeCodigos,
+                                                    boolean saidaMapeada, int fluxos, Dicionario dicionario, long intervaloIndice) {
+        if (fluxos > 1 && dicionario == null) {
+            return escreverArquivoIntercalado(dadosOriginais, caminhoArqSaida, tabelaDeCodigos, fluxos);
+        }
+        return escreverFluxoUnico(new JanelasMapeadas.Sequencia(dadosOriginais), JanelasMapeadas.tamanhoTotal(dadosOriginais), caminhoArqSaida,
+                frequencias, null, tabelaDeCodigos, saidaMapeada, false, dicionario, intervaloIndice);
+    }
+
+    /*
+    Igual ao método acima, com um único fluxo, mas o original é lido do arquivo em
+    'caminhoOriginal' (de 'tamanhoOriginal' bytes) por um CanaisAssincronos.Leitor, e o
+    comprimido é gravado por um CanaisAssincronos.Escritor (--assincrono): a leitura do
+    próximo trecho e a escrita do anterior acontecem enquanto o atual é codificado.
+     */
+    public static boolean escreverArquivoComprimido(Path caminhoOriginal, long tamanhoOriginal, String caminhoArqSaida, long[] frequencias,
+                                                    TabelaDeCodigos tabelaDeCodigos, Dicionario dicionario, long intervaloIndice) {
+        try (CanaisAssincronos.Leitor origem = new CanaisAssincronos.Leitor(caminhoOriginal, 0, tamanhoOriginal)) {
+            return escreverFluxoUnico(origem, tamanhoOriginal, caminhoArqSaida, frequencias, null, tabelaDeCodigos, false, true, dicionario, intervaloIndice);
+        } catch (IOException e) {
+            System.err.println("Erro ao ler o arquivo '" + caminhoOriginal + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    /*
+    Escreve o arquivo de um fluxo único com os 'tamanhoOriginal' bytes lidos de 'origem'.
+    A saída é gravada pelo próprio FileChannel, por janelas mapeadas ('saidaMapeada') ou
+    em segundo plano por um CanaisAssincronos.Escritor ('assincrono').
+    Com 'frequencias' null (compressão por amostra), o tamanho dos dados só é conhecido no fim:
+    as frequências reais são contadas em 'contagem' durante a codificação e o cabeçalho é
+    regravado com elas. 'saidaMapeada' precisa ser false nesse caso.
+     */
+    private static boolean escreverFluxoUnico(ReadableByteChannel origem, long tamanhoOriginal, String caminhoArqSaida, long[] frequencias,
+                                              long[] contagem, TabelaDeCodigos tabelaDeCodigos, boolean saidaMapeada, boolean assincrono,
+                                              Dicionario dicionario, long intervaloIndice) {
+        Path caminhoSaida = Paths.get(caminhoArqSaida);
+        long[] codigos = tabelaDeCodigos.codigos;
+        int[] comprimentos = tabelaDeCodigos.comprimentos;
+
+        // O cabeçalho é montado antes de abrir a saída, para que o tamanho total seja conhecido.
+        // 1. Número mágico e versão do formato.
+        // 2. Cabeçalho do bloco: tamanho original, comprimentos dos códigos e tamanho dos dados.
+        //    O tamanho dos dados é conhecido de antemão pelo histograma (frequência x comprimento).
+        //    Sem o histograma, o cabeçalho reserva para ele a largura do maior tamanho possível
+        //    (todos os bytes com o código mais longo).
+        ByteBuffer cabecalho = ByteBuffer.allocate(4 + CabecalhoDeBloco.TAMANHO_MAXIMO);
+        FormatoHuff.escreverMagica(cabecalho, FormatoHuff.VERSAO_CANONICA);
+        long tamanhoDados = frequencias != null
+                ? (tabelaDeCodigos.bitsCodificados(frequencias) + 7) / 8
+                : (tamanhoOriginal * Arrays.stream(comprimentos).max().orElse(0) + 7) / 8;
+        int larguraTamanhoDados = FormatoHuff.tamanhoVarLong(tamanhoDados);
+        cabecalhoDoFluxoUnico(tamanhoOriginal, comprimentos, dicionario, tamanhoDados).escrever(cabecalho);
+        IndiceDeSincronia indice = intervaloIndice > 0 ? new IndiceDeSincronia(intervaloIndice) : null;
+
+        try (FileChannel canalSaida = assincrono ? null : FileChannel.open(caminhoSaida, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             WritableByteChannel saida = assincrono ? new CanaisAssincronos.Escritor(caminhoSaida, 0, true)
+                     : saidaMapeada ? new JanelasMapeadas.Escritor(canalSaida, 0, cabecalho.position() + tamanhoDados) : canalSaida;
+             EscritorDeBits escritor = new EscritorDeBits(saida)) {
+
+            // --- ESCREVENDO O CABEÇALHO ---
+            escritor.escreverBytes(cabecalho.array(), 0, cabecalho.position());
+
+            // --- ESCREVENDO OS DADOS COMPRIMIDOS ---
+            // Copia o original em pedaços para um vetor local e escreve o código de cada byte.
+            // O padding do último byte (zeros à direita) é feito pelo escritor ao fechar.
+            // Com o índice, os pedaços terminam nos pontos de sincronia, onde o bit atual é anotado.
+            ByteBuffer entrada = ByteBuffer.allocate(EscritorDeBits.TAMANHO_BUFFER);
+            byte[] pedaco = entrada.array();
+            long codificados = 0;
+            while (codificados < tamanhoOriginal) {
+                int lidos = (int) Math.min(pedaco.length, tamanhoOriginal - codificados);
+                if (indice != null) {
+                    lidos = (int) Math.min(lidos, indice.proximoPonto() - codificados);
+                }
+                entrada.clear().limit(lidos);
+                while (entrada.hasRemaining()) {
+                    if (origem.read(entrada) < 0) {
+                        throw new IOException("O arquivo original terminou antes do esperado.");
+                    }
+                }
+                if (contagem != null) {
+                    Histograma.acumular(contagem, pedaco, 0, lidos);
+                }
+                for (int i = 0; i < lidos; i++) {
+                    int simbolo = pedaco[i] & 0xFF;
+                    escritor.escrever(codigos[simbolo], comprimentos[simbolo]);
+                }
+                codificados += lidos;
+                if (indice != null && codificados == indice.proximoPonto() && codificados < tamanhoOriginal) {
+                    indice.adicionar(escritor.getBitsEscritos());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever o arquivo comprimido: " + e.getMessage());
+            return false;
+        }
+
+        // --- REGRAVANDO O CABEÇALHO COM O TAMANHO REAL DOS DADOS ---
+        // Com a mesma largura reservada, o cabeçalho ocupa exatamente o mesmo espaço.
+        if (frequencias == null) {
+            tamanhoDados = (tabelaDeCodigos.bitsCodificados(contagem) + 7) / 8;
+            ByteBuffer regravado = ByteBuffer.allocate(cabecalho.position());
+            FormatoHuff.escreverMagica(regravado, FormatoHuff.VERSAO_CANONICA);
+            cabecalhoDoFluxoUnico(tamanhoOriginal, comprimentos, dicionario, tamanhoDados).escrever(regravado, larguraTamanhoDados);
+            regravado.flip();
+            try (FileChannel canalSaida = FileChannel.open(caminhoSaida, StandardOpenOption.WRITE)) {
+                while (regravado.hasRemaining()) {
+                    canalSaida.write(regravado, regravado.position());
+                }
+            } catch (IOException e) {
+                System.err.println("Erro ao escrever o cabeçalho do arquivo comprimido: " + e.getMessage());
+                return false;
+            }
+        }
+
+        // --- ESCREVENDO O ÍNDICE DE SINCRONIA ---
+        if (indice != null) {
+            try (FileChannel canalSaida = FileChannel.open(caminhoSaida, StandardOpenOption.WRITE)) {
+                indice.escrever(canalSaida, cabecalho.position() + tamanhoDados);
+            } catch (IOException e) {
+                System.err.println("Erro ao escrever o índice do arquivo comprimido: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    Cabeçalho do bloco de um arquivo de fluxo único: com os comprimentos dos códigos ou, com
+    um dicionário, só com o id dele.
+     */
+    private static CabecalhoDeBloco cabecalhoDoFluxoUnico(long tamanhoOriginal, int[] comprimentos, Dicionario dicionario, long tamanhoDados) {
+        return dicionario != null
+                ? CabecalhoDeBloco.comDicionario(tamanhoOriginal, dicionario.id, tamanhoDados)
+                : new CabecalhoDeBloco(CabecalhoDeBloco.TIPO_HUFFMAN, tamanhoOriginal, comprimentos, tamanhoDados);
+    }
+    
+    /*
+    Escreve o arquivo comprimido (versão 2) com um bloco de 'fluxos' fluxos intercalados.
+    O tamanho de cada fluxo é calculado antes (uma passada só de soma de comprimentos), para
+    que o cabeçalho seja completo e cada fluxo possa ser gravado direto na sua posição.
+     */
+    private static boolean escreverArquivoIntercalado(ByteBuffer[] dadosOriginais, String caminhoArqSaida, TabelaDeCodigos tabelaDeCodigos, int fluxos) {
+        int[] comprimentos = tabelaDeCodigos.comprimentos;
+        long[] tamanhosFluxos = FluxosIntercalados.tamanhosDosFluxos(dadosOriginais, comprimentos, fluxos);
+        ByteBuffer cabecalho = ByteBuffer.allocate(4 + CabecalhoDeBloco.TAMANHO_MAXIMO);
+        FormatoHuff.escreverMagica(cabecalho, FormatoHuff.VERSAO_CANONICA);
+        new CabecalhoDeBloco(JanelasMapeadas.tamanhoTotal(dadosOriginais), comprimentos, tamanhosFluxos).escrever(cabecalho);
+        cabecalho.flip();
+
+        try (FileChannel canalSaida = FileChannel.open(Paths.get(caminhoArqSaida), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long inicioDados = cabecalho.remaining();
+            while (cabecalho.hasRemaining()) {
+                canalSaida.write(cabecalho);
+            }
+            EscritorDeBits[] escritores = FluxosIntercalados.escritoresDeArquivo(canalSaida, inicioDados, tamanhosFluxos);
+            FluxosIntercalados.codificar(dadosOriginais, tabelaDeCodigos, escritores);
+            for (EscritorDeBits escritor : escritores) {
+                escritor.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever o arquivo comprimido: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /*
+    Escreve o arquivo (versão 2) com um bloco armazenado (TIPO_ARMAZENADO): um cabeçalho de
+    poucos bytes e o original copiado como está, janela por janela.
+     */
+    private static boolean escreverArquivoArmazenado(ByteBuffer[] dadosOriginais, String caminhoArqSaida) {
+        ByteBuffer cabecalho = ByteBuffer.allocate(4 + CabecalhoDeBloco.TAMANHO_MAXIMO);
+        FormatoHuff.escreverMagica(cabecalho, FormatoHuff.VERSAO_CANONICA);
+        CabecalhoDeBloco.armazenado(JanelasMapeadas.tamanhoTotal(dadosOriginais)).escrever(cabecalho);
+        cabecalho.flip();
+
+        try (FileChannel canalSaida = FileChannel.open(Paths.get(caminhoArqSaida), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (cabecalho.hasRemaining()) {
+                canalSaida.write(cabecalho);
+            }
+            for (ByteBuffer janela : dadosOriginais) {
+                ByteBuffer dados = janela.slice();
+                while (dados.hasRemaining()) {
+                    canalSaida.write(dados);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao escrever o arquivo comprimido: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+    Orquestra o processo de descompressão de um arquivo .huff.
+    A versão do formato é detectada pelos primeiros bytes: arquivos canônicos (versão 2)
+    e arquivos legados (cabeçalho de 256 frequências) continuam sendo lidos.
+    Os dados comprimidos são lidos como bytes brutos e decodificados por tabelas de
+    consulta (DecodificadorDeTabela), vários bits de cada vez. Os bytes decodificados
+    vão direto para um buffer de saída, sem passar por Strings.
+     */
+    public static void descomprimeArquivo(String caminhoArqComprimido, String caminhoArqSaida) {
+        descomprimeArquivo(caminhoArqComprimido, caminhoArqSaida, new Configuracao());
+    }
+
+    /*
+    Igual a descomprimeArquivo(String, String); arquivos em blocos (versão 3) são
+    descomprimidos em paralelo com configuracao.paralelismo threads.
+     */
+    public static void descomprimeArquivo(String caminhoArqComprimido, String caminhoArqSaida, Configuracao configuracao) {
+        descomprimeArquivo(caminhoArqComprimido, caminhoArqSaida, configuracao, new Metricas("d", caminhoArqComprimido, caminhoArqSaida));
+    }
+
+    /*
+    Igual ao método acima, registrando o tempo de cada etapa em 'metricas'.
+     */
+    static void descomprimeArquivo(String caminhoArqComprimido, String caminhoArqSaida, Configuracao configuracao, Metricas metricas) {
+        Path caminhoComprimido = Paths.get(caminhoArqComprimido);
+        Path caminhoSaida = Paths.get(caminhoArqSaida);
+        // Um pacote é extraído para um diretório: precisa ser detectado antes de criar a saída.
+        if (Pacote.ehPacote(caminhoComprimido)) {
+            descomprimePacote(caminhoArqComprimido, caminhoArqSaida, configuracao, metricas);
+            return;
+        }
+
+        try (FileChannel entrada = FileChannel.open(caminhoComprimido, StandardOpenOption.READ);
+             FileChannel saida = FileChannel.open(caminhoSaida, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            // --- ETAPA 1: LER CABEÇALHO E RECONSTRUIR ESTRUTURAS ---
+            metricas.iniciarEtapa("cabecalho");
+            ByteBuffer buffer = ByteBuffer.allocate(LeitorDeBits.TAMANHO_BUFFER).flip();
+            FormatoHuff.preencher(entrada, buffer);
+
+            int versao = FormatoHuff.detectarVersao(buffer);
+            if (versao == FormatoHuff.VERSAO_BLOCOS) {
+                // Versão 3: blocos independentes, descomprimidos em paralelo a partir do índice.
+                metricas.iniciarEtapa("blocos");
+                ArquivoEmBlocos.descomprimir(entrada, saida, configuracao.paralelismo, configuracao.dicionario);
+            } else if (versao == FormatoHuff.VERSAO_FLUXO) {
+                // Versão 4: quadros lidos em sequência, como em um HuffmanInputStream.
+                metricas.iniciarEtapa("fluxo");
+                entrada.position(0);
+                HuffmanInputStream fluxo = new HuffmanInputStream(new BufferedInputStream(Channels.newInputStream(entrada), LeitorDeBits.TAMANHO_BUFFER),
+                        configuracao.dicionario);
+                fluxo.transferTo(Channels.newOutputStream(saida));
+            } else if (versao == FormatoHuff.VERSAO_ADAPTATIVA) {
+                // Versão 5: árvore adaptativa, atualizada a cada caractere como na compressão.
+                metricas.iniciarEtapa("adaptativo");
+                entrada.position(0);
+                new CodificadorAdaptativo().descomprimir(new BufferedInputStream(Channels.newInputStream(entrada), LeitorDeBits.TAMANHO_BUFFER),
+                        Channels.newOutputStream(saida));
+            } else {
+                descomprimirFluxoUnico(entrada, saida, buffer, versao, configuracao, metricas, caminhoComprimido, caminhoSaida);
+            }
+            metricas.terminarEtapa();
+            metricas.bytesOriginais = saida.size();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao descomprimir o arquivo: " + e.getMessage());
+            return;
+        }
+        metricas.concluido = true;
+        if (configuracao.verbosidade >= Configuracao.RESUMO) {
+            System.out.println("Arquivo descomprimido com sucesso para: " + caminhoArqSaida);
+        }
+    }
+
+    /*
+    Descomprime um arquivo de fluxo único: versão 2 (canônico) ou versão 1 (legado).
+    'buffer' já contém o início do arquivo, lido da 'entrada'. Os caminhos dos dois arquivos
+    são usados pelo modo --assincrono, que os abre outra vez como AsynchronousFileChannel.
+     */
+    private static void descomprimirFluxoUnico(FileChannel entrada, FileChannel saida, ByteBuffer buffer, int versao,
+                                               Configuracao configuracao, Metricas metricas,
+                                               Path caminhoComprimido, Path caminhoSaida) throws IOException {
+        DecodificadorDeTabela decodificador;
+        long numCaracteresOriginais;
+        CabecalhoDeBloco bloco = null;
+
+        if (versao == FormatoHuff.VERSAO_CANONICA) {
+            // Versão 2: os códigos canônicos são refeitos direto dos comprimentos (ou vêm do
+            // dicionário), sem árvore nem heap.
+            buffer.position(buffer.position() + FormatoHuff.TAMANHO_MAGICA);
+            bloco = CabecalhoDeBloco.ler(buffer);
+            numCaracteresOriginais = bloco.tamanhoOriginal;
+            if (bloco.tipo == CabecalhoDeBloco.TIPO_ARMAZENADO) {
+                metricas.iniciarEtapa("copia");
+                copiarArmazenado(entrada, entrada.position() - buffer.remaining(), numCaracteresOriginais, saida);
+                return;
+            }
+            decodificador = CodificadorDeBloco.decodificadorPara(bloco, null, configuracao.dicionario);
+        } else {
+            // Versão 1 (legada): reconstrói a mesma Árvore de Huffman da compressão.
+            if (buffer.remaining() < FormatoHuff.TAMANHO_CABECALHO_LEGADO) {
+                throw new IOException("Cabeçalho incompleto.");
+            }
+            // 1. Lê a tabela de frequências do cabeçalho.
+            long[] frequencias = new long[256];
+            for (int i = 0; i < 256; i++) {
+                frequencias[i] = buffer.getInt();
+            }
+            // 2. Lê o número original de caracteres.
+            numCaracteresOriginais = buffer.getLong();
+            // 3. Com as frequências, reconstrói a árvore e, a partir dela, as tabelas de decodificação.
+            decodificador = criarDecodificadorLegado(reconstruirArvoreDeHuffman(frequencias));
+        }
+
+        // --- ETAPA 2: DECODIFICAR OS DADOS E ESCREVER O ARQUIVO FINAL ---
+        metricas.iniciarEtapa("decodificacao");
+        // O leitor continua a partir do buffer do cabeçalho. A decodificação para
+        // exatamente em numCaracteresOriginais, ignorando os bits de padding do final.
+        // Arquivos restaurados de mais de 2 GB (ou com --mapeado) são lidos e gravados por janelas mapeadas.
+        long inicioDados = entrada.position() - buffer.remaining();
+        long fimDados = bloco == null ? entrada.size() : Math.min(entrada.size(), inicioDados + bloco.tamanhoDados);
+        if (bloco != null && bloco.tipo == CabecalhoDeBloco.TIPO_INTERCALADO) {
+            // Fluxos intercalados: cada fluxo tem o seu leitor, a partir da sua posição no arquivo.
+            if (inicioDados + bloco.tamanhoDados > entrada.size()) {
+                throw new IOException("Arquivo comprimido truncado: faltam dados dos fluxos intercalados.");
+            }
+            LeitorDeBits[] leitores = FluxosIntercalados.leitoresDeArquivo(entrada, inicioDados, bloco.tamanhosFluxos);
+            WritableByteChannel destino = configuracao.modoMapeado || numCaracteresOriginais > Integer.MAX_VALUE
+                    ? new JanelasMapeadas.Escritor(saida, 0, numCaracteresOriginais) : saida;
+            decodificador.decodificarIntercalado(leitores, numCaracteresOriginais, destino);
+        } else if (configuracao.assincrono) {
+            // Os próximos trechos comprimidos são lidos e os já decodificados são gravados
+            // enquanto o atual é decodificado (ver CanaisAssincronos).
+            try (CanaisAssincronos.Leitor dados = new CanaisAssincronos.Leitor(caminhoComprimido, entrada.position(), -1);
+                 CanaisAssincronos.Escritor destino = new CanaisAssincronos.Escritor(caminhoSaida, 0, false)) {
+                decodificador.decodificar(new LeitorDeBits(dados, buffer), numCaracteresOriginais, destino);
+            }
+        } else if (DecodificacaoEspeculativa.vale(decodificador, fimDados - inicioDados, configuracao.paralelismo)) {
+            // Fluxo único grande com várias threads: decodificação especulativa por trechos.
+            WritableByteChannel destino = configuracao.modoMapeado || numCaracteresOriginais > Integer.MAX_VALUE
+                    ? new JanelasMapeadas.Escritor(saida, 0, numCaracteresOriginais) : saida;
+            DecodificacaoEspeculativa.decodificar(decodificador, entrada, inicioDados, fimDados, numCaracteresOriginais,
+                    destino, configuracao.paralelismo);
+        } else if (configuracao.modoMapeado || numCaracteresOriginais > Integer.MAX_VALUE) {
+            LeitorDeBits leitor = new LeitorDeBits(new JanelasMapeadas.Leitor(entrada, entrada.position(), entrada.size()), buffer);
+            decodificador.decodificar(leitor, numCaracteresOriginais, new JanelasMapeadas.Escritor(saida, 0, numCaracteresOriginais));
+        } else {
+            LeitorDeBits leitor = new LeitorDeBits(entrada, buffer);
+            decodificador.decodificar(leitor, numCaracteresOriginais, saida);
+        }
+    }
+
+    /*
+    Bloco armazenado: os 'tamanho' bytes a partir de 'inicioDados' são copiados para a saída
+    sem decodificação, pelo próprio sistema operacional (transferTo).
+     */
+    private static void copiarArmazenado(FileChannel entrada, long inicioDados, long tamanho, FileChannel saida) throws IOException {
+        if (inicioDados + tamanho > entrada.size()) {
+            throw new IOException("Arquivo comprimido truncado: faltam dados armazenados.");
+        }
+        long copiados = 0;
+        while (copiados < tamanho) {
+            copiados += entrada.transferTo(inicioDados + copiados, tamanho - copiados, saida);
+        }
+    }
+
+    /*
+    Cria o decodificador de um arquivo legado a partir da árvore reconstruída.
+     */
+    static DecodificadorDeTabela criarDecodificadorLegado(ArvoreCompacta arvore) {
+        if (arvore.quantidadeFolhas == 1) {
+            return new DecodificadorDeTabela(arvore.simbolos[arvore.raiz()]);
+        }
+        return new DecodificadorDeTabela(gerarTabelaDeCodigos(arvore));
+    }
+
+    /**
+    Imprime uma representação visual da Árvore de Huffman no console.
+    Utiliza um percurso em pré-ordem para a impressão.
+     */
+    private static void imprimirArvoreFormatada(No raiz) {
+        if (raiz == null) {
+            System.out.println("Árvore está vazia ou consiste em um único nó.");
+            return;
+        }
+        imprimirArvoreFormatadaRec(raiz, "", true);
+    }
+    
+    /**
+    Método auxiliar recursivo para a impressão formatada da árvore.
+     */
+    private static void imprimirArvoreFormatadaRec(No no, String prefixo, boolean isRaiz) {
+        if (no == null) return;
+    
+        System.out.print(prefixo);
+        if(!isRaiz){
+            System.out.print("└──");
+        }
+    
+        if (no.esquerda == null && no.direita == null) {
+            // É um nó folha
+            System.out.printf(" ('%c', %d)\n", no.caractere, no.frequencia);
+        } else {
+            // É um nó interno
+            System.out.printf(" (Pai, %d)\n", no.frequencia);
+            String novoPrefixo = prefixo + (isRaiz ? "    " : "    ");
+            imprimirArvoreFormatadaRec(no.direita, novoPrefixo, false);
+            imprimirArvoreFormatadaRec(no.esquerda, novoPrefixo, false);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,199 @@
+package huffman;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import jdk.jfr.FlightRecorder;
+
+/*
+Métricas de uma execução (modo 'c' ou 'd'): tempo de cada etapa, bytes lidos e escritos,
+vazão em MB/s e pico de uso do heap. As etapas são sequenciais: iniciar uma etapa
+encerra a anterior. Enquanto houver uma gravação do JFR, cada etapa também vira um
+EventoDeEtapa; sem gravação a classe do evento nem é carregada (carregá-la inicializa
+o JFR, o que custa mais do que comprimir um arquivo pequeno).
+O resultado pode ser gravado em JSON (--metricas=arquivo.json, ou --metricas=- para a saída padrão).
+ */
+class Metricas {
+    final String modo;
+    final String entrada;
+    final String saida;
+    // Tamanho dos dados sem compressão (o original na compressão, o restaurado na descompressão);
+    // é a base do cálculo de MB/s.
+    long bytesOriginais;
+    long bytesLidos;
+    long bytesEscritos;
+    boolean concluido;
+
+    private final long inicio;
+    private long fim;
+    private final List<String> nomesDasEtapas = new ArrayList<>();
+    private final List<Long> duracoesDasEtapas = new ArrayList<>();
+    private String etapaAtual;
+    private long inicioEtapaAtual;
+    private EventoDeEtapa eventoAtual;
+
+    Metricas(String modo, String entrada, String saida) {
+        this.modo = modo;
+        this.entrada = entrada;
+        this.saida = saida;
+        this.inicio = System.nanoTime();
+    }
+
+    /*
+    Zera o pico de uso do heap, que passa a ser medido a partir daqui.
+    Só é chamado quando as métricas serão gravadas, porque iniciar os MXBeans de memória
+    também tem um custo perceptível em arquivos pequenos.
+     */
+    static void reiniciarPicoDeHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /*
+    Encerra a etapa atual (se houver) e começa a medir a etapa 'nome'.
+     */
+    void iniciarEtapa(String nome) {
+        terminarEtapa();
+        etapaAtual = nome;
+        if (FlightRecorder.isInitialized()) {
+            eventoAtual = new EventoDeEtapa();
+            eventoAtual.modo = modo;
+            eventoAtual.etapa = nome;
+            eventoAtual.arquivo = entrada;
+            eventoAtual.begin();
+        }
+        inicioEtapaAtual = System.nanoTime();
+    }
+
+    /*
+    Encerra a etapa atual, registrando a sua duração e emitindo o evento do JFR (se houver).
+     */
+    void terminarEtapa() {
+        if (etapaAtual == null) {
+            return;
+        }
+        duracoesDasEtapas.add(System.nanoTime() - inicioEtapaAtual);
+        nomesDasEtapas.add(etapaAtual);
+        if (eventoAtual != null) {
+            eventoAtual.commit();
+        }
+        etapaAtual = null;
+        eventoAtual = null;
+    }
+
+    /*
+    Encerra a medição: fecha a última etapa e, se os bytes lidos e escritos não foram contados
+    durante a execução (como nos fluxos), usa o tamanho dos arquivos de entrada e de saída.
+     */
+    void encerrar() {
+        terminarEtapa();
+        fim = System.nanoTime();
+        if (bytesLidos == 0) {
+            bytesLidos = tamanhoDoArquivo(entrada);
+        }
+        if (bytesEscritos == 0) {
+            bytesEscritos = tamanhoDoArquivo(saida);
+        }
+    }
+
+    long duracaoTotalMs() {
+        return ((fim == 0 ? System.nanoTime() : fim) - inicio) / 1_000_000;
+    }
+
+    /*
+    Soma dos picos de uso de cada área do heap desde reiniciarPicoDeHeap().
+    Como as áreas atingem os seus picos em momentos diferentes, é um limite superior do pico real.
+     */
+    static long picoDeHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    /*
+    Monta o JSON das métricas.
+     */
+    String comoJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"modo\": ").append(texto(modo)).append(",\n");
+        json.append("  \"entrada\": ").append(texto(entrada)).append(",\n");
+        json.append("  \"saida\": ").append(texto(saida)).append(",\n");
+        json.append("  \"concluido\": ").append(concluido).append(",\n");
+        json.append("  \"bytesOriginais\": ").append(bytesOriginais).append(",\n");
+        json.append("  \"bytesLidos\": ").append(bytesLidos).append(",\n");
+        json.append("  \"bytesEscritos\": ").append(bytesEscritos).append(",\n");
+        json.append("  \"tempoTotalMs\": ").append(numero((fim - inicio) / 1e6)).append(",\n");
+        json.append("  \"mbPorSegundo\": ").append(numero(vazao(fim - inicio))).append(",\n");
+        json.append("  \"picoDeHeapBytes\": ").append(picoDeHeap()).append(",\n");
+        json.append("  \"etapas\": [");
+        for (int i = 0; i < nomesDasEtapas.size(); i++) {
+            long duracao = duracoesDasEtapas.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"nome\": ").append(texto(nomesDasEtapas.get(i)))
+                .append(", \"tempoMs\": ").append(numero(duracao / 1e6))
+                .append(", \"mbPorSegundo\": ").append(numero(vazao(duracao))).append("}");
+        }
+        json.append(nomesDasEtapas.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /*
+    Grava o JSON em 'destino' ("-" é a saída padrão).
+     */
+    void gravarJson(String destino) throws IOException {
+        if (destino.equals("-")) {
+            System.out.print(comoJson());
+        } else {
+            Files.write(Paths.get(destino), comoJson().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // MB/s (10^6 bytes por segundo) dos dados sem compressão em 'nanos' nanossegundos.
+    private double vazao(long nanos) {
+        return nanos <= 0 ? 0 : (bytesOriginais / 1e6) / (nanos / 1e9);
+    }
+
+    private static long tamanhoDoArquivo(String caminho) {
+        try {
+            Path arquivo = Paths.get(caminho);
+            return Files.isRegularFile(arquivo) ? Files.size(arquivo) : 0;
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static String numero(double valor) {
+        return String.format(Locale.ROOT, "%.3f", valor);
+    }
+
+    private static String texto(String valor) {
+        StringBuilder s = new StringBuilder("\"");
+        for (char c : valor.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                s.append('\\').append(c);
+            } else if (c < 0x20) {
+                s.append(String.format("\\u%04x", (int) c));
+            } else {
+                s.append(c);
+            }
+        }
+        return s.append('"').toString();
+    }
+}
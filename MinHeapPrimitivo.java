@@ -0,0 +1,117 @@
+package huffman;
+
+/*
+Min-Heap especializado em tipos primitivos.
+Em vez de um ArrayList de objetos No, guarda os elementos em dois vetores paralelos: o
+peso (long) e o identificador do nó (int). Não cria nenhum objeto por operação, o que
+importa quando milhares de árvores são construídas (uma por bloco).
+
+Desempate entre pesos iguais:
+- com 'desempatePorId', sai primeiro o menor identificador. Assim a ordem de saída não
+  depende da organização interna do heap, e a árvore montada com ele é idêntica à do
+  construtor de duas filas (ver ArvoreCompacta);
+- sem ele, os elementos são comparados só pelo peso, com as mesmas trocas do MinHeap de
+  objetos No usado pelo compressor legado (v1). A ordem dos empates depende da posição
+  no heap, e é ela que o descompressor precisa repetir para refazer a árvore daqueles
+  arquivos.
+ */
+class MinHeapPrimitivo {
+    private final long[] pesos;
+    private final int[] ids;
+    private final boolean desempatePorId;
+    private int tamanho;
+
+    MinHeapPrimitivo(int capacidade, boolean desempatePorId) {
+        this.pesos = new long[capacidade];
+        this.ids = new int[capacidade];
+        this.desempatePorId = desempatePorId;
+    }
+
+    /*
+    Retorna o número de elementos no heap.
+     */
+    int size() {
+        return tamanho;
+    }
+
+    /*
+    Retorna o peso do menor elemento, sem removê-lo.
+     */
+    long pesoDoMenor() {
+        return pesos[0];
+    }
+
+    /*
+    Adiciona um elemento no final e o "peneira para cima".
+     */
+    void add(long peso, int id) {
+        int index = tamanho++;
+        pesos[index] = peso;
+        ids[index] = id;
+        siftUp(index);
+    }
+
+    /*
+    Remove o menor elemento (a raiz) e retorna o seu identificador.
+    O último elemento vai para a raiz e é "peneirado para baixo".
+     */
+    int poll() {
+        if (tamanho == 0) {
+            throw new IllegalStateException("O Heap está vazio! Impossível remover.");
+        }
+        int menor = ids[0];
+        tamanho--;
+        if (tamanho > 0) {
+            pesos[0] = pesos[tamanho];
+            ids[0] = ids[tamanho];
+            siftDown(0);
+        }
+        return menor;
+    }
+
+    /*
+    Indica se o elemento da posição i deve ficar acima do elemento da posição j.
+     */
+    private boolean menor(int i, int j) {
+        if (pesos[i] != pesos[j]) {
+            return pesos[i] < pesos[j];
+        }
+        return desempatePorId && ids[i] < ids[j];
+    }
+
+    private void swap(int i, int j) {
+        long peso = pesos[i];
+        pesos[i] = pesos[j];
+        pesos[j] = peso;
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int pai = (index - 1) / 2;
+            if (!menor(index, pai)) {
+                break;
+            }
+            swap(index, pai);
+            index = pai;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (2 * index + 1 < tamanho) {
+            int filhoEsquerda = 2 * index + 1;
+            int filhoDireita = filhoEsquerda + 1;
+            int menorFilho = filhoEsquerda;
+            if (filhoDireita < tamanho && menor(filhoDireita, filhoEsquerda)) {
+                menorFilho = filhoDireita;
+            }
+            if (!menor(menorFilho, index)) {
+                break;
+            }
+            swap(index, menorFilho);
+            index = menorFilho;
+        }
+    }
+}
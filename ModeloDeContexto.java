@@ -0,0 +1,158 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+Modelo de ordem 1 (bloco TIPO_CONTEXTO): a tabela de códigos usada para cada caractere
+depende do caractere anterior (o contexto). Em CSV, JSON e logs o próximo byte é muito
+previsível a partir do anterior (ex: depois de '"' quase sempre vem uma letra), e uma
+tabela por contexto gasta bem menos bits do que a tabela única do bloco.
+
+Cada contexto com dados suficientes ganha a sua própria tabela; os contextos raros, em que
+a tabela custaria mais do que economiza, são juntados em uma tabela comum. O primeiro
+caractere do bloco usa o contexto 0.
+
+No cabeçalho do bloco:
+    mapa          : 32 bytes, um bit por contexto (1 = o contexto tem tabela própria)
+    tabela comum  : tabela compacta (FormatoHuff.escreverComprimentos), vazia se não
+                    houver contextos juntados
+    tabelas       : uma tabela compacta por contexto marcado no mapa, em ordem crescente
+ */
+class ModeloDeContexto {
+    static final int CONTEXTOS = 256;
+    private static final int TAMANHO_MAPA = CONTEXTOS / 8;
+    // Maior tamanho do modelo no cabeçalho: mapa + tabela comum + uma tabela por contexto.
+    static final int TAMANHO_MAXIMO = TAMANHO_MAPA + (CONTEXTOS + 1) * (2 + 128);
+
+    // Índice em 'tabelas' da tabela de cada contexto; 0 é a tabela comum.
+    final int[] tabelaDoContexto;
+    final TabelaDeCodigos[] tabelas;
+
+    private ModeloDeContexto(int[] tabelaDoContexto, TabelaDeCodigos[] tabelas) {
+        this.tabelaDoContexto = tabelaDoContexto;
+        this.tabelas = tabelas;
+    }
+
+    /*
+    Monta o modelo para 'quantidade' bytes de 'dados' a partir de 'inicio'.
+    'bitsCodificados', se não for null, recebe na posição 0 o total de bits dos dados
+    codificados com o modelo.
+     */
+    static ModeloDeContexto construir(byte[] dados, int inicio, int quantidade, int comprimentoMaximo, long[] bitsCodificados) {
+        // 1. Histograma de cada contexto (vetor único de 256 x 256 contadores) e histograma geral.
+        int[] contagens = new int[CONTEXTOS * 256];
+        int anterior = 0;
+        for (int i = inicio, fim = inicio + quantidade; i < fim; i++) {
+            int simbolo = dados[i] & 0xFF;
+            contagens[(anterior << 8) | simbolo]++;
+            anterior = simbolo;
+        }
+        long[] geral = new long[256];
+        for (int i = 0; i < contagens.length; i++) {
+            geral[i & 0xFF] += contagens[i];
+        }
+        TabelaDeCodigos tabelaGeral = CodigosCanonicos.gerarCodigos(CodigosCanonicos.calcularComprimentos(geral, comprimentoMaximo));
+
+        // 2. Cada contexto fica com a sua tabela se ela, somada ao seu custo no cabeçalho,
+        //    gastar menos bits do que a tabela geral; senão vai para a tabela comum.
+        int[] tabelaDoContexto = new int[CONTEXTOS];
+        TabelaDeCodigos[] proprias = new TabelaDeCodigos[CONTEXTOS];
+        long[] comum = new long[256];
+        long[] frequencias = new long[256];
+        ByteBuffer rascunho = ByteBuffer.allocate(2 + 128);
+        int quantidadeTabelas = 1;
+        for (int contexto = 0; contexto < CONTEXTOS; contexto++) {
+            boolean vazio = true;
+            for (int s = 0; s < 256; s++) {
+                frequencias[s] = contagens[(contexto << 8) | s];
+                vazio &= frequencias[s] == 0;
+            }
+            if (vazio) {
+                continue;
+            }
+            TabelaDeCodigos propria = CacheDeTabelas.tabelaPara(frequencias, comprimentoMaximo);
+            FormatoHuff.escreverComprimentos(rascunho.clear(), propria.comprimentos);
+            if (propria.bitsCodificados(frequencias) + 8L * rascunho.position() < tabelaGeral.bitsCodificados(frequencias)) {
+                proprias[contexto] = propria;
+                tabelaDoContexto[contexto] = quantidadeTabelas++;
+            } else {
+                for (int s = 0; s < 256; s++) {
+                    comum[s] += frequencias[s];
+                }
+            }
+        }
+
+        // 3. Tabela comum, montada só com os contextos juntados.
+        TabelaDeCodigos[] tabelas = new TabelaDeCodigos[quantidadeTabelas];
+        tabelas[0] = CodigosCanonicos.gerarCodigos(CodigosCanonicos.calcularComprimentos(comum, comprimentoMaximo));
+        for (int contexto = 0; contexto < CONTEXTOS; contexto++) {
+            if (proprias[contexto] != null) {
+                tabelas[tabelaDoContexto[contexto]] = proprias[contexto];
+            }
+        }
+        ModeloDeContexto modelo = new ModeloDeContexto(tabelaDoContexto, tabelas);
+        if (bitsCodificados != null) {
+            long bits = 0;
+            for (int i = 0; i < contagens.length; i++) {
+                if (contagens[i] > 0) {
+                    bits += (long) contagens[i] * tabelas[tabelaDoContexto[i >>> 8]].comprimentos[i & 0xFF];
+                }
+            }
+            bitsCodificados[0] = bits;
+        }
+        return modelo;
+    }
+
+    /*
+    Escreve o modelo no cabeçalho do bloco.
+     */
+    void escrever(ByteBuffer buffer) {
+        byte[] mapa = new byte[TAMANHO_MAPA];
+        for (int contexto = 0; contexto < CONTEXTOS; contexto++) {
+            if (tabelaDoContexto[contexto] != 0) {
+                mapa[contexto >>> 3] |= (byte) (1 << (contexto & 7));
+            }
+        }
+        buffer.put(mapa);
+        for (TabelaDeCodigos tabela : tabelas) {
+            FormatoHuff.escreverComprimentos(buffer, tabela.comprimentos);
+        }
+    }
+
+    /*
+    Lê um modelo escrito por escrever().
+     */
+    static ModeloDeContexto ler(ByteBuffer buffer) throws IOException {
+        byte[] mapa = new byte[TAMANHO_MAPA];
+        buffer.get(mapa);
+        int[] tabelaDoContexto = new int[CONTEXTOS];
+        int quantidadeTabelas = 1;
+        for (int contexto = 0; contexto < CONTEXTOS; contexto++) {
+            if ((mapa[contexto >>> 3] & (1 << (contexto & 7))) != 0) {
+                tabelaDoContexto[contexto] = quantidadeTabelas++;
+            }
+        }
+        TabelaDeCodigos[] tabelas = new TabelaDeCodigos[quantidadeTabelas];
+        for (int i = 0; i < quantidadeTabelas; i++) {
+            tabelas[i] = CodigosCanonicos.gerarCodigos(FormatoHuff.lerComprimentos(buffer));
+        }
+        return new ModeloDeContexto(tabelaDoContexto, tabelas);
+    }
+
+    /*
+    Decodificador de cada contexto (contextos que usam a mesma tabela compartilham o
+    decodificador, que vem do CacheDeTabelas).
+     */
+    DecodificadorDeTabela[] decodificadores() {
+        DecodificadorDeTabela[] porTabela = new DecodificadorDeTabela[tabelas.length];
+        for (int i = 0; i < tabelas.length; i++) {
+            porTabela[i] = CacheDeTabelas.decodificadorPara(tabelas[i].comprimentos);
+        }
+        DecodificadorDeTabela[] porContexto = new DecodificadorDeTabela[CONTEXTOS];
+        for (int contexto = 0; contexto < CONTEXTOS; contexto++) {
+            porContexto[contexto] = porTabela[tabelaDoContexto[contexto]];
+        }
+        return porContexto;
+    }
+}
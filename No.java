@@ -4,18 +4,19 @@ package huffman;
  * Representa um nó na Árvore de Huffman.
  * Esta classe é versátil e pode representar tanto um nó-folha (contendo um caractere
  * e sua frequência) quanto um nó interno/pai (que conecta dois outros nós).
- * Implementa a interface Comparable para ser utilizável diretamente pelo MinHeap.
+ * A árvore usada na compressão e na descompressão é a ArvoreCompacta, em vetores; os
+ * objetos No são só uma visão dela (ArvoreCompacta.paraNo), para a impressão e a depuração.
  */
-class No implements Comparable<No> {
+class No {
     char caractere;
-    int frequencia;
+    long frequencia; // 64 bits: um mesmo byte pode aparecer mais de 2^31 vezes em arquivos grandes.
     No esquerda, direita;
 
     /*
     Construtor para criar um NÓ-FOLHA.
     Usado para representar os caracteres individuais e suas contagens de frequência.
      */
-    public No(char caractere, int frequencia) {
+    public No(char caractere, long frequencia) {
         this.caractere = caractere;
         this.frequencia = frequencia;
         this.esquerda = null; 
@@ -34,18 +35,6 @@ class No implements Comparable<No> {
         this.direita = direita;
     }
 
-    /*
-    Compara este nó com outro nó com base na frequência.
-    Este método é o "cérebro" da fila de prioridades (MinHeap), permitindo
-    que o heap ordene os nós e sempre retorne aquele com a menor frequência.
-    Retorna um valor negativo se a frequência deste nó for menor, zero se for igual,
-    positivo se for maior.
-     */
-    @Override
-    public int compareTo(No outroNo) {
-        return this.frequencia - outroNo.frequencia;
-    }
-
     /*
     Retorna uma representação em String do nó.
     Facilita a depuração e a impressão da árvore, mostrando informações
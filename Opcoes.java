@@ -0,0 +1,99 @@
+package huffman;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+Interpreta os argumentos da linha de comando.
+O primeiro argumento é o modo (ex: "c" ou "d"). Os argumentos no formato
+--nome=valor (ou apenas --nome) são opções; os demais são posicionais (arquivos).
+ */
+class Opcoes {
+    final String modo;
+    final List<String> posicionais = new ArrayList<>();
+    private final Map<String, String> valores = new HashMap<>();
+
+    Opcoes(String[] args) {
+        this.modo = args.length > 0 ? args[0] : "";
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--") && arg.length() > 2) {
+                int igual = arg.indexOf('=');
+                if (igual < 0) {
+                    valores.put(arg.substring(2), "");
+                } else {
+                    valores.put(arg.substring(2, igual), arg.substring(igual + 1));
+                }
+            } else {
+                posicionais.add(arg);
+            }
+        }
+    }
+
+    /*
+    Recusa as opções que não estão em 'conhecidas' (ex: um erro de digitação como --fluxo=4,
+    que de outro modo seria ignorado e deixaria valer o padrão).
+     */
+    void verificar(Set<String> conhecidas) {
+        for (String nome : valores.keySet()) {
+            if (!conhecidas.contains(nome)) {
+                throw new IllegalArgumentException("Opção desconhecida: --" + nome);
+            }
+        }
+    }
+
+    /*
+    Indica se a opção foi informada (com ou sem valor).
+     */
+    boolean tem(String nome) {
+        return valores.containsKey(nome);
+    }
+
+    /*
+    Retorna o valor de uma opção textual, ou o padrão se ela não foi informada.
+     */
+    String texto(String nome, String padrao) {
+        String valor = valores.get(nome);
+        return valor == null || valor.isEmpty() ? padrao : valor;
+    }
+
+    /*
+    Retorna o valor inteiro de uma opção, ou o padrão se ela não foi informada.
+     */
+    int inteiro(String nome, int padrao) {
+        String valor = valores.get(nome);
+        if (valor == null || valor.isEmpty()) {
+            return padrao;
+        }
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para --" + nome + ": " + valor);
+        }
+    }
+
+    /*
+    Retorna o valor de uma opção de tamanho em bytes, aceitando os sufixos K, M e G
+    (ex: --bloco=1M), ou o padrão se ela não foi informada.
+     */
+    long tamanho(String nome, long padrao) {
+        String valor = valores.get(nome);
+        if (valor == null || valor.isEmpty()) {
+            return padrao;
+        }
+        long multiplicador = 1;
+        char sufixo = Character.toUpperCase(valor.charAt(valor.length() - 1));
+        if (sufixo == 'K' || sufixo == 'M' || sufixo == 'G') {
+            multiplicador = sufixo == 'K' ? 1024L : sufixo == 'M' ? 1024L * 1024 : 1024L * 1024 * 1024;
+            valor = valor.substring(0, valor.length() - 1);
+        }
+        try {
+            return Long.parseLong(valor) * multiplicador;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para --" + nome + ": " + valores.get(nome));
+        }
+    }
+}
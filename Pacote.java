@@ -0,0 +1,433 @@
+package huffman;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+Compressão de muitos arquivos em um único pacote (formato versão 6), para lotes de milhares
+de arquivos pequenos: a JVM é iniciada uma vez só e, com a tabela compartilhada, os arquivos
+pequenos não precisam gravar cada um a sua tabela de códigos.
+
+    'H' 'U' 'F' 0x06
+    tabela compartilhada : 1 byte (0 = não há, 1 = há) + comprimentos (FormatoHuff.escreverComprimentos)
+    entradas             : os blocos de cada arquivo (cabeçalho + dados), na ordem em que ficam prontos
+    diretório + rodapé   : ver DiretorioDoPacote
+
+Cada arquivo vira um ou mais blocos de até configuracao.tamanhoBloco bytes (1 MB por padrão).
+A tabela compartilhada é montada com o histograma somado dos arquivos pequenos
+(configuracao.limiteTabelaCompartilhada); um bloco a usa (TIPO_TABELA_COMPARTILHADA) só
+quando ela deixa o bloco menor do que a tabela do próprio arquivo.
+
+A leitura dos arquivos, que bloqueia à espera do disco, é feita por um pool de
+configuracao.limiteEs threads; a compressão, por um ForkJoinPool com configuracao.paralelismo
+threads, como em ArquivoEmBlocos. Assim muitas leituras ficam pendentes sem ocupar os núcleos.
+Cada arquivo comprimido é gravado na próxima posição livre do pacote (escrita posicional) e
+o diretório guarda onde ficou cada um.
+ */
+class Pacote {
+    // Memória para arquivos lidos e ainda não gravados, em KB (uma permissão do semáforo por KB).
+    // Um arquivo maior do que isso é processado sozinho.
+    private static final int MEMORIA_EM_ANDAMENTO_KB = 256 * 1024;
+    // Maior tamanho do cabeçalho do pacote: número mágico + marca + tabela densa.
+    private static final int TAMANHO_MAXIMO_CABECALHO = FormatoHuff.TAMANHO_MAGICA + 1 + 2 + 128;
+
+    private final Configuracao configuracao;
+    private DiretorioDoPacote diretorio;
+    private final AtomicInteger blocosComTabelaCompartilhada = new AtomicInteger();
+    private boolean temTabelaCompartilhada;
+    private long bytesComprimidos;
+
+    Pacote(Configuracao configuracao) {
+        this.configuracao = configuracao;
+    }
+
+    /*
+    Comprime os arquivos de 'origem' em 'destino'. 'origem' é um diretório (todos os arquivos,
+    recursivamente, com nomes relativos a ele) ou um arquivo de texto com um caminho por linha.
+     */
+    void comprimir(Path origem, Path destino) throws IOException {
+        // 1. Arquivos de entrada e os seus nomes no pacote.
+        List<Path> arquivos = new ArrayList<>();
+        List<String> nomes = new ArrayList<>();
+        listarArquivos(origem, destino, configuracao.diretorioBase, arquivos, nomes);
+        long[] tamanhos = new long[arquivos.size()];
+        for (int i = 0; i < tamanhos.length; i++) {
+            try {
+                tamanhos[i] = Files.size(arquivos.get(i));
+            } catch (NoSuchFileException e) {
+                throw new IOException("Arquivo não encontrado: " + arquivos.get(i));
+            }
+            if (tamanhos[i] > Integer.MAX_VALUE - 8) {
+                throw new IOException("Arquivo grande demais para um pacote (use o modo c): " + arquivos.get(i));
+            }
+        }
+        diretorio = new DiretorioDoPacote(arquivos.size());
+
+        ExecutorService poolEs = Executors.newFixedThreadPool(configuracao.limiteEs);
+        ForkJoinPool pool = new ForkJoinPool(configuracao.paralelismo);
+        try (FileChannel saida = FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            // 2. Tabela compartilhada, a partir do histograma somado dos arquivos pequenos.
+            TabelaDeCodigos compartilhada = null;
+            if (configuracao.limiteTabelaCompartilhada > 0) {
+                compartilhada = montarTabelaCompartilhada(arquivos, tamanhos, poolEs);
+            }
+            temTabelaCompartilhada = compartilhada != null;
+
+            // 3. Cabeçalho do pacote.
+            ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_MAXIMO_CABECALHO);
+            FormatoHuff.escreverMagica(cabecalho, FormatoHuff.VERSAO_PACOTE);
+            cabecalho.put((byte) (compartilhada == null ? 0 : 1));
+            if (compartilhada != null) {
+                FormatoHuff.escreverComprimentos(cabecalho, compartilhada.comprimentos);
+            }
+            cabecalho.flip();
+            AtomicLong proximaPosicao = new AtomicLong(cabecalho.remaining());
+            escreverTudo(saida, cabecalho, 0);
+
+            // 4. Entradas: leitura no pool de E/S, compressão e gravação no ForkJoinPool.
+            //    O semáforo limita a memória ocupada pelos arquivos já lidos e ainda não gravados.
+            Semaphore memoria = new Semaphore(MEMORIA_EM_ANDAMENTO_KB);
+            AtomicBoolean falhou = new AtomicBoolean();
+            List<CompletableFuture<Void>> tarefas = new ArrayList<>();
+            for (int i = 0; i < arquivos.size() && !falhou.get(); i++) {
+                int entrada = i;
+                Path arquivo = arquivos.get(i);
+                TabelaDeCodigos tabela = tamanhos[i] <= configuracao.limiteTabelaCompartilhada ? compartilhada : null;
+                int reserva = (int) Math.min(MEMORIA_EM_ANDAMENTO_KB, tamanhos[i] / 1024 + 1);
+                memoria.acquireUninterruptibly(reserva);
+                tarefas.add(CompletableFuture.supplyAsync(() -> lerArquivo(arquivo), poolEs)
+                        .thenAcceptAsync(dados -> {
+                            ByteBuffer[] blocos = comprimirEntrada(dados, tabela);
+                            gravarEntrada(saida, proximaPosicao, entrada, nomes.get(entrada), dados.length, blocos);
+                        }, pool)
+                        .whenComplete((resultado, erro) -> {
+                            memoria.release(reserva);
+                            if (erro != null) {
+                                falhou.set(true);
+                            }
+                        }));
+            }
+            for (CompletableFuture<Void> tarefa : tarefas) {
+                esperar(tarefa);
+            }
+
+            // 5. Diretório e rodapé.
+            diretorio.escrever(saida, proximaPosicao.get());
+            bytesComprimidos = saida.size();
+        } finally {
+            poolEs.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+    Extrai todas as entradas do pacote para o diretório 'destino' (criado se preciso).
+    Cada entrada é extraída por uma tarefa do pool, sem depender das outras.
+     */
+    static DiretorioDoPacote extrair(FileChannel entrada, Path destino, int paralelismo) throws IOException {
+        // 1. Cabeçalho do pacote (tabela compartilhada) e diretório do fim do arquivo.
+        ByteBuffer cabecalho = IndiceDeBlocos.lerCompletamente(entrada, FormatoHuff.TAMANHO_MAGICA,
+                (int) Math.max(0, Math.min(TAMANHO_MAXIMO_CABECALHO - FormatoHuff.TAMANHO_MAGICA, entrada.size() - FormatoHuff.TAMANHO_MAGICA)));
+        DecodificadorDeTabela compartilhado = null;
+        try {
+            int marca = cabecalho.get();
+            if (marca == 1) {
+                compartilhado = new DecodificadorDeTabela(CodigosCanonicos.gerarCodigos(FormatoHuff.lerComprimentos(cabecalho)));
+            } else if (marca != 0) {
+                throw new IOException("Marca de tabela compartilhada inválida: " + marca);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Cabeçalho do pacote incompleto.");
+        }
+        DiretorioDoPacote diretorio = DiretorioDoPacote.ler(entrada, FormatoHuff.TAMANHO_MAGICA + cabecalho.position());
+
+        // 2. Uma tarefa por entrada.
+        Path raiz = destino.toAbsolutePath().normalize();
+        Files.createDirectories(raiz);
+        DecodificadorDeTabela tabela = compartilhado;
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            List<ForkJoinTask<Void>> tarefas = new ArrayList<>();
+            for (int i = 0; i < diretorio.quantidade; i++) {
+                int indice = i;
+                tarefas.add(pool.submit(() -> {
+                    extrairEntrada(entrada, raiz, diretorio, indice, tabela);
+                    return null;
+                }));
+            }
+            for (ForkJoinTask<Void> tarefa : tarefas) {
+                ArquivoEmBlocos.juntar(tarefa);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return diretorio;
+    }
+
+    /*
+    Indica se o arquivo é um pacote (versão 6), olhando o número mágico.
+     */
+    static boolean ehPacote(Path caminho) {
+        try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(FormatoHuff.TAMANHO_MAGICA).flip();
+            FormatoHuff.preencher(canal, buffer);
+            return FormatoHuff.detectarVersao(buffer) == FormatoHuff.VERSAO_PACOTE;
+        } catch (IOException e) {
+            return false; // O erro aparece quando o arquivo for aberto para a descompressão.
+        }
+    }
+
+    DiretorioDoPacote getDiretorio() {
+        return diretorio;
+    }
+
+    /*
+    Número de blocos gravados com a tabela compartilhada.
+     */
+    int getBlocosComTabelaCompartilhada() {
+        return blocosComTabelaCompartilhada.get();
+    }
+
+    boolean temTabelaCompartilhada() {
+        return temTabelaCompartilhada;
+    }
+
+    /*
+    Tamanho do pacote gravado, em bytes.
+     */
+    long getBytesComprimidos() {
+        return bytesComprimidos;
+    }
+
+    /*
+    Soma o histograma dos arquivos de até limiteTabelaCompartilhada bytes (lidos no pool de E/S)
+    e monta a tabela de códigos canônicos. Retorna null se não houver arquivos pequenos.
+     */
+    private TabelaDeCodigos montarTabelaCompartilhada(List<Path> arquivos, long[] tamanhos, ExecutorService poolEs) throws IOException {
+        long[] soma = new long[256];
+        List<CompletableFuture<Void>> tarefas = new ArrayList<>();
+        for (int i = 0; i < arquivos.size(); i++) {
+            if (tamanhos[i] > configuracao.limiteTabelaCompartilhada) {
+                continue;
+            }
+            Path arquivo = arquivos.get(i);
+            tarefas.add(CompletableFuture.supplyAsync(() -> {
+                byte[] dados = lerArquivo(arquivo);
+                return Histograma.contar(dados, 0, dados.length);
+            }, poolEs).thenAccept(frequencias -> {
+                synchronized (soma) {
+                    for (int s = 0; s < 256; s++) {
+                        soma[s] += frequencias[s];
+                    }
+                }
+            }));
+        }
+        for (CompletableFuture<Void> tarefa : tarefas) {
+            esperar(tarefa);
+        }
+        if (tarefas.isEmpty()) {
+            return null;
+        }
+        return CodigosCanonicos.gerarCodigos(CodigosCanonicos.calcularComprimentos(soma, configuracao.comprimentoMaximo));
+    }
+
+    /*
+    Comprime um arquivo em blocos. Com 'compartilhada', cada bloco usa a tabela compartilhada
+    se ela tiver códigos para todos os seus bytes e o resultado ficar menor.
+     */
+    private ByteBuffer[] comprimirEntrada(byte[] dados, TabelaDeCodigos compartilhada) {
+        int tamanhoBloco = configuracao.tamanhoBloco > 0 ? configuracao.tamanhoBloco : Configuracao.TAMANHO_BLOCO_PADRAO;
+        ByteBuffer[] blocos = new ByteBuffer[(int) ((dados.length + (long) tamanhoBloco - 1) / tamanhoBloco)];
+        try {
+            for (int b = 0; b < blocos.length; b++) {
+                int inicio = b * tamanhoBloco;
+                int quantidade = Math.min(tamanhoBloco, dados.length - inicio);
+                blocos[b] = CodificadorDeBloco.comprimir(dados, inicio, quantidade, configuracao.comprimentoMaximo, configuracao.fluxos,
+                        configuracao.economiaMinima);
+                if (compartilhada != null) {
+                    long[] frequencias = Histograma.contar(dados, inicio, inicio + quantidade);
+                    long tamanho = CodificadorDeBloco.tamanhoComTabela(frequencias, compartilhada);
+                    if (tamanho >= 0 && tamanho < blocos[b].remaining()) {
+                        blocos[b] = CodificadorDeBloco.comprimirComTabela(dados, inicio, quantidade, compartilhada, frequencias);
+                        blocosComTabelaCompartilhada.incrementAndGet();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return blocos;
+    }
+
+    /*
+    Reserva a próxima região livre do pacote, grava nela os blocos da entrada e a registra no diretório.
+     */
+    private void gravarEntrada(FileChannel saida, AtomicLong proximaPosicao, int entrada, String nome, long tamanhoOriginal, ByteBuffer[] blocos) {
+        long tamanho = 0;
+        for (ByteBuffer bloco : blocos) {
+            tamanho += bloco.remaining();
+        }
+        long posicao = proximaPosicao.getAndAdd(tamanho);
+        diretorio.definir(entrada, nome, posicao, tamanho, tamanhoOriginal);
+        try {
+            for (ByteBuffer bloco : blocos) {
+                posicao = escreverTudo(saida, bloco, posicao);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    Extrai uma entrada: lê e descomprime os seus blocos, um de cada vez, e os grava no arquivo.
+     */
+    private static void extrairEntrada(FileChannel entrada, Path raiz, DiretorioDoPacote diretorio, int indice, DecodificadorDeTabela compartilhado) {
+        String nome = diretorio.nomes[indice];
+        try {
+            // Um nome não pode levar para fora do diretório de destino (ex: "../x" ou "/etc/x").
+            Path arquivo = raiz.resolve(nome).normalize();
+            if (!arquivo.startsWith(raiz) || arquivo.equals(raiz)) {
+                throw new IOException("Nome de entrada inválido no pacote: " + nome);
+            }
+            Files.createDirectories(arquivo.getParent());
+            long posicao = diretorio.posicoes[indice];
+            long fim = posicao + diretorio.tamanhosComprimidos[indice];
+            long restante = diretorio.tamanhosOriginais[indice];
+            try (FileChannel saida = FileChannel.open(arquivo, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (posicao < fim) {
+                    // O cabeçalho diz o tamanho do bloco; só então o bloco inteiro é lido.
+                    ByteBuffer inicioDoBloco = IndiceDeBlocos.lerCompletamente(entrada, posicao, (int) Math.min(CabecalhoDeBloco.TAMANHO_MAXIMO, fim - posicao));
+                    CabecalhoDeBloco cabecalho = CabecalhoDeBloco.ler(inicioDoBloco);
+                    long tamanhoBloco = inicioDoBloco.position() + cabecalho.tamanhoDados;
+                    if (tamanhoBloco > fim - posicao || cabecalho.tamanhoOriginal > restante || cabecalho.tamanhoOriginal > Configuracao.TAMANHO_BLOCO_MAXIMO) {
+                        throw new IOException("Os blocos da entrada " + nome + " não correspondem ao diretório.");
+                    }
+                    byte[] original = new byte[(int) cabecalho.tamanhoOriginal];
+                    CodificadorDeBloco.descomprimir(IndiceDeBlocos.lerCompletamente(entrada, posicao, (int) tamanhoBloco), original, 0, compartilhado, null);
+                    ByteBuffer buffer = ByteBuffer.wrap(original);
+                    while (buffer.hasRemaining()) {
+                        saida.write(buffer);
+                    }
+                    posicao += tamanhoBloco;
+                    restante -= original.length;
+                }
+            }
+            if (restante != 0) {
+                throw new IOException("A entrada " + nome + " está incompleta no pacote.");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    Monta a lista de arquivos e os seus nomes no pacote (sempre com '/' como separador).
+    O próprio pacote de destino é ignorado, caso esteja dentro do diretório de origem.
+    Os caminhos relativos de uma lista partem de 'base' (o nome no pacote continua o da lista).
+     */
+    private static void listarArquivos(Path origem, Path destino, Path base, List<Path> arquivos, List<String> nomes) throws IOException {
+        Path pacote = destino.toAbsolutePath().normalize();
+        if (Files.isDirectory(origem)) {
+            try (Stream<Path> caminhos = Files.walk(origem)) {
+                caminhos.filter(Files::isRegularFile)
+                        .filter(caminho -> !caminho.toAbsolutePath().normalize().equals(pacote))
+                        .sorted()
+                        .forEach(arquivos::add);
+            }
+            for (Path arquivo : arquivos) {
+                nomes.add(nomeDaEntrada(origem.relativize(arquivo)));
+            }
+        } else {
+            // Lista de arquivos: um caminho por linha; linhas em branco são ignoradas.
+            for (String linha : Files.readAllLines(origem, StandardCharsets.UTF_8)) {
+                if (linha.isBlank()) {
+                    continue;
+                }
+                Path arquivo = Paths.get(linha.strip());
+                Path relativo = arquivo.normalize();
+                if (relativo.isAbsolute()) {
+                    relativo = relativo.getRoot().relativize(relativo);
+                }
+                arquivos.add(base.resolve(arquivo));
+                nomes.add(nomeDaEntrada(relativo));
+            }
+        }
+        Set<String> vistos = new HashSet<>();
+        for (String nome : nomes) {
+            if (!vistos.add(nome)) {
+                throw new IOException("Nome repetido no pacote: " + nome);
+            }
+        }
+    }
+
+    private static String nomeDaEntrada(Path relativo) throws IOException {
+        StringBuilder nome = new StringBuilder();
+        for (Path parte : relativo) {
+            if (parte.toString().equals("..") || parte.toString().isEmpty()) {
+                throw new IOException("Caminho fora da origem não pode entrar no pacote: " + relativo);
+            }
+            if (nome.length() > 0) {
+                nome.append('/');
+            }
+            nome.append(parte);
+        }
+        if (nome.length() == 0) {
+            throw new IOException("Caminho vazio na lista de arquivos.");
+        }
+        return nome.toString();
+    }
+
+    private static byte[] lerArquivo(Path arquivo) {
+        try {
+            return Files.readAllBytes(arquivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long escreverTudo(FileChannel saida, ByteBuffer buffer, long posicao) throws IOException {
+        while (buffer.hasRemaining()) {
+            posicao += saida.write(buffer, posicao);
+        }
+        return posicao;
+    }
+
+    /*
+    Espera o fim de uma tarefa, convertendo de volta para IOException os erros de
+    entrada/saída ocorridos dentro dela (como ArquivoEmBlocos.juntar).
+     */
+    private static void esperar(CompletableFuture<?> tarefa) throws IOException {
+        try {
+            tarefa.join();
+        } catch (CompletionException e) {
+            throw ArquivoEmBlocos.comoIOException(e);
+        }
+    }
+}
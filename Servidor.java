@@ -0,0 +1,419 @@
+package huffman;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+
+/*
+Servidor de compressão (modo 's'): uma JVM que fica no ar e atende, por um socket local,
+pedidos de compressão e descompressão. Para muitos arquivos pequenos, iniciar uma JVM por
+arquivo (e rodar tudo com o JIT frio) custa mais do que a própria compressão; no servidor o
+código já está compilado, as tabelas de decodificação (CacheDeTabelas) valem para todos os
+pedidos e cada thread reaproveita os seus buffers de um pedido para o outro.
+
+O endereço é o caminho de um socket Unix. O servidor lê e grava qualquer caminho que um pedido
+citar, com as permissões do seu usuário, então só esse usuário pode usá-lo: o arquivo do socket
+é criado com permissão 0600, e conexões de outros usuários (pelas credenciais do processo do
+outro lado, SO_PEERCRED) são fechadas sem resposta. Portas TCP não são aceitas, já que nelas
+qualquer usuário da máquina se conectaria.
+Cada conexão tem a sua thread, e uma conexão parada (um cliente que ainda lê a sua entrada)
+não segura as outras; até --threads pedidos são executados ao mesmo tempo, os demais esperam.
+Uma conexão pode fazer vários pedidos:
+    pedido   : os argumentos da linha de comando separados por tabulação, terminados por '\n'
+               (ex: "c\t--bloco=1M\t/tmp/a.txt\t/tmp/a.huff"), com caminhos do servidor.
+               Com --tamanho=N, os dois arquivos são "-" e N bytes de dados seguem a linha:
+               eles são comprimidos (c) ou descomprimidos (d) no formato de fluxo, como em um pipe.
+    resposta : as linhas que o comando escreveria, com o prefixo "o " (saída) ou "e " (erros),
+               e por fim "fim <status> <n>\n" (status 0 = concluído) seguido de n bytes de dados
+               (o resultado de um pedido com --tamanho; 0 nos outros).
+Sem o cliente Java (ver Cliente): printf 'c\t/tmp/a.txt\t/tmp/a.huff\n' | nc -U /tmp/huffman.sock
+ */
+class Servidor {
+    static final String ENDERECO_PADRAO = Paths.get(System.getProperty("java.io.tmpdir"), "huffman.sock").toString();
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+    // Buffers que cresceram além disso em um pedido grande não são guardados para os próximos.
+    private static final int TAMANHO_MAXIMO_REAPROVEITADO = 64 * 1024 * 1024;
+
+    // Saídas do processo, desviadas para o buffer do pedido nas threads que atendem pedidos.
+    private static SaidaDesviada saida;
+    private static SaidaDesviada erros;
+
+    // Buffers de cada thread, reaproveitados de um pedido para o outro.
+    private static final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+    // Limita os pedidos em execução a --threads.
+    private static Semaphore vagas;
+    // Usuário dono do socket (o do servidor): o único cujas conexões são atendidas.
+    private static UserPrincipal dono;
+
+    /*
+    Inicia o servidor no endereço de 'opcoes' (ou em ENDERECO_PADRAO) e atende pedidos até o
+    processo ser encerrado.
+     */
+    static void executar(Opcoes opcoes) {
+        String endereco = opcoes.posicionais.isEmpty() ? ENDERECO_PADRAO : opcoes.posicionais.get(0);
+        int threads;
+        try {
+            opcoes.verificar(Set.of("threads"));
+            threads = opcoes.inteiro("threads", Runtime.getRuntime().availableProcessors());
+            if (threads < 1) {
+                throw new IllegalArgumentException("--threads deve ser pelo menos 1.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        try (ServerSocketChannel servidor = abrir(endereco)) {
+            // 1. JIT aquecido antes do primeiro pedido.
+            aquecer();
+            desviarSaidas();
+            System.out.println("Servidor de compressão em " + endereco + " (" + threads + " threads)");
+
+            // 2. Cada conexão é atendida por uma thread do pool; as threads das conexões que
+            //    terminam são reaproveitadas pelas próximas.
+            vagas = new Semaphore(threads);
+            ExecutorService pool = Executors.newCachedThreadPool();
+            while (true) {
+                SocketChannel conexao = servidor.accept();
+                pool.execute(() -> atender(conexao));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro no servidor: " + e.getMessage());
+        }
+    }
+
+    /*
+    Endereço do socket Unix no caminho 'endereco'. Um número (uma porta, aceita em versões
+    anteriores) é recusado; um socket com esse nome pode ser pedido como "./numero".
+     */
+    static UnixDomainSocketAddress endereco(String endereco) {
+        if (!endereco.isEmpty() && endereco.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("Portas TCP não são aceitas (qualquer usuário poderia se conectar): use um socket Unix.");
+        }
+        return UnixDomainSocketAddress.of(endereco);
+    }
+
+    /*
+    Abre o socket do servidor, só para o seu usuário (0600). Um arquivo de socket deixado por
+    um servidor que não está mais no ar é apagado; se houver um servidor respondendo nele, é um erro.
+     */
+    private static ServerSocketChannel abrir(String endereco) throws IOException {
+        UnixDomainSocketAddress local = endereco(endereco);
+        Path caminho = local.getPath();
+        if (Files.exists(caminho)) {
+            if (respondendo(local)) {
+                throw new IOException("Já existe um servidor em " + endereco);
+            }
+            Files.delete(caminho);
+        }
+        ServerSocketChannel servidor = ServerSocketChannel.open(StandardProtocolFamily.UNIX).bind(local);
+        try {
+            Files.setPosixFilePermissions(caminho, PosixFilePermissions.fromString("rw-------"));
+            dono = Files.getOwner(caminho);
+        } catch (IOException | UnsupportedOperationException e) {
+            servidor.close();
+            Files.deleteIfExists(caminho);
+            throw new IOException("Não foi possível restringir o socket ao usuário do servidor: " + e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(caminho);
+            } catch (IOException e) {
+                // O processo já está terminando; o arquivo será apagado pelo próximo servidor.
+            }
+        }));
+        return servidor;
+    }
+
+    private static boolean respondendo(UnixDomainSocketAddress endereco) {
+        try {
+            SocketChannel.open(endereco).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+    Atende os pedidos de uma conexão até o cliente fechá-la.
+     */
+    private static void atender(SocketChannel conexao) {
+        try (conexao) {
+            if (!doDono(conexao)) {
+                return;
+            }
+            InputStream entrada = new BufferedInputStream(Channels.newInputStream(conexao), TAMANHO_BUFFER);
+            OutputStream resposta = Channels.newOutputStream(conexao);
+            String linha;
+            while ((linha = lerLinha(entrada)) != null) {
+                if (!linha.isEmpty() && !atenderPedido(linha.split("\t"), entrada, resposta)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // O cliente fechou a conexão no meio de um pedido: não há a quem responder.
+        }
+    }
+
+    /*
+    Indica se a conexão vem de um processo do usuário dono do socket. Nos sistemas sem
+    SO_PEERCRED vale só a permissão 0600 do arquivo do socket.
+     */
+    private static boolean doDono(SocketChannel conexao) throws IOException {
+        try {
+            UnixDomainPrincipal outroLado = conexao.getOption(ExtendedSocketOptions.SO_PEERCRED);
+            return outroLado.user().getName().equals(dono.getName());
+        } catch (UnsupportedOperationException e) {
+            return true;
+        }
+    }
+
+    /*
+    Executa um pedido e escreve a resposta. Retorna false se a conexão não pode continuar
+    (os dados do pedido não puderam ser lidos).
+     */
+    private static boolean atenderPedido(String[] argumentos, InputStream entrada, OutputStream resposta) throws IOException {
+        Buffers buffers = Servidor.buffers.get();
+        buffers.mensagens.reset();
+        buffers.erros.reset();
+        buffers.dados.reset();
+        Opcoes opcoes = new Opcoes(argumentos);
+        boolean continuar = true;
+        boolean concluido;
+
+        // 1. Saída e erros do comando vão para os buffers desta thread. Os dados do pedido são
+        //    lidos antes de ocupar uma das vagas de execução.
+        saida.desviar(buffers.mensagens);
+        erros.desviar(buffers.erros);
+        try {
+            if (opcoes.tem("tamanho")) {
+                continuar = lerDados(opcoes, entrada, buffers);
+                concluido = continuar && executarComVaga(() -> processarDados(opcoes, buffers));
+            } else if (opcoes.posicionais.contains("-")) {
+                System.err.println("Pelo servidor, os dados da entrada ou saída padrão são enviados com --tamanho=N.");
+                concluido = false;
+            } else {
+                concluido = executarComVaga(() -> Main.executar(opcoes, System.out));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao executar o pedido: " + e);
+            concluido = false;
+        } finally {
+            saida.desviar(null);
+            erros.desviar(null);
+        }
+
+        // 2. Resposta: linhas do comando, status e dados.
+        ByteArrayOutputStream cabecalho = buffers.cabecalho;
+        cabecalho.reset();
+        escreverLinhas(cabecalho, "o ", buffers.mensagens);
+        escreverLinhas(cabecalho, "e ", buffers.erros);
+        cabecalho.write(("fim " + (concluido ? 0 : 1) + " " + (concluido ? buffers.dados.size() : 0) + "\n").getBytes(StandardCharsets.UTF_8));
+        cabecalho.writeTo(resposta);
+        if (concluido) {
+            buffers.dados.writeTo(resposta);
+        }
+        resposta.flush();
+        if (buffers.entrada.length > TAMANHO_MAXIMO_REAPROVEITADO || buffers.dados.size() > TAMANHO_MAXIMO_REAPROVEITADO) {
+            Servidor.buffers.remove();
+        }
+        return continuar;
+    }
+
+    /*
+    Executa 'comando' ocupando uma das --threads vagas (esperando, se todas estiverem ocupadas).
+     */
+    private static boolean executarComVaga(BooleanSupplier comando) {
+        vagas.acquireUninterruptibly();
+        try {
+            return comando.getAsBoolean();
+        } finally {
+            vagas.release();
+        }
+    }
+
+    /*
+    Lê os --tamanho bytes de dados do pedido para o buffer de entrada da thread.
+     */
+    private static boolean lerDados(Opcoes opcoes, InputStream entrada, Buffers buffers) throws IOException {
+        long tamanho;
+        try {
+            tamanho = opcoes.tamanho("tamanho", -1);
+        } catch (IllegalArgumentException e) {
+            tamanho = -1;
+        }
+        if (tamanho < 0 || tamanho > Configuracao.TAMANHO_BLOCO_MAXIMO) {
+            System.err.println("--tamanho deve estar entre 0 e 1G.");
+            return false;
+        }
+        if (buffers.entrada.length < tamanho) {
+            buffers.entrada = new byte[(int) Math.max(tamanho, 2L * buffers.entrada.length)];
+        }
+        if (entrada.readNBytes(buffers.entrada, 0, (int) tamanho) < tamanho) {
+            throw new IOException("Dados do pedido incompletos.");
+        }
+        buffers.tamanhoEntrada = (int) tamanho;
+        return true;
+    }
+
+    /*
+    Comprime (c) ou descomprime (d) os dados do pedido, no formato de fluxo, para o buffer de
+    dados da thread.
+     */
+    private static boolean processarDados(Opcoes opcoes, Buffers buffers) {
+        if (!opcoes.posicionais.equals(Arrays.asList("-", "-"))) {
+            System.err.println("Com --tamanho, a entrada e a saída devem ser -.");
+            return false;
+        }
+        try {
+            Configuracao configuracao = Configuracao.deOpcoes(opcoes);
+            if (opcoes.modo.equalsIgnoreCase("c")) {
+                int tamanhoBloco = configuracao.tamanhoBloco > 0 ? configuracao.tamanhoBloco
+                        : Math.max(1, Math.min(buffers.tamanhoEntrada, Configuracao.TAMANHO_BLOCO_PADRAO));
+                try (HuffmanOutputStream comprimido = new HuffmanOutputStream(buffers.dados, tamanhoBloco, configuracao.comprimentoMaximo,
+                        configuracao.dicionario)) {
+                    comprimido.write(buffers.entrada, 0, buffers.tamanhoEntrada);
+                }
+            } else if (opcoes.modo.equalsIgnoreCase("d")) {
+                try (HuffmanInputStream descomprimido = new HuffmanInputStream(new ByteArrayInputStream(buffers.entrada, 0, buffers.tamanhoEntrada),
+                        configuracao.dicionario)) {
+                    descomprimido.transferTo(buffers.dados);
+                }
+            } else {
+                System.err.println("Com --tamanho, o modo deve ser 'c' ou 'd'.");
+                return false;
+            }
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erro ao processar os dados: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /*
+    Aquece o JIT antes de aceitar pedidos: idas e voltas em memória com um texto sintético
+    passam pelos laços de contagem, codificação e decodificação que os pedidos usam.
+     */
+    private static void aquecer() throws IOException {
+        byte[] texto = new byte[1 << 20];
+        String letras = "eeeeeeeeeeeettttttttaaaaaaaoooooooiiiiiinnnnnnsssssshhhhhrrrrrddddlllluuucccmmmwwffggyyppbbvk  ,.\n";
+        Random aleatorio = new Random(1);
+        for (int i = 0; i < texto.length; i++) {
+            texto[i] = (byte) letras.charAt(aleatorio.nextInt(letras.length()));
+        }
+        for (int i = 0; i < 20; i++) {
+            Huffman.descomprimir(Huffman.comprimir(ByteBuffer.wrap(texto, 0, texto.length >> (i % 8))));
+        }
+    }
+
+    /*
+    Troca System.out e System.err por saídas que podem ser desviadas para os buffers de um pedido.
+     */
+    private static void desviarSaidas() {
+        saida = new SaidaDesviada(System.out);
+        erros = new SaidaDesviada(System.err);
+        System.setOut(new PrintStream(saida, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(erros, true, StandardCharsets.UTF_8));
+    }
+
+    /*
+    Escreve cada linha de 'texto' com o prefixo.
+     */
+    private static void escreverLinhas(ByteArrayOutputStream destino, String prefixo, ByteArrayOutputStream texto) {
+        if (texto.size() == 0) {
+            return;
+        }
+        for (String linha : texto.toString(StandardCharsets.UTF_8).split("\r?\n")) {
+            destino.writeBytes((prefixo + linha + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /*
+    Lê uma linha (até '\n', em UTF-8) byte a byte, para não consumir os dados que vêm depois dela.
+    Retorna null no fim da conexão.
+     */
+    static String lerLinha(InputStream entrada) throws IOException {
+        ByteArrayOutputStream linha = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = entrada.read()) != '\n') {
+            if (b < 0) {
+                return linha.size() == 0 ? null : linha.toString(StandardCharsets.UTF_8);
+            }
+            linha.write(b);
+        }
+        return linha.toString(StandardCharsets.UTF_8);
+    }
+
+    /*
+    Buffers de uma thread do servidor.
+     */
+    private static final class Buffers {
+        byte[] entrada = new byte[TAMANHO_BUFFER];
+        int tamanhoEntrada;
+        final ByteArrayOutputStream dados = new ByteArrayOutputStream(TAMANHO_BUFFER);
+        final ByteArrayOutputStream mensagens = new ByteArrayOutputStream(1024);
+        final ByteArrayOutputStream erros = new ByteArrayOutputStream(1024);
+        final ByteArrayOutputStream cabecalho = new ByteArrayOutputStream(1024);
+    }
+
+    /*
+    Saída que, na thread com um desvio, escreve no desvio; nas outras, na saída original.
+     */
+    private static final class SaidaDesviada extends OutputStream {
+        private final OutputStream original;
+        private final ThreadLocal<OutputStream> desvio = new ThreadLocal<>();
+
+        SaidaDesviada(OutputStream original) {
+            this.original = original;
+        }
+
+        void desviar(OutputStream destino) {
+            desvio.set(destino);
+        }
+
+        private OutputStream destino() {
+            OutputStream destino = desvio.get();
+            return destino != null ? destino : original;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            destino().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int inicio, int quantidade) throws IOException {
+            destino().write(b, inicio, quantidade);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            destino().flush();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package huffman;
+
+/*
+Representação da tabela de códigos de Huffman em forma numérica.
+Em vez de guardar cada código como uma String de '0's e '1's, guarda para cada
+byte (0-255) o valor do código em um long e o seu comprimento em bits.
+Isso permite que o codificador escreva um código inteiro com uma única operação
+de deslocamento, sem criar nenhum objeto por byte.
+ */
+class TabelaDeCodigos {
+    // Maior comprimento de código suportado pelo EscritorDeBits em uma única escrita.
+    static final int COMPRIMENTO_MAXIMO = 63;
+
+    final long[] codigos;
+    final int[] comprimentos;
+
+    /*
+    Construtor que cria uma tabela vazia (todos os comprimentos iguais a zero).
+     */
+    TabelaDeCodigos() {
+        this.codigos = new long[256];
+        this.comprimentos = new int[256];
+    }
+
+    /*
+    Retorna o código de um caractere como texto (ex: "01"), para exibição.
+     */
+    String comoTexto(int simbolo) {
+        StringBuilder texto = new StringBuilder();
+        for (int i = comprimentos[simbolo] - 1; i >= 0; i--) {
+            texto.append((codigos[simbolo] >>> i & 1) == 0 ? '0' : '1');
+        }
+        return texto.toString();
+    }
+
+    /*
+    Calcula o número exato de bits que a codificação produzirá, a partir do
+    histograma: soma de frequência x comprimento do código de cada caractere.
+    Dispensa codificar o arquivo apenas para saber o tamanho do resultado.
+     */
+    long bitsCodificados(long[] frequencias) {
+        long total = 0;
+        for (int i = 0; i < 256; i++) {
+            total += frequencias[i] * comprimentos[i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,503 @@
+package huffman;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+Transformações aplicadas a um bloco antes da codificação de Huffman (--transformacoes,
+bloco TIPO_TRANSFORMADO). Nenhuma delas comprime sozinha: elas reorganizam os bytes para
+que o histograma do bloco fique concentrado em poucos valores, que o Huffman de ordem 0
+codifica com códigos curtos.
+- RLE: cada sequência de 4 a 259 bytes iguais vira 4 bytes seguidos de um byte com o
+  número de repetições a mais (0 a 255), como no bzip2. Encurta as sequências longas de
+  um mesmo byte e evita que elas deixem a BWT lenta.
+- BWT (Burrows-Wheeler): ordena os sufixos do bloco (vetor de sufixos pelo SA-IS, em tempo
+  linear) e emite o byte anterior a cada sufixo. Bytes seguidos de contextos parecidos
+  ficam juntos, em sequências longas de poucos bytes distintos. O índice primário (a
+  linha do sufixo que é o bloco inteiro) vai no cabeçalho, para desfazê-la.
+- MTF (move-to-front): troca cada byte pela sua posição em uma lista dos 256 valores e o
+  leva para a frente da lista. Depois da BWT, a maior parte dos bytes vira 0, 1 ou 2.
+As etapas são aplicadas na ordem dada (a mais comum é rle,bwt,mtf) e desfeitas na ordem
+inversa. Cada thread usa o seu objeto (daThread), com os vetores reaproveitados de um
+bloco para o outro; os laços das etapas não alocam nada por byte.
+ */
+class Transformacoes {
+    static final int RLE = 1;
+    static final int BWT = 2;
+    static final int MTF = 3;
+    static final int ETAPAS_MAXIMO = 8;
+    static final String NOMES_PADRAO = "rle,bwt,mtf,rle";
+
+    private static final String[] NOMES = { null, "rle", "bwt", "mtf" };
+    private static final int REPETICAO_MINIMA = 4;
+    private static final int REPETICAO_MAXIMA = REPETICAO_MINIMA + 255;
+
+    private static final ThreadLocal<Transformacoes> daThread = ThreadLocal.withInitial(Transformacoes::new);
+
+    // Dois buffers que se alternam como entrada e saída das etapas.
+    private byte[] atual = new byte[0];
+    private byte[] proximo = new byte[0];
+    // BWT: o bloco como inteiros (com o sentinela no fim), o vetor de sufixos e o tipo de cada sufixo.
+    private int[] texto = new int[0];
+    private int[] sufixos = new int[0];
+    private boolean[] tipos = new boolean[0];
+    // MTF: a lista dos 256 valores.
+    private final byte[] lista = new byte[256];
+
+    /*
+    Objeto (e buffers) da thread atual.
+     */
+    static Transformacoes daThread() {
+        return daThread.get();
+    }
+
+    /*
+    Converte uma lista de nomes separados por vírgula (ex: "rle,bwt,mtf") nas etapas.
+     */
+    static int[] ler(String nomes) {
+        String[] partes = nomes.split(",");
+        if (partes.length > ETAPAS_MAXIMO) {
+            throw new IllegalArgumentException("No máximo " + ETAPAS_MAXIMO + " transformações por bloco.");
+        }
+        int[] etapas = new int[partes.length];
+        for (int i = 0; i < partes.length; i++) {
+            etapas[i] = Arrays.asList(NOMES).indexOf(partes[i].strip().toLowerCase());
+            if (etapas[i] < 1) {
+                throw new IllegalArgumentException("Transformação desconhecida: '" + partes[i] + "'. Use rle, bwt e mtf.");
+            }
+        }
+        return etapas;
+    }
+
+    /*
+    Nomes das etapas, separados por vírgula (para o resumo).
+     */
+    static String nomes(int[] etapas) {
+        StringBuilder texto = new StringBuilder();
+        for (int etapa : etapas) {
+            texto.append(texto.length() > 0 ? "," : "").append(NOMES[etapa]);
+        }
+        return texto.toString();
+    }
+
+    /*
+    Indica se 'etapa' é um identificador válido.
+     */
+    static boolean valida(int etapa) {
+        return etapa >= RLE && etapa <= MTF;
+    }
+
+    /*
+    Maior tamanho que 'tamanhoOriginal' bytes podem ter depois das etapas (só a RLE cresce,
+    no pior caso 5 bytes para cada 4).
+     */
+    static long tamanhoMaximo(int[] etapas, long tamanhoOriginal) {
+        long tamanho = tamanhoOriginal;
+        for (int etapa : etapas) {
+            if (etapa == RLE) {
+                tamanho += tamanho / REPETICAO_MINIMA + 1;
+            }
+        }
+        return tamanho;
+    }
+
+    /*
+    Aplica as etapas a 'quantidade' bytes de 'dados' a partir de 'inicio'. O resultado fica
+    em resultado(), da posição 0 até o tamanho retornado; 'parametros' recebe, na posição de
+    cada BWT, o seu índice primário.
+     */
+    int aplicar(int[] etapas, byte[] dados, int inicio, int quantidade, long[] parametros) {
+        long maximo = tamanhoMaximo(etapas, quantidade);
+        if (maximo > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bloco grande demais para as transformações.");
+        }
+        atual = garantir(atual, (int) maximo);
+        proximo = garantir(proximo, (int) maximo);
+        byte[] origem = dados;
+        int deslocamento = inicio;
+        int tamanho = quantidade;
+        for (int i = 0; i < etapas.length; i++) {
+            switch (etapas[i]) {
+                case RLE:
+                    tamanho = aplicarRle(origem, deslocamento, tamanho, proximo);
+                    break;
+                case BWT:
+                    parametros[i] = aplicarBwt(origem, deslocamento, tamanho, proximo);
+                    break;
+                default:
+                    aplicarMtf(origem, deslocamento, tamanho, proximo);
+                    break;
+            }
+            byte[] troca = atual;
+            atual = proximo;
+            proximo = troca;
+            origem = atual;
+            deslocamento = 0;
+        }
+        return tamanho;
+    }
+
+    /*
+    Buffer com o resultado de aplicar().
+     */
+    byte[] resultado() {
+        return atual;
+    }
+
+    /*
+    Buffer de pelo menos 'tamanho' bytes onde quem descomprime grava os bytes transformados,
+    antes de chamar desfazer().
+     */
+    byte[] entrada(int tamanho) {
+        atual = garantir(atual, tamanho);
+        return atual;
+    }
+
+    /*
+    Desfaz as etapas sobre os 'tamanho' bytes de entrada() e grava os 'tamanhoOriginal' bytes
+    do bloco em 'destino', a partir de 'inicio' (a última etapa desfeita escreve direto nele).
+     */
+    void desfazer(int[] etapas, long[] parametros, int tamanho, byte[] destino, int inicio, int tamanhoOriginal) throws IOException {
+        for (int i = etapas.length - 1; i >= 0; i--) {
+            boolean ultima = i == 0;
+            if (ultima && etapas[i] != RLE && tamanho != tamanhoOriginal) {
+                throw new IOException("O bloco transformado tem " + tamanho + " bytes, e não " + tamanhoOriginal + ".");
+            }
+            int capacidade = ultima ? tamanhoOriginal : (int) Math.min(Integer.MAX_VALUE - 8, tamanhoMaximo(etapas, tamanhoOriginal));
+            byte[] alvo = ultima ? destino : (proximo = garantir(proximo, etapas[i] == RLE ? tamanhoRle(atual, tamanho, capacidade) : tamanho));
+            int deslocamento = ultima ? inicio : 0;
+            switch (etapas[i]) {
+                case RLE:
+                    tamanho = desfazerRle(atual, tamanho, alvo, deslocamento, capacidade);
+                    break;
+                case BWT:
+                    if (parametros[i] < 0 || parametros[i] > tamanho || (tamanho > 0 && parametros[i] == 0)) {
+                        throw new IOException("Índice primário da BWT inválido: " + parametros[i]);
+                    }
+                    desfazerBwt(atual, tamanho, (int) parametros[i], alvo, deslocamento);
+                    break;
+                default:
+                    desfazerMtf(atual, tamanho, alvo, deslocamento);
+                    break;
+            }
+            if (!ultima) {
+                byte[] troca = atual;
+                atual = proximo;
+                proximo = troca;
+            }
+        }
+        if (tamanho != tamanhoOriginal) {
+            throw new IOException("O bloco transformado tem " + tamanho + " bytes, e não " + tamanhoOriginal + ".");
+        }
+    }
+
+    private static byte[] garantir(byte[] buffer, int tamanho) {
+        return buffer.length >= tamanho ? buffer : new byte[Math.max(tamanho, buffer.length + buffer.length / 2)];
+    }
+
+    // ---------------------------------------------------------------- RLE
+
+    private static int aplicarRle(byte[] origem, int inicio, int quantidade, byte[] destino) {
+        int j = 0;
+        int fim = inicio + quantidade;
+        for (int i = inicio; i < fim; ) {
+            byte b = origem[i];
+            int repeticoes = 1;
+            while (i + repeticoes < fim && repeticoes < REPETICAO_MAXIMA && origem[i + repeticoes] == b) {
+                repeticoes++;
+            }
+            if (repeticoes >= REPETICAO_MINIMA) {
+                destino[j] = b;
+                destino[j + 1] = b;
+                destino[j + 2] = b;
+                destino[j + 3] = b;
+                destino[j + 4] = (byte) (repeticoes - REPETICAO_MINIMA);
+                j += 5;
+            } else {
+                for (int r = 0; r < repeticoes; r++) {
+                    destino[j++] = b;
+                }
+            }
+            i += repeticoes;
+        }
+        return j;
+    }
+
+    /*
+    Tamanho que a RLE desfeita terá (para reservar o buffer), sem passar de 'capacidade'.
+     */
+    private static int tamanhoRle(byte[] origem, int quantidade, int capacidade) throws IOException {
+        long tamanho = 0;
+        int iguais = 0;
+        byte anterior = 0;
+        for (int i = 0; i < quantidade; i++) {
+            byte b = origem[i];
+            if (iguais == REPETICAO_MINIMA) {
+                tamanho += b & 0xFF;
+                iguais = 0;
+            } else {
+                tamanho++;
+                iguais = iguais > 0 && b == anterior ? iguais + 1 : 1;
+                anterior = b;
+            }
+        }
+        if (tamanho > capacidade) {
+            throw new IOException("A RLE do bloco transformado passa do tamanho esperado.");
+        }
+        return (int) tamanho;
+    }
+
+    private static int desfazerRle(byte[] origem, int quantidade, byte[] destino, int inicio, int capacidade) throws IOException {
+        int j = inicio;
+        int limite = inicio + capacidade;
+        int iguais = 0;
+        byte anterior = 0;
+        for (int i = 0; i < quantidade; i++) {
+            byte b = origem[i];
+            if (iguais == REPETICAO_MINIMA) {
+                int extras = b & 0xFF;
+                if (extras > limite - j) {
+                    throw new IOException("A RLE do bloco transformado passa do tamanho esperado.");
+                }
+                Arrays.fill(destino, j, j + extras, anterior);
+                j += extras;
+                iguais = 0;
+            } else {
+                if (j == limite) {
+                    throw new IOException("A RLE do bloco transformado passa do tamanho esperado.");
+                }
+                destino[j++] = b;
+                iguais = iguais > 0 && b == anterior ? iguais + 1 : 1;
+                anterior = b;
+            }
+        }
+        return j - inicio;
+    }
+
+    // ---------------------------------------------------------------- MTF
+
+    private void aplicarMtf(byte[] origem, int inicio, int quantidade, byte[] destino) {
+        iniciarLista();
+        for (int i = 0; i < quantidade; i++) {
+            byte b = origem[inicio + i];
+            int posicao = 0;
+            while (lista[posicao] != b) {
+                posicao++;
+            }
+            System.arraycopy(lista, 0, lista, 1, posicao);
+            lista[0] = b;
+            destino[i] = (byte) posicao;
+        }
+    }
+
+    private void desfazerMtf(byte[] origem, int quantidade, byte[] destino, int inicio) {
+        iniciarLista();
+        for (int i = 0; i < quantidade; i++) {
+            int posicao = origem[i] & 0xFF;
+            byte b = lista[posicao];
+            System.arraycopy(lista, 0, lista, 1, posicao);
+            lista[0] = b;
+            destino[inicio + i] = b;
+        }
+    }
+
+    private void iniciarLista() {
+        for (int i = 0; i < 256; i++) {
+            lista[i] = (byte) i;
+        }
+    }
+
+    // ---------------------------------------------------------------- BWT
+
+    /*
+    BWT dos sufixos de 'origem' + sentinela: a linha 0 é sempre a do sentinela, e a linha do
+    sufixo 0 (o índice primário, retornado) não tem byte anterior e fica fora da saída.
+     */
+    private long aplicarBwt(byte[] origem, int inicio, int quantidade, byte[] destino) {
+        if (quantidade == 0) {
+            return 0;
+        }
+        int n = quantidade + 1;
+        if (texto.length < n) {
+            texto = new int[n];
+            sufixos = new int[n];
+            tipos = new boolean[n];
+        }
+        for (int i = 0; i < quantidade; i++) {
+            texto[i] = (origem[inicio + i] & 0xFF) + 1;
+        }
+        texto[quantidade] = 0;
+        ordenarSufixos(texto, sufixos, tipos, n, 257);
+        int primario = 0;
+        int j = 0;
+        for (int linha = 0; linha < n; linha++) {
+            int sufixo = sufixos[linha];
+            if (sufixo == 0) {
+                primario = linha;
+            } else {
+                destino[j++] = origem[inicio + sufixo - 1];
+            }
+        }
+        return primario;
+    }
+
+    /*
+    Desfaz a BWT andando pelo mapeamento LF (a linha do sufixo que começa um byte antes),
+    do fim do bloco para o início.
+     */
+    private void desfazerBwt(byte[] origem, int quantidade, int primario, byte[] destino, int inicio) throws IOException {
+        int n = quantidade + 1;
+        if (sufixos.length < n) {
+            sufixos = new int[n];
+        }
+        // 1. Primeira linha de cada byte na coluna ordenada (a linha 0 é a do sentinela).
+        int[] primeira = new int[256];
+        for (int i = 0; i < quantidade; i++) {
+            primeira[origem[i] & 0xFF]++;
+        }
+        for (int c = 0, soma = 1; c < 256; c++) {
+            int quantos = primeira[c];
+            primeira[c] = soma;
+            soma += quantos;
+        }
+        // 2. LF de cada linha, exceto a do índice primário.
+        int[] lf = sufixos;
+        for (int linha = 0; linha < n; linha++) {
+            if (linha != primario) {
+                lf[linha] = primeira[origem[linha < primario ? linha : linha - 1] & 0xFF]++;
+            }
+        }
+        // 3. Do sentinela para trás: cada linha dá o byte anterior e a linha seguinte.
+        int linha = 0;
+        for (int i = quantidade - 1; i >= 0; i--) {
+            if (linha == primario) {
+                throw new IOException("BWT inválida no bloco transformado.");
+            }
+            destino[inicio + i] = origem[linha < primario ? linha : linha - 1];
+            linha = lf[linha];
+        }
+    }
+
+    /*
+    Vetor de sufixos pelo SA-IS (Nong, Zhang e Chan): 's' tem 'n' símbolos em [0, k) e
+    termina em um sentinela 0 único. Os sufixos LMS (um S logo após um L) são ordenados
+    primeiro, pela indução; se as suas substrings não forem todas distintas, a ordem vem da
+    recursão sobre a sequência dos seus nomes, que tem no máximo metade do tamanho.
+     */
+    private static void ordenarSufixos(int[] s, int[] sa, boolean[] t, int n, int k) {
+        // 1. Tipo de cada sufixo: S (true) se for menor que o seguinte, L se for maior.
+        t[n - 1] = true;
+        for (int i = n - 2; i >= 0; i--) {
+            t[i] = s[i] < s[i + 1] || (s[i] == s[i + 1] && t[i + 1]);
+        }
+        int[] contagem = new int[k];
+        for (int i = 0; i < n; i++) {
+            contagem[s[i]]++;
+        }
+        int[] cestos = new int[k];
+
+        // 2. Substrings LMS no fim dos seus cestos, ordenadas pela indução.
+        Arrays.fill(sa, 0, n, -1);
+        fimDosCestos(contagem, cestos, k);
+        for (int i = 1; i < n; i++) {
+            if (lms(t, i)) {
+                sa[--cestos[s[i]]] = i;
+            }
+        }
+        induzir(s, sa, t, contagem, cestos, n, k);
+
+        // 3. Nomes das substrings LMS, na ordem em que ficaram; iguais recebem o mesmo nome.
+        int n1 = 0;
+        for (int i = 0; i < n; i++) {
+            if (lms(t, sa[i])) {
+                sa[n1++] = sa[i];
+            }
+        }
+        Arrays.fill(sa, n1, n, -1);
+        int nomes = 0;
+        int anterior = -1;
+        for (int i = 0; i < n1; i++) {
+            int posicao = sa[i];
+            boolean diferente = false;
+            for (int d = 0; d < n; d++) {
+                if (anterior == -1 || s[posicao + d] != s[anterior + d] || t[posicao + d] != t[anterior + d]) {
+                    diferente = true;
+                    break;
+                }
+                if (d > 0 && (lms(t, posicao + d) || lms(t, anterior + d))) {
+                    break;
+                }
+            }
+            if (diferente) {
+                nomes++;
+                anterior = posicao;
+            }
+            sa[n1 + posicao / 2] = nomes - 1;
+        }
+        int[] s1 = new int[n1];
+        for (int i = n - 1, j = n1 - 1; i >= n1; i--) {
+            if (sa[i] >= 0) {
+                s1[j--] = sa[i];
+            }
+        }
+
+        // 4. Ordem dos sufixos LMS: direta se os nomes são distintos, senão pela recursão.
+        int[] sa1 = new int[n1];
+        if (nomes < n1) {
+            ordenarSufixos(s1, sa1, new boolean[n1], n1, nomes);
+        } else {
+            for (int i = 0; i < n1; i++) {
+                sa1[s1[i]] = i;
+            }
+        }
+
+        // 5. Sufixos LMS, já ordenados, no fim dos seus cestos; a indução ordena o resto.
+        for (int i = 1, j = 0; i < n; i++) {
+            if (lms(t, i)) {
+                s1[j++] = i;
+            }
+        }
+        Arrays.fill(sa, 0, n, -1);
+        fimDosCestos(contagem, cestos, k);
+        for (int i = n1 - 1; i >= 0; i--) {
+            int j = s1[sa1[i]];
+            sa[--cestos[s[j]]] = j;
+        }
+        induzir(s, sa, t, contagem, cestos, n, k);
+    }
+
+    /*
+    Indução: os sufixos L saem em ordem a partir do início dos cestos, da esquerda para a
+    direita; depois os S, a partir do fim dos cestos, da direita para a esquerda.
+     */
+    private static void induzir(int[] s, int[] sa, boolean[] t, int[] contagem, int[] cestos, int n, int k) {
+        for (int c = 0, soma = 0; c < k; c++) {
+            cestos[c] = soma;
+            soma += contagem[c];
+        }
+        for (int i = 0; i < n; i++) {
+            int j = sa[i] - 1;
+            if (j >= 0 && !t[j]) {
+                sa[cestos[s[j]]++] = j;
+            }
+        }
+        fimDosCestos(contagem, cestos, k);
+        for (int i = n - 1; i >= 0; i--) {
+            int j = sa[i] - 1;
+            if (j >= 0 && t[j]) {
+                sa[--cestos[s[j]]] = j;
+            }
+        }
+    }
+
+    private static void fimDosCestos(int[] contagem, int[] cestos, int k) {
+        for (int c = 0, soma = 0; c < k; c++) {
+            soma += contagem[c];
+            cestos[c] = soma;
+        }
+    }
+
+    private static boolean lms(boolean[] t, int i) {
+        return i > 0 && t[i] && !t[i - 1];
+    }
+}
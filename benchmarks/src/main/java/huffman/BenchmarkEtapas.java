@@ -0,0 +1,117 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+Benchmarks de cada etapa da compressão, isoladas umas das outras: o que cada etapa
+recebe da anterior é calculado uma única vez, no @Setup.
+- histograma: contagem das frequências (Histograma.contar);
+- construção da árvore: árvore do formato legado, MinHeapPrimitivo e duas filas;
+- tabela de códigos: comprimentos + códigos canônicos, e os códigos da árvore do formato legado;
+- codificar: escrita dos códigos com o EscritorDeBits;
+- decodificar: leitura com o DecodificadorDeTabela.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+@State(Scope.Benchmark)
+public class BenchmarkEtapas {
+    @Param({"ALEATORIO", "TEXTO", "ENVIESADO", "UNICO"})
+    public Corpus corpus;
+
+    @Param({"1K", "1M", "64M", "1G"})
+    public String tamanho;
+
+    private byte[] dados;
+    private long[] frequencias;
+    private int[] comprimentos;
+    private TabelaDeCodigos tabela;
+    private DecodificadorDeTabela decodificador;
+    // Dados comprimidos: saída do benchmark 'codificar' e entrada do 'decodificar'
+    // (o conteúdo é sempre o mesmo, então o buffer é compartilhado para poupar memória em 1 GB).
+    private ByteBuffer comprimido;
+    private byte[] descomprimido;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        dados = corpus.gerar(Corpus.tamanhoEmBytes(tamanho));
+        frequencias = Histograma.contar(dados, 0, dados.length);
+        comprimentos = CodigosCanonicos.calcularComprimentos(frequencias, CodigosCanonicos.COMPRIMENTO_MAXIMO_PADRAO);
+        tabela = CodigosCanonicos.gerarCodigos(comprimentos);
+        decodificador = new DecodificadorDeTabela(tabela);
+        comprimido = ByteBuffer.allocate((int) ((tabela.bitsCodificados(frequencias) + 7) / 8));
+        codificar(new Vazao());
+        descomprimido = new byte[dados.length];
+    }
+
+    @Benchmark
+    public long[] histograma(Vazao vazao) {
+        vazao.contar(dados.length);
+        return Histograma.contar(dados, 0, dados.length);
+    }
+
+    @Benchmark
+    public Object arvoreLegada() {
+        return Main.reconstruirArvoreDeHuffman(frequencias);
+    }
+
+    @Benchmark
+    public Object arvoreComHeapPrimitivo() {
+        return ArvoreCompacta.construirComHeap(frequencias);
+    }
+
+    @Benchmark
+    public Object arvoreComDuasFilas() {
+        return ArvoreCompacta.construirComDuasFilas(frequencias);
+    }
+
+    @Benchmark
+    public Object tabelaDeCodigosCanonica() {
+        int[] c = CodigosCanonicos.calcularComprimentos(frequencias, CodigosCanonicos.COMPRIMENTO_MAXIMO_PADRAO);
+        return CodigosCanonicos.gerarCodigos(c);
+    }
+
+    @Benchmark
+    public TabelaDeCodigos tabelaDeCodigosLegada() {
+        return Main.gerarTabelaDeCodigos(Main.reconstruirArvoreDeHuffman(frequencias));
+    }
+
+    @Benchmark
+    public int codificar(Vazao vazao) {
+        vazao.contar(dados.length);
+        comprimido.clear();
+        long[] codigos = tabela.codigos;
+        try (EscritorDeBits escritor = new EscritorDeBits(comprimido)) {
+            for (byte b : dados) {
+                int simbolo = b & 0xFF;
+                escritor.escrever(codigos[simbolo], comprimentos[simbolo]);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return comprimido.position();
+    }
+
+    @Benchmark
+    public byte[] decodificar(Vazao vazao) throws IOException {
+        vazao.contar(dados.length);
+        decodificador.decodificar(new LeitorDeBits(comprimido.duplicate().flip()), descomprimido, 0, descomprimido.length);
+        return descomprimido;
+    }
+}
@@ -0,0 +1,89 @@
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+Benchmarks de ida e volta completa (comprimir e descomprimir):
+- emMemoria: um único bloco, com CodificadorDeBloco (histograma, árvore, códigos,
+  codificação e decodificação), sem disco;
+- arquivoEmBlocos: o caminho do modo 'c --bloco', de arquivo para arquivo, com o
+  ForkJoinPool e o índice de blocos (ver ArquivoEmBlocos).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+@State(Scope.Benchmark)
+public class BenchmarkIdaEVolta {
+    @Param({"ALEATORIO", "TEXTO", "ENVIESADO", "UNICO"})
+    public Corpus corpus;
+
+    @Param({"1K", "1M", "64M", "1G"})
+    public String tamanho;
+
+    private byte[] dados;
+    private byte[] descomprimido;
+    private Path original;
+    private Path comprimido;
+    private Path restaurado;
+    private Configuracao configuracao;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        dados = corpus.gerar(Corpus.tamanhoEmBytes(tamanho));
+        descomprimido = new byte[dados.length];
+        original = Files.createTempFile("huffman-bench", ".bin");
+        comprimido = Files.createTempFile("huffman-bench", ".huff");
+        restaurado = Files.createTempFile("huffman-bench", ".out");
+        Files.write(original, dados);
+        configuracao = new Configuracao();
+        configuracao.tamanhoBloco = Configuracao.TAMANHO_BLOCO_PADRAO;
+    }
+
+    @TearDown(Level.Trial)
+    public void limpar() throws IOException {
+        Files.deleteIfExists(original);
+        Files.deleteIfExists(comprimido);
+        Files.deleteIfExists(restaurado);
+    }
+
+    @Benchmark
+    public byte[] emMemoria(Vazao vazao) throws IOException {
+        vazao.contar(dados.length);
+        ByteBuffer bloco = CodificadorDeBloco.comprimir(dados, 0, dados.length, CodigosCanonicos.COMPRIMENTO_MAXIMO_PADRAO);
+        CodificadorDeBloco.descomprimir(bloco, descomprimido, 0);
+        return descomprimido;
+    }
+
+    @Benchmark
+    public long arquivoEmBlocos(Vazao vazao) throws IOException {
+        vazao.contar(dados.length);
+        ArquivoEmBlocos.comprimir(original, comprimido, configuracao);
+        try (FileChannel entrada = FileChannel.open(comprimido, StandardOpenOption.READ);
+             FileChannel saida = FileChannel.open(restaurado, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ArquivoEmBlocos.descomprimir(entrada, saida, configuracao.paralelismo);
+            return saida.size();
+        }
+    }
+}
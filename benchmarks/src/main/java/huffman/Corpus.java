@@ -0,0 +1,115 @@
+package huffman;
+
+/*
+Dados de entrada gerados para os benchmarks. A geração é determinística (semente fixa),
+então execuções diferentes medem exatamente os mesmos bytes.
+- ALEATORIO: bytes uniformes; quase nada a comprimir, 8 bits por byte.
+- TEXTO: palavras em inglês com frequências no estilo da lei de Zipf, separadas por espaços,
+  pontuação e quebras de linha; o caso típico de arquivos de texto.
+- ENVIESADO: o byte k aparece com probabilidade 2^-(k+1); códigos de comprimentos muito
+  variados, bom para exercitar o limite de comprimento e as subtabelas do decodificador.
+- UNICO: um único byte repetido; o caso degenerado de 1 bit por byte.
+ */
+public enum Corpus {
+    ALEATORIO, TEXTO, ENVIESADO, UNICO;
+
+    private static final String[] PALAVRAS = (
+            "the of and to a in is that it was for on are as with his they at be this from have or by one had not "
+            + "but what all were when we there can an your which their said if do will each about how up out them then "
+            + "she many some so these would other into has more her two like him see time could no make than first been "
+            + "its who now people my made over did down only way find use may water long little very after words called "
+            + "just where most know get through back much before go good new write our used me man too any day same right "
+            + "look think also around another came come work three word must because does part even place well such here "
+            + "take why things help put years different away again off went old number great tell men say small every found "
+            + "still between name should home big give air line set own under read last never us left end along while might "
+            + "next sound below saw something thought both few those always looked show large often together asked house "
+            + "world going want school important until form food keep children feet land side without boy once animals life "
+            + "enough took sometimes four head above kind began almost live page got earth need far hand high year mother light").split(" ");
+
+    /*
+    Gera 'tamanho' bytes do corpus.
+     */
+    byte[] gerar(int tamanho) {
+        byte[] dados = new byte[tamanho];
+        long estado = 0x9E3779B97F4A7C15L;
+        switch (this) {
+            case ALEATORIO:
+                for (int i = 0; i < tamanho; i++) {
+                    estado = proximo(estado);
+                    dados[i] = (byte) (estado >>> 56);
+                }
+                break;
+            case TEXTO:
+                gerarTexto(dados, estado);
+                break;
+            case ENVIESADO:
+                for (int i = 0; i < tamanho; i++) {
+                    estado = proximo(estado);
+                    dados[i] = (byte) Math.min(Long.numberOfTrailingZeros(estado), 255);
+                }
+                break;
+            case UNICO:
+                java.util.Arrays.fill(dados, (byte) 'a');
+                break;
+        }
+        return dados;
+    }
+
+    /*
+    Sorteia palavras com probabilidade proporcional a 1/posição (Zipf) usando uma tabela
+    acumulada e uma busca binária.
+     */
+    private static void gerarTexto(byte[] dados, long estado) {
+        double[] acumulado = new double[PALAVRAS.length];
+        double soma = 0;
+        for (int i = 0; i < PALAVRAS.length; i++) {
+            soma += 1.0 / (i + 1);
+            acumulado[i] = soma;
+        }
+        int posicao = 0;
+        int palavrasNaLinha = 0;
+        while (posicao < dados.length) {
+            estado = proximo(estado);
+            double sorteio = (estado >>> 11) * 0x1.0p-53 * soma;
+            int indice = java.util.Arrays.binarySearch(acumulado, sorteio);
+            String palavra = PALAVRAS[indice >= 0 ? indice : Math.min(-indice - 1, PALAVRAS.length - 1)];
+            for (int i = 0; i < palavra.length() && posicao < dados.length; i++) {
+                char c = palavra.charAt(i);
+                dados[posicao++] = (byte) (palavrasNaLinha == 0 && i == 0 ? Character.toUpperCase(c) : c);
+            }
+            if (posicao >= dados.length) {
+                break;
+            }
+            palavrasNaLinha++;
+            if ((estado & 0xF) == 0) {
+                dados[posicao++] = (byte) ((estado & 0x30) == 0 ? ',' : '.');
+            }
+            if (posicao < dados.length) {
+                dados[posicao++] = (byte) (palavrasNaLinha >= 12 ? '\n' : ' ');
+            }
+            if (palavrasNaLinha >= 12) {
+                palavrasNaLinha = 0;
+            }
+        }
+    }
+
+    /*
+    Gerador xorshift64: rápido o bastante para gerar 1 GB em poucos segundos.
+     */
+    private static long proximo(long x) {
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        return x;
+    }
+
+    /*
+    Converte um tamanho como "64K", "1M" ou "1G" em bytes.
+     */
+    static int tamanhoEmBytes(String tamanho) {
+        char sufixo = Character.toUpperCase(tamanho.charAt(tamanho.length() - 1));
+        int multiplicador = sufixo == 'K' ? 1 << 10 : sufixo == 'M' ? 1 << 20 : sufixo == 'G' ? 1 << 30 : 1;
+        String numero = multiplicador == 1 ? tamanho : tamanho.substring(0, tamanho.length() - 1);
+        return Math.multiplyExact(Integer.parseInt(numero), multiplicador);
+    }
+}
@@ -0,0 +1,23 @@
+package huffman;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+Ponto de entrada do benchmarks.jar. Aceita as mesmas opções da linha de comando do JMH
+(ex: 'BenchmarkEtapas.decodificar -p corpus=TEXTO -p tamanho=1M') e liga sempre o
+GCProfiler, que reporta os bytes alocados por operação (gc.alloc.rate.norm).
+ */
+public class ExecutarBenchmarks {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions linhaDeComando = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(linhaDeComando)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
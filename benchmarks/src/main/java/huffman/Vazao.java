@@ -0,0 +1,20 @@
+package huffman;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/*
+Contador auxiliar de vazão. Cada benchmark soma aqui os megabytes (10^6 bytes) de entrada
+que processou; no modo Throughput o JMH divide pelo tempo e reporta o resultado
+"megabytes" em MB/s, ao lado das operações por segundo.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Vazao {
+    public double megabytes;
+
+    void contar(long bytes) {
+        megabytes += bytes / 1e6;
+    }
+}
@@ -0,0 +1,139 @@
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/*
+Ida e volta pela linha de comando (Main.executar): cada entrada é comprimida com um conjunto
+de opções, descomprimida e comparada com o original, byte a byte.
+
+As entradas cobrem as tabelas de códigos dos casos de borda: um caractere só (sem códigos),
+dois caracteres (o maior código tem 1 bit), oito caracteres uniformes (3 bits), uma
+distribuição assimétrica (códigos longos) e um texto pequeno. As opções são a matriz de
+--fluxos=1..8 com --max-bits, --bloco, --contexto e --transformacoes.
+ */
+class TesteDeIdaEVolta {
+    private static final int TAMANHO = 64 * 1024;
+
+    @TempDir
+    Path diretorio;
+
+    /*
+    Entradas da matriz: nome e conteúdo. O gerador tem semente fixa, então uma falha se repete.
+     */
+    private static List<Arguments> entradas() {
+        Random aleatorio = new Random(12);
+        List<Arguments> entradas = new ArrayList<>();
+
+        byte[] pequeno = "O rato roeu a roupa do rei de Roma, e a rainha, com raiva, remendou.\n".repeat(40).getBytes();
+        entradas.add(Arguments.of("pequeno", pequeno));
+
+        // Distribuição geométrica: o caractere k aparece com metade da frequência do k - 1.
+        byte[] assimetrico = new byte[TAMANHO];
+        for (int i = 0; i < assimetrico.length; i++) {
+            int k = 0;
+            while (k < 255 && aleatorio.nextBoolean()) {
+                k++;
+            }
+            assimetrico[i] = (byte) k;
+        }
+        entradas.add(Arguments.of("assimetrico", assimetrico));
+
+        entradas.add(Arguments.of("um caractere", "a".repeat(TAMANHO).getBytes()));
+        entradas.add(Arguments.of("dois caracteres", sorteio(aleatorio, "ab")));
+        entradas.add(Arguments.of("oito caracteres", sorteio(aleatorio, "abcdefgh")));
+        entradas.add(Arguments.of("vazio", new byte[0]));
+        return entradas;
+    }
+
+    private static byte[] sorteio(Random aleatorio, String alfabeto) {
+        byte[] dados = new byte[TAMANHO];
+        for (int i = 0; i < dados.length; i++) {
+            dados[i] = (byte) alfabeto.charAt(aleatorio.nextInt(alfabeto.length()));
+        }
+        return dados;
+    }
+
+    /*
+    Conjuntos de opções da matriz, para cada número de fluxos.
+     */
+    private static List<String[]> opcoes() {
+        List<String[]> opcoes = new ArrayList<>();
+        for (int fluxos = 1; fluxos <= 8; fluxos++) {
+            String f = "--fluxos=" + fluxos;
+            opcoes.add(new String[] { f });
+            opcoes.add(new String[] { f, "--max-bits=4" });
+            opcoes.add(new String[] { f, "--max-bits=11" });
+            opcoes.add(new String[] { f, "--bloco=1K" });
+            opcoes.add(new String[] { f, "--bloco=16K", "--contexto" });
+            opcoes.add(new String[] { f, "--bloco=16K", "--transformacoes" });
+            opcoes.add(new String[] { f, "--bloco=4K", "--transformacoes=rle" });
+        }
+        return opcoes;
+    }
+
+    static Stream<Arguments> matriz() {
+        List<Arguments> casos = new ArrayList<>();
+        for (Arguments entrada : entradas()) {
+            for (String[] opcoes : opcoes()) {
+                casos.add(Arguments.of(entrada.get()[0], entrada.get()[1], opcoes));
+            }
+        }
+        return casos.stream();
+    }
+
+    @ParameterizedTest(name = "{0} {2}")
+    @MethodSource("matriz")
+    void idaEVolta(String nome, byte[] original, String[] opcoes) throws IOException {
+        assertArrayEquals(original, comprimirEDescomprimir(original, opcoes), nome + " " + String.join(" ", opcoes));
+    }
+
+    /*
+    Regressão: com tabelas curtas (maior código de 1 ou 3 bits), a janela do decodificador de
+    fluxos intercalados pedia mais bits do que o recarregamento rápido garante e os fluxos se
+    desalinhavam (ver DecodificadorDeTabela.BITS_JANELA).
+     */
+    @Test
+    void tabelasDeUmETresBitsComQuatroEOitoFluxos() throws IOException {
+        Random aleatorio = new Random(7);
+        for (String alfabeto : new String[] { "ab", "abcdefgh" }) {
+            byte[] original = sorteio(aleatorio, alfabeto);
+            for (int fluxos : new int[] { 4, 8 }) {
+                assertArrayEquals(original, comprimirEDescomprimir(original, new String[] { "--fluxos=" + fluxos }),
+                        alfabeto.length() + " caracteres, " + fluxos + " fluxos");
+            }
+        }
+    }
+
+    private byte[] comprimirEDescomprimir(byte[] original, String[] opcoes) throws IOException {
+        Path entrada = diretorio.resolve("original");
+        Path comprimido = diretorio.resolve("comprimido.huff");
+        Path restaurado = diretorio.resolve("restaurado");
+        Files.write(entrada, original);
+        Files.deleteIfExists(comprimido);
+        Files.deleteIfExists(restaurado);
+
+        List<String> compressao = new ArrayList<>(List.of("c", "--verbosidade=silencioso"));
+        compressao.addAll(List.of(opcoes));
+        compressao.addAll(List.of(entrada.toString(), comprimido.toString()));
+        assertTrue(Main.executar(new Opcoes(compressao.toArray(new String[0])), System.out), "compressão");
+
+        String[] descompressao = { "d", "--verbosidade=silencioso", comprimido.toString(), restaurado.toString() };
+        assertTrue(Main.executar(new Opcoes(descompressao), System.out), "descompressão");
+        return Files.readAllBytes(restaurado);
+    }
+}